@@ -3,6 +3,8 @@
  */
 package querqy;
 
+import querqy.model.Term;
+
 /**
  * @author René Kriegler, @renekrie
  *
@@ -15,6 +17,20 @@ public class LowerCaseCharSequence implements ComparableCharSequence {
         this.delegate = delegate;
     }
 
+    /**
+     * Lower-case a char sequence. If the sequence is a {@link Term}, its cached lower-cased value is returned instead
+     * of wrapping it, so that the term does not have to be lower-cased again on each char access.
+     *
+     * @param seq The char sequence
+     * @return The lower-cased char sequence
+     */
+    public static CharSequence lowerCase(final CharSequence seq) {
+        if (seq instanceof Term) {
+            return ((Term) seq).getLowerCaseValue();
+        }
+        return seq instanceof LowerCaseCharSequence ? seq : new LowerCaseCharSequence(seq);
+    }
+
     @Override
     public char charAt(final int index) {
         final char ch = delegate.charAt(index);
@@ -98,4 +98,28 @@ public class ExpandedQuery {
       multiplicativeBoostQueries.add(multiplicativeBoostQuery);
    }
 
+   /**
+    * Creates a deep copy of this query. Changes to the copy, for example by query rewriters, will not affect this query
+    * and vice versa.
+    *
+    * @return The copy
+    */
+   public ExpandedQuery deepCopy() {
+      final ExpandedQuery copy = new ExpandedQuery(QueryCopier.copy(userQuery));
+      if (filterQueries != null) {
+         filterQueries.forEach(filterQuery -> copy.addFilterQuery(QueryCopier.copy(filterQuery)));
+      }
+      if (boostUpQueries != null) {
+         boostUpQueries.forEach(boostQuery -> copy.addBoostUpQuery(QueryCopier.copy(boostQuery)));
+      }
+      if (boostDownQueries != null) {
+         boostDownQueries.forEach(boostQuery -> copy.addBoostDownQuery(QueryCopier.copy(boostQuery)));
+      }
+      if (multiplicativeBoostQueries != null) {
+         multiplicativeBoostQueries.forEach(boostQuery ->
+                 copy.addMultiplicativeBoostQuery(QueryCopier.copy(boostQuery)));
+      }
+      return copy;
+   }
+
 }
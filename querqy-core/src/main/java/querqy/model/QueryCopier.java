@@ -0,0 +1,73 @@
+package querqy.model;
+
+/**
+ * <p>Creates deep copies of queries.</p>
+ *
+ * <p>Unlike the clone methods of the nodes, which propagate the 'generated' flag of the parent to all descendants,
+ * the copy keeps the 'generated' flag and the {@link Clause.Occur} of each node. {@link RawQuery} and
+ * {@link MatchAllQuery} are copied using their clone methods. Term values are immutable and shared between the
+ * copies.</p>
+ */
+final class QueryCopier {
+
+    private QueryCopier() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <P extends Node> QuerqyQuery<P> copy(final QuerqyQuery<P> query) {
+        if (query instanceof Query) {
+            return (QuerqyQuery<P>) copy((Query) query);
+        }
+        if (query instanceof BooleanQuery) {
+            return (QuerqyQuery<P>) copy((BooleanQuery) query, null);
+        }
+        return query.clone(null, query.isGenerated());
+    }
+
+    static Query copy(final Query query) {
+        final Query copy = new Query(query.isGenerated());
+        copyClauses(query, copy);
+        return copy;
+    }
+
+    static BoostQuery copy(final BoostQuery boostQuery) {
+        return new BoostQuery(copy(boostQuery.getQuery()), boostQuery.getBoost());
+    }
+
+    private static BooleanQuery copy(final BooleanQuery booleanQuery, final BooleanParent newParent) {
+        final BooleanQuery copy = new BooleanQuery(newParent, booleanQuery.getOccur(), booleanQuery.isGenerated());
+        copyClauses(booleanQuery, copy);
+        return copy;
+    }
+
+    private static void copyClauses(final BooleanQuery source, final BooleanQuery target) {
+        for (final BooleanClause clause : source.getClauses()) {
+            if (clause instanceof DisjunctionMaxQuery) {
+                target.addClause(copy((DisjunctionMaxQuery) clause, target));
+            } else if (clause instanceof BooleanQuery) {
+                target.addClause(copy((BooleanQuery) clause, target));
+            } else {
+                target.addClause(clause.clone(target, clause.getOccur(), clause.isGenerated()));
+            }
+        }
+    }
+
+    private static DisjunctionMaxQuery copy(final DisjunctionMaxQuery dmq, final BooleanQuery newParent) {
+        final DisjunctionMaxQuery copy = new DisjunctionMaxQuery(newParent, dmq.getOccur(), dmq.isGenerated());
+        for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+            if (clause instanceof BoostedTerm) {
+                final BoostedTerm term = (BoostedTerm) clause;
+                copy.addClause(new BoostedTerm(copy, term.getField(), term.getValue(), term.getBoost()));
+            } else if (clause instanceof Term) {
+                final Term term = (Term) clause;
+                copy.addClause(new Term(copy, term.getField(), term.getValue(), term.isGenerated()));
+            } else if (clause instanceof BooleanQuery) {
+                copy.addClause(copy((BooleanQuery) clause, copy));
+            } else {
+                copy.addClause(clause.clone(copy, clause.isGenerated()));
+            }
+        }
+        return copy;
+    }
+
+}
@@ -15,6 +15,7 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
 
     protected final String field;
     protected final ComparableCharSequence value;
+    private ComparableCharSequence lowerCaseValue = null;
 
     public Term(final DisjunctionMaxQuery parentQuery, final String field, final CharSequence value, final boolean generated) {
         super(parentQuery, generated);
@@ -68,6 +69,44 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
         return value;
     }
 
+    /**
+     * <p>Get the lower-cased value of this term.</p>
+     *
+     * <p>The lower-cased value is computed once, on first access, and then kept with the term so that rewriters and
+     * lookup preprocessors that match the term case-insensitively do not need to lower-case it again.</p>
+     *
+     * @return The lower-cased value. This is the value itself if it does not contain any chars that change when
+     * lower-cased.
+     */
+    public ComparableCharSequence getLowerCaseValue() {
+        ComparableCharSequence lc = lowerCaseValue;
+        if (lc == null) {
+            lc = lowerCase(value);
+            lowerCaseValue = lc;
+        }
+        return lc;
+    }
+
+    private static ComparableCharSequence lowerCase(final ComparableCharSequence seq) {
+        final int length = seq.length();
+        int i = 0;
+        while (i < length) {
+            final char ch = seq.charAt(i);
+            if (Character.toLowerCase(ch) != ch) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            return seq;
+        }
+        final char[] chars = new char[length];
+        for (int j = 0; j < length; j++) {
+            chars[j] = Character.toLowerCase(seq.charAt(j));
+        }
+        return new SimpleComparableCharSequence(chars);
+    }
+
     @Override
     public String toString() {
         return value.toString();
@@ -129,6 +168,8 @@ public class Term extends AbstractNode<DisjunctionMaxQuery> implements Disjuncti
         if (this.value instanceof LowerCaseCharSequence) {
             return this;
         }
-        return new Term(this.parent, this.field, new LowerCaseCharSequence(this.value));
+        final Term term = new Term(this.parent, this.field, getLowerCaseValue());
+        term.lowerCaseValue = term.value;
+        return term;
     }
 }
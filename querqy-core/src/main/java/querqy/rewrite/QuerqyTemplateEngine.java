@@ -1,133 +1,172 @@
 package querqy.rewrite;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Reader;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-
+import java.util.stream.IntStream;
+
+/**
+ * <p>Renders template definitions and references in a rules file.</p>
+ *
+ * <p>The constructor reads the rules, collects the template definitions and validates all template references, so
+ * that errors in templates are thrown as a {@link TemplateParseException} from the constructor. If a template is
+ * defined more than once, the last definition is used for all references. The rules are only rendered while
+ * {@link RenderedRules#reader} is being read, line by line, without buffering the rendered rules.</p>
+ */
 public class QuerqyTemplateEngine {
 
+    private static final Pattern TEMPLATE_HEADER = Pattern.compile("^\\s*def\\s+(\\w+)\\s*\\(([\\w, ]*)\\):\\s*$");
+    private static final Pattern TEMPLATE_REFERENCE = Pattern.compile("<<\\s*(\\w+)(?:\\s*|:((?:(?!>>).)*))>>");
+
     private final Map<String, Template> templates = new HashMap<>();
+    private final LineNumberMapping lineNumberMapping = new LineNumberMapping();
+    // the lines of the rules, template definitions are null
+    private final List<String> lines = new ArrayList<>();
     public final RenderedRules renderedRules;
 
     public QuerqyTemplateEngine(final Reader rules) throws TemplateParseException, IOException {
-        final RenderedRules rulesWithoutTemplates = extractTemplatesFromRules(rules);
-
-        this.renderedRules = templates.isEmpty()
-                ? rulesWithoutTemplates
-                : renderUsingTemplates(rulesWithoutTemplates.reader, rulesWithoutTemplates.lineNumberMapping);
+        extractTemplatesFromRules(rules);
+        if (!templates.isEmpty()) {
+            validateTemplateReferences();
+        }
+        this.renderedRules = new RenderedRules(new RenderingReader(), lineNumberMapping);
     }
 
-    private static final byte[] LINE_BREAK = "\n".getBytes();
-
-    private RenderedRules renderUsingTemplates(final Reader reader, final Map<Integer, Integer> originalLineNumberMapping)
-            throws TemplateParseException, IOException {
-
-        final Pattern identifyReferenceOnTemplate = Pattern.compile("<<\\s*(\\w+)(?:\\s*|:((?:(?!>>).)*))>>");
+    private void extractTemplatesFromRules(final Reader rules) throws TemplateParseException, IOException {
+        try (final BufferedReader bufferedReader = new BufferedReader(rules)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
 
-        try (final BufferedReader bufferedReader = new BufferedReader(reader);
-             final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+                final Matcher templateHeaderCandidate = TEMPLATE_HEADER.matcher(line);
+                if (templateHeaderCandidate.matches()) {
+                    final String templateName = templateHeaderCandidate.group(1);
+                    final List<String> parameters = Arrays.stream(templateHeaderCandidate.group(2).split(","))
+                            .map(String::trim)
+                            .filter(parameter -> !parameter.isEmpty())
+                            .collect(Collectors.toList());
 
-            final Map<Integer, Integer> lineNumberMapping = new HashMap<>();
-            int lineNumber = 0;
+                    final List<String> templateBody = new ArrayList<>();
+                    lines.add(null);
 
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                lineNumber++;
+                    while (!isBlank((line = bufferedReader.readLine()))) {
+                        templateBody.add(line);
+                        lines.add(null);
+                    }
+                    if (line != null) {
+                        lines.add(null);
+                    }
 
-                final Matcher templateReferenceMatcher = identifyReferenceOnTemplate.matcher(line);
+                    if (templateBody.isEmpty()) {
+                        throw new TemplateParseException(String.format("Body of template \'%s\' is empty",
+                                templateName));
+                    }
 
-                final List<MatchResult> templateReferenceMatchResults = new ArrayList<>();
-                while (templateReferenceMatcher.find()) {
-                    templateReferenceMatchResults.add(templateReferenceMatcher.toMatchResult());
+                    this.templates.put(templateName, new Template(templateName, parameters, templateBody));
+                } else {
+                    lines.add(line);
                 }
+            }
+        }
+    }
 
-                if (templateReferenceMatchResults.isEmpty()) {
-                    writeLine(outputStream, line, originalLineNumberMapping.get(lineNumber), lineNumberMapping);
+    private void validateTemplateReferences() throws TemplateParseException {
+        for (final String line : lines) {
+            if (line != null) {
+                renderLine(line, 0, null);
+            }
+        }
+    }
 
-                } else if (templateReferenceMatchResults.size() == 1) {
-                    final MatchResult matchResult = templateReferenceMatchResults.get(0);
+    /**
+     * Renders the line and writes the rendered lines to the output. Only validates the template references if the
+     * output is null.
+     */
+    private void renderLine(String line, final int originalLineNumber, final StringBuilder output)
+            throws TemplateParseException {
 
-                    final Template template = getTemplateForReferenceName(matchResult.group(1).trim());
+        final Matcher templateReferenceMatcher = TEMPLATE_REFERENCE.matcher(line);
 
-                    final Map<String, String> referenceParameters = parseParameters(matchResult.group(2));
-                    validateReferenceParameters(referenceParameters, template);
+        final List<MatchResult> templateReferenceMatchResults = new ArrayList<>();
+        while (templateReferenceMatcher.find()) {
+            templateReferenceMatchResults.add(templateReferenceMatcher.toMatchResult());
+        }
 
-                    if (template.body.size() == 1) {
-                        final String renderedTemplate = renderTemplateLine(referenceParameters, template.body.get(0));
-                        writeLine(outputStream, renderLine(line, renderedTemplate, matchResult),
-                                originalLineNumberMapping.get(lineNumber), lineNumberMapping);
+        if (templateReferenceMatchResults.isEmpty()) {
+            writeLine(output, line, originalLineNumber);
 
-                    } else {
-                        final boolean referenceComprisesFullLine = (line.substring(0, matchResult.start()) +
-                                line.substring(matchResult.end())).trim().isEmpty();
+        } else if (templateReferenceMatchResults.size() == 1) {
+            final MatchResult matchResult = templateReferenceMatchResults.get(0);
 
-                        if (!referenceComprisesFullLine) {
-                            throw new TemplateParseException("References for multi-line templates must comprise " +
-                                    "a full line and must not be embedded in a statement.");
-                        }
+            final Template template = getTemplateForReferenceName(matchResult.group(1).trim());
 
-                        writeLines(outputStream, renderTemplateLines(referenceParameters, template.body),
-                                originalLineNumberMapping.get(lineNumber), lineNumberMapping);
-                    }
-                } else {
-                    for (int i = templateReferenceMatchResults.size() - 1; i >= 0; i--) {
-                        final MatchResult matchResult = templateReferenceMatchResults.get(i);
+            final Map<String, String> referenceParameters = parseParameters(matchResult.group(2));
+            validateReferenceParameters(referenceParameters, template);
 
-                        final Template template = getTemplateForReferenceName(matchResult.group(1).trim());
+            if (template.body.size() == 1) {
+                final String renderedTemplate = renderTemplateLine(referenceParameters, template.body.get(0));
+                writeLine(output, renderLine(line, renderedTemplate, matchResult), originalLineNumber);
 
-                        if (template.body.size() > 1) {
-                            throw new TemplateParseException("References for multi-line templates must comprise " +
-                                    "a full line and must not be nested in a statement.");
-                        }
+            } else {
+                final boolean referenceComprisesFullLine = (line.substring(0, matchResult.start()) +
+                        line.substring(matchResult.end())).trim().isEmpty();
 
-                        final Map<String, String> referenceParameters = parseParameters(matchResult.group(2));
-                        validateReferenceParameters(referenceParameters, template);
+                if (!referenceComprisesFullLine) {
+                    throw new TemplateParseException("References for multi-line templates must comprise " +
+                            "a full line and must not be embedded in a statement.");
+                }
 
-                        final String renderedTemplate = renderTemplateLine(referenceParameters, template.body.get(0));
+                if (output != null) {
+                    writeLines(output, renderTemplateLines(referenceParameters, template.body), originalLineNumber);
+                }
+            }
+        } else {
+            for (int i = templateReferenceMatchResults.size() - 1; i >= 0; i--) {
+                final MatchResult matchResult = templateReferenceMatchResults.get(i);
 
-                        line = renderLine(line, renderedTemplate, matchResult);
+                final Template template = getTemplateForReferenceName(matchResult.group(1).trim());
 
-                    }
-                    writeLine(outputStream, line, originalLineNumberMapping.get(lineNumber), lineNumberMapping);
+                if (template.body.size() > 1) {
+                    throw new TemplateParseException("References for multi-line templates must comprise " +
+                            "a full line and must not be nested in a statement.");
                 }
+
+                final Map<String, String> referenceParameters = parseParameters(matchResult.group(2));
+                validateReferenceParameters(referenceParameters, template);
+
+                final String renderedTemplate = renderTemplateLine(referenceParameters, template.body.get(0));
+
+                line = renderLine(line, renderedTemplate, matchResult);
+
             }
-            return new RenderedRules(new InputStreamReader(new ByteArrayInputStream(outputStream.toByteArray()), UTF_8),
-                    lineNumberMapping);
+            writeLine(output, line, originalLineNumber);
         }
     }
 
-    private void writeLines(final OutputStream outputStream,
-                            final List<String> lines,
-                            final int originalLineNumber,
-                            final Map<Integer, Integer> lineNumberMapping) throws IOException {
+    private void writeLines(final StringBuilder output, final List<String> lines, final int originalLineNumber) {
         for (final String line : lines) {
-            writeLine(outputStream, line, originalLineNumber, lineNumberMapping);
+            writeLine(output, line, originalLineNumber);
         }
     }
 
-    private void writeLine(final OutputStream outputStream,
-                           final String line,
-                           final int originalLineNumber,
-                           final Map<Integer, Integer> lineNumberMapping) throws IOException {
-        outputStream.write(line.getBytes(UTF_8));
-        outputStream.write(LINE_BREAK);
-        lineNumberMapping.put(lineNumberMapping.size() + 1, originalLineNumber);
+    private void writeLine(final StringBuilder output, final String line, final int originalLineNumber) {
+        if (output != null) {
+            output.append(line).append('\n');
+            lineNumberMapping.add(originalLineNumber);
+        }
     }
 
     private List<String> renderTemplateLines(final Map<String, String> referenceParameters, final List<String> templateLines) {
@@ -200,50 +239,113 @@ public class QuerqyTemplateEngine {
         return params;
     }
 
-    private RenderedRules extractTemplatesFromRules(final Reader reader) throws TemplateParseException, IOException {
+    /**
+     * Renders the rules line by line while they are being read.
+     */
+    private class RenderingReader extends Reader {
 
-        final Pattern identifyTemplateHeader = Pattern.compile("^\\s*def\\s+(\\w+)\\s*\\(([\\w, ]*)\\):\\s*$");
+        private final StringBuilder output = new StringBuilder();
+        private int outputPos = 0;
+        private int nextLine = 0;
 
-        final Map<Integer, Integer> lineNumberMapping = new HashMap<>();
-        int lineNumber = 0;
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (outputPos == output.length()) {
+                output.setLength(0);
+                outputPos = 0;
+                if (!renderNextLine()) {
+                    return -1;
+                }
+            }
+            final int count = Math.min(len, output.length() - outputPos);
+            output.getChars(outputPos, outputPos + count, cbuf, off);
+            outputPos += count;
+            return count;
+        }
 
-        try (final BufferedReader bufferedReader = new BufferedReader(reader);
-             final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+        private boolean renderNextLine() throws IOException {
+            while (nextLine < lines.size() && lines.get(nextLine) == null) {
+                nextLine++;
+            }
+            if (nextLine == lines.size()) {
+                return false;
+            }
+            final String line = lines.get(nextLine++);
+            if (templates.isEmpty()) {
+                writeLine(output, line, nextLine);
+            } else {
+                try {
+                    renderLine(line, nextLine, output);
+                } catch (final TemplateParseException e) {
+                    // cannot happen, the references have been validated
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            return true;
+        }
 
-            String line;
-            while ((line = bufferedReader.readLine()) != null) {
-                lineNumber++;
+        @Override
+        public void close() {
+            // nothing to close, the rules have been read in the constructor
+        }
+    }
 
-                final Matcher templateHeaderCandidate = identifyTemplateHeader.matcher(line);
-                if (templateHeaderCandidate.matches()) {
-                    final String templateName = templateHeaderCandidate.group(1);
-                    final List<String> parameters = Arrays.stream(templateHeaderCandidate.group(2).split(","))
-                            .map(String::trim)
-                            .filter(parameter -> !parameter.isEmpty())
-                            .collect(Collectors.toList());
+    /**
+     * Maps the numbers of the rendered lines to the numbers of the lines in the rules, storing one int per rendered
+     * line.
+     */
+    private static class LineNumberMapping extends AbstractMap<Integer, Integer> {
 
-                    final List<String> templateBody = new ArrayList<>();
+        private int[] originalLineNumbers = new int[64];
+        private int size = 0;
 
-                    while (!isBlank((line = bufferedReader.readLine()))) {
-                        lineNumber++;
-                        templateBody.add(line);
-                    }
-                    lineNumber++;
-
-                    if (templateBody.isEmpty()) {
-                        throw new TemplateParseException(String.format("Body of template \'%s\' is empty", templateName));
-                    }
+        void add(final int originalLineNumber) {
+            if (size == originalLineNumbers.length) {
+                originalLineNumbers = Arrays.copyOf(originalLineNumbers, size * 2);
+            }
+            originalLineNumbers[size++] = originalLineNumber;
+        }
 
-                    this.templates.put(templateName, new Template(templateName, parameters, templateBody));
-                } else {
-                    outputStream.write(line.getBytes(UTF_8));
-                    outputStream.write(LINE_BREAK);
-                    lineNumberMapping.put(lineNumberMapping.size() + 1, lineNumber);
+        @Override
+        public Integer get(final Object key) {
+            if (key instanceof Integer) {
+                final int lineNumber = (Integer) key;
+                if (lineNumber > 0 && lineNumber <= size) {
+                    return originalLineNumbers[lineNumber - 1];
                 }
             }
+            return null;
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return get(key) != null;
+        }
 
-            return new RenderedRules(new InputStreamReader(new ByteArrayInputStream(outputStream.toByteArray()), UTF_8),
-                    lineNumberMapping);
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Set<Entry<Integer, Integer>> entrySet() {
+            return new AbstractSet<Entry<Integer, Integer>>() {
+                @Override
+                public Iterator<Entry<Integer, Integer>> iterator() {
+                    return IntStream.rangeClosed(1, size)
+                            .mapToObj(lineNumber -> (Entry<Integer, Integer>)
+                                    new SimpleImmutableEntry<>(lineNumber, originalLineNumbers[lineNumber - 1]))
+                            .iterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
         }
     }
 
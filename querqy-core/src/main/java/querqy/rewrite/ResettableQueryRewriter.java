@@ -0,0 +1,18 @@
+package querqy.rewrite;
+
+/**
+ * <p>A {@link QueryRewriter} that can be reused for further requests after it has been reset.</p>
+ *
+ * <p>A {@link RewriterFactory} that creates resettable rewriters can keep them in a {@link RewriterPool} and hand them
+ * out again from {@link RewriterFactory#createRewriter(querqy.model.ExpandedQuery, SearchEngineRequestAdapter)} once
+ * the {@link RewriteChain} has passed them back via {@link RewriterFactory#releaseRewriter(QueryRewriter)}.</p>
+ */
+public interface ResettableQueryRewriter extends QueryRewriter {
+
+    /**
+     * Clear all state of the last rewrite. The rewriter must not keep any references to the query or to the
+     * request after this method has been called. The output of the last rewrite must not be affected.
+     */
+    void reset();
+
+}
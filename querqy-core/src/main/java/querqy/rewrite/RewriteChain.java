@@ -6,7 +6,10 @@ package querqy.rewrite;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 
 import querqy.model.ExpandedQuery;
 import querqy.model.Query;
@@ -22,14 +25,29 @@ import querqy.rewrite.logging.RewriterLog;
 public class RewriteChain {
 
     private final List<RewriterFactory> factories;
+    private final RewriteChainCache cache;
+    // the sorted names of the request params that are read by the rewriters, null if the output cannot be cached
+    private final Set<String> requestParamDependencies;
 
     public RewriteChain() {
         this(Collections.emptyList());
     }
 
     public RewriteChain(final List<RewriterFactory> factories) {
+        this(factories, null);
+    }
+
+    /**
+     * @param factories The factories of the rewriters
+     * @param cache The cache for the output of this chain. Can be null. The output is only cached if all factories
+     *              declare their request parameter dependencies (see
+     *              {@link RewriterFactory#getRequestParamDependencies()})
+     */
+    public RewriteChain(final List<RewriterFactory> factories, final RewriteChainCache cache) {
         this.factories = factories;
         ensureThatRewriterIdsAreValid();
+        this.cache = cache;
+        this.requestParamDependencies = cache == null ? null : collectRequestParamDependencies(factories);
     }
 
     public List<RewriterFactory> getFactories() {
@@ -54,11 +72,50 @@ public class RewriteChain {
         }
     }
 
+    private static Set<String> collectRequestParamDependencies(final List<RewriterFactory> factories) {
+        final Set<String> params = new TreeSet<>();
+        for (final RewriterFactory factory : factories) {
+            final Optional<Set<String>> factoryParams = factory.getRequestParamDependencies();
+            if (factoryParams.isEmpty()) {
+                return null;
+            }
+            params.addAll(factoryParams.get());
+        }
+        return params;
+    }
+
     public RewriteChainOutput rewrite(final ExpandedQuery query,
                                       final SearchEngineRequestAdapter searchEngineRequestAdapter) {
 
+        final Optional<String> cacheKey = getCacheKey(query, searchEngineRequestAdapter);
+        if (cacheKey.isPresent()) {
+            final Optional<RewriteChainOutput> cachedOutput = cache.get(cacheKey.get(), factories,
+                    searchEngineRequestAdapter);
+            if (cachedOutput.isPresent()) {
+                return cachedOutput.get();
+            }
+        }
+
         final RewritingExecutor executor = new RewritingExecutor(factories, searchEngineRequestAdapter, query);
-        return executor.rewrite();
+        final RewriteChainOutput output = executor.rewrite();
+
+        cacheKey.ifPresent(key -> cache.put(key, factories, output, searchEngineRequestAdapter.getContext()));
+
+        return output;
+    }
+
+    private Optional<String> getCacheKey(final ExpandedQuery query,
+                                         final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+        // We can't restore the rewrite log or changes to pre-existing context entries from the cache
+        if (requestParamDependencies == null || searchEngineRequestAdapter.isDebugQuery()
+                || searchEngineRequestAdapter.getRewriteLoggingConfig().isActive()) {
+            return Optional.empty();
+        }
+        final Map<String, Object> context = searchEngineRequestAdapter.getContext();
+        if (context == null || !context.isEmpty()) {
+            return Optional.empty();
+        }
+        return RewriteChainCache.createKey(factories, requestParamDependencies, query, searchEngineRequestAdapter);
     }
 
     private static class RewritingExecutor {
@@ -102,7 +159,10 @@ public class RewriteChain {
 
         private RewriterOutput applyFactory(final RewriterFactory factory) {
             final QueryRewriter rewriter = factory.createRewriter(expandedQuery, searchEngineRequestAdapter);
-            return rewriter.rewrite(expandedQuery, searchEngineRequestAdapter);
+            final RewriterOutput output = rewriter.rewrite(expandedQuery, searchEngineRequestAdapter);
+            // not reached if the rewriter threw an exception, which leaves it in an unknown state
+            factory.releaseRewriter(rewriter);
+            return output;
         }
 
         private void addLogIfRewritingHasBeenApplied(final String factoryId, final RewriterLog rewriterLog) {
@@ -0,0 +1,467 @@
+package querqy.rewrite;
+
+import querqy.model.AbstractNodeVisitor;
+import querqy.model.BooleanClause;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostQuery;
+import querqy.model.BoostedTerm;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.MatchAllQuery;
+import querqy.model.Node;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
+import querqy.model.RawQuery;
+import querqy.model.Term;
+import querqy.rewrite.logging.RewriteChainLog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A cache for the output of {@link RewriteChain}s.</p>
+ *
+ * <p>The cache key is made of the ids of the rewriters in the chain, the structure of the parsed user query and the
+ * values of the request parameters that the {@link RewriterFactory}s declare via
+ * {@link RewriterFactory#getRequestParamDependencies()}. Chains that contain a factory which doesn't declare its
+ * request parameters are never cached.</p>
+ *
+ * <p>The cache holds at most maxEntries entries and at most maxWeight query nodes in total. Entries are evicted in
+ * CLOCK (second chance) order, which approximates least-recently-used eviction: a lookup only marks the entry as
+ * referenced, and the thread that adds an entry evicts the entries that haven't been referenced since the clock hand
+ * last passed them. Lookups don't take a lock. While another thread is evicting, an entry can be added without
+ * eviction, so that the limits can be exceeded until the next entry is added. Replaced, invalidated and stale entries
+ * are only marked as removed, the clock hand drops them when it passes them.</p>
+ *
+ * <p>The cached queries are copied on write and on read as rewriters and query builders might change them.</p>
+ *
+ * <p>Entries must be invalidated when a rewriter is changed, see {@link #invalidate(String)}.</p>
+ */
+public class RewriteChainCache {
+
+    private static final char SEPARATOR = '\u0000';
+
+    private final int maxEntries;
+    private final long maxWeight;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // the clock: entries in insertion order, referenced entries are moved to the tail on eviction
+    private final Queue<Entry> clock = new ConcurrentLinkedQueue<>();
+    // the number of entries in the clock, including the entries that have been removed from the cache
+    private final AtomicInteger clockSize = new AtomicInteger(0);
+    // only one thread evicts at a time, the others don't wait for it
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private final AtomicLong weight = new AtomicLong(0L);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries The max. number of cached rewrite chain outputs
+     * @param maxWeight The max. number of query nodes in all cached outputs
+     */
+    public RewriteChainCache(final int maxEntries, final long maxWeight) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be > 0");
+        }
+        if (maxWeight < 1L) {
+            throw new IllegalArgumentException("maxWeight must be > 0");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Creates the cache key for rewriting the query. The query must not have been rewritten yet.
+     *
+     * @param factories The factories of the rewrite chain
+     * @param requestParamNames The names of the request parameters that the factories read
+     * @param query The query to rewrite
+     * @param searchEngineRequestAdapter The request adapter
+     * @return The key or an empty Optional if the query cannot be cached
+     */
+    static Optional<String> createKey(final List<RewriterFactory> factories, final Collection<String> requestParamNames,
+                                      final ExpandedQuery query,
+                                      final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        if (!(query.getUserQuery() instanceof Query) || isNotEmpty(query.getFilterQueries())
+                || isNotEmpty(query.getBoostUpQueries()) || isNotEmpty(query.getBoostDownQueries())
+                || isNotEmpty(query.getMultiplicativeBoostQueries())) {
+            return Optional.empty();
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (final RewriterFactory factory : factories) {
+            appendValue(key, factory.getRewriterId());
+        }
+        key.append(SEPARATOR);
+
+        if (!appendNode(key, (Query) query.getUserQuery())) {
+            return Optional.empty();
+        }
+        key.append(SEPARATOR);
+
+        for (final String name : requestParamNames) {
+            final String[] values = searchEngineRequestAdapter.getRequestParams(name);
+            key.append(values.length).append(':');
+            for (final String value : values) {
+                appendValue(key, value);
+            }
+        }
+
+        return Optional.of(key.toString());
+    }
+
+    /**
+     * Gets the cached output of the rewrite chain and restores the entries that the rewriters added to the context of
+     * the request.
+     *
+     * @param key The cache key
+     * @param factories The factories of the rewrite chain
+     * @param searchEngineRequestAdapter The request adapter
+     * @return A copy of the cached output or an empty Optional if nothing is cached for the key
+     */
+    Optional<RewriteChainOutput> get(final String key, final List<RewriterFactory> factories,
+                                     final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+
+        final Entry entry = entries.get(key);
+        if (entry == null || !entry.isCreatedBy(factories)) {
+            if (entry != null) {
+                // created by a rewriter that has been replaced in the meantime
+                remove(entry);
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        entry.referenced = true;
+        hits.increment();
+
+        final Map<String, Object> context = searchEngineRequestAdapter.getContext();
+        entry.context.forEach((name, value) -> context.put(name, copyContextValue(value)));
+
+        return Optional.of(RewriteChainOutput.builder()
+                .expandedQuery(entry.expandedQuery.deepCopy())
+                .rewriteLog(RewriteChainLog.builder().build())
+                .build());
+    }
+
+    /**
+     * Caches the output of a rewrite chain.
+     *
+     * @param key The cache key
+     * @param factories The factories of the rewrite chain
+     * @param output The output of the rewrite chain
+     * @param context The context after rewriting. It must have been empty before rewriting.
+     */
+    void put(final String key, final List<RewriterFactory> factories, final RewriteChainOutput output,
+             final Map<String, Object> context) {
+
+        final ExpandedQuery expandedQuery = output.getExpandedQuery();
+        final long entryWeight = weigh(expandedQuery);
+        if (entryWeight > maxWeight) {
+            return;
+        }
+
+        final Map<String, Object> contextCopy = new HashMap<>(context.size());
+        context.forEach((name, value) -> contextCopy.put(name, copyContextValue(value)));
+
+        final Entry entry = new Entry(key, new ArrayList<>(factories), expandedQuery.deepCopy(), contextCopy,
+                entryWeight);
+
+        weight.addAndGet(entryWeight);
+        clock.add(entry);
+        clockSize.incrementAndGet();
+        final Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            previous.removed = true;
+            weight.addAndGet(-previous.weight);
+        }
+
+        evict();
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            // every entry gets at most one second chance per call, unless it is referenced again concurrently
+            int maxSteps = 2 * clockSize.get() + 1;
+            while ((entries.size() > maxEntries || weight.get() > maxWeight || clockSize.get() > 2 * maxEntries)
+                    && maxSteps-- > 0) {
+                final Entry entry = clock.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.referenced && !entry.removed) {
+                    entry.referenced = false;
+                    clock.add(entry);
+                } else {
+                    clockSize.decrementAndGet();
+                    remove(entry);
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Removes all entries that were created by a rewrite chain containing the rewriter.
+     *
+     * @param rewriterId The id of the rewriter
+     */
+    public void invalidate(final String rewriterId) {
+        for (final Entry entry : entries.values()) {
+            if (entry.containsRewriter(rewriterId)) {
+                remove(entry);
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        entries.values().forEach(this::remove);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Removes the entry from the cache. It stays in the clock until the clock hand passes it.
+     */
+    private void remove(final Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            entry.removed = true;
+            weight.addAndGet(-entry.weight);
+        }
+    }
+
+    private static boolean isNotEmpty(final Collection<?> collection) {
+        return collection != null && !collection.isEmpty();
+    }
+
+    private static void appendValue(final StringBuilder key, final CharSequence value) {
+        key.append(value.length()).append(':').append(value);
+    }
+
+    private static void appendOccurAndGenerated(final StringBuilder key, final Occur occur,
+                                                final boolean generated) {
+        key.append(occur.ordinal()).append(generated ? 'g' : 'u');
+    }
+
+    private static boolean appendNode(final StringBuilder key, final BooleanQuery booleanQuery) {
+        key.append('B');
+        appendOccurAndGenerated(key, booleanQuery.getOccur(), booleanQuery.isGenerated());
+        key.append('(');
+        for (final BooleanClause clause : booleanQuery.getClauses()) {
+            if (clause instanceof DisjunctionMaxQuery) {
+                if (!appendNode(key, (DisjunctionMaxQuery) clause)) {
+                    return false;
+                }
+            } else if (clause instanceof BooleanQuery) {
+                if (!appendNode(key, (BooleanQuery) clause)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        key.append(')');
+        return true;
+    }
+
+    private static boolean appendNode(final StringBuilder key, final DisjunctionMaxQuery dmq) {
+        key.append('D');
+        appendOccurAndGenerated(key, dmq.getOccur(), dmq.isGenerated());
+        key.append('(');
+        for (final DisjunctionMaxClause clause : dmq.getClauses()) {
+            if (clause instanceof Term) {
+                final Term term = (Term) clause;
+                key.append(clause instanceof BoostedTerm ? 'b' : 'T').append(term.isGenerated() ? 'g' : 'u');
+                if (clause instanceof BoostedTerm) {
+                    key.append(((BoostedTerm) clause).getBoost()).append(':');
+                }
+                final String field = term.getField();
+                if (field == null) {
+                    key.append('-');
+                } else {
+                    appendValue(key, field);
+                }
+                appendValue(key, term.getValue());
+            } else if (clause instanceof BooleanQuery) {
+                if (!appendNode(key, (BooleanQuery) clause)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        key.append(')');
+        return true;
+    }
+
+    private static long weigh(final ExpandedQuery expandedQuery) {
+        final NodeCounter counter = new NodeCounter();
+        counter.count(expandedQuery.getUserQuery());
+        if (expandedQuery.getFilterQueries() != null) {
+            expandedQuery.getFilterQueries().forEach(counter::count);
+        }
+        counter.countBoostQueries(expandedQuery.getBoostUpQueries());
+        counter.countBoostQueries(expandedQuery.getBoostDownQueries());
+        counter.countBoostQueries(expandedQuery.getMultiplicativeBoostQueries());
+        return counter.numNodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyContextValue(final Object value) {
+        if (value instanceof Set) {
+            final Set<Object> copy = new HashSet<>();
+            ((Set<Object>) value).forEach(element -> copy.add(copyContextValue(element)));
+            return copy;
+        }
+        if (value instanceof List) {
+            final List<Object> copy = new ArrayList<>(((List<Object>) value).size());
+            ((List<Object>) value).forEach(element -> copy.add(copyContextValue(element)));
+            return copy;
+        }
+        if (value instanceof Map) {
+            final Map<Object, Object> copy = new HashMap<>();
+            ((Map<Object, Object>) value).forEach((k, v) -> copy.put(k, copyContextValue(v)));
+            return copy;
+        }
+        return value;
+    }
+
+    private static class NodeCounter extends AbstractNodeVisitor<Void> {
+
+        long numNodes = 0L;
+
+        void count(final QuerqyQuery<?> query) {
+            if (query instanceof Node) {
+                ((Node) query).accept(this);
+            } else {
+                numNodes++;
+            }
+        }
+
+        void countBoostQueries(final Collection<BoostQuery> boostQueries) {
+            if (boostQueries != null) {
+                boostQueries.forEach(boostQuery -> count(boostQuery.getQuery()));
+            }
+        }
+
+        @Override
+        public Void visit(final BooleanQuery booleanQuery) {
+            numNodes++;
+            return super.visit(booleanQuery);
+        }
+
+        @Override
+        public Void visit(final Query query) {
+            numNodes++;
+            return super.visit(query);
+        }
+
+        @Override
+        public Void visit(final DisjunctionMaxQuery disjunctionMaxQuery) {
+            numNodes++;
+            return super.visit(disjunctionMaxQuery);
+        }
+
+        @Override
+        public Void visit(final Term term) {
+            numNodes++;
+            return null;
+        }
+
+        @Override
+        public Void visit(final RawQuery rawQuery) {
+            numNodes++;
+            return null;
+        }
+
+        @Override
+        public Void visit(final MatchAllQuery query) {
+            numNodes++;
+            return null;
+        }
+    }
+
+    private static class Entry {
+
+        final String key;
+        final List<RewriterFactory> factories;
+        final ExpandedQuery expandedQuery;
+        final Map<String, Object> context;
+        final long weight;
+        // new entries count as referenced so that they aren't evicted before the entries that were added earlier
+        volatile boolean referenced = true;
+        // set once the entry has been removed from the cache
+        volatile boolean removed = false;
+
+        Entry(final String key, final List<RewriterFactory> factories, final ExpandedQuery expandedQuery,
+              final Map<String, Object> context, final long weight) {
+            this.key = key;
+            this.factories = factories;
+            this.expandedQuery = expandedQuery;
+            this.context = context;
+            this.weight = weight;
+        }
+
+        boolean isCreatedBy(final List<RewriterFactory> chainFactories) {
+            if (chainFactories.size() != factories.size()) {
+                return false;
+            }
+            for (int i = 0; i < factories.size(); i++) {
+                if (factories.get(i) != chainFactories.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean containsRewriter(final String rewriterId) {
+            for (final RewriterFactory factory : factories) {
+                if (factory.getRewriterId().equals(rewriterId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -4,6 +4,8 @@
 package querqy.rewrite;
 
 import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 import querqy.model.ExpandedQuery;
@@ -28,6 +30,18 @@ public abstract class RewriterFactory {
     public abstract QueryRewriter createRewriter(ExpandedQuery input,
                                                  SearchEngineRequestAdapter searchEngineRequestAdapter);
 
+    /**
+     * <p>Called by the {@link RewriteChain} once it no longer uses a rewriter that was created by this factory.</p>
+     * <p>Factories that create {@link ResettableQueryRewriter}s can override this method to put the rewriter into a
+     * {@link RewriterPool} and reuse it in {@link #createRewriter(ExpandedQuery, SearchEngineRequestAdapter)}. The
+     * default implementation does nothing.</p>
+     *
+     * @param rewriter The rewriter
+     */
+    public void releaseRewriter(final QueryRewriter rewriter) {
+        // rewriters are not reused by default
+    }
+
     /**
      * For clarity, implement {@link #getCacheableGenerableTerms()} instead of this
      * method. To ensure backwards compatibility, said method delegates to this one.
@@ -51,6 +65,31 @@ public abstract class RewriterFactory {
         return getGenerableTerms();
     }
 
+    /**
+     * <p>Get the names of the request parameters that the rewriters created by this factory read from the
+     * {@link SearchEngineRequestAdapter}.</p>
+     * <p>The output of a {@link RewriteChain} is only cached in a {@link RewriteChainCache} if all factories of the
+     * chain declare their request parameters. The values of these parameters become part of the cache key.</p>
+     * <p>Rewriters whose output depends on anything else than the query and the declared request parameters, for
+     * example on the index or on an external service, must return an empty Optional, which is the default.</p>
+     *
+     * @return The names of the request parameters, or an empty Optional to opt out of caching
+     */
+    public Optional<Set<String>> getRequestParamDependencies() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Get information about the loaded rewriter, for example how many rules it holds. Search engine integrations
+     * show this information together with the rewriter configuration.</p>
+     *
+     * @return The information as a map of names to values that can be serialized as JSON, or an empty Optional,
+     * which is the default
+     */
+    public Optional<Map<String, Object>> getInfo() {
+        return Optional.empty();
+    }
+
     public String getRewriterId() {
         return rewriterId;
     }
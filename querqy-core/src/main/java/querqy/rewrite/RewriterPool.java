@@ -0,0 +1,77 @@
+package querqy.rewrite;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>A bounded pool of {@link ResettableQueryRewriter}s that can be shared by all threads that use a
+ * {@link RewriterFactory}.</p>
+ *
+ * <p>The pool neither uses thread-locals nor blocks, so that it also recycles rewriters if every request runs on its
+ * own (virtual) thread: {@link #borrow()} returns null if the pool is empty and
+ * {@link #release(ResettableQueryRewriter)} drops the rewriter if the pool is full.</p>
+ *
+ * @param <T> The type of the rewriters
+ */
+public class RewriterPool<T extends ResettableQueryRewriter> {
+
+    public static final int DEFAULT_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private final AtomicReferenceArray<T> slots;
+
+    public RewriterPool() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size The max. number of idle rewriters that are kept in this pool
+     */
+    public RewriterPool(final int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size > 0 expected");
+        }
+        slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Take a rewriter from the pool.
+     *
+     * @return A rewriter that has been reset or null if the pool is empty
+     */
+    public T borrow() {
+        final int size = slots.length();
+        for (int i = 0; i < size; i++) {
+            final T rewriter = slots.get(i);
+            if (rewriter != null && slots.compareAndSet(i, rewriter, null)) {
+                return rewriter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reset a rewriter and put it into the pool. The rewriter is dropped if the pool is full. The caller must not use
+     * the rewriter after it has been released.
+     *
+     * @param rewriter The rewriter
+     */
+    public void release(final T rewriter) {
+        rewriter.reset();
+        final int size = slots.length();
+        for (int i = 0; i < size; i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, rewriter)) {
+                return;
+            }
+        }
+    }
+
+    int getNumIdle() {
+        int count = 0;
+        for (int i = 0, size = slots.length(); i < size; i++) {
+            if (slots.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+}
@@ -12,7 +12,7 @@ import querqy.model.Term;
 import querqy.rewrite.logging.ActionLog;
 import querqy.rewrite.logging.InstructionLog;
 import querqy.rewrite.logging.MatchLog;
-import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.ResettableQueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.commonrules.model.Action;
 import querqy.rewrite.commonrules.model.Instruction;
@@ -32,7 +32,7 @@ import java.util.stream.Collectors;
  * @author rene
  *
  */
-public class CommonRulesRewriter implements QueryRewriter {
+public class CommonRulesRewriter implements ResettableQueryRewriter {
 
     private final TrieMapLookupQueryVisitorFactory<InstructionsSupplier> trieMapLookupQueryVisitorFactory;
 
@@ -41,7 +41,7 @@ public class CommonRulesRewriter implements QueryRewriter {
 
     protected SelectionStrategy selectionStrategy;
 
-    private final RewriterLog.RewriterLogBuilder rewriterLogBuilder = RewriterLog.builder();
+    private RewriterLog.RewriterLogBuilder rewriterLogBuilder = RewriterLog.builder();
 
     public CommonRulesRewriter(
             final TrieMapLookupQueryVisitorFactory<InstructionsSupplier> trieMapLookupQueryVisitorFactory, final SelectionStrategy selectionStrategy) {
@@ -73,6 +73,19 @@ public class CommonRulesRewriter implements QueryRewriter {
                 .build();
     }
 
+    @Override
+    public void reset() {
+        expandedQuery = null;
+        searchEngineRequestAdapter = null;
+        selectionStrategy = null;
+        // the log of the last rewrite keeps the action logs of the builder
+        rewriterLogBuilder = RewriterLog.builder();
+    }
+
+    void setSelectionStrategy(final SelectionStrategy selectionStrategy) {
+        this.selectionStrategy = selectionStrategy;
+    }
+
     protected void rewriteBooleanQuery(final BooleanQuery booleanQuery) {
 
         final TopRewritingActionCollector collector = selectionStrategy.createTopRewritingActionCollector();
@@ -0,0 +1,214 @@
+package querqy.rewrite.commonrules;
+
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsCodec;
+import querqy.rewrite.commonrules.model.InstructionsSupplier;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+import querqy.trie.CompactTrieMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The parsed rules of a {@link SimpleCommonRulesRewriterFactory} in a form that can be written to a stream and
+ * read back without parsing the rules again. Use {@link SimpleCommonRulesRewriterFactory#getCompiledRules()} to get
+ * the rules of a factory and pass the rules that were read to the constructor of
+ * {@link SimpleCommonRulesRewriterFactory} to create a factory for them.</p>
+ *
+ * <p>The binary format holds a pool of the distinct {@link Instructions}, a pool of the values of the trie, which
+ * reference the instructions, and the node tables of the {@link CompactTrieMap}, which reference the values. Reading
+ * the format only decodes the instructions. The trie tables are copied in bulk and the trie isn't built again.
+ * {@link #readFrom(Path)} maps the file into memory instead of reading it through a stream. {@link RulesCompiler}
+ * compiles a rules file offline.</p>
+ *
+ * <p>Rules with boolean input cannot be compiled.</p>
+ */
+public class CompiledRules {
+
+    private static final int MAGIC = 0x51435231; // QCR1
+
+    /**
+     * The version of the binary format. Streams of other versions are rejected.
+     */
+    public static final int VERSION = 2;
+
+    private final CompactTrieMap<InstructionsSupplier> trieMap;
+    private final LookupPreprocessorType lookupPreprocessorType;
+    private final int nextRuleOrderNumber;
+
+    CompiledRules(final CompactTrieMap<InstructionsSupplier> trieMap,
+                  final LookupPreprocessorType lookupPreprocessorType, final int nextRuleOrderNumber) {
+        this.trieMap = trieMap;
+        this.lookupPreprocessorType = lookupPreprocessorType;
+        this.nextRuleOrderNumber = nextRuleOrderNumber;
+    }
+
+    CompactTrieMap<InstructionsSupplier> getTrieMap() {
+        return trieMap;
+    }
+
+    public LookupPreprocessorType getLookupPreprocessorType() {
+        return lookupPreprocessorType;
+    }
+
+    int getNextRuleOrderNumber() {
+        return nextRuleOrderNumber;
+    }
+
+    /**
+     * @param out The stream to write to. It will not be closed.
+     * @throws IOException if the stream cannot be written or if the rules contain an element that cannot be written
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+
+        final DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeUTF(lookupPreprocessorType.name());
+        dataOut.writeInt(nextRuleOrderNumber);
+
+        // Instructions and InstructionsSupplier objects are written once, in the order in which the trie returns
+        // them, and referenced by their index
+        final Map<Instructions, Integer> instructionsIndex = new IdentityHashMap<>();
+        final List<Instructions> instructionsPool = new ArrayList<>();
+        final Map<InstructionsSupplier, Integer> suppliersIndex = new IdentityHashMap<>();
+        final List<int[]> suppliersPool = new ArrayList<>();
+
+        for (final InstructionsSupplier instructionsSupplier : trieMap) {
+            if (suppliersIndex.containsKey(instructionsSupplier)) {
+                continue;
+            }
+            final List<Instructions> instructionsList = instructionsSupplier.getInstructionsList();
+            final int[] refs = new int[instructionsList.size()];
+            int i = 0;
+            for (final Instructions instructions : instructionsList) {
+                refs[i++] = instructionsIndex.computeIfAbsent(instructions, key -> {
+                    instructionsPool.add(key);
+                    return instructionsPool.size() - 1;
+                });
+            }
+            suppliersIndex.put(instructionsSupplier, suppliersPool.size());
+            suppliersPool.add(refs);
+        }
+
+        final InstructionsCodec codec = new InstructionsCodec();
+        dataOut.writeInt(instructionsPool.size());
+        for (final Instructions instructions : instructionsPool) {
+            codec.write(instructions, dataOut);
+        }
+
+        dataOut.writeInt(suppliersPool.size());
+        for (final int[] refs : suppliersPool) {
+            dataOut.writeInt(refs.length);
+            for (final int ref : refs) {
+                dataOut.writeInt(ref);
+            }
+        }
+
+        trieMap.writeTables(dataOut, suppliersIndex::get);
+
+        dataOut.flush();
+    }
+
+    /**
+     * @param path The file to write to. An existing file will be replaced.
+     * @throws IOException if the file cannot be written or if the rules contain an element that cannot be written
+     */
+    public void writeTo(final Path path) throws IOException {
+        try (final OutputStream out = Files.newOutputStream(path)) {
+            writeTo(out);
+        }
+    }
+
+    /**
+     * @param in The stream to read from. It will be read to its end but it will not be closed.
+     * @return The rules
+     * @throws IOException if the stream cannot be read or if it wasn't written by {@link #writeTo(OutputStream)} of
+     * the current {@link #VERSION}
+     */
+    public static CompiledRules readFrom(final InputStream in) throws IOException {
+        return readFrom(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    /**
+     * Read the rules from a memory-mapped file.
+     *
+     * @param path The file that was written by {@link #writeTo(Path)}
+     * @return The rules
+     * @throws IOException if the file cannot be read or if it wasn't written by {@link #writeTo(Path)} of the current
+     * {@link #VERSION}
+     */
+    public static CompiledRules readFrom(final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large for compiled rules: " + path);
+            }
+            return readFrom(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    private static CompiledRules readFrom(final ByteBuffer buffer) throws IOException {
+
+        final ByteBufferDataInput dataIn = new ByteBufferDataInput(buffer);
+        if (buffer.remaining() < 8 || dataIn.readInt() != MAGIC) {
+            throw new IOException("Not a stream of compiled rules");
+        }
+        final int version = dataIn.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version of compiled rules: " + version);
+        }
+
+        try {
+            final LookupPreprocessorType lookupPreprocessorType = LookupPreprocessorType.valueOf(dataIn.readUTF());
+            final int nextRuleOrderNumber = dataIn.readInt();
+
+            final InstructionsCodec codec = new InstructionsCodec();
+            final Instructions[] instructionsPool = new Instructions[checkSize(dataIn.readInt(), buffer)];
+            for (int i = 0; i < instructionsPool.length; i++) {
+                instructionsPool[i] = codec.read(dataIn);
+            }
+
+            final InstructionsSupplier[] suppliersPool = new InstructionsSupplier[checkSize(dataIn.readInt(),
+                    buffer)];
+            for (int i = 0; i < suppliersPool.length; i++) {
+                final int size = checkSize(dataIn.readInt(), buffer);
+                final List<Instructions> instructionsList = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    instructionsList.add(instructionsPool[dataIn.readInt()]);
+                }
+                suppliersPool[i] = new InstructionsSupplier(instructionsList, null);
+            }
+
+            final CompactTrieMap<InstructionsSupplier> trieMap = CompactTrieMap.readTables(buffer,
+                    ref -> suppliersPool[ref]);
+
+            return new CompiledRules(trieMap, lookupPreprocessorType, nextRuleOrderNumber);
+
+        } catch (final RuntimeException e) {
+            // invalid references or tables, a buffer that ends too early or an unknown lookup preprocessor
+            throw new IOException("Corrupt compiled rules", e);
+        }
+    }
+
+    private static int checkSize(final int size, final ByteBuffer buffer) throws IOException {
+        // each element takes at least one byte
+        if (size < 0 || size > buffer.remaining()) {
+            throw new IOException("Invalid size in compiled rules: " + size);
+        }
+        return size;
+    }
+
+}
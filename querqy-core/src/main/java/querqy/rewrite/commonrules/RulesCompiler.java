@@ -0,0 +1,122 @@
+package querqy.rewrite.commonrules;
+
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+
+/**
+ * <p>Compiles a common rules file into the binary format of {@link CompiledRules} so that it can be loaded using
+ * {@link CompiledRules#readFrom(Path)} without parsing the rules.</p>
+ *
+ * <pre>
+ * java -cp ... querqy.rewrite.commonrules.RulesCompiler [--boost-method additive|multiplicative]
+ *     [--lookup-preprocessor none|lowercase|german] [--rhs-parser &lt;QuerqyParserFactory class&gt;]
+ *     &lt;rules file&gt; &lt;output file&gt;
+ * </pre>
+ *
+ * <p>The boost method and the right-hand side parser are applied while parsing and must match the configuration of
+ * the rewriter that will load the rules.</p>
+ */
+public class RulesCompiler {
+
+    static final String USAGE = "Usage: RulesCompiler [--boost-method additive|multiplicative] " +
+            "[--lookup-preprocessor none|lowercase|german] [--rhs-parser <QuerqyParserFactory class>] " +
+            "<rules file> <output file>";
+
+    private BoostMethod boostMethod = BoostMethod.ADDITIVE;
+    private LookupPreprocessorType lookupPreprocessorType = LookupPreprocessorType.LOWERCASE;
+    private QuerqyParserFactory querqyParserFactory = new WhiteSpaceQuerqyParserFactory();
+
+    public RulesCompiler boostMethod(final BoostMethod boostMethod) {
+        this.boostMethod = boostMethod;
+        return this;
+    }
+
+    public RulesCompiler lookupPreprocessorType(final LookupPreprocessorType lookupPreprocessorType) {
+        this.lookupPreprocessorType = lookupPreprocessorType;
+        return this;
+    }
+
+    public RulesCompiler querqyParserFactory(final QuerqyParserFactory querqyParserFactory) {
+        this.querqyParserFactory = querqyParserFactory;
+        return this;
+    }
+
+    /**
+     * @param rules The rules
+     * @return The compiled rules
+     * @throws IOException if the rules cannot be read or parsed
+     * @throws UnsupportedOperationException if the rules cannot be compiled
+     */
+    public CompiledRules compile(final Reader rules) throws IOException {
+        return new SimpleCommonRulesRewriterFactory("compiler", rules, false, boostMethod, querqyParserFactory,
+                Collections.emptyMap(), new ExpressionCriteriaSelectionStrategyFactory(), false,
+                lookupPreprocessorType).getCompiledRules();
+    }
+
+    /**
+     * @param rulesFile The UTF-8 encoded rules file
+     * @param outputFile The file to write the compiled rules to
+     * @throws IOException if the rules cannot be read or parsed or if the output cannot be written
+     */
+    public void compile(final Path rulesFile, final Path outputFile) throws IOException {
+        final CompiledRules compiledRules;
+        try (final Reader reader = Files.newBufferedReader(rulesFile, StandardCharsets.UTF_8)) {
+            compiledRules = compile(reader);
+        }
+        compiledRules.writeTo(outputFile);
+    }
+
+    public static void main(final String[] args) throws IOException {
+
+        final RulesCompiler compiler;
+        final Path rulesFile;
+        final Path outputFile;
+        try {
+            compiler = new RulesCompiler();
+            int i = 0;
+            for (; i < args.length - 2; i += 2) {
+                final String value = args[i + 1];
+                switch (args[i]) {
+                    case "--boost-method":
+                        compiler.boostMethod(BoostMethod.valueOf(value.toUpperCase(Locale.ROOT)));
+                        break;
+                    case "--lookup-preprocessor":
+                        compiler.lookupPreprocessorType(LookupPreprocessorType.fromString(value));
+                        break;
+                    case "--rhs-parser":
+                        compiler.querqyParserFactory((QuerqyParserFactory) Class.forName(value)
+                                .getDeclaredConstructor().newInstance());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+            if (args.length - i != 2) {
+                throw new IllegalArgumentException("Expected rules file and output file");
+            }
+            rulesFile = Paths.get(args[i]);
+            outputFile = Paths.get(args[i + 1]);
+        } catch (final ReflectiveOperationException | RuntimeException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        compiler.compile(rulesFile, outputFile);
+        System.out.printf(Locale.ROOT, "Compiled %s to %s (%d bytes) in %d ms%n", rulesFile, outputFile,
+                Files.size(outputFile), (System.nanoTime() - start) / 1_000_000L);
+    }
+
+}
@@ -2,12 +2,20 @@ package querqy.rewrite.commonrules;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,6 +24,7 @@ import querqy.model.Term;
 import querqy.rewrite.QuerqyTemplateEngine;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.RewriterPool;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.TemplateParseException;
 import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
@@ -38,6 +47,7 @@ import querqy.rewrite.rules.factory.config.RuleParserConfig;
 import querqy.rewrite.rules.factory.config.RulesParserConfig;
 import querqy.rewrite.rules.factory.config.TextParserConfig;
 import querqy.rewrite.rules.instruction.InstructionType;
+import querqy.trie.CompactTrieMap;
 import querqy.trie.TrieMap;
 
 import static querqy.rewrite.rules.instruction.InstructionType.DECORATE;
@@ -63,6 +73,21 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
     private final boolean buildTermCache;
 
     private final TrieMapLookupQueryVisitorFactory<InstructionsSupplier> trieMapLookupQueryVisitorFactory;
+    private final RewriterPool<CommonRulesRewriter> rewriterPool = new RewriterPool<>();
+
+
+    private final boolean allowBooleanInput;
+    private final BoostMethod boostMethod;
+    private final QuerqyParserFactory querqyParserFactory;
+    private final LookupPreprocessorType lookupPreprocessorType;
+    private final LookupPreprocessor lookupPreprocessor;
+    // null if rules are parsed sequentially
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * The order number for the next rule that will be added by {@link #patch(Reader, Collection)}
+     */
+    private final int nextRuleOrderNumber;
 
 
     /**
@@ -89,6 +114,37 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
                                             final boolean buildTermCache,
                                             final LookupPreprocessorType lookupPreprocessorType
     ) throws IOException {
+        this(rewriterId, reader, allowBooleanInput, boostMethod, querqyParserFactory, selectionStrategyFactories,
+                defaultSelectionStrategyFactory, buildTermCache, lookupPreprocessorType, null);
+    }
+
+    /**
+     *
+     * @param rewriterId The id of this rewriter
+     * @param reader The reader to access the rewriter configuration
+     * @param allowBooleanInput Iff true, rule input can have boolean expressions
+     * @param boostMethod The {@link querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod} to use when creating
+     *                    {@link querqy.rewrite.commonrules.model.BoostInstruction}s
+     * @param querqyParserFactory A parser for the right-hand side of rules
+     * @param selectionStrategyFactories A mapping between names of rule selection strategies and their factories.
+     * @param defaultSelectionStrategyFactory The default {@link SelectionStrategyFactory} to be used if no strategy is
+     *                                       specified as a request parameter
+     * @param buildTermCache If true, build the term cache for terms from the rhs of rules
+     * @param forkJoinPool The pool for parsing large rule sets concurrently, also when rules are patched. Null to
+     *                     parse sequentially. The querqyParserFactory must be thread-safe if a pool is set.
+     * @throws IOException if rules cannot be read or parsed
+     */
+    public SimpleCommonRulesRewriterFactory(final String rewriterId,
+                                            final Reader reader,
+                                            final boolean allowBooleanInput,
+                                            final BoostMethod boostMethod,
+                                            final QuerqyParserFactory querqyParserFactory,
+                                            final Map<String, SelectionStrategyFactory> selectionStrategyFactories,
+                                            final SelectionStrategyFactory defaultSelectionStrategyFactory,
+                                            final boolean buildTermCache,
+                                            final LookupPreprocessorType lookupPreprocessorType,
+                                            final ForkJoinPool forkJoinPool
+    ) throws IOException {
 
         super(rewriterId);
 
@@ -100,14 +156,108 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
 
         this.buildTermCache = buildTermCache;
 
+        this.allowBooleanInput = allowBooleanInput;
+        this.boostMethod = boostMethod;
+        this.querqyParserFactory = querqyParserFactory;
+        this.lookupPreprocessorType = lookupPreprocessorType;
+        this.lookupPreprocessor = LookupPreprocessorFactory.fromType(lookupPreprocessorType);
+        this.forkJoinPool = forkJoinPool;
+
+        final TrieMap<InstructionsSupplier> trieMap = parseRules(reader, 0);
+
+        // the map won't change anymore - use the compact representation for lookups
+        trieMapLookupQueryVisitorFactory = TrieMapLookupQueryVisitorFactory.of(CompactTrieMap.of(trieMap),
+                createLookupConfig(lookupPreprocessor));
+
+        int maxOrd = -1;
+        for (final InstructionsSupplier instructionsSupplier : trieMap) {
+            for (final Instructions instructions : instructionsSupplier.getInstructionsList()) {
+                maxOrd = Math.max(maxOrd, instructions.getOrd());
+            }
+        }
+        nextRuleOrderNumber = maxOrd + 1;
+
+    }
+
+    /**
+     * Create a factory for rules that have been parsed before (see {@link #getCompiledRules()}) without parsing them
+     * again.
+     *
+     * @param rewriterId The id of this rewriter
+     * @param compiledRules The rules
+     * @param boostMethod The {@link querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod} to use when creating
+     *                    {@link querqy.rewrite.commonrules.model.BoostInstruction}s in
+     *                    {@link #patch(Reader, Collection)}
+     * @param querqyParserFactory A parser for the right-hand side of rules in {@link #patch(Reader, Collection)}
+     * @param selectionStrategyFactories A mapping between names of rule selection strategies and their factories.
+     * @param defaultSelectionStrategyFactory The default {@link SelectionStrategyFactory} to be used if no strategy is
+     *                                       specified as a request parameter
+     * @param buildTermCache If true, build the term cache for terms from the rhs of rules
+     */
+    public SimpleCommonRulesRewriterFactory(final String rewriterId,
+                                            final CompiledRules compiledRules,
+                                            final BoostMethod boostMethod,
+                                            final QuerqyParserFactory querqyParserFactory,
+                                            final Map<String, SelectionStrategyFactory> selectionStrategyFactories,
+                                            final SelectionStrategyFactory defaultSelectionStrategyFactory,
+                                            final boolean buildTermCache) {
+        super(rewriterId);
+
+        this.strategyParam = RuleSelectionParams.getStrategyParamName(rewriterId);
+        this.selectionStrategyFactories = new HashMap<>(selectionStrategyFactories);
+        this.defaultSelectionStrategyFactory = Objects.requireNonNull(defaultSelectionStrategyFactory);
+        this.buildTermCache = buildTermCache;
+
+        this.allowBooleanInput = false;
+        this.boostMethod = boostMethod;
+        this.querqyParserFactory = querqyParserFactory;
+        this.lookupPreprocessorType = compiledRules.getLookupPreprocessorType();
+        this.lookupPreprocessor = LookupPreprocessorFactory.fromType(lookupPreprocessorType);
+        this.forkJoinPool = null;
+        this.nextRuleOrderNumber = compiledRules.getNextRuleOrderNumber();
+
+        trieMapLookupQueryVisitorFactory = TrieMapLookupQueryVisitorFactory.of(compiledRules.getTrieMap(),
+                createLookupConfig(lookupPreprocessor));
+    }
+
+    private static LookupConfig createLookupConfig(final LookupPreprocessor lookupPreprocessor) {
+        return LookupConfig.builder()
+                .hasBoundaries(true)
+                .preprocessor(lookupPreprocessor)
+                .build();
+    }
+
+    /**
+     * Creates a factory that shares its configuration with the given factory but uses different rules
+     */
+    private SimpleCommonRulesRewriterFactory(final SimpleCommonRulesRewriterFactory original,
+                                             final CompactTrieMap<InstructionsSupplier> trieMap,
+                                             final int nextRuleOrderNumber) {
+        super(original.getRewriterId());
+        this.strategyParam = original.strategyParam;
+        this.selectionStrategyFactories = original.selectionStrategyFactories;
+        this.defaultSelectionStrategyFactory = original.defaultSelectionStrategyFactory;
+        this.buildTermCache = original.buildTermCache;
+        this.allowBooleanInput = original.allowBooleanInput;
+        this.boostMethod = original.boostMethod;
+        this.querqyParserFactory = original.querqyParserFactory;
+        this.lookupPreprocessorType = original.lookupPreprocessorType;
+        this.lookupPreprocessor = original.lookupPreprocessor;
+        this.forkJoinPool = original.forkJoinPool;
+        this.nextRuleOrderNumber = nextRuleOrderNumber;
+        this.trieMapLookupQueryVisitorFactory = TrieMapLookupQueryVisitorFactory.of(trieMap,
+                original.trieMapLookupQueryVisitorFactory.getLookupConfig());
+    }
+
+    private TrieMap<InstructionsSupplier> parseRules(final Reader reader, final int firstRuleOrderNumber)
+            throws IOException {
+
         // TODO: using List<String> to process lines instead of Reader should be better:
         //  (1) Lines can be reused across different processing stages (should reduce resource consumption)
         //  (2) Allows removing various try & catch blocks
         try {
             final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(reader);
 
-            final LookupPreprocessor lookupPreprocessor = LookupPreprocessorFactory.fromType(lookupPreprocessorType);
-
             final RulesParserConfig config = RulesParserConfig.builder()
                     .textParserConfig(TextParserConfig.builder()
                             .rulesContentReader(querqyTemplateEngine.renderedRules.reader)
@@ -121,23 +271,19 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
                             .allowedInstructionTypes(ALLOWED_TYPES)
                             .build())
                     .rulesCollectionBuilder(new TrieMapRulesCollectionBuilder(lookupPreprocessor))
+                    .firstRuleOrderNumber(firstRuleOrderNumber)
+                    .forkJoinPool(forkJoinPool)
                     .build();
 
             final RulesParser rulesParser = RulesParserFactory.textParser(config);
             final TrieMap<InstructionsSupplier> trieMap = rulesParser.parse();
 
-            trieMapLookupQueryVisitorFactory = TrieMapLookupQueryVisitorFactory.of(
-                    trieMap,
-                    LookupConfig.builder()
-                            .hasBoundaries(true)
-                            .preprocessor(lookupPreprocessor)
-                            .build()
-            );
-
             // should be closed already in RulesParser - passing Readers as arguments should be avoided
             // and refactored as suggested above
             querqyTemplateEngine.renderedRules.reader.close();
 
+            return trieMap;
+
         } catch (final RuleParseException | TemplateParseException e) {
             throw new IOException(e);
         } finally {
@@ -149,6 +295,95 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
         }
     }
 
+    /**
+     * <p>Create a factory for a changed set of rules without parsing the rules that did not change.</p>
+     *
+     * <p>Rules are identified by their {@link Instructions.StandardPropertyNames#ID}. A rule in {@code upserts}
+     * replaces the rule that has the same ID and keeps its position in the order of rules. Rules with a new ID are
+     * added after all existing rules. Only the trie entries of the inputs of the changed rules are rebuilt, all
+     * other entries are shared with this factory. This factory remains unchanged and can still be used by requests
+     * that are being processed.</p>
+     *
+     * @param upserts The rules to add or to replace
+     * @param removedIds The IDs of the rules to remove. Unknown IDs are ignored.
+     * @return The factory for the changed rules
+     * @throws IOException if the rules cannot be read or parsed
+     * @throws UnsupportedOperationException if rules can have boolean input, which can span more than one trie entry
+     */
+    public SimpleCommonRulesRewriterFactory patch(final Reader upserts, final Collection<?> removedIds)
+            throws IOException {
+
+        if (allowBooleanInput) {
+            throw new UnsupportedOperationException("Rules with boolean input cannot be patched");
+        }
+
+        final CompactTrieMap<InstructionsSupplier> upsertsTrieMap = CompactTrieMap.of(
+                parseRules(upserts, nextRuleOrderNumber));
+
+        final Set<Object> changedIds = new HashSet<>(removedIds);
+        final int[] nextOrd = {nextRuleOrderNumber};
+        for (final InstructionsSupplier instructionsSupplier : upsertsTrieMap) {
+            for (final Instructions instructions : instructionsSupplier.getInstructionsList()) {
+                changedIds.add(instructions.getId());
+                nextOrd[0] = Math.max(nextOrd[0], instructions.getOrd() + 1);
+            }
+        }
+
+        // Remove the changed rules from the entries that contain them. We must not modify the InstructionsSuppliers
+        // of this factory.
+        final CompactTrieMap<InstructionsSupplier> trieMap = (CompactTrieMap<InstructionsSupplier>)
+                trieMapLookupQueryVisitorFactory.getTrieMap();
+        final Map<String, InstructionsSupplier> valueUpdates = new HashMap<>();
+        final Map<String, InstructionsSupplier> prefixValueUpdates = new HashMap<>();
+        final Map<Object, Integer> ordsOfChangedRules = new HashMap<>();
+
+        trieMap.forEachEntry((key, instructionsSupplier, isPrefix) -> {
+
+            boolean isChanged = false;
+            for (final Instructions instructions : instructionsSupplier.getInstructionsList()) {
+                if (changedIds.contains(instructions.getId())) {
+                    ordsOfChangedRules.put(instructions.getId(), instructions.getOrd());
+                    isChanged = true;
+                }
+            }
+
+            if (isChanged) {
+                final List<Instructions> remaining = instructionsSupplier.getInstructionsList().stream()
+                        .filter(instructions -> !changedIds.contains(instructions.getId()))
+                        .collect(Collectors.toList());
+                (isPrefix ? prefixValueUpdates : valueUpdates).put(key.toString(),
+                        remaining.isEmpty() ? null : new InstructionsSupplier(remaining, null));
+            }
+        });
+
+        // Add the new versions of the rules, keeping the order numbers of the replaced rules
+        final Map<Instructions, Instructions> withOriginalOrd = new IdentityHashMap<>();
+        upsertsTrieMap.forEachEntry((key, instructionsSupplier, isPrefix) -> {
+
+            final Map<String, InstructionsSupplier> updates = isPrefix ? prefixValueUpdates : valueUpdates;
+            final String seq = key.toString();
+
+            final InstructionsSupplier current = updates.containsKey(seq)
+                    ? updates.get(seq)
+                    : isPrefix ? trieMap.getPrefixValue(seq) : trieMap.getValue(seq);
+
+            final List<Instructions> instructionsList = (current == null)
+                    ? new ArrayList<>() : new ArrayList<>(current.getInstructionsList());
+
+            for (final Instructions instructions : instructionsSupplier.getInstructionsList()) {
+                final Integer ord = ordsOfChangedRules.get(instructions.getId());
+                instructionsList.add(ord == null ? instructions
+                        : withOriginalOrd.computeIfAbsent(instructions, i -> i.withOrd(ord)));
+            }
+            instructionsList.sort(Comparator.comparingInt(Instructions::getOrd));
+
+            updates.put(seq, new InstructionsSupplier(instructionsList, null));
+        });
+
+        return new SimpleCommonRulesRewriterFactory(this, trieMap.update(valueUpdates, prefixValueUpdates),
+                nextOrd[0]);
+    }
+
     @Override
     public QueryRewriter createRewriter(final ExpandedQuery input,
                                         final SearchEngineRequestAdapter searchEngineRequestAdapter) {
@@ -164,7 +399,47 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
                 }).orElse(defaultSelectionStrategyFactory) // strategy not specified in params
                 .createSelectionStrategy(getRewriterId(), searchEngineRequestAdapter);
 
-        return new CommonRulesRewriter(trieMapLookupQueryVisitorFactory, selectionStrategy);
+        final CommonRulesRewriter rewriter = rewriterPool.borrow();
+        if (rewriter == null) {
+            return new CommonRulesRewriter(trieMapLookupQueryVisitorFactory, selectionStrategy);
+        }
+        rewriter.setSelectionStrategy(selectionStrategy);
+        return rewriter;
+    }
+
+    @Override
+    public void releaseRewriter(final QueryRewriter rewriter) {
+        if (rewriter.getClass() == CommonRulesRewriter.class) {
+            rewriterPool.release((CommonRulesRewriter) rewriter);
+        }
+    }
+
+    /**
+     * The request parameters are the strategy parameter plus the parameters of all configured
+     * {@link SelectionStrategyFactory}s. If any of these factories doesn't declare its parameters, the rewriter opts
+     * out of caching.
+     */
+    @Override
+    public Optional<Set<String>> getRequestParamDependencies() {
+        final Set<String> params = new HashSet<>();
+        params.add(strategyParam);
+
+        final Optional<Set<String>> defaultParams = defaultSelectionStrategyFactory
+                .getRequestParamDependencies(getRewriterId());
+        if (defaultParams.isEmpty()) {
+            return Optional.empty();
+        }
+        params.addAll(defaultParams.get());
+
+        for (final SelectionStrategyFactory factory : selectionStrategyFactories.values()) {
+            final Optional<Set<String>> factoryParams = factory.getRequestParamDependencies(getRewriterId());
+            if (factoryParams.isEmpty()) {
+                return Optional.empty();
+            }
+            params.addAll(factoryParams.get());
+        }
+
+        return Optional.of(params);
     }
 
     @Override
@@ -178,6 +453,54 @@ public class SimpleCommonRulesRewriterFactory extends RewriterFactory {
         return Collections.emptySet();
     }
 
+    /**
+     * <p>Reports how many rules and instructions this factory holds. Equal instructions of different rules are shared
+     * while the rules are loaded, so {@code uniqueInstructions} is usually lower than {@code instructions}.</p>
+     */
+    @Override
+    public Optional<Map<String, Object>> getInfo() {
+        final Set<Instructions> rules = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final InstructionsSupplier instructionsSupplier : trieMapLookupQueryVisitorFactory.getTrieMap()) {
+            rules.addAll(instructionsSupplier.getInstructionsList());
+            instructionsSupplier.getLiteral().ifPresent(literal -> literal.getReferences()
+                    .forEach(reference -> rules.add(reference.getBooleanInput().getInstructions())));
+        }
+
+        final Set<Instruction> uniqueInstructions = Collections.newSetFromMap(new IdentityHashMap<>());
+        int numInstructions = 0;
+        for (final Instructions instructions : rules) {
+            numInstructions += instructions.size();
+            uniqueInstructions.addAll(instructions);
+        }
+
+        final Map<String, Object> info = new LinkedHashMap<>(3);
+        info.put("rules", rules.size());
+        info.put("instructions", numInstructions);
+        info.put("uniqueInstructions", uniqueInstructions.size());
+        return Optional.of(info);
+    }
+
+    /**
+     * Get the parsed rules of this factory so that they can be stored and passed to
+     * {@link #SimpleCommonRulesRewriterFactory(String, CompiledRules, BoostMethod, QuerqyParserFactory, Map, SelectionStrategyFactory, boolean)}
+     * later.
+     *
+     * @return The parsed rules
+     * @throws UnsupportedOperationException if rules can have boolean input
+     */
+    public CompiledRules getCompiledRules() {
+        if (allowBooleanInput) {
+            throw new UnsupportedOperationException("Rules with boolean input cannot be compiled");
+        }
+        return new CompiledRules((CompactTrieMap<InstructionsSupplier>) trieMapLookupQueryVisitorFactory.getTrieMap(),
+                lookupPreprocessorType, nextRuleOrderNumber);
+    }
+
+    // for testing
+    TrieMap<InstructionsSupplier> getTrieMap() {
+        return trieMapLookupQueryVisitorFactory.getTrieMap();
+    }
+
     public Set<Instruction> getInstructions() {
 
         final Set<Instruction> result = new HashSet<>();
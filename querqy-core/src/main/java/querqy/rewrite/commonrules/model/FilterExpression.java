@@ -0,0 +1,201 @@
+package querqy.rewrite.commonrules.model;
+
+import com.jayway.jsonpath.JsonPath;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>A compiled JSONPath expression for filtering rules by their {@link InstructionsProperties}.</p>
+ *
+ * <p>Expressions that compare a single top-level property to a literal, like <code>$[?(@.x == 'y')]</code> or
+ * <code>$[?(@.x != 5)]</code>, are evaluated directly on the property map. All other expressions are evaluated by
+ * Jayway JsonPath. The direct evaluation yields the same results as JsonPath, and it falls back to JsonPath for the
+ * comparisons in which JsonPath converts between strings and numbers.</p>
+ *
+ * <p>Use {@link #compile(String)} to get the expression for a string. Compiled expressions are cached. The cache is
+ * cleared when it is full.</p>
+ */
+public abstract class FilterExpression {
+
+    static final int MAX_CACHE_SIZE = 1024;
+
+    private static final Map<String, FilterExpression> CACHE = new ConcurrentHashMap<>();
+
+    private static final Pattern PROPERTY_COMPARISON = Pattern.compile(
+            "\\$\\.?\\[\\?\\(\\s*@\\.([A-Za-z_][A-Za-z0-9_]*)\\s*(==|!=)\\s*" +
+                    "(?:'([^'\\\\]*)'|\"([^\"\\\\]*)\"|(-?\\d+(?:\\.\\d+)?)|(true|false))\\s*\\)]");
+
+    protected final String expression;
+
+    protected FilterExpression(final String expression) {
+        this.expression = expression;
+    }
+
+    /**
+     * Get the compiled expression for an expression string.
+     *
+     * @param expression The JSONPath expression
+     * @return The compiled expression
+     * @throws com.jayway.jsonpath.InvalidPathException if the expression is not a valid JSONPath expression
+     */
+    public static FilterExpression compile(final String expression) {
+        final FilterExpression cached = CACHE.get(expression);
+        if (cached != null) {
+            return cached;
+        }
+
+        final FilterExpression filterExpression = parse(expression);
+
+        // Expressions come from request parameters. Start over once the cache is full so that arbitrary
+        // expressions cannot make the cache grow unbounded, while the expressions that are in use get cached again.
+        if (CACHE.size() >= MAX_CACHE_SIZE) {
+            CACHE.clear();
+        }
+        CACHE.putIfAbsent(expression, filterExpression);
+
+        return filterExpression;
+    }
+
+    static FilterExpression parse(final String expression) {
+        final JsonPath jsonPath = JsonPath.compile(expression);
+
+        final Matcher matcher = PROPERTY_COMPARISON.matcher(expression.trim());
+        if (!matcher.matches()) {
+            return new JsonPathExpression(expression, jsonPath);
+        }
+
+        final Object literal;
+        if (matcher.group(3) != null) {
+            literal = matcher.group(3);
+        } else if (matcher.group(4) != null) {
+            literal = matcher.group(4);
+        } else if (matcher.group(5) != null) {
+            literal = new BigDecimal(matcher.group(5));
+        } else {
+            literal = Boolean.valueOf(matcher.group(6));
+        }
+
+        return new PropertyComparison(expression, jsonPath, matcher.group(1), "!=".equals(matcher.group(2)), literal);
+    }
+
+    static void clearCache() {
+        CACHE.clear();
+    }
+
+    static int getCacheSize() {
+        return CACHE.size();
+    }
+
+    public abstract boolean matches(InstructionsProperties properties);
+
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{expression='" + expression + "'}";
+    }
+
+    static class JsonPathExpression extends FilterExpression {
+
+        private final JsonPath jsonPath;
+
+        JsonPathExpression(final String expression, final JsonPath jsonPath) {
+            super(expression);
+            this.jsonPath = jsonPath;
+        }
+
+        @Override
+        public boolean matches(final InstructionsProperties properties) {
+            return properties.matches(jsonPath);
+        }
+    }
+
+    static class PropertyComparison extends FilterExpression {
+
+        private final JsonPath jsonPath;
+        private final String propertyName;
+        private final boolean negated;
+        private final Object literal;
+
+        PropertyComparison(final String expression, final JsonPath jsonPath, final String propertyName,
+                           final boolean negated, final Object literal) {
+            super(expression);
+            this.jsonPath = jsonPath;
+            this.propertyName = propertyName;
+            this.negated = negated;
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean matches(final InstructionsProperties properties) {
+            final Object value = properties.getPropertyMap().get(propertyName);
+
+            final BigDecimal number;
+            if (value instanceof Number) {
+                number = toBigDecimal((Number) value);
+                if (number == null) {
+                    // NaN, Infinity - leave it to JsonPath to handle them
+                    return properties.matches(jsonPath);
+                }
+            } else {
+                number = null;
+            }
+
+            final boolean isEqual;
+            if (literal instanceof String) {
+                if (number != null) {
+                    // JsonPath tries to convert the string to a number
+                    return properties.matches(jsonPath);
+                }
+                isEqual = literal.equals(value);
+            } else if (literal instanceof BigDecimal) {
+                if (value instanceof String) {
+                    // JsonPath tries to convert the string to a number
+                    return properties.matches(jsonPath);
+                }
+                isEqual = number != null && number.compareTo((BigDecimal) literal) == 0;
+            } else {
+                isEqual = literal.equals(value);
+            }
+
+            return isEqual != negated;
+        }
+
+        private static BigDecimal toBigDecimal(final Number number) {
+            if (number instanceof BigDecimal) {
+                return (BigDecimal) number;
+            }
+            try {
+                return new BigDecimal(number.toString());
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String getPropertyName() {
+            return propertyName;
+        }
+
+        boolean isNegated() {
+            return negated;
+        }
+
+        Object getLiteral() {
+            return literal;
+        }
+
+        @Override
+        public String toString() {
+            return "PropertyComparison{propertyName='" + propertyName + "', negated=" + negated + ", literal="
+                    + Objects.toString(literal) + "}";
+        }
+    }
+
+}
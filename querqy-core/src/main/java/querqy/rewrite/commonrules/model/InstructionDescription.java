@@ -1,5 +1,6 @@
 package querqy.rewrite.commonrules.model;
 
+import java.util.Objects;
 import java.util.Optional;
 
 public class InstructionDescription {
@@ -26,6 +27,20 @@ public class InstructionDescription {
         return Optional.ofNullable(value);
     }
 
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final InstructionDescription that = (InstructionDescription) o;
+        return Objects.equals(typeName, that.typeName) && Objects.equals(param, that.param)
+                && Objects.equals(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(typeName, param, value);
+    }
+
     @Override
     public String toString() {
         return "InstructionDescription{" +
@@ -0,0 +1,55 @@
+package querqy.rewrite.commonrules.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <p>Replaces the {@link Instruction}s of {@link Instructions} with a shared instance if an equal instruction has been
+ * seen before. Rules often have the same right-hand side, like the same FILTER or UP(100): brand:x, and sharing the
+ * instructions also shares their queries, terms and decoration values.</p>
+ *
+ * <p>Instructions are only shared if they also have equal {@link InstructionDescription}s so that rewrite logs
+ * remain unchanged.</p>
+ */
+class InstructionInterner {
+
+    private final Map<Key, Instruction> instructions = new HashMap<>();
+    // each Instructions object is only interned once, even if it is referenced by more than one rule input
+    private final Set<Instructions> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    void intern(final Instructions rule) {
+        if (seen.add(rule)) {
+            rule.replaceAll(instruction -> instructions.computeIfAbsent(new Key(instruction), key -> instruction));
+        }
+    }
+
+    private static final class Key {
+
+        private final Instruction instruction;
+        private final int hashCode;
+
+        Key(final Instruction instruction) {
+            this.instruction = instruction;
+            this.hashCode = 31 * instruction.hashCode() + Objects.hashCode(instruction.getInstructionDescription());
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key key = (Key) o;
+            return hashCode == key.hashCode && instruction.equals(key.instruction)
+                    && Objects.equals(instruction.getInstructionDescription(),
+                    key.instruction.getInstructionDescription());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
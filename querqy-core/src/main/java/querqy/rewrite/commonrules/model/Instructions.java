@@ -9,6 +9,7 @@ import lombok.ToString;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -88,6 +89,39 @@ public class Instructions extends LinkedList<Instruction> {
         return properties;
     }
 
+    /**
+     * Create a copy of these Instructions that has a different order number.
+     *
+     * @param ord The order number of the copy
+     * @return The copy
+     */
+    public Instructions withOrd(final int ord) {
+        return new Instructions(ord, id, getInstructionsInCreationOrder(), properties);
+    }
+
+    /**
+     * The constructor adds all but {@link DeleteInstruction}s in reverse order. Passing the list that is returned by
+     * this method to the constructor re-creates the order of this object.
+     *
+     * @return The instructions in an order that re-creates the order of this object when passed to the constructor
+     */
+    List<Instruction> getInstructionsInCreationOrder() {
+        final List<Instruction> result = new ArrayList<>(size());
+        final Iterator<Instruction> descending = descendingIterator();
+        while (descending.hasNext()) {
+            final Instruction instruction = descending.next();
+            if (!(instruction instanceof DeleteInstruction)) {
+                result.add(instruction);
+            }
+        }
+        for (final Instruction instruction : this) {
+            if (instruction instanceof DeleteInstruction) {
+                result.add(instruction);
+            }
+        }
+        return result;
+    }
+
     @Override
     public String toString() {
         return "Instructions{" +
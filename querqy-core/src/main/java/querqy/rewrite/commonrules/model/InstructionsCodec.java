@@ -0,0 +1,517 @@
+package querqy.rewrite.commonrules.model;
+
+import querqy.model.BooleanClause;
+import querqy.model.BooleanParent;
+import querqy.model.BooleanQuery;
+import querqy.model.BoostedTerm;
+import querqy.model.Clause.Occur;
+import querqy.model.DisjunctionMaxClause;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.MatchAllQuery;
+import querqy.model.ParametrizedRawQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.Query;
+import querqy.model.StringRawQuery;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostDirection;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.rules.property.PropertyParser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Writes {@link Instructions} to a binary stream and reads them back without parsing the rules again.</p>
+ *
+ * <p>Instructions are written in their parsed form: the queries of boost and filter instructions are written as
+ * querqy query trees, terms are written with their field names. The constructors of the instructions are called
+ * again when reading so that instructions that were read behave like the instructions that were written. Property
+ * values and decoration values can be strings, numbers, booleans, null and lists and maps of these.</p>
+ *
+ * <p>The format has no version of its own. Callers must write a version and reject streams that were written in a
+ * different version.</p>
+ */
+public class InstructionsCodec {
+
+    private static final byte SYNONYM = 1;
+    private static final byte BOOST = 2;
+    private static final byte FILTER = 3;
+    private static final byte DELETE = 4;
+    private static final byte DECORATE = 5;
+
+    private static final byte QUERY = 1;
+    private static final byte BOOLEAN_QUERY = 2;
+    private static final byte DISJUNCTION_MAX_QUERY = 3;
+    private static final byte TERM = 4;
+    private static final byte BOOSTED_TERM = 5;
+    private static final byte MATCH_ALL_QUERY = 6;
+    private static final byte STRING_RAW_QUERY = 7;
+    private static final byte PARAMETRIZED_RAW_QUERY = 8;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte INTEGER = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte LIST = 9;
+    private static final byte MAP = 10;
+
+    private final PropertyParser propertyParser = PropertyParser.create();
+
+    /**
+     * @param instructions The instructions to write
+     * @param out The output
+     * @throws IOException if the output cannot be written or if the instructions contain an element that this codec
+     * cannot write
+     */
+    public void write(final Instructions instructions, final DataOutput out) throws IOException {
+        out.writeInt(instructions.getOrd());
+        writeValue(instructions.getId(), out);
+
+        final InstructionsProperties properties = instructions.getProperties();
+        writeValue(properties == null ? null : properties.getPropertyMap(), out);
+
+        final List<Instruction> instructionList = instructions.getInstructionsInCreationOrder();
+        out.writeInt(instructionList.size());
+        for (final Instruction instruction : instructionList) {
+            writeInstruction(instruction, out);
+        }
+    }
+
+    public Instructions read(final DataInput in) throws IOException {
+        final int ord = in.readInt();
+        final Object id = readValue(in);
+        final Map<String, Object> propertyMap = (Map<String, Object>) readValue(in);
+
+        final int size = in.readInt();
+        final List<Instruction> instructionList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            instructionList.add(readInstruction(in));
+        }
+
+        return propertyMap == null
+                ? new Instructions(ord, id, instructionList)
+                : new Instructions(ord, id, instructionList, propertyParser.parse(propertyMap, String.valueOf(id)));
+    }
+
+    protected void writeInstruction(final Instruction instruction, final DataOutput out) throws IOException {
+
+        final Class<?> type = instruction.getClass();
+
+        if (type == SynonymInstruction.class) {
+            final SynonymInstruction synonymInstruction = (SynonymInstruction) instruction;
+            out.writeByte(SYNONYM);
+            out.writeFloat(synonymInstruction.boost);
+            writeTerms(synonymInstruction.synonym, out);
+        } else if (type == BoostInstruction.class) {
+            final BoostInstruction boostInstruction = (BoostInstruction) instruction;
+            out.writeByte(BOOST);
+            out.writeUTF(boostInstruction.direction.name());
+            out.writeUTF(boostInstruction.boostMethod.name());
+            out.writeFloat(boostInstruction.boost);
+            writeQuery(boostInstruction.query, out);
+        } else if (type == FilterInstruction.class) {
+            out.writeByte(FILTER);
+            writeQuery(((FilterInstruction) instruction).filterQuery, out);
+        } else if (type == DeleteInstruction.class) {
+            out.writeByte(DELETE);
+            writeTerms(((DeleteInstruction) instruction).termsToDelete, out);
+        } else if (type == DecorateInstruction.class) {
+            final DecorateInstruction decorateInstruction = (DecorateInstruction) instruction;
+            out.writeByte(DECORATE);
+            writeNullableString(decorateInstruction.decorationKey, out);
+            writeValue(decorateInstruction.decorationValue, out);
+        } else {
+            throw new IOException("Cannot write instruction of type " + type.getName());
+        }
+
+        final InstructionDescription description = instruction.getInstructionDescription();
+        writeNullableString(description.getTypeName(), out);
+        writeValue(description.getParam().orElse(null), out);
+        writeNullableString(description.getValue().orElse(null), out);
+    }
+
+    protected Instruction readInstruction(final DataInput in) throws IOException {
+
+        final byte type = in.readByte();
+
+        switch (type) {
+            case SYNONYM: {
+                final float boost = in.readFloat();
+                final List<Term> synonym = readTerms(in);
+                return new SynonymInstruction(synonym, boost, readInstructionDescription(in));
+            }
+            case BOOST: {
+                final BoostDirection direction = BoostDirection.valueOf(in.readUTF());
+                final BoostMethod boostMethod = BoostMethod.valueOf(in.readUTF());
+                final float boost = in.readFloat();
+                final QuerqyQuery<?> query = readQuery(null, in);
+                return new BoostInstruction(query, direction, boostMethod, boost, readInstructionDescription(in));
+            }
+            case FILTER: {
+                final QuerqyQuery<?> query = readQuery(null, in);
+                return new FilterInstruction(query, readInstructionDescription(in));
+            }
+            case DELETE: {
+                final List<Term> termsToDelete = readTerms(in);
+                return new DeleteInstruction(termsToDelete, readInstructionDescription(in));
+            }
+            case DECORATE: {
+                final String decorationKey = readNullableString(in);
+                final Object decorationValue = readValue(in);
+                return new DecorateInstruction(decorationKey, decorationValue, readInstructionDescription(in));
+            }
+            default:
+                throw new IOException("Unknown instruction type: " + type);
+        }
+    }
+
+    protected InstructionDescription readInstructionDescription(final DataInput in) throws IOException {
+        return InstructionDescription.builder()
+                .typeName(readNullableString(in))
+                .param(readValue(in))
+                .value(readNullableString(in))
+                .build();
+    }
+
+    protected void writeTerms(final List<? extends Term> terms, final DataOutput out) throws IOException {
+        out.writeInt(terms.size());
+        for (final Term term : terms) {
+            out.writeBoolean(term instanceof PrefixTerm);
+            writeString(term.toString(), out);
+            final List<String> fieldNames = term.getFieldNames();
+            if (fieldNames == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(fieldNames.size());
+                for (final String fieldName : fieldNames) {
+                    writeString(fieldName, out);
+                }
+            }
+        }
+    }
+
+    protected List<Term> readTerms(final DataInput in) throws IOException {
+        final int size = in.readInt();
+        final List<Term> terms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final boolean isPrefix = in.readBoolean();
+            final char[] value = readString(in).toCharArray();
+            final int numFieldNames = in.readInt();
+            final List<String> fieldNames;
+            if (numFieldNames < 0) {
+                fieldNames = null;
+            } else {
+                fieldNames = new ArrayList<>(numFieldNames);
+                for (int j = 0; j < numFieldNames; j++) {
+                    fieldNames.add(readString(in));
+                }
+            }
+            terms.add(isPrefix
+                    ? new PrefixTerm(value, 0, value.length, fieldNames)
+                    : new Term(value, 0, value.length, fieldNames));
+        }
+        return terms;
+    }
+
+    protected void writeQuery(final QuerqyQuery<?> query, final DataOutput out) throws IOException {
+
+        final Class<?> type = query.getClass();
+
+        if (type == Query.class) {
+            out.writeByte(QUERY);
+            out.writeBoolean(query.isGenerated());
+            writeClauses(((Query) query).getClauses(), out);
+        } else if (type == BooleanQuery.class) {
+            final BooleanQuery booleanQuery = (BooleanQuery) query;
+            out.writeByte(BOOLEAN_QUERY);
+            out.writeUTF(booleanQuery.getOccur().name());
+            out.writeBoolean(booleanQuery.isGenerated());
+            writeClauses(booleanQuery.getClauses(), out);
+        } else if (type == MatchAllQuery.class) {
+            final MatchAllQuery matchAllQuery = (MatchAllQuery) query;
+            out.writeByte(MATCH_ALL_QUERY);
+            out.writeUTF(matchAllQuery.getOccur().name());
+            out.writeBoolean(matchAllQuery.isGenerated());
+        } else if (type == StringRawQuery.class) {
+            final StringRawQuery rawQuery = (StringRawQuery) query;
+            out.writeByte(STRING_RAW_QUERY);
+            out.writeUTF(rawQuery.getOccur().name());
+            out.writeBoolean(rawQuery.isGenerated());
+            writeString(rawQuery.getQueryString(), out);
+        } else if (type == ParametrizedRawQuery.class) {
+            final ParametrizedRawQuery rawQuery = (ParametrizedRawQuery) query;
+            out.writeByte(PARAMETRIZED_RAW_QUERY);
+            out.writeUTF(rawQuery.getOccur().name());
+            out.writeBoolean(rawQuery.isGenerated());
+            final List<ParametrizedRawQuery.Part> parts = rawQuery.getParts();
+            out.writeInt(parts.size());
+            for (final ParametrizedRawQuery.Part part : parts) {
+                out.writeUTF(part.type.name());
+                writeString(part.part, out);
+            }
+        } else {
+            throw new IOException("Cannot write query of type " + type.getName());
+        }
+    }
+
+    protected QuerqyQuery<?> readQuery(final BooleanParent parent, final DataInput in) throws IOException {
+        return readQuery(parent, in.readByte(), in);
+    }
+
+    protected QuerqyQuery<?> readQuery(final BooleanParent parent, final byte type, final DataInput in)
+            throws IOException {
+
+        switch (type) {
+            case QUERY: {
+                final Query query = new Query(in.readBoolean());
+                readClauses(query, in);
+                return query;
+            }
+            case BOOLEAN_QUERY: {
+                final Occur occur = Occur.valueOf(in.readUTF());
+                final BooleanQuery booleanQuery = new BooleanQuery(parent, occur, in.readBoolean());
+                readClauses(booleanQuery, in);
+                return booleanQuery;
+            }
+            case MATCH_ALL_QUERY: {
+                final Occur occur = Occur.valueOf(in.readUTF());
+                return new MatchAllQuery(parent, occur, in.readBoolean());
+            }
+            case STRING_RAW_QUERY: {
+                final Occur occur = Occur.valueOf(in.readUTF());
+                final boolean generated = in.readBoolean();
+                return new StringRawQuery(parent, readString(in), occur, generated);
+            }
+            case PARAMETRIZED_RAW_QUERY: {
+                final Occur occur = Occur.valueOf(in.readUTF());
+                final boolean generated = in.readBoolean();
+                final int size = in.readInt();
+                final List<ParametrizedRawQuery.Part> parts = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    final ParametrizedRawQuery.Part.Type partType = ParametrizedRawQuery.Part.Type.valueOf(
+                            in.readUTF());
+                    parts.add(new ParametrizedRawQuery.Part(readString(in), partType));
+                }
+                return new ParametrizedRawQuery(parent, parts, occur, generated);
+            }
+            default:
+                throw new IOException("Unknown query type: " + type);
+        }
+    }
+
+    protected void writeClauses(final List<BooleanClause> clauses, final DataOutput out) throws IOException {
+        out.writeInt(clauses.size());
+        for (final BooleanClause clause : clauses) {
+            if (clause.getClass() == DisjunctionMaxQuery.class) {
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+                out.writeByte(DISJUNCTION_MAX_QUERY);
+                out.writeUTF(dmq.getOccur().name());
+                out.writeBoolean(dmq.isGenerated());
+                writeDisjunctionMaxClauses(dmq.getClauses(), out);
+            } else if (clause instanceof QuerqyQuery) {
+                writeQuery((QuerqyQuery<?>) clause, out);
+            } else {
+                throw new IOException("Cannot write clause of type " + clause.getClass().getName());
+            }
+        }
+    }
+
+    protected void readClauses(final BooleanQuery parent, final DataInput in) throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            final byte type = in.readByte();
+            if (type == DISJUNCTION_MAX_QUERY) {
+                final Occur occur = Occur.valueOf(in.readUTF());
+                final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(parent, occur, in.readBoolean());
+                readDisjunctionMaxClauses(dmq, in);
+                parent.addClause(dmq);
+            } else {
+                parent.addClause((BooleanClause) readQuery(parent, type, in));
+            }
+        }
+    }
+
+    protected void writeDisjunctionMaxClauses(final List<DisjunctionMaxClause> clauses, final DataOutput out)
+            throws IOException {
+        out.writeInt(clauses.size());
+        for (final DisjunctionMaxClause clause : clauses) {
+            final Class<?> type = clause.getClass();
+            if (type == querqy.model.Term.class) {
+                final querqy.model.Term term = (querqy.model.Term) clause;
+                out.writeByte(TERM);
+                writeNullableString(term.getField(), out);
+                writeString(term.getValue().toString(), out);
+                out.writeBoolean(term.isGenerated());
+            } else if (type == BoostedTerm.class) {
+                final BoostedTerm term = (BoostedTerm) clause;
+                out.writeByte(BOOSTED_TERM);
+                writeNullableString(term.getField(), out);
+                writeString(term.getValue().toString(), out);
+                out.writeFloat(term.getBoost());
+            } else if (type == BooleanQuery.class) {
+                writeQuery((BooleanQuery) clause, out);
+            } else {
+                throw new IOException("Cannot write clause of type " + type.getName());
+            }
+        }
+    }
+
+    protected void readDisjunctionMaxClauses(final DisjunctionMaxQuery parent, final DataInput in)
+            throws IOException {
+        final int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            final byte type = in.readByte();
+            switch (type) {
+                case TERM: {
+                    final String field = readNullableString(in);
+                    final String value = readString(in);
+                    parent.addClause(new querqy.model.Term(parent, field, value, in.readBoolean()));
+                    break;
+                }
+                case BOOSTED_TERM: {
+                    final String field = readNullableString(in);
+                    final String value = readString(in);
+                    parent.addClause(new BoostedTerm(parent, field, value, in.readFloat()));
+                    break;
+                }
+                case BOOLEAN_QUERY: {
+                    final Occur occur = Occur.valueOf(in.readUTF());
+                    final BooleanQuery booleanQuery = new BooleanQuery(parent, occur, in.readBoolean());
+                    readClauses(booleanQuery, in);
+                    parent.addClause(booleanQuery);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown clause type: " + type);
+            }
+        }
+    }
+
+    protected void writeValue(final Object value, final DataOutput out) throws IOException {
+
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) value, out);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INTEGER);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Collection) {
+            final Collection<?> collection = (Collection<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(collection.size());
+            for (final Object element : collection) {
+                writeValue(element, out);
+            }
+        } else if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IOException("Cannot write map key of type " + entry.getKey().getClass().getName());
+                }
+                writeString((String) entry.getKey(), out);
+                writeValue(entry.getValue(), out);
+            }
+        } else {
+            throw new IOException("Cannot write value of type " + value.getClass().getName());
+        }
+    }
+
+    protected Object readValue(final DataInput in) throws IOException {
+
+        final byte type = in.readByte();
+
+        switch (type) {
+            case NULL: return null;
+            case STRING: return readString(in);
+            case BOOLEAN: return in.readBoolean();
+            case INTEGER: return in.readInt();
+            case LONG: return in.readLong();
+            case FLOAT: return in.readFloat();
+            case DOUBLE: return in.readDouble();
+            case BIG_INTEGER: return new BigInteger(in.readUTF());
+            case BIG_DECIMAL: return new BigDecimal(in.readUTF());
+            case LIST: {
+                final int size = in.readInt();
+                final List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                final int size = in.readInt();
+                final Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    final String key = readString(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown value type: " + type);
+        }
+    }
+
+    protected void writeNullableString(final String value, final DataOutput out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(value, out);
+        }
+    }
+
+    protected String readNullableString(final DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    /**
+     * Write a string of any length (writeUTF is limited to 65535 bytes)
+     */
+    protected void writeString(final String value, final DataOutput out) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected String readString(final DataInput in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+}
@@ -14,11 +14,13 @@ import java.util.Optional;
 public class InstructionsProperties {
 
     @EqualsAndHashCode.Include private final Map<String, Object> propertyMap;
-    private final DocumentContext documentContext;
+    private final Configuration jsonPathConfig;
+    // created lazily as most filter expressions can be evaluated without JsonPath
+    private DocumentContext documentContext = null;
 
     public InstructionsProperties(final Map<String, Object> propertyMap, final Configuration jsonPathConfig) {
         this.propertyMap = propertyMap;
-        documentContext = JsonPath.using(jsonPathConfig).parse(propertyMap);
+        this.jsonPathConfig = jsonPathConfig;
     }
 
     public InstructionsProperties(final Map<String, Object> propertyMap) {
@@ -26,12 +28,38 @@ public class InstructionsProperties {
     }
 
 
+    Map<String, Object> getPropertyMap() {
+        return propertyMap;
+    }
+
     public Optional<Object> getProperty(final String name) {
         return Optional.ofNullable(propertyMap.get(name));
     }
 
     public boolean matches(final String jsonPath) {
-        final List read = documentContext.read(jsonPath);
+        return FilterExpression.compile(jsonPath).matches(this);
+    }
+
+    public boolean matches(final FilterExpression filterExpression) {
+        return filterExpression.matches(this);
+    }
+
+    boolean matches(final JsonPath jsonPath) {
+        final List<?> read = getDocumentContext().read(jsonPath);
         return read.size() > 0;
     }
+
+    boolean hasDocumentContext() {
+        return documentContext != null;
+    }
+
+    private DocumentContext getDocumentContext() {
+        DocumentContext context = documentContext;
+        if (context == null) {
+            // racy but harmless: concurrent callers might each create an equivalent context
+            context = JsonPath.using(jsonPathConfig).parse(propertyMap);
+            documentContext = context;
+        }
+        return context;
+    }
 }
@@ -164,6 +164,7 @@ public class SynonymInstruction implements Instruction {
         final int prime = 31;
         int result = 1;
         result = prime * result + ((synonym == null) ? 0 : synonym.hashCode());
+        result = prime * result + Float.floatToIntBits(boost);
         return result;
     }
 
@@ -181,7 +182,7 @@ public class SynonymInstruction implements Instruction {
                 return false;
         } else if (!synonym.equals(other.synonym))
             return false;
-        return true;
+        return Float.floatToIntBits(boost) == Float.floatToIntBits(other.boost);
     }
 
     @Override
@@ -10,6 +10,7 @@ import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputLiteral;
 import querqy.rewrite.lookup.preprocessing.LookupPreprocessor;
 import querqy.rewrite.lookup.preprocessing.LookupPreprocessorFactory;
 import querqy.rewrite.rules.rule.Rule;
+import querqy.trie.CompactTrieMap;
 import querqy.trie.State;
 import querqy.trie.States;
 import querqy.trie.TrieMap;
@@ -26,6 +27,7 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
     @Deprecated
     private final LookupPreprocessor lookupPreprocessor;
     private final InputSequenceNormalizer inputSequenceNormalizer;
+    private final InstructionInterner instructionInterner = new InstructionInterner();
     
     public TrieMapRulesCollectionBuilder(boolean ignoreCase) {
         this(ignoreCase ? LookupPreprocessorFactory.lowercase() : LookupPreprocessorFactory.identity());
@@ -54,6 +56,10 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
     public void addOrMergeInstructionsSupplier(final Input.SimpleInput input,
                                                final InstructionsSupplier instructionsSupplier) {
 
+        instructionsSupplier.getInstructionsList().forEach(instructionInterner::intern);
+        instructionsSupplier.getLiteral().ifPresent(literal -> literal.getReferences()
+                .forEach(reference -> instructionInterner.intern(reference.getBooleanInput().getInstructions())));
+
         final List<CharSequence> seqs = inputSequenceNormalizer.getNormalizedInputSequences(input);
         final List<Term> inputTerms = input.getInputTerms();
 
@@ -100,7 +106,7 @@ public class TrieMapRulesCollectionBuilder implements RulesCollectionBuilder {
      */
     @Override
     public RulesCollection build() {
-        return new TrieMapRulesCollection(map, lookupPreprocessor);
+        return new TrieMapRulesCollection(CompactTrieMap.of(map), lookupPreprocessor);
     }
 
     @Override
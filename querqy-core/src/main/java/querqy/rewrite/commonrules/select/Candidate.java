@@ -0,0 +1,112 @@
+package querqy.rewrite.commonrules.select;
+
+import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.Instructions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * <p>A rule that has been offered to a {@link TopRewritingActionCollector}, together with its sort key.</p>
+ *
+ * <p>The value of the sort property is looked up once when the candidate is created. Integer, long and double values
+ * are kept as primitives so that comparing two candidates does not need to access the property maps of their
+ * {@link Instructions}.</p>
+ */
+class Candidate {
+
+    static final int KIND_OTHER = 0;
+    static final int KIND_INTEGER = 1;
+    static final int KIND_LONG = 2;
+    static final int KIND_DOUBLE = 3;
+
+    final Instructions instructions;
+    final int ord;
+
+    /**
+     * The value of the sort property or null if the sort property is not set for this candidate or if the candidate
+     * is not sorted by a property
+     */
+    final Object sortValue;
+    final int kind;
+    final long longValue;
+    final double doubleValue;
+
+    private final Function<Instructions, Action> actionCreator;
+    private List<Function<Instructions, Action>> moreActionCreators = null;
+
+    Candidate(final Instructions instructions, final String sortProperty,
+              final Function<Instructions, Action> actionCreator) {
+        this.instructions = instructions;
+        this.ord = instructions.getOrd();
+        this.actionCreator = actionCreator;
+
+        sortValue = sortProperty == null ? null : instructions.getProperty(sortProperty).orElse(null);
+
+        if (sortValue instanceof Integer) {
+            kind = KIND_INTEGER;
+            longValue = (Integer) sortValue;
+            doubleValue = 0.0;
+        } else if (sortValue instanceof Long) {
+            kind = KIND_LONG;
+            longValue = (Long) sortValue;
+            doubleValue = 0.0;
+        } else if (sortValue instanceof Double) {
+            kind = KIND_DOUBLE;
+            longValue = 0L;
+            doubleValue = (Double) sortValue;
+        } else {
+            kind = KIND_OTHER;
+            longValue = 0L;
+            doubleValue = 0.0;
+        }
+    }
+
+    /**
+     * Compare the sort values, which must both be set. Values of the same primitive kind are compared as primitives,
+     * all other values as {@link Comparable}s.
+     *
+     * @param other The other candidate
+     * @return The result of comparing this candidate's sort value to the sort value of other
+     */
+    @SuppressWarnings("unchecked")
+    int compareSortValueTo(final Candidate other) {
+        if (kind == other.kind) {
+            switch (kind) {
+                case KIND_INTEGER:
+                case KIND_LONG:
+                    return Long.compare(longValue, other.longValue);
+                case KIND_DOUBLE:
+                    return Double.compare(doubleValue, other.doubleValue);
+                default:
+                    break;
+            }
+        }
+        return ((Comparable<Object>) sortValue).compareTo(other.sortValue);
+    }
+
+    void addActionCreator(final Function<Instructions, Action> creator) {
+        if (moreActionCreators == null) {
+            moreActionCreators = new ArrayList<>(2);
+        }
+        moreActionCreators.add(creator);
+    }
+
+    /**
+     * Create the actions for this candidate, in the order in which the action creators were added.
+     *
+     * @param instructions The instructions to pass to the action creators
+     * @param consumer Receives the actions
+     */
+    void createActions(final Instructions instructions, final Consumer<Action> consumer) {
+        consumer.accept(actionCreator.apply(instructions));
+        if (moreActionCreators != null) {
+            for (final Function<Instructions, Action> creator : moreActionCreators) {
+                consumer.accept(creator.apply(instructions));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package querqy.rewrite.commonrules.select;
+
+import querqy.PriorityComparator;
+import querqy.rewrite.commonrules.model.Instructions;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Compares {@link Candidate}s like a list of {@link Comparator}s over {@link Instructions} would compare their
+ * instructions.</p>
+ *
+ * <p>{@link PropertySorting.PropertyComparator}s and {@link Sorting.ConfigOrderComparator}s are evaluated on the sort
+ * keys of the candidates. Lists that contain any other comparator, or that sort by more than one property, are
+ * evaluated on the instructions.</p>
+ */
+class CandidateComparator implements Comparator<Candidate> {
+
+    private final Comparator<Instructions> instructionsComparator;
+    private final boolean[] isPropertyComparison;
+    private final int[] factors;
+
+    private CandidateComparator(final Comparator<Instructions> instructionsComparator,
+                                final boolean[] isPropertyComparison, final int[] factors) {
+        this.instructionsComparator = instructionsComparator;
+        this.isPropertyComparison = isPropertyComparison;
+        this.factors = factors;
+    }
+
+    /**
+     * Get the name of the property to be used as the sort key for candidates.
+     *
+     * @param comparators The comparators
+     * @return The name of the property of the first {@link PropertySorting.PropertyComparator} or null if there is
+     * no such comparator
+     */
+    static String getSortProperty(final List<Comparator<Instructions>> comparators) {
+        for (final Comparator<Instructions> comparator : comparators) {
+            if (comparator instanceof PropertySorting.PropertyComparator) {
+                return ((PropertySorting.PropertyComparator) comparator).getPropertyName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param comparators The comparators, in order of priority
+     * @param sortProperty The sort property of the candidates that will be compared, as returned by
+     *                     {@link #getSortProperty(List)}
+     * @return A comparator for candidates
+     */
+    static CandidateComparator of(final List<Comparator<Instructions>> comparators, final String sortProperty) {
+
+        final int size = comparators.size();
+        final boolean[] isPropertyComparison = new boolean[size];
+        final int[] factors = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            final Comparator<Instructions> comparator = comparators.get(i);
+            if (comparator instanceof Sorting.ConfigOrderComparator) {
+                factors[i] = ((Sorting.ConfigOrderComparator) comparator).getFactor();
+            } else if (comparator instanceof PropertySorting.PropertyComparator
+                    && ((PropertySorting.PropertyComparator) comparator).getPropertyName().equals(sortProperty)) {
+                isPropertyComparison[i] = true;
+                factors[i] = ((PropertySorting.PropertyComparator) comparator).getFactor();
+            } else {
+                return new CandidateComparator(new PriorityComparator<>(comparators), null, null);
+            }
+        }
+
+        return new CandidateComparator(null, isPropertyComparison, factors);
+    }
+
+    @Override
+    public int compare(final Candidate candidate1, final Candidate candidate2) {
+
+        if (instructionsComparator != null) {
+            return instructionsComparator.compare(candidate1.instructions, candidate2.instructions);
+        }
+
+        for (int i = 0; i < factors.length; i++) {
+            final int c = isPropertyComparison[i]
+                    ? compareSortValues(candidate1, candidate2, factors[i])
+                    : (candidate1.ord - candidate2.ord) * factors[i];
+            if (c != 0) {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    // same order as PropertySorting.PropertyComparator: candidates that have the property come first
+    private static int compareSortValues(final Candidate candidate1, final Candidate candidate2, final int factor) {
+        if (candidate1.sortValue == null) {
+            return candidate2.sortValue == null ? 0 : 1;
+        }
+        if (candidate2.sortValue == null) {
+            return -1;
+        }
+        return candidate1.compareSortValueTo(candidate2) * factor;
+    }
+}
@@ -4,7 +4,10 @@ import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.commonrules.model.*;
 
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -20,6 +23,15 @@ public class ExpressionCriteriaSelectionStrategyFactory implements SelectionStra
         return new CriteriaSelectionStrategy(retrieveCriteriaFromRequest(rewriterId, searchEngineRequestAdapter));
     }
 
+    @Override
+    public Optional<Set<String>> getRequestParamDependencies(final String rewriterId) {
+        return Optional.of(new HashSet<>(Arrays.asList(
+                RuleSelectionParams.getSortParamName(rewriterId),
+                RuleSelectionParams.getLimitParamName(rewriterId),
+                RuleSelectionParams.getIsUseLevelsForLimitParamName(rewriterId),
+                RuleSelectionParams.getFilterParamName(rewriterId))));
+    }
+
     protected Criteria retrieveCriteriaFromRequest(final String rewriterId,
                                                 final SearchEngineRequestAdapter searchEngineRequestAdapter) {
 
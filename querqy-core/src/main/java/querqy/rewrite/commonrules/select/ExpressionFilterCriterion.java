@@ -1,5 +1,6 @@
 package querqy.rewrite.commonrules.select;
 
+import querqy.rewrite.commonrules.model.FilterExpression;
 import querqy.rewrite.commonrules.model.Instructions;
 
 import java.util.Objects;
@@ -7,14 +8,16 @@ import java.util.Objects;
 public class ExpressionFilterCriterion implements FilterCriterion {
 
     private final String expression;
+    private final FilterExpression filterExpression;
 
     public ExpressionFilterCriterion(final String expression) {
         this.expression = expression;
+        this.filterExpression = FilterExpression.compile(expression);
     }
 
     @Override
     public boolean isValid(final Instructions instructions) {
-        return instructions.getProperties().matches(expression);
+        return filterExpression.matches(instructions.getProperties());
     }
 
     public String getExpression() {
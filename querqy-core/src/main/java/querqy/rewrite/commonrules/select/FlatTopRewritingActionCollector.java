@@ -1,30 +1,60 @@
 package querqy.rewrite.commonrules.select;
 
-import querqy.PriorityComparator;
 import querqy.rewrite.commonrules.model.Action;
 import querqy.rewrite.commonrules.model.Instructions;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Map;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
+/**
+ * <p>Collects the top n rules by the given sort order. Each rule counts towards the limit, regardless of its sort
+ * value.</p>
+ *
+ * <p>If there is a limit, the best rules are kept in an array-backed heap that has the worst of them at the top, so
+ * that a rule that is offered when the limit has been reached only needs to be compared to the top of the heap.
+ * Without a limit, rules are only sorted once, when the actions are created. Rules are identified by their
+ * {@link Instructions#getOrd()}: actions that are offered for the same rule more than once are applied to the
+ * instructions that were offered first.</p>
+ */
 public class FlatTopRewritingActionCollector extends TopRewritingActionCollector {
 
-    private final TreeMap<Instructions, List<Function<Instructions, Action>>> topN;
+    private static final int INITIAL_HEAP_SIZE = 16;
+
     private final int limit;
     private List<? extends FilterCriterion> filters;
-    private final Comparator<Instructions> comparator;
+    private final String sortProperty;
+    private final CandidateComparator comparator;
+
+    // limit < 0: all candidates in the order in which they were offered
+    private final List<Candidate> candidates;
+
+    // limit > 0: the best candidates as a max-heap, the worst candidate being at the top, and the candidates in the
+    // heap by their ord
+    private Candidate[] heap;
+    private int heapSize = 0;
+    private final Map<Integer, Candidate> heapCandidatesByOrd;
 
     public FlatTopRewritingActionCollector(final List<Comparator<Instructions>> comparators, final int limit,
                                            final List<? extends FilterCriterion> filters) {
-        comparator = new PriorityComparator<>(comparators);
-        topN = new TreeMap<>(comparator);
         this.limit = limit;
         this.filters = filters;
+        sortProperty = CandidateComparator.getSortProperty(comparators);
+        comparator = CandidateComparator.of(comparators, sortProperty);
+
+        if (limit > 0) {
+            candidates = null;
+            heap = new Candidate[Math.min(limit, INITIAL_HEAP_SIZE)];
+            heapCandidatesByOrd = new HashMap<>();
+        } else {
+            candidates = limit < 0 ? new ArrayList<>() : null;
+            heap = null;
+            heapCandidatesByOrd = null;
+        }
     }
 
 
@@ -35,59 +65,107 @@ public class FlatTopRewritingActionCollector extends TopRewritingActionCollector
             return;
         }
 
-        instructions.stream()
-                .filter(instr -> {
-                    for (final FilterCriterion filter : filters) {
-                        if (!filter.isValid(instr)) {
-                            return false;
-                        }
-                    }
-                    return true;})
-
-                .forEach( instr -> {
-                    if (limit < 0) {
-                        collectEntry(instr, actionCreator);
-                    } else if (topN.size() < limit) {
-                        collectEntry(instr, actionCreator);
-                    } else {
-                        final Instructions lastInstructions = topN.lastKey();
-                        if (comparator.compare(lastInstructions, instr) > 0) {
-                            collectEntry(instr, actionCreator);
-                            if (topN.size() > limit) {
-                                topN.remove(lastInstructions);
-                            }
-                        }
-                    }
-        });
+        for (final Instructions instr : instructions) {
+            if (isValid(instr)) {
+                if (limit < 0) {
+                    candidates.add(new Candidate(instr, sortProperty, actionCreator));
+                } else {
+                    offerToHeap(instr, actionCreator);
+                }
+            }
+        }
 
     }
 
-    private void collectEntry(final Instructions instructions, final Function<Instructions, Action> actionCreator) {
-
-        if (!topN.containsKey(instructions)) {
-            topN.put(instructions, Collections.singletonList(actionCreator));
+    private void offerToHeap(final Instructions instructions, final Function<Instructions, Action> actionCreator) {
 
-        } else {
+        final Candidate existing = heapCandidatesByOrd.get(instructions.getOrd());
+        if (existing != null) {
+            // Once the limit has been reached, only rules that are better than the worst rule are collected. This
+            // also applies to further actions of the worst rule itself.
+            if (heapSize < limit || existing != heap[0]) {
+                existing.addActionCreator(actionCreator);
+            }
+            return;
+        }
 
-            // only applied in case of duplicate input - we can be inefficient here as this should be an edge case
-            // and the overhead for the regular cases should be kept as small as possible
-            final List<Function<Instructions, Action>> existingActionCreators = topN.get(instructions);
+        final Candidate candidate = new Candidate(instructions, sortProperty, actionCreator);
+
+        if (heapSize < limit) {
+            if (heapSize == heap.length) {
+                heap = Arrays.copyOf(heap, Math.min(limit, heapSize << 1));
+            }
+            heap[heapSize] = candidate;
+            siftUp(heapSize++);
+            heapCandidatesByOrd.put(candidate.ord, candidate);
+        } else if (comparator.compare(heap[0], candidate) > 0) {
+            heapCandidatesByOrd.remove(heap[0].ord);
+            heap[0] = candidate;
+            siftDown(0);
+            heapCandidatesByOrd.put(candidate.ord, candidate);
+        }
+    }
 
-            final List<Function<Instructions, Action>> allActionCreators = new ArrayList<>(existingActionCreators);
-            allActionCreators.add(actionCreator);
-            topN.put(instructions, allActionCreators);
+    private void siftUp(int pos) {
+        final Candidate candidate = heap[pos];
+        while (pos > 0) {
+            final int parent = (pos - 1) >>> 1;
+            if (comparator.compare(heap[parent], candidate) >= 0) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = candidate;
+    }
 
+    private void siftDown(int pos) {
+        final Candidate candidate = heap[pos];
+        final int half = heapSize >>> 1;
+        while (pos < half) {
+            int child = (pos << 1) + 1;
+            final int right = child + 1;
+            if (right < heapSize && comparator.compare(heap[right], heap[child]) > 0) {
+                child = right;
+            }
+            if (comparator.compare(candidate, heap[child]) >= 0) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
         }
+        heap[pos] = candidate;
     }
 
     @Override
     public List<Action> createActions() {
 
-        return topN.entrySet().stream()
-                .map(entry -> entry.getValue().stream()
-                        .map(value -> value.apply(entry.getKey())))
-                .flatMap(stream -> stream)
-                .collect(Collectors.toList());
+        final List<Action> actions = new ArrayList<>();
+
+        if (limit > 0) {
+
+            final Candidate[] sorted = Arrays.copyOf(heap, heapSize);
+            Arrays.sort(sorted, comparator);
+            for (final Candidate candidate : sorted) {
+                candidate.createActions(candidate.instructions, actions::add);
+            }
+
+        } else if (limit < 0) {
+
+            // stable sort: candidates of the same rule stay in the order in which they were offered
+            final List<Candidate> sorted = new ArrayList<>(candidates);
+            sorted.sort(comparator);
+
+            Candidate first = null;
+            for (final Candidate candidate : sorted) {
+                if (first == null || comparator.compare(first, candidate) != 0) {
+                    first = candidate;
+                }
+                candidate.createActions(first.instructions, actions::add);
+            }
+        }
+
+        return actions;
 
     }
 
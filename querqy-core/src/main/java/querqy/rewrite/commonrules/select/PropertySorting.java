@@ -60,6 +60,14 @@ public class PropertySorting implements Sorting {
             this.factor = sortOrder.factor;
         }
 
+        String getPropertyName() {
+            return propertyName;
+        }
+
+        int getFactor() {
+            return factor;
+        }
+
 
         @Override
         public int compare(Instructions instructions1, Instructions instructions2) {
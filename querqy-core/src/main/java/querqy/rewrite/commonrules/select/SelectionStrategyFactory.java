@@ -2,11 +2,25 @@ package querqy.rewrite.commonrules.select;
 
 import querqy.rewrite.SearchEngineRequestAdapter;
 
+import java.util.Optional;
+import java.util.Set;
+
 public interface SelectionStrategyFactory {
 
     SelectionStrategy DEFAULT_SELECTION_STRATEGY = new ConfigurationOrderSelectionStrategy();
 
     SelectionStrategy createSelectionStrategy(String rewriterId, SearchEngineRequestAdapter searchEngineRequestAdapter);
 
+    /**
+     * Get the names of the request parameters that are read by {@link #createSelectionStrategy(String,
+     * SearchEngineRequestAdapter)}.
+     *
+     * @param rewriterId The id of the rewriter
+     * @return The names of the request parameters, or an empty Optional if they are unknown
+     * @see querqy.rewrite.RewriterFactory#getRequestParamDependencies()
+     */
+    default Optional<Set<String>> getRequestParamDependencies(final String rewriterId) {
+        return Optional.empty();
+    }
 
 }
@@ -63,6 +63,10 @@ public interface Sorting {
             this.factor = sortOrder.factor;
         }
 
+        int getFactor() {
+            return factor;
+        }
+
 
         @Override
         public int compare(final Instructions instructions1, final Instructions instructions2) {
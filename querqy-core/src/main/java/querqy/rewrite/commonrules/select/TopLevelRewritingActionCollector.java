@@ -4,15 +4,13 @@ import querqy.rewrite.commonrules.model.Action;
 import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.Limit;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.function.Function;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
 
 /**
  * <p>A {@link TopLevelRewritingActionCollector} that interprets the number of rules that is applied when
@@ -29,14 +27,20 @@ import java.util.stream.Collectors;
  */
 public class TopLevelRewritingActionCollector extends TopRewritingActionCollector {
 
-    private static List<Comparator<Instructions>> DEFAULT_SECONDARY_COMPARATORS = Collections.singletonList(
-            Comparator.comparingInt(Instructions::getOrd));
+    private static final List<Comparator<Instructions>> DEFAULT_SECONDARY_COMPARATORS = Collections.singletonList(
+            Sorting.DEFAULT_COMPARATOR);
+
+    private static final int INITIAL_LEVELS_SIZE = 8;
 
-    private final TreeMap<Instructions, TreeSet<Element>> topN;
     private final int limit;
     private List<? extends FilterCriterion> filters;
-    private final Comparator<Instructions> primaryComparator;
-    private final List<Comparator<Instructions>> secondaryComparators;
+    private final String sortProperty;
+    private final CandidateComparator primaryComparator;
+    private final CandidateComparator secondaryComparator;
+
+    // the best levels, sorted by the primary comparator
+    private Level[] levels;
+    private int numLevels = 0;
 
     // TODO: check if redundant query input is handled properly
     public TopLevelRewritingActionCollector(final List<Comparator<Instructions>> comparators, final int limit,
@@ -50,12 +54,13 @@ public class TopLevelRewritingActionCollector extends TopRewritingActionCollecto
             throw new IllegalArgumentException("limit > -1 expected");
         }
 
-        primaryComparator = comparators.get(0);
-        secondaryComparators = numComparators == 1
+        sortProperty = CandidateComparator.getSortProperty(comparators);
+        primaryComparator = CandidateComparator.of(comparators.subList(0, 1), sortProperty);
+        secondaryComparator = CandidateComparator.of(numComparators == 1
                 ? DEFAULT_SECONDARY_COMPARATORS
-                : comparators.subList(1, numComparators);
+                : comparators.subList(1, numComparators), sortProperty);
 
-        topN = new TreeMap<>(primaryComparator);
+        levels = new Level[Math.min(limit, INITIAL_LEVELS_SIZE)];
         this.limit = limit;
         this.filters = filters;
     }
@@ -68,53 +73,71 @@ public class TopLevelRewritingActionCollector extends TopRewritingActionCollecto
             return;
         }
 
-        instructions.stream()
-                .filter(instr -> {
-                    for (final FilterCriterion filter : filters) {
-                        if (!filter.isValid(instr)) {
-                            return false;
-                        }
-                    }
-                    return true;
-                }).forEach( instr -> {
-
-            final TreeSet<Element> elementsSoFar = topN.get(instr);
-            if (elementsSoFar != null) {
-
-                elementsSoFar.add(new Element(instr, actionCreator));
+        for (final Instructions instr : instructions) {
+            if (isValid(instr)) {
+                offer(new Candidate(instr, sortProperty, actionCreator));
+            }
+        }
 
-            } else if (topN.size() < limit) {
+    }
 
-                final TreeSet<Element> newElements = new TreeSet<>();
-                newElements.add(new Element(instr, actionCreator));
-                topN.put(instr, newElements);
+    private void offer(final Candidate candidate) {
 
-            } else {
-                final Instructions lastInstructions = topN.lastKey();
+        final int index = findLevel(candidate);
 
-                if (primaryComparator.compare(lastInstructions, instr) > 0) {
+        if (index >= 0) {
+            levels[index].add(candidate);
+            return;
+        }
 
-                    final TreeSet<Element> newElements = new TreeSet<>();
-                    newElements.add(new Element(instr, actionCreator));
-                    topN.put(instr, newElements);
+        final int insertionPoint = -(index + 1);
 
-                    if (topN.size() > limit) {
-                        topN.remove(lastInstructions);
-                    }
-                }
+        if (numLevels < limit) {
+            if (numLevels == levels.length) {
+                levels = Arrays.copyOf(levels, Math.min(limit, numLevels << 1));
             }
+            System.arraycopy(levels, insertionPoint, levels, insertionPoint + 1, numLevels - insertionPoint);
+            numLevels++;
+        } else if (insertionPoint < numLevels) {
+            // drop the worst level
+            System.arraycopy(levels, insertionPoint, levels, insertionPoint + 1, numLevels - insertionPoint - 1);
+        } else {
+            return;
+        }
 
-        });
+        final Level level = new Level(candidate);
+        level.add(candidate);
+        levels[insertionPoint] = level;
 
     }
 
+    private int findLevel(final Candidate candidate) {
+        int low = 0;
+        int high = numLevels - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = primaryComparator.compare(levels[mid].first, candidate);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
     @Override
     public List<Action> createActions() {
 
-        return topN.values().stream()
-                .flatMap(Collection::stream)
-                .map(Element::get)
-                .collect(Collectors.toList());
+        final List<Action> actions = new ArrayList<>();
+        for (int i = 0; i < numLevels; i++) {
+            for (final Candidate candidate : levels[i].candidates) {
+                candidate.createActions(candidate.instructions, actions::add);
+            }
+        }
+        return actions;
 
     }
 
@@ -126,32 +149,21 @@ public class TopLevelRewritingActionCollector extends TopRewritingActionCollecto
         return filters;
     }
 
+    /**
+     * The rules that have the same sort value under the primary comparator, ordered by the secondary comparators.
+     * Only the first action of a rule is kept.
+     */
+    private class Level {
 
-    class Element implements Comparable<Element>, Supplier<Action> {
-
-        final Instructions instructions;
-        final Function<Instructions, Action> func;
-
+        final Candidate first;
+        final TreeSet<Candidate> candidates = new TreeSet<>(secondaryComparator);
 
-        Element(final Instructions instructions, final Function<Instructions, Action> func) {
-            this.instructions = instructions;
-            this.func = func;
-        }
-
-        @Override
-        public int compareTo(final Element other) {
-            for (final Comparator<Instructions> comparator : secondaryComparators) {
-                int c = comparator.compare(this.instructions, other.instructions);
-                if (c != 0) {
-                    return c;
-                }
-            }
-            return 0;
+        Level(final Candidate first) {
+            this.first = first;
         }
 
-        @Override
-        public Action get() {
-            return func.apply(instructions);
+        void add(final Candidate candidate) {
+            candidates.add(candidate);
         }
     }
 }
@@ -24,7 +24,7 @@ public abstract class TopRewritingActionCollector {
     }
 
     public TopRewritingActionCollector evaluateBooleanInput() {
-        booleanInputQueryHandler.evaluate().forEach(
+        booleanInputQueryHandler.evaluate(
                 instructionsFromBooleanInput -> offer(
                         Collections.singletonList(instructionsFromBooleanInput),
                         instructions -> new Action(instructions, TermMatches.empty(), 0, 0)));
@@ -34,6 +34,19 @@ public abstract class TopRewritingActionCollector {
 
     public abstract void offer(List<Instructions> instructions, Function<Instructions, Action> actionCreator);
 
+    /**
+     * @param instructions The instructions of a rule
+     * @return true iff the rule passes all filters of this collector
+     */
+    protected boolean isValid(final Instructions instructions) {
+        for (final FilterCriterion filter : getFilters()) {
+            if (!filter.isValid(instructions)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public abstract List<Action> createActions();
 
     public abstract int getLimit();
@@ -45,7 +45,7 @@ public class BooleanInputParser {
 
         final ToIntFunction<List<String>> createReferenceIdFunction = literalTerms -> {
             final BooleanInputLiteral literal = literalRegister.computeIfAbsent(
-                    literalTerms, key -> new BooleanInputLiteral(literalTerms));
+                    literalTerms, key -> new BooleanInputLiteral(literalTerms, literalRegister.size()));
 
             return booleanInputBuilder.addLiteralAndCreateReferenceId(literal);
         };
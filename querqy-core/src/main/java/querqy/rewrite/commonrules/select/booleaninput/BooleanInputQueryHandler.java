@@ -2,38 +2,84 @@ package querqy.rewrite.commonrules.select.booleaninput;
 
 import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInput;
-import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputEvaluator;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputLiteral;
+import querqy.rewrite.commonrules.select.booleaninput.model.Reference;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
+/**
+ * <p>Collects the boolean input literals that were found in a query and evaluates the boolean inputs that reference
+ * them.</p>
+ *
+ * <p>Seen literals are recorded in a bitset by their {@link BooleanInputLiteral#getId()}. A boolean input is
+ * remembered when the first of its literals is seen, and it is evaluated against the bitset once by its compiled
+ * predicate. The work is proportional to the number of seen literals and the boolean inputs that reference them.</p>
+ */
 public class BooleanInputQueryHandler {
 
-    private Map<BooleanInput, BooleanInputEvaluator> evaluatorMap = null;
+    private static final int INITIAL_TOUCHED_SIZE = 8;
+
+    private long[] seenLiterals = null;
+
+    // the boolean inputs that reference any of the seen literals, each at most once
+    private BooleanInput[] touched = null;
+    private int numTouched = 0;
 
     public void notifyLiteral(final BooleanInputLiteral literal) {
-        if (this.evaluatorMap == null) {
-            this.evaluatorMap = new HashMap<>();
+
+        final int literalId = literal.getId();
+        final int word = literalId >>> 6;
+        if (seenLiterals == null) {
+            seenLiterals = new long[word + 1];
+            touched = new BooleanInput[INITIAL_TOUCHED_SIZE];
+        } else if (word >= seenLiterals.length) {
+            seenLiterals = Arrays.copyOf(seenLiterals, Math.max(word + 1, seenLiterals.length << 1));
+        }
+
+        final long mask = 1L << literalId;
+        if ((seenLiterals[word] & mask) != 0L) {
+            return;
         }
 
-        literal.getReferences().forEach(
-                reference -> evaluatorMap
-                        .computeIfAbsent(reference.getBooleanInput(),
-                                key -> reference.getBooleanInput().createEvaluator())
-                        .notify(reference.getReferenceId()));
+        for (final Reference reference : literal.getReferences()) {
+            final BooleanInput booleanInput = reference.getBooleanInput();
+            // inputs that had a literal before have already been touched
+            if (booleanInput.isFirstReference(reference.getReferenceId())
+                    && !booleanInput.hasSeenLiteralOtherThan(seenLiterals, literalId)) {
+                if (numTouched == touched.length) {
+                    touched = Arrays.copyOf(touched, numTouched << 1);
+                }
+                touched[numTouched++] = booleanInput;
+            }
+        }
+
+        seenLiterals[word] |= mask;
+    }
+
+    /**
+     * Pass the instructions of all matching boolean inputs to a consumer.
+     *
+     * @param consumer The consumer for the instructions
+     */
+    public void evaluate(final Consumer<Instructions> consumer) {
+        for (int i = 0; i < numTouched; i++) {
+            if (touched[i].matches(seenLiterals)) {
+                consumer.accept(touched[i].getInstructions());
+            }
+        }
     }
 
     public Stream<Instructions> evaluate() {
-        if (evaluatorMap == null) {
+        if (numTouched == 0) {
             return Stream.empty();
         } else {
-            return evaluatorMap.values().stream()
-                    .map(BooleanInputEvaluator::evaluate)
-                    .filter(Optional::isPresent)
-                    .map(Optional::get);
+            final List<Instructions> instructions = new ArrayList<>();
+            evaluate(instructions::add);
+            return instructions.stream();
         }
     }
 }
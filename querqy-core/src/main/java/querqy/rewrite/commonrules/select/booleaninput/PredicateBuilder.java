@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 import querqy.rewrite.commonrules.RuleParseException;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputElement;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputElement.Type;
+import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputPredicate;
 
 public class PredicateBuilder {
 
@@ -39,27 +40,30 @@ public class PredicateBuilder {
 
 
     public Predicate<boolean[]> build() throws RuleParseException {
+        return compile().build();
+    }
+
+    protected BooleanInputPredicate.Builder compile() throws RuleParseException {
         switch (nextHighestPriorityElement.type) {
             case AND:
             case OR:
-                final Predicate<boolean[]> left = new PredicateBuilder(
-                        elements.subList(0, indexOfNextHighestPriorityElement), createReferenceIdFunction).build();
+                final BooleanInputPredicate.Builder left = new PredicateBuilder(
+                        elements.subList(0, indexOfNextHighestPriorityElement), createReferenceIdFunction).compile();
 
-                final Predicate<boolean[]> right = new PredicateBuilder( elements.subList(
-                        indexOfNextHighestPriorityElement + 1, elements.size()), createReferenceIdFunction).build();
+                final BooleanInputPredicate.Builder right = new PredicateBuilder( elements.subList(
+                        indexOfNextHighestPriorityElement + 1, elements.size()), createReferenceIdFunction).compile();
 
                 return nextHighestPriorityElement.type == Type.AND ? left.and(right) : left.or(right);
 
             case NOT:
-                final Predicate<boolean[]> predicate = new PredicateBuilder(
-                        elements.subList(1, elements.size()), createReferenceIdFunction).build();
+                final BooleanInputPredicate.Builder predicate = new PredicateBuilder(
+                        elements.subList(1, elements.size()), createReferenceIdFunction).compile();
 
                 return predicate.negate();
 
             case TERM:
                 final List<String> terms = elements.stream().map(element -> element.term).collect(Collectors.toList());
-                final int referenceId = createReferenceIdFunction.applyAsInt(terms);
-                return booleans -> booleans[referenceId];
+                return BooleanInputPredicate.reference(createReferenceIdFunction.applyAsInt(terms));
 
             default:
                 // should not happen
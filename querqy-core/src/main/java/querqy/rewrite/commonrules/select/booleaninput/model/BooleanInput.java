@@ -17,6 +17,12 @@ public class BooleanInput {
     private final Predicate<boolean[]> predicate;
     private final Instructions instructions;
 
+    // the ids of the literals by reference id
+    private final int[] literalIds;
+    // whether the reference is the first reference to its literal in this input
+    private final boolean[] isFirstReference;
+    private final BooleanInputPredicate compiledPredicate;
+
     private final int cachedHashCode;
 
     private BooleanInput(
@@ -34,6 +40,21 @@ public class BooleanInput {
         this.predicate = predicate;
         this.instructions = instructions;
 
+        final int numReferences = literals.size();
+        literalIds = new int[numReferences];
+        isFirstReference = new boolean[numReferences];
+        for (int i = 0; i < numReferences; i++) {
+            literalIds[i] = literals.get(i).getId();
+            isFirstReference[i] = true;
+            for (int j = 0; j < i; j++) {
+                if (literalIds[j] == literalIds[i]) {
+                    isFirstReference[i] = false;
+                    break;
+                }
+            }
+        }
+        compiledPredicate = predicate instanceof BooleanInputPredicate ? (BooleanInputPredicate) predicate : null;
+
         this.cachedHashCode = Objects.hash(this.booleanInputString, this.instructions);
     }
 
@@ -41,6 +62,55 @@ public class BooleanInput {
         return new BooleanInputEvaluator(this.literals.size(), this.predicate, this.instructions);
     }
 
+    /**
+     * Evaluate this input on a bitset of seen literals.
+     *
+     * @param seenLiterals The bitset of the ids of the literals that were seen in the query
+     * @return true iff the boolean input matches
+     */
+    public boolean matches(final long[] seenLiterals) {
+        if (compiledPredicate != null) {
+            return compiledPredicate.test(seenLiterals, literalIds);
+        }
+
+        final boolean[] booleans = new boolean[literalIds.length];
+        for (int i = 0; i < literalIds.length; i++) {
+            booleans[i] = isSet(seenLiterals, literalIds[i]);
+        }
+        return predicate.test(booleans);
+    }
+
+    /**
+     * @param seenLiterals The bitset of the ids of the literals that were seen in the query
+     * @param literalId The id of a literal to ignore
+     * @return true iff any literal of this input other than the one with literalId is set in seenLiterals
+     */
+    public boolean hasSeenLiteralOtherThan(final long[] seenLiterals, final int literalId) {
+        for (final int id : literalIds) {
+            if (id != literalId && isSet(seenLiterals, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param referenceId A reference id
+     * @return true iff no reference with a lower id points to the same literal
+     */
+    public boolean isFirstReference(final int referenceId) {
+        return isFirstReference[referenceId];
+    }
+
+    public Instructions getInstructions() {
+        return instructions;
+    }
+
+    private static boolean isSet(final long[] bits, final int index) {
+        final int word = index >>> 6;
+        return word < bits.length && (bits[word] & (1L << index)) != 0L;
+    }
+
     @Override
     public boolean equals(final Object o) {
         if (this == o) return true;
@@ -3,20 +3,42 @@ package querqy.rewrite.commonrules.select.booleaninput.model;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BooleanInputLiteral {
 
+    // ids for literals that are not created by a BooleanInputParser
+    private static final AtomicInteger NEXT_UNREGISTERED_ID = new AtomicInteger(0);
+
     private final List<String> terms;
+    private final int id;
     private final List<Reference> references = new ArrayList<>();
 
     public BooleanInputLiteral(final List<String> terms) {
+        this(terms, NEXT_UNREGISTERED_ID.getAndIncrement());
+    }
+
+    /**
+     * @param terms The terms of the literal
+     * @param id The number of this literal, unique among the literals of a rules collection. The bitsets of seen
+     *           literals that are created at query time have a size proportional to the highest id.
+     */
+    public BooleanInputLiteral(final List<String> terms, final int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id must not be negative");
+        }
         this.terms = terms;
+        this.id = id;
     }
 
     public List<String> getTerms() {
         return this.terms;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public void addReference(final Reference reference) {
         references.add(reference);
     }
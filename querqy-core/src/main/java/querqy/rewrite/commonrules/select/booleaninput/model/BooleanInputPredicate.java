@@ -0,0 +1,134 @@
+package querqy.rewrite.commonrules.select.booleaninput.model;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/**
+ * <p>A boolean input expression, compiled into a postfix program over the reference ids of its literals.</p>
+ *
+ * <p>The program is a sequence of ops. An op &gt;= 0 pushes the value of the literal with that reference id,
+ * {@link #AND}, {@link #OR} and {@link #NOT} pop their operands and push the result. The operand stack is kept in
+ * the bits of a long. {@link Builder} emits the deeper operand of AND and OR first, which keeps the stack depth
+ * logarithmic in the number of literals.</p>
+ *
+ * <p>The program can either be evaluated on a boolean[] that holds the values by reference id or, via
+ * {@link #test(long[], int[])}, directly on a bitset of the literals that were seen in a query.</p>
+ */
+public final class BooleanInputPredicate implements Predicate<boolean[]> {
+
+    public static final int AND = -1;
+    public static final int OR = -2;
+    public static final int NOT = -3;
+
+    static final int MAX_DEPTH = Long.SIZE;
+
+    private final int[] ops;
+
+    private BooleanInputPredicate(final int[] ops) {
+        this.ops = ops;
+    }
+
+    @Override
+    public boolean test(final boolean[] booleans) {
+        long stack = 0L;
+        for (final int op : ops) {
+            switch (op) {
+                case AND: stack = (stack >>> 1) & (stack | ~1L); break;
+                case OR: stack = (stack >>> 1) | (stack & 1L); break;
+                case NOT: stack ^= 1L; break;
+                default: stack = (stack << 1) | (booleans[op] ? 1L : 0L);
+            }
+        }
+        return (stack & 1L) == 1L;
+    }
+
+    /**
+     * Evaluate the program on a bitset of seen literals.
+     *
+     * @param seenLiterals The bitset of the ids ({@link BooleanInputLiteral#getId()}) of the literals that were seen
+     * @param literalIds The literal ids by reference id
+     * @return The result of the expression
+     */
+    public boolean test(final long[] seenLiterals, final int[] literalIds) {
+        long stack = 0L;
+        for (final int op : ops) {
+            switch (op) {
+                case AND: stack = (stack >>> 1) & (stack | ~1L); break;
+                case OR: stack = (stack >>> 1) | (stack & 1L); break;
+                case NOT: stack ^= 1L; break;
+                default:
+                    final int literalId = literalIds[op];
+                    final int word = literalId >>> 6;
+                    stack = (stack << 1)
+                            | (word < seenLiterals.length ? (seenLiterals[word] >>> literalId) & 1L : 0L);
+            }
+        }
+        return (stack & 1L) == 1L;
+    }
+
+    int[] getOps() {
+        return ops;
+    }
+
+    @Override
+    public String toString() {
+        return "BooleanInputPredicate{ops=" + Arrays.toString(ops) + '}';
+    }
+
+    public static Builder reference(final int referenceId) {
+        if (referenceId < 0) {
+            throw new IllegalArgumentException("referenceId must not be negative");
+        }
+        return new Builder(new int[] {referenceId}, 1);
+    }
+
+    /**
+     * An immutable part of a program.
+     */
+    public static class Builder {
+
+        private final int[] ops;
+        private final int depth;
+
+        private Builder(final int[] ops, final int depth) {
+            this.ops = ops;
+            this.depth = depth;
+        }
+
+        public Builder and(final Builder other) {
+            return combine(other, AND);
+        }
+
+        public Builder or(final Builder other) {
+            return combine(other, OR);
+        }
+
+        public Builder negate() {
+            final int[] negated = Arrays.copyOf(ops, ops.length + 1);
+            negated[ops.length] = NOT;
+            return new Builder(negated, depth);
+        }
+
+        public BooleanInputPredicate build() {
+            if (depth > MAX_DEPTH) {
+                // cannot happen as the depth grows only by one when both operands have the same depth
+                throw new IllegalStateException("Boolean input too deep: " + depth);
+            }
+            return new BooleanInputPredicate(ops);
+        }
+
+        private Builder combine(final Builder other, final int op) {
+            final Builder first = depth >= other.depth ? this : other;
+            final Builder second = first == this ? other : this;
+
+            final int[] combined = new int[first.ops.length + second.ops.length + 1];
+            System.arraycopy(first.ops, 0, combined, 0, first.ops.length);
+            System.arraycopy(second.ops, 0, combined, first.ops.length, second.ops.length);
+            combined[combined.length - 1] = op;
+
+            return new Builder(combined, Math.max(first.depth, second.depth + 1));
+        }
+
+    }
+
+}
@@ -9,8 +9,9 @@ import querqy.model.QuerqyQuery;
 import querqy.model.Query;
 import querqy.rewrite.RewriterOutput;
 import querqy.model.Term;
-import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.ResettableQueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
 import querqy.rewrite.contrib.numberunit.NumberUnitQueryCreator;
 import querqy.rewrite.contrib.numberunit.model.NumberUnitQueryInput;
 import querqy.rewrite.contrib.numberunit.model.PerUnitNumberUnitDefinition;
@@ -24,7 +25,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
-public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements QueryRewriter {
+public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements ResettableQueryRewriter {
 
     private final TrieMap<List<PerUnitNumberUnitDefinition>> numberUnitMap;
     private final NumberUnitQueryCreator numberUnitQueryCreator;
@@ -57,12 +58,12 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
 
         numberUnitQueryInputs.stream()
                 .map(input -> numberUnitQueryCreator.createFilterQuery(
-                        input.getNumber(), input.getPerUnitNumberUnitDefinitions()))
+                        input.getFixedPointNumber(), input.getPerUnitNumberUnitDefinitions(), requestAdapter))
                 .forEach(expandedQuery::addFilterQuery);
 
         numberUnitQueryInputs.stream()
                 .map(input -> numberUnitQueryCreator.createBoostQuery(
-                        input.getNumber(), input.getPerUnitNumberUnitDefinitions()))
+                        input.getFixedPointNumber(), input.getPerUnitNumberUnitDefinitions(), requestAdapter))
                 .forEach(expandedQuery::addBoostUpQuery);
 
         numberUnitQueryInputs.stream()
@@ -76,6 +77,12 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
         return RewriterOutput.builder().expandedQuery(expandedQuery).build();
     }
 
+    @Override
+    public void reset() {
+        numberUnitQueryInputs.clear();
+        incompleteNumberUnitQueryInput = null;
+    }
+
     @Override
     public Node visit(final Term term) {
 
@@ -125,6 +132,10 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
         boolean isNumber = false;
         int floatDelimiter = -1;
 
+        // the digits as a long, or -1 if they don't fit into a long
+        long unscaledValue = 0L;
+        int scale = 0;
+
         for (int i = 0, len = seq.length(); i < len; i++) {
 
             final char c = seq.charAt(i);
@@ -132,6 +143,13 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
             if (Character.isDigit(c)) {
                 isNumber = true;
 
+                if (unscaledValue >= 0L) {
+                    unscaledValue = appendDigit(unscaledValue, Character.digit(c, 10));
+                    if (floatDelimiter > -1) {
+                        scale++;
+                    }
+                }
+
             } else if (isFloatDelimiter(c)) {
                 if (floatDelimiter > -1) {
                     return Optional.empty();
@@ -151,7 +169,9 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
                         ? Optional.empty()
                         : Optional.of(
                                 new NumberUnitQueryInput(
-                                        parseNumber(seq.subSequence(0, i), floatDelimiter),
+                                        unscaledValue >= 0L
+                                                ? createNumber(unscaledValue, scale)
+                                                : parseNumber(seq.subSequence(0, i), floatDelimiter),
                                         unitDefinitions));
             }
         }
@@ -160,10 +180,21 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
             return Optional.empty();
         }
 
-        return Optional.of(new NumberUnitQueryInput(parseNumber(seq, floatDelimiter)));
+        return Optional.of(new NumberUnitQueryInput(unscaledValue >= 0L
+                ? createNumber(unscaledValue, scale)
+                : parseNumber(seq, floatDelimiter)));
+    }
+
+    private static long appendDigit(final long unscaledValue, final int digit) {
+        return unscaledValue <= (Long.MAX_VALUE - digit) / 10L ? unscaledValue * 10L + digit : -1L;
+    }
+
+    private FixedPointDecimal createNumber(final long unscaledValue, final int scale) {
+        return FixedPointDecimal.valueOf(unscaledValue, scale).setScale(numberUnitQueryCreator.getScale());
     }
 
-    private BigDecimal parseNumber(final ComparableCharSequence seq, final int floatDelimiter) {
+    // parses numbers that have too many digits for a long
+    private FixedPointDecimal parseNumber(final ComparableCharSequence seq, final int floatDelimiter) {
 
         if (floatDelimiter < 0) {
             return createBigDecimal(seq.toString());
@@ -180,9 +211,9 @@ public class NumberUnitRewriter extends AbstractNodeVisitor<Node> implements Que
         }
     }
 
-    private BigDecimal createBigDecimal(final String number) {
-        return new BigDecimal(number).setScale(numberUnitQueryCreator.getScale(),
-                numberUnitQueryCreator.getRoundingMode());
+    private FixedPointDecimal createBigDecimal(final String number) {
+        return FixedPointDecimal.valueOf(new BigDecimal(number).setScale(numberUnitQueryCreator.getScale(),
+                numberUnitQueryCreator.getRoundingMode()));
     }
 
     private List<PerUnitNumberUnitDefinition> lookupUnitDef(final ComparableCharSequence seq) {
@@ -4,6 +4,7 @@ import querqy.model.ExpandedQuery;
 import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.RewriterPool;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.contrib.numberunit.NumberUnitQueryCreator;
 import querqy.rewrite.contrib.numberunit.model.NumberUnitDefinition;
@@ -12,13 +13,16 @@ import querqy.trie.State;
 import querqy.trie.TrieMap;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 public class NumberUnitRewriterFactory extends RewriterFactory {
 
     private final TrieMap<List<PerUnitNumberUnitDefinition>> numberUnitMap;
     private final NumberUnitQueryCreator numberUnitQueryCreator;
+    private final RewriterPool<NumberUnitRewriter> rewriterPool = new RewriterPool<>();
 
     public NumberUnitRewriterFactory(final String id,
                                      final List<NumberUnitDefinition> numberUnitDefinitions,
@@ -58,7 +62,21 @@ public class NumberUnitRewriterFactory extends RewriterFactory {
     @Override
     public QueryRewriter createRewriter(final ExpandedQuery input,
                                         final SearchEngineRequestAdapter searchEngineRequestAdapter) {
-        return new NumberUnitRewriter(numberUnitMap, numberUnitQueryCreator);
+        final NumberUnitRewriter rewriter = rewriterPool.borrow();
+        return rewriter != null ? rewriter : new NumberUnitRewriter(numberUnitMap, numberUnitQueryCreator);
+    }
+
+    @Override
+    public void releaseRewriter(final QueryRewriter rewriter) {
+        if (rewriter.getClass() == NumberUnitRewriter.class) {
+            rewriterPool.release((NumberUnitRewriter) rewriter);
+        }
+    }
+
+    @Override
+    public Optional<Set<String>> getRequestParamDependencies() {
+        // the output only depends on the query
+        return Optional.of(Collections.emptySet());
     }
 
     @Override
@@ -12,32 +12,39 @@ import querqy.rewrite.logging.ActionLog;
 import querqy.rewrite.logging.RewriterLog;
 import querqy.rewrite.RewriterOutput;
 import querqy.model.Term;
-import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.ResettableQueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.contrib.replace.ReplaceInstruction;
 import querqy.trie.LookupUtils;
 import querqy.trie.SequenceLookup;
+import querqy.trie.TokenBuffer;
 import querqy.trie.model.ExactMatch;
 import querqy.trie.model.PrefixMatch;
 import querqy.trie.model.SuffixMatch;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
 
-public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryRewriter {
+public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements ResettableQueryRewriter {
 
     private final SequenceLookup<ReplaceInstruction> sequenceLookup;
 
     public ReplaceRewriter(final SequenceLookup<ReplaceInstruction> sequenceLookup) {
         this.sequenceLookup = sequenceLookup;
+        tokens = sequenceLookup.createTokenBuffer();
     }
 
     private boolean hasReplacement = false;
-    private LinkedList<CharSequence> collectedTerms;
+    private final List<CharSequence> collectedTerms = new ArrayList<>();
     protected SearchEngineRequestAdapter searchEngineRequestAdapter;
 
+    // kept for reuse, see reset()
+    private final TokenBuffer tokens;
+    private final List<ExactMatch<ReplaceInstruction>> exactMatches = new ArrayList<>();
+    private final List<SuffixMatch<ReplaceInstruction>> suffixMatches = new ArrayList<>();
+    private final List<PrefixMatch<ReplaceInstruction>> prefixMatches = new ArrayList<>();
+
     @Override
     public RewriterOutput rewrite(final ExpandedQuery expandedQuery,
                                   final SearchEngineRequestAdapter searchEngineRequestAdapter) {
@@ -48,7 +55,8 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
             return RewriterOutput.builder().expandedQuery(expandedQuery).build();
         }
 
-        collectedTerms = new LinkedList<>();
+        // in case the rewriter is used more than once without a reset
+        reset();
         this.searchEngineRequestAdapter = searchEngineRequestAdapter;
 
         visit((Query) querqyQuery);
@@ -56,7 +64,12 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
         final List<ActionLog> actionLogs = searchEngineRequestAdapter.getRewriteLoggingConfig().hasDetails()
                 ? new ArrayList<>() : null;
 
-        final List<ExactMatch<ReplaceInstruction>> exactMatches = sequenceLookup.findExactMatches(collectedTerms);
+        tokens.addAll(collectedTerms);
+
+        // Exact, suffix and prefix matches are applied one after the other, each on the result of the previous
+        // replacements. We only need to look up the tokens again if a previous step has changed them.
+        sequenceLookup.findMatches(tokens, exactMatches, suffixMatches, prefixMatches);
+
         if (!exactMatches.isEmpty()) {
             this.hasReplacement = true;
 
@@ -73,9 +86,13 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
                             actionLogs
                     )
             );
+
+            tokens.reset(collectedTerms);
+            suffixMatches.clear();
+            prefixMatches.clear();
+            sequenceLookup.findMatches(tokens, null, suffixMatches, prefixMatches);
         }
 
-        final List<SuffixMatch<ReplaceInstruction>> suffixMatches = sequenceLookup.findSingleTermSuffixMatches(collectedTerms);
         if (!suffixMatches.isEmpty()) {
             this.hasReplacement = true;
 
@@ -89,9 +106,12 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
                             suffixMatch.wildcardMatch,
                             actionLogs
                     ));
+
+            tokens.reset(collectedTerms);
+            prefixMatches.clear();
+            sequenceLookup.findMatches(tokens, null, null, prefixMatches);
         }
 
-        final List<PrefixMatch<ReplaceInstruction>> prefixMatches = sequenceLookup.findSingleTermPrefixMatches(collectedTerms);
         if (!prefixMatches.isEmpty()) {
             this.hasReplacement = true;
 
@@ -116,6 +136,17 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
                 .build();
     }
 
+    @Override
+    public void reset() {
+        hasReplacement = false;
+        collectedTerms.clear();
+        searchEngineRequestAdapter = null;
+        tokens.clear();
+        exactMatches.clear();
+        suffixMatches.clear();
+        prefixMatches.clear();
+    }
+
     private ExpandedQuery buildQueryFromSeqList(final ExpandedQuery oldQuery, final List<CharSequence> tokens) {
         final Query query = new Query();
 
@@ -156,7 +187,7 @@ public class ReplaceRewriter extends AbstractNodeVisitor<Node> implements QueryR
     @Override
     public Node visit(final Term term) {
         if (!term.isGenerated()) {
-            collectedTerms.addLast(term);
+            collectedTerms.add(term);
         }
         return null;
     }
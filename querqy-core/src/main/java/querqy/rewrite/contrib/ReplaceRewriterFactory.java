@@ -5,18 +5,22 @@ import querqy.model.Term;
 import querqy.parser.QuerqyParser;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.RewriterPool;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.contrib.replace.ReplaceInstruction;
 import querqy.trie.SequenceLookup;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
 
 public class ReplaceRewriterFactory extends RewriterFactory {
 
     private final SequenceLookup<ReplaceInstruction> sequenceLookup;
     private final boolean ignoreCase;
+    private final RewriterPool<ReplaceRewriter> rewriterPool = new RewriterPool<>();
 
     public ReplaceRewriterFactory(final String id,
                                   final InputStreamReader reader,
@@ -30,7 +34,21 @@ public class ReplaceRewriterFactory extends RewriterFactory {
 
     @Override
     public QueryRewriter createRewriter(ExpandedQuery input, SearchEngineRequestAdapter searchEngineRequestAdapter) {
-        return new ReplaceRewriter(sequenceLookup);
+        final ReplaceRewriter rewriter = rewriterPool.borrow();
+        return rewriter != null ? rewriter : new ReplaceRewriter(sequenceLookup);
+    }
+
+    @Override
+    public void releaseRewriter(final QueryRewriter rewriter) {
+        if (rewriter.getClass() == ReplaceRewriter.class) {
+            rewriterPool.release((ReplaceRewriter) rewriter);
+        }
+    }
+
+    @Override
+    public Optional<Set<String>> getRequestParamDependencies() {
+        // the output only depends on the query
+        return Optional.of(Collections.emptySet());
     }
 
     @Override
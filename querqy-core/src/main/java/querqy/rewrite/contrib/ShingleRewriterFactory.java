@@ -6,7 +6,9 @@ import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.SearchEngineRequestAdapter;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 /**
@@ -31,6 +33,12 @@ public class ShingleRewriterFactory extends RewriterFactory {
         return new ShingleRewriter(acceptGeneratedTerms);
     }
 
+    @Override
+    public Optional<Set<String>> getRequestParamDependencies() {
+        // the output only depends on the query
+        return Optional.of(Collections.emptySet());
+    }
+
     @Override
     public Set<Term> getCacheableGenerableTerms() {
         return QueryRewriter.EMPTY_GENERABLE_TERMS;
@@ -0,0 +1,255 @@
+package querqy.rewrite.contrib.numberunit;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * <p>An immutable decimal number that is represented by a long unscaled value and a scale, like a {@link BigDecimal}
+ * with an unscaled value of at most 18 digits.</p>
+ *
+ * <p>The operations have the same results as the {@link BigDecimal} operations of the same name, including the
+ * scale of the result and the string representation, and round {@link RoundingMode#HALF_UP}. If a result doesn't fit
+ * into a long, the number falls back to a {@link BigDecimal}, so that the long arithmetic only saves the cost of
+ * BigDecimal for the common case of small numbers but never changes a result.</p>
+ */
+public final class FixedPointDecimal implements Comparable<FixedPointDecimal> {
+
+    public static final FixedPointDecimal ZERO = new FixedPointDecimal(0L, 0);
+
+    private static final RoundingMode ROUNDING_MODE = RoundingMode.HALF_UP;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    static {
+        POWERS_OF_TEN[0] = 1L;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10L;
+        }
+    }
+
+    private final long unscaledValue;
+    private final int scale;
+    // null if the number is represented by unscaledValue and scale
+    private final BigDecimal bigDecimal;
+
+    private FixedPointDecimal(final long unscaledValue, final int scale) {
+        this.unscaledValue = unscaledValue;
+        this.scale = scale;
+        this.bigDecimal = null;
+    }
+
+    private FixedPointDecimal(final BigDecimal bigDecimal) {
+        this.unscaledValue = 0L;
+        this.scale = bigDecimal.scale();
+        this.bigDecimal = bigDecimal;
+    }
+
+    public static FixedPointDecimal valueOf(final long unscaledValue, final int scale) {
+        return new FixedPointDecimal(unscaledValue, scale);
+    }
+
+    public static FixedPointDecimal valueOf(final BigDecimal value) {
+        if (value.precision() < 19) {
+            return new FixedPointDecimal(value.unscaledValue().longValue(), value.scale());
+        }
+        return new FixedPointDecimal(value);
+    }
+
+    public FixedPointDecimal multiply(final FixedPointDecimal other) {
+        if (isCompact() && other.isCompact()) {
+            try {
+                return new FixedPointDecimal(Math.multiplyExact(unscaledValue, other.unscaledValue),
+                        Math.addExact(scale, other.scale));
+            } catch (final ArithmeticException e) {
+                // overflow
+            }
+        }
+        return valueOf(toBigDecimal().multiply(other.toBigDecimal()));
+    }
+
+    public FixedPointDecimal add(final FixedPointDecimal other) {
+        if (isCompact() && other.isCompact()) {
+            try {
+                final int resultScale = Math.max(scale, other.scale);
+                return new FixedPointDecimal(Math.addExact(upscale(unscaledValue, resultScale - scale),
+                        upscale(other.unscaledValue, resultScale - other.scale)), resultScale);
+            } catch (final ArithmeticException e) {
+                // overflow
+            }
+        }
+        return valueOf(toBigDecimal().add(other.toBigDecimal()));
+    }
+
+    public FixedPointDecimal subtract(final FixedPointDecimal other) {
+        if (isCompact() && other.isCompact()) {
+            try {
+                final int resultScale = Math.max(scale, other.scale);
+                return new FixedPointDecimal(Math.subtractExact(upscale(unscaledValue, resultScale - scale),
+                        upscale(other.unscaledValue, resultScale - other.scale)), resultScale);
+            } catch (final ArithmeticException e) {
+                // overflow
+            }
+        }
+        return valueOf(toBigDecimal().subtract(other.toBigDecimal()));
+    }
+
+    /**
+     * Divides this number by the divisor, rounding the quotient {@link RoundingMode#HALF_UP} to the given scale.
+     *
+     * @throws ArithmeticException if the divisor is zero
+     */
+    public FixedPointDecimal divide(final FixedPointDecimal divisor, final int resultScale) {
+        if (isCompact() && divisor.isCompact()) {
+            if (divisor.unscaledValue == 0L) {
+                throw new ArithmeticException("Division by zero");
+            }
+            try {
+                // this / divisor = (unscaledValue / divisor.unscaledValue) * 10^(divisor.scale - scale)
+                final int shift = Math.addExact(Math.subtractExact(resultScale, scale), divisor.scale);
+                return shift >= 0
+                        ? new FixedPointDecimal(divideAndRound(upscale(unscaledValue, shift), divisor.unscaledValue),
+                                resultScale)
+                        : new FixedPointDecimal(divideAndRound(unscaledValue,
+                                upscale(divisor.unscaledValue, -shift)), resultScale);
+            } catch (final ArithmeticException e) {
+                // overflow
+            }
+        }
+        return valueOf(toBigDecimal().divide(divisor.toBigDecimal(), resultScale, ROUNDING_MODE));
+    }
+
+    /**
+     * @return This number with the given scale, rounded {@link RoundingMode#HALF_UP} if the scale is reduced
+     */
+    public FixedPointDecimal setScale(final int newScale) {
+        if (isCompact()) {
+            if (newScale == scale) {
+                return this;
+            }
+            try {
+                return newScale > scale
+                        ? new FixedPointDecimal(upscale(unscaledValue, Math.subtractExact(newScale, scale)), newScale)
+                        : new FixedPointDecimal(divideAndRound(unscaledValue,
+                                upscale(1L, Math.subtractExact(scale, newScale))), newScale);
+            } catch (final ArithmeticException e) {
+                // overflow
+            }
+        }
+        return valueOf(toBigDecimal().setScale(newScale, ROUNDING_MODE));
+    }
+
+    public int signum() {
+        return isCompact() ? Long.signum(unscaledValue) : bigDecimal.signum();
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public int intValue() {
+        return toBigDecimal().intValue();
+    }
+
+    public double doubleValue() {
+        if (isCompact() && scale >= 0 && scale < 16 && Math.abs(unscaledValue) < (1L << 53)) {
+            // both operands are exact doubles, the quotient is rounded like BigDecimal.doubleValue()
+            return (double) unscaledValue / POWERS_OF_TEN[scale];
+        }
+        return toBigDecimal().doubleValue();
+    }
+
+    public BigDecimal toBigDecimal() {
+        return isCompact() ? BigDecimal.valueOf(unscaledValue, scale) : bigDecimal;
+    }
+
+    /**
+     * Appends the same string as {@link BigDecimal#toString()} to the builder.
+     */
+    public StringBuilder appendTo(final StringBuilder sb) {
+        if (!isCompact() || scale < 0 || scale > 6) {
+            // BigDecimal might use an exponent
+            return sb.append(toBigDecimal());
+        }
+
+        if (unscaledValue < 0L) {
+            sb.append('-');
+        }
+        final String digits = Long.toString(unscaledValue).substring(unscaledValue < 0L ? 1 : 0);
+        if (scale == 0) {
+            return sb.append(digits);
+        }
+        final int integerDigits = digits.length() - scale;
+        if (integerDigits > 0) {
+            sb.append(digits, 0, integerDigits).append('.').append(digits, integerDigits, digits.length());
+        } else {
+            sb.append("0.");
+            for (int i = integerDigits; i < 0; i++) {
+                sb.append('0');
+            }
+            sb.append(digits);
+        }
+        return sb;
+    }
+
+    @Override
+    public int compareTo(final FixedPointDecimal other) {
+        if (isCompact() && other.isCompact() && scale == other.scale) {
+            return Long.compare(unscaledValue, other.unscaledValue);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    /**
+     * Like {@link BigDecimal#equals(Object)}, numbers are only equal if they also have the same scale.
+     */
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final FixedPointDecimal that = (FixedPointDecimal) o;
+        return isCompact() && that.isCompact()
+                ? unscaledValue == that.unscaledValue && scale == that.scale
+                : toBigDecimal().equals(that.toBigDecimal());
+    }
+
+    @Override
+    public int hashCode() {
+        return toBigDecimal().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    private boolean isCompact() {
+        return bigDecimal == null;
+    }
+
+    private static long upscale(final long value, final int digits) {
+        if (digits >= POWERS_OF_TEN.length) {
+            if (value == 0L) {
+                return 0L;
+            }
+            throw new ArithmeticException("overflow");
+        }
+        return Math.multiplyExact(value, POWERS_OF_TEN[digits]);
+    }
+
+    private static long divideAndRound(final long dividend, final long divisor) {
+        final long quotient = dividend / divisor;
+        final long remainder = dividend % divisor;
+        if (remainder == 0L) {
+            return quotient;
+        }
+        // HALF_UP: round away from zero if the remainder is at least half of the divisor
+        if (divisor == Long.MIN_VALUE) {
+            throw new ArithmeticException("overflow");
+        }
+        final long absRemainder = Math.abs(remainder);
+        final long absDivisor = Math.abs(divisor);
+        return absRemainder >= absDivisor - absRemainder
+                ? quotient + (((dividend ^ divisor) < 0L) ? -1L : 1L)
+                : quotient;
+    }
+
+}
@@ -3,6 +3,8 @@ package querqy.rewrite.contrib.numberunit;
 import querqy.model.BooleanParent;
 import querqy.model.BoostQuery;
 import querqy.model.QuerqyQuery;
+import querqy.rewrite.SearchEngineRequestAdapter;
+import querqy.rewrite.contrib.numberunit.model.FixedPointLinearFunction;
 import querqy.rewrite.contrib.numberunit.model.LinearFunction;
 import querqy.rewrite.contrib.numberunit.model.PerUnitNumberUnitDefinition;
 
@@ -18,6 +20,8 @@ public abstract class NumberUnitQueryCreator {
     private final BigDecimal n100 = new BigDecimal(100);
     private final BigDecimal n0 = new BigDecimal(0);
 
+    private static final FixedPointDecimal FIXED_POINT_100 = FixedPointDecimal.valueOf(100L, 0);
+
     protected NumberUnitQueryCreator(int scale) {
         this.scale = scale;
     }
@@ -53,6 +57,72 @@ public abstract class NumberUnitQueryCreator {
         return number.add(calculatePercentageChange(number, percentage)).setScale(this.scale, ROUNDING_MODE);
     }
 
+    public FixedPointLinearFunction createLinearFunctionParameters(final FixedPointDecimal x1,
+                                                                   final FixedPointDecimal y1,
+                                                                   final FixedPointDecimal x2,
+                                                                   final FixedPointDecimal y2) {
+        final FixedPointDecimal x = x1.subtract(x2);
+        final FixedPointDecimal y = y1.subtract(y2);
+
+        final FixedPointDecimal m = x.signum() != 0 ? y.divide(x, this.scale) : FixedPointDecimal.ZERO;
+        final FixedPointDecimal b = y1.subtract(x1.multiply(m)).setScale(this.scale);
+
+        return new FixedPointLinearFunction(m, b);
+    }
+
+    public FixedPointDecimal calculatePercentageChange(final FixedPointDecimal number,
+                                                       final FixedPointDecimal percentage) {
+        return number.multiply(percentage).divide(FIXED_POINT_100, this.scale);
+    }
+
+    public FixedPointDecimal subtractPercentage(final FixedPointDecimal number, final FixedPointDecimal percentage) {
+        return number.subtract(calculatePercentageChange(number, percentage)).setScale(this.scale);
+    }
+
+    public FixedPointDecimal addPercentage(final FixedPointDecimal number, final FixedPointDecimal percentage) {
+        return number.add(calculatePercentageChange(number, percentage)).setScale(this.scale);
+    }
+
+    /**
+     * Creates the filter query for a number that the rewriter parsed as a {@link FixedPointDecimal}. Query creators
+     * should override this to avoid {@link BigDecimal} arithmetic. The default implementation converts the number
+     * into a {@link BigDecimal}.
+     */
+    public QuerqyQuery<BooleanParent> createFilterQuery(
+            final FixedPointDecimal value, final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        return createFilterQuery(value.toBigDecimal(), perUnitNumberUnitDefinitions);
+    }
+
+    /**
+     * Creates the boost query for a number that the rewriter parsed as a {@link FixedPointDecimal}. Query creators
+     * should override this to avoid {@link BigDecimal} arithmetic. The default implementation converts the number
+     * into a {@link BigDecimal}.
+     */
+    public BoostQuery createBoostQuery(
+            final FixedPointDecimal value, final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        return createBoostQuery(value.toBigDecimal(), perUnitNumberUnitDefinitions);
+    }
+
+    /**
+     * Creates the filter query for a number in the context of a search request. Query creators can override this to
+     * create queries that the search engine doesn't have to parse. The default implementation ignores the request.
+     */
+    public QuerqyQuery<BooleanParent> createFilterQuery(
+            final FixedPointDecimal value, final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions,
+            final SearchEngineRequestAdapter requestAdapter) {
+        return createFilterQuery(value, perUnitNumberUnitDefinitions);
+    }
+
+    /**
+     * Creates the boost query for a number in the context of a search request. Query creators can override this to
+     * create queries that the search engine doesn't have to parse. The default implementation ignores the request.
+     */
+    public BoostQuery createBoostQuery(
+            final FixedPointDecimal value, final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions,
+            final SearchEngineRequestAdapter requestAdapter) {
+        return createBoostQuery(value, perUnitNumberUnitDefinitions);
+    }
+
     public abstract QuerqyQuery<BooleanParent> createFilterQuery(
             BigDecimal value, List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions);
 
@@ -0,0 +1,18 @@
+package querqy.rewrite.contrib.numberunit.model;
+
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
+
+/**
+ * A {@link LinearFunction} with {@link FixedPointDecimal} parameters.
+ */
+public class FixedPointLinearFunction {
+
+    public final FixedPointDecimal m;
+    public final FixedPointDecimal b;
+
+    public FixedPointLinearFunction(final FixedPointDecimal m, final FixedPointDecimal b) {
+        this.m = m;
+        this.b = b;
+    }
+
+}
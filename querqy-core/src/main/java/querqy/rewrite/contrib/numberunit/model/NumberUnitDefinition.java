@@ -1,5 +1,7 @@
 package querqy.rewrite.contrib.numberunit.model;
 
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
+
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -22,6 +24,8 @@ public class NumberUnitDefinition {
     public final BigDecimal filterPercentageUpperBoundary;
     public final BigDecimal filterPercentageLowerBoundary;
 
+    public final FixedPointValues fixedPointValues;
+
     private NumberUnitDefinition(final List<UnitDefinition> unitDefinitions,
                                  final List<FieldDefinition> fields,
 
@@ -53,6 +57,46 @@ public class NumberUnitDefinition {
 
         this.filterPercentageUpperBoundary = filterPercentageUpperBoundary;
         this.filterPercentageLowerBoundary = filterPercentageLowerBoundary;
+
+        this.fixedPointValues = new FixedPointValues(this);
+    }
+
+    /**
+     * The numbers of a {@link NumberUnitDefinition} as {@link FixedPointDecimal}s. They are converted once when the
+     * definition is created so that queries can be created without converting them per request.
+     */
+    public static class FixedPointValues {
+        public final FixedPointDecimal maxScoreForExactMatch;
+        public final FixedPointDecimal minScoreAtUpperBoundary;
+        public final FixedPointDecimal minScoreAtLowerBoundary;
+        // maxScoreForExactMatch + additionalScoreForExactMatch
+        public final int scoreForExactMatch;
+
+        public final FixedPointDecimal boostPercentageUpperBoundary;
+        public final FixedPointDecimal boostPercentageLowerBoundary;
+        public final FixedPointDecimal boostPercentageUpperBoundaryExactMatch;
+        public final FixedPointDecimal boostPercentageLowerBoundaryExactMatch;
+
+        public final FixedPointDecimal filterPercentageUpperBoundary;
+        public final FixedPointDecimal filterPercentageLowerBoundary;
+
+        private FixedPointValues(final NumberUnitDefinition definition) {
+            this.maxScoreForExactMatch = FixedPointDecimal.valueOf(definition.maxScoreForExactMatch);
+            this.minScoreAtUpperBoundary = FixedPointDecimal.valueOf(definition.minScoreAtUpperBoundary);
+            this.minScoreAtLowerBoundary = FixedPointDecimal.valueOf(definition.minScoreAtLowerBoundary);
+            this.scoreForExactMatch = definition.maxScoreForExactMatch
+                    .add(definition.additionalScoreForExactMatch).intValue();
+
+            this.boostPercentageUpperBoundary = FixedPointDecimal.valueOf(definition.boostPercentageUpperBoundary);
+            this.boostPercentageLowerBoundary = FixedPointDecimal.valueOf(definition.boostPercentageLowerBoundary);
+            this.boostPercentageUpperBoundaryExactMatch = FixedPointDecimal.valueOf(
+                    definition.boostPercentageUpperBoundaryExactMatch);
+            this.boostPercentageLowerBoundaryExactMatch = FixedPointDecimal.valueOf(
+                    definition.boostPercentageLowerBoundaryExactMatch);
+
+            this.filterPercentageUpperBoundary = FixedPointDecimal.valueOf(definition.filterPercentageUpperBoundary);
+            this.filterPercentageLowerBoundary = FixedPointDecimal.valueOf(definition.filterPercentageLowerBoundary);
+        }
     }
 
 
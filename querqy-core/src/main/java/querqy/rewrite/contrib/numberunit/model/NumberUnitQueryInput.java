@@ -1,6 +1,7 @@
 package querqy.rewrite.contrib.numberunit.model;
 
 import querqy.model.DisjunctionMaxQuery;
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -12,17 +13,26 @@ import java.util.Set;
 
 public class NumberUnitQueryInput {
 
-    private final BigDecimal number;
+    private final FixedPointDecimal number;
     private final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions;
 
     private final Set<DisjunctionMaxQuery> originDisjunctionMaxQueries = new HashSet<>();
 
     public NumberUnitQueryInput(final BigDecimal number) {
-        this(number, new ArrayList<>());
+        this(FixedPointDecimal.valueOf(number));
     }
 
     public NumberUnitQueryInput(final BigDecimal number,
                                 final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        this(FixedPointDecimal.valueOf(number), perUnitNumberUnitDefinitions);
+    }
+
+    public NumberUnitQueryInput(final FixedPointDecimal number) {
+        this(number, new ArrayList<>());
+    }
+
+    public NumberUnitQueryInput(final FixedPointDecimal number,
+                                final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
         this.number = number;
         this.perUnitNumberUnitDefinitions = perUnitNumberUnitDefinitions;
     }
@@ -40,6 +50,10 @@ public class NumberUnitQueryInput {
     }
 
     public BigDecimal getNumber() {
+        return this.number.toBigDecimal();
+    }
+
+    public FixedPointDecimal getFixedPointNumber() {
         return this.number;
     }
 
@@ -63,7 +77,8 @@ public class NumberUnitQueryInput {
 
     @Override
     public int hashCode() {
-        return Objects.hash(number, perUnitNumberUnitDefinitions, originDisjunctionMaxQueries);
+        // like equals, ignore the scale of the number
+        return Objects.hash(number.doubleValue(), perUnitNumberUnitDefinitions, originDisjunctionMaxQueries);
     }
 
     @Override
@@ -1,15 +1,19 @@
 package querqy.rewrite.contrib.numberunit.model;
 
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
+
 import java.math.BigDecimal;
 
 public class PerUnitNumberUnitDefinition {
 
     public final NumberUnitDefinition numberUnitDefinition;
     public final BigDecimal multiplier;
+    public final FixedPointDecimal fixedPointMultiplier;
 
     public PerUnitNumberUnitDefinition(final NumberUnitDefinition numberUnitDefinition, final BigDecimal multiplier) {
         this.numberUnitDefinition = numberUnitDefinition;
         this.multiplier = multiplier;
+        this.fixedPointMultiplier = FixedPointDecimal.valueOf(multiplier);
     }
 
 }
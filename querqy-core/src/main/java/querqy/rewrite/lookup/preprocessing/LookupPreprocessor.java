@@ -4,4 +4,15 @@ package querqy.rewrite.lookup.preprocessing;
 public interface LookupPreprocessor {
 
     CharSequence process(final CharSequence charSequence);
+
+    /**
+     * Append the processed char sequence to a buffer. Implementations can override this method to write their output
+     * directly into the buffer instead of creating an intermediate {@link CharSequence}.
+     *
+     * @param charSequence The input
+     * @param buffer The buffer to append the processed input to
+     */
+    default void appendProcessed(final CharSequence charSequence, final StringBuilder buffer) {
+        buffer.append(process(charSequence));
+    }
 }
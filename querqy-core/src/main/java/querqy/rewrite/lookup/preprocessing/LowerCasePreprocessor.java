@@ -1,6 +1,7 @@
 package querqy.rewrite.lookup.preprocessing;
 
 import querqy.LowerCaseCharSequence;
+import querqy.model.Term;
 
 public class LowerCasePreprocessor implements LookupPreprocessor {
 
@@ -8,7 +9,19 @@ public class LowerCasePreprocessor implements LookupPreprocessor {
 
     @Override
     public CharSequence process(final CharSequence charSequence) {
-        return new LowerCaseCharSequence(charSequence);
+        return LowerCaseCharSequence.lowerCase(charSequence);
+    }
+
+    @Override
+    public void appendProcessed(final CharSequence charSequence, final StringBuilder buffer) {
+        if (charSequence instanceof Term) {
+            buffer.append(((Term) charSequence).getLowerCaseValue());
+            return;
+        }
+        for (int i = 0, len = charSequence.length(); i < len; i++) {
+            final char ch = charSequence.charAt(i);
+            buffer.append(Character.isLowerCase(ch) ? ch : Character.toLowerCase(ch));
+        }
     }
 
     public static LowerCasePreprocessor create() {
@@ -12,8 +12,6 @@ import querqy.trie.States;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 
 /**
@@ -25,6 +23,8 @@ import java.util.stream.Stream;
  * for a certain subsequence, the state is passed back to the collector for subsequent lookups. Given the collector
  * returns a state for subsequence A, this state will be passed for subsequent lookups for the sequences A B and A C.
  *
+ * Terms that do not match any input in the trie map do not cause any object allocation in this class, term lists for
+ * matches are only created when a match is collected.
  */
 public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
 
@@ -36,7 +36,8 @@ public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
     private final TrieMapSequenceLookup<T> trieMapSequenceLookup;
     private final TrieMapMatchCollector<T> matchCollector;
 
-    private List<TrieMapSequence<T>> previousSequences = List.of();
+    // the two lists are swapped after each clause instead of creating new lists
+    private List<TrieMapSequence<T>> previousSequences = new ArrayList<>();
     private List<TrieMapSequence<T>> sequences = new ArrayList<>();
 
     TrieMapLookupQueryVisitor(
@@ -77,12 +78,11 @@ public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
     }
 
     private void refreshSequenceLists() {
+        previousSequences.clear();
         if (!sequences.isEmpty()) {
+            final List<TrieMapSequence<T>> swap = previousSequences;
             previousSequences = sequences;
-            sequences = new ArrayList<>();
-
-        } else if (!previousSequences.isEmpty()) {
-            previousSequences = new ArrayList<>();
+            sequences = swap;
         }
     }
 
@@ -113,7 +113,7 @@ public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
         final States<T> states = trieMapSequenceLookup.evaluateTerm(term);
 
         if (isPartialMatch(states)) {
-            sequences.add(TrieMapSequence.of(states, List.of(term)));
+            sequences.add(TrieMapSequence.of(states, term));
         }
 
         if (hasMatch(states)) {
@@ -122,11 +122,12 @@ public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
     }
 
     private void visitTermWithPreviousSequences(final Term term) {
-        for (final TrieMapSequence<T> previousSequence : previousSequences) {
+        for (int i = 0, len = previousSequences.size(); i < len; i++) {
+            final TrieMapSequence<T> previousSequence = previousSequences.get(i);
             final States<T> states = trieMapSequenceLookup.evaluateNextTerm(previousSequence, term);
 
             if (isPartialMatch(states)) {
-                sequences.add(TrieMapSequence.of(states, concat(previousSequence.getTerms(), term)));
+                sequences.add(previousSequence.append(states, term));
             }
 
             if (hasMatch(states)) {
@@ -142,11 +143,4 @@ public class TrieMapLookupQueryVisitor<T> extends AbstractNodeVisitor<Void> {
     private boolean hasMatch(final States<T> states) {
         return states.getStateForCompleteSequence().isFinal() || states.getPrefixes() != null;
     }
-
-    private List<Term> concat(final List<Term> terms, final Term term) {
-        return Stream.concat(
-                terms.stream(),
-                Stream.of(term)
-        ).collect(Collectors.toList());
-    }
 }
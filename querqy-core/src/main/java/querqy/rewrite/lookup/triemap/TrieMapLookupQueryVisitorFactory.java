@@ -22,12 +22,14 @@ public class TrieMapLookupQueryVisitorFactory<ValueT> {
         return new TrieMapLookupQueryVisitor<>(
                 booleanQuery,
                 lookupConfig,
-                createAutomatonWrapper(),
+                createSequenceLookup(),
                 new TrieMapMatchCollector<>()
         );
     }
 
-    private TrieMapSequenceLookup<ValueT> createAutomatonWrapper() {
+    // one lookup per request: its buffer is reused by all lookups of the request, but it must not outlive the
+    // request on a pooled thread, where it would keep the trie map of a reloaded rewriter reachable
+    private TrieMapSequenceLookup<ValueT> createSequenceLookup() {
         return new TrieMapSequenceLookup<>(trieMap, lookupConfig);
     }
 
@@ -35,6 +37,10 @@ public class TrieMapLookupQueryVisitorFactory<ValueT> {
         return trieMap;
     }
 
+    public LookupConfig getLookupConfig() {
+        return lookupConfig;
+    }
+
     public static <ValueT> TrieMapLookupQueryVisitorFactory<ValueT> of(final TrieMap<ValueT> trieMap, final LookupConfig lookupConfig) {
         return new TrieMapLookupQueryVisitorFactory<>(trieMap, lookupConfig);
     }
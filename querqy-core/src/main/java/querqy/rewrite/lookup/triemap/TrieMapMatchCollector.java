@@ -1,5 +1,6 @@
 package querqy.rewrite.lookup.triemap;
 
+import querqy.model.Term;
 import querqy.rewrite.commonrules.model.TermMatch;
 import querqy.rewrite.commonrules.model.TermMatches;
 import querqy.rewrite.lookup.model.Match;
@@ -8,8 +9,6 @@ import querqy.trie.State;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class TrieMapMatchCollector<ValueT> {
 
@@ -18,8 +17,7 @@ public class TrieMapMatchCollector<ValueT> {
     TrieMapMatchCollector() {}
 
     public void collect(final TrieMapEvaluation<ValueT> trieMapEvaluation) {
-        MatchExtractor.of(trieMapEvaluation).extractMatches()
-                .forEach(matches::add);
+        MatchExtractor.of(trieMapEvaluation, matches).extractMatches();
     }
 
     public List<Match<ValueT>> getMatches() {
@@ -30,16 +28,16 @@ public class TrieMapMatchCollector<ValueT> {
 
         private final TrieMapEvaluation<T> trieMapEvaluation;
 
-        private final Stream.Builder<Match<T>> matches = Stream.builder();
+        private final List<Match<T>> matches;
 
-        private MatchExtractor(final TrieMapEvaluation<T> trieMapEvaluation) {
+        private MatchExtractor(final TrieMapEvaluation<T> trieMapEvaluation, final List<Match<T>> matches) {
             this.trieMapEvaluation = trieMapEvaluation;
+            this.matches = matches;
         }
 
-        public Stream<Match<T>> extractMatches() {
+        public void extractMatches() {
             addCompleteMatch();
             addPrefixMatches();
-            return matches.build();
         }
 
         private void addCompleteMatch() {
@@ -50,14 +48,20 @@ public class TrieMapMatchCollector<ValueT> {
         }
 
         private TermMatches createTermMatches(final int matchIndex) {
-            return Stream
-                    .concat(
-                            trieMapEvaluation.getPreviousTerms().stream()
-                                    .map(TermMatch::new),
-                            Stream.of(createLastTermMatch(matchIndex))
-                    )
-                    .filter(TermMatch::isExpandable)
-                    .collect(Collectors.toCollection(TermMatches::new));
+            final TermMatches termMatches = new TermMatches();
+            final List<Term> previousTerms = trieMapEvaluation.getPreviousTerms();
+            for (int i = 0, len = previousTerms.size(); i < len; i++) {
+                final TermMatch termMatch = new TermMatch(previousTerms.get(i));
+                if (termMatch.isExpandable()) {
+                    termMatches.add(termMatch);
+                }
+            }
+
+            final TermMatch lastTermMatch = createLastTermMatch(matchIndex);
+            if (lastTermMatch.isExpandable()) {
+                termMatches.add(lastTermMatch);
+            }
+            return termMatches;
         }
 
         private TermMatch createLastTermMatch(final int matchIndex) {
@@ -67,7 +71,12 @@ public class TrieMapMatchCollector<ValueT> {
         }
 
         private void addPrefixMatches() {
-            for (final State<T> prefixState : getPrefixStates()) {
+            final List<State<T>> prefixStates = trieMapEvaluation.getStates().getPrefixes();
+            if (prefixStates == null) {
+                return;
+            }
+
+            for (final State<T> prefixState : prefixStates) {
                 final T value = prefixState.getValue();
 
                 if (value != null) {
@@ -76,13 +85,9 @@ public class TrieMapMatchCollector<ValueT> {
             }
         }
 
-        private List<State<T>> getPrefixStates() {
-            final List<State<T>> prefixMatches = trieMapEvaluation.getStates().getPrefixes();
-            return prefixMatches == null ? List.of() : prefixMatches;
-        }
-
-        public static <T> MatchExtractor<T> of(final TrieMapEvaluation<T> trieMapEvaluation) {
-            return new MatchExtractor<>(trieMapEvaluation);
+        public static <T> MatchExtractor<T> of(final TrieMapEvaluation<T> trieMapEvaluation,
+                                               final List<Match<T>> matches) {
+            return new MatchExtractor<>(trieMapEvaluation, matches);
         }
     }
 
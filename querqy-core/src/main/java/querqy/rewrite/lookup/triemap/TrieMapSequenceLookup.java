@@ -1,18 +1,24 @@
 package querqy.rewrite.lookup.triemap;
 
-import querqy.CompoundCharSequence;
 import querqy.model.Term;
 import querqy.rewrite.lookup.LookupConfig;
 import querqy.rewrite.lookup.triemap.model.TrieMapSequence;
 import querqy.trie.States;
 import querqy.trie.TrieMap;
 
-
+/**
+ * Looks up terms and term sequences in a {@link TrieMap}. The lookup keys are written into a buffer that is reused
+ * across lookups, which makes instances of this class stateful: they must not be shared between threads.
+ *
+ * @param <ValueT> The type of the values in the map
+ */
 public class TrieMapSequenceLookup<ValueT> {
 
     private final TrieMap<ValueT> trieMap;
     private final LookupConfig lookupConfig;
 
+    private final StringBuilder lookupBuffer = new StringBuilder();
+
     TrieMapSequenceLookup(final TrieMap<ValueT> trieMap, final LookupConfig lookupConfig) {
         this.trieMap = trieMap;
         this.lookupConfig = lookupConfig;
@@ -20,21 +26,25 @@ public class TrieMapSequenceLookup<ValueT> {
 
     public States<ValueT> evaluateTerm(final Term term) {
         // TODO: why with field?
-        final CharSequence lookupCharSequence = createLookupCharSequence(term);
-        return trieMap.get(lookupCharSequence);
+        lookupBuffer.setLength(0);
+        appendLookupCharSequence(term);
+        return trieMap.get(lookupBuffer);
     }
 
     public States<ValueT> evaluateNextTerm(final TrieMapSequence<ValueT> sequence, final Term term) {
-        final CharSequence lookupCharSequence = new CompoundCharSequence(
-                null, " ", createLookupCharSequence(term));
+        lookupBuffer.setLength(0);
+        lookupBuffer.append(' ');
+        appendLookupCharSequence(term);
 
-        return trieMap.get(lookupCharSequence, sequence.getStates().getStateForCompleteSequence());
+        return trieMap.get(lookupBuffer, sequence.getStates().getStateForCompleteSequence());
     }
 
-    private CharSequence createLookupCharSequence(final Term term) {
-        final CharSequence value = lookupConfig.getPreprocessor().process(term);
+    private void appendLookupCharSequence(final Term term) {
         final String field = term.getField();
-        return (field == null) ? value : new CompoundCharSequence(":", field, value);
+        if (field != null) {
+            lookupBuffer.append(field).append(':');
+        }
+        lookupConfig.getPreprocessor().appendProcessed(term, lookupBuffer);
     }
 
 }
@@ -3,16 +3,28 @@ package querqy.rewrite.lookup.triemap.model;
 import querqy.model.Term;
 import querqy.trie.States;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A sequence of terms that has led to a known state in the trie map. Sequences are extended by linking to the
+ * previous sequence instead of copying the terms, the list of terms is only created if it is requested.
+ *
+ * @param <T> The type of the values in the trie map
+ */
 public class TrieMapSequence<T> {
 
     private final States<T> states;
-    private final List<Term> terms;
+    private final TrieMapSequence<T> previous;
+    private final Term lastTerm;
+    private final int length;
 
-    private TrieMapSequence(final States<T> states, final List<Term> terms) {
+    private TrieMapSequence(final States<T> states, final TrieMapSequence<T> previous, final Term lastTerm) {
         this.states = states;
-        this.terms = terms;
+        this.previous = previous;
+        this.lastTerm = lastTerm;
+        this.length = previous == null ? 1 : previous.length + 1;
     }
 
     public States<T> getStates() {
@@ -20,10 +32,32 @@ public class TrieMapSequence<T> {
     }
 
     public List<Term> getTerms() {
-        return terms;
+        if (previous == null) {
+            return Collections.singletonList(lastTerm);
+        }
+
+        final Term[] terms = new Term[length];
+        TrieMapSequence<T> sequence = this;
+        for (int i = length - 1; i >= 0; i--) {
+            terms[i] = sequence.lastTerm;
+            sequence = sequence.previous;
+        }
+
+        return Arrays.asList(terms);
     }
 
-    public static <T> TrieMapSequence<T> of(final States<T> states, final List<Term> terms) {
-        return new TrieMapSequence<>(states, terms);
+    /**
+     * Create a new sequence that consists of the terms of this sequence plus the given term.
+     *
+     * @param states The states for the new sequence
+     * @param term The term to append
+     * @return The extended sequence
+     */
+    public TrieMapSequence<T> append(final States<T> states, final Term term) {
+        return new TrieMapSequence<>(states, this, term);
+    }
+
+    public static <T> TrieMapSequence<T> of(final States<T> states, final Term term) {
+        return new TrieMapSequence<>(states, null, term);
     }
 }
@@ -4,7 +4,19 @@ import querqy.rewrite.rules.rule.skeleton.RuleSkeleton;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface RuleSkeletonParser {
     List<RuleSkeleton> parse() throws IOException;
+
+    /**
+     * Passes each rule skeleton to the consumer. Parsers that read the rules incrementally pass a skeleton as soon as
+     * it has been parsed, so that the rule skeletons don't have to be held in memory all at once.
+     *
+     * @param consumer The consumer of the rule skeletons, in the order of the rules
+     * @throws IOException if the rules cannot be read or parsed
+     */
+    default void parse(final Consumer<RuleSkeleton> consumer) throws IOException {
+        parse().forEach(consumer);
+    }
 }
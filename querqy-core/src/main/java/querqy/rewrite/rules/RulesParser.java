@@ -6,31 +6,58 @@ import lombok.RequiredArgsConstructor;
 import querqy.rewrite.commonrules.model.InstructionsSupplier;
 import querqy.rewrite.commonrules.model.RulesCollectionBuilder;
 import querqy.rewrite.rules.rule.RuleParser;
+import querqy.rewrite.rules.rule.RuleParser.ParsedRule;
 import querqy.rewrite.rules.rule.skeleton.RuleSkeleton;
 import querqy.trie.TrieMap;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
+/**
+ * <p>Parses rules into a {@link TrieMap}.</p>
+ *
+ * <p>The rule skeletons are parsed into rules while they are being read. If a {@link ForkJoinPool} is set, the rule
+ * skeletons are split into chunks of {@link #CHUNK_SIZE} skeletons that are parsed concurrently. The parsed rules
+ * are added to the {@link RuleParser} in the order of the skeletons, so that rule order numbers, IDs and the first
+ * reported error are the same as for sequential parsing.</p>
+ */
 @RequiredArgsConstructor(staticName = "of", access = AccessLevel.PRIVATE)
 public class RulesParser {
 
+    static final int CHUNK_SIZE = 1024;
+
     private final RuleSkeletonParser ruleSkeletonParser;
     private final RuleParser ruleParser;
     private final RulesCollectionBuilder rulesCollectionBuilder;
+    // null if rules are parsed sequentially
+    private final ForkJoinPool forkJoinPool;
 
     private int ruleOrderNumber = 0;
 
     @Builder
     private static RulesParser create(final RuleSkeletonParser ruleSkeletonParser,
                                       final RuleParser ruleParser,
-                                      final RulesCollectionBuilder rulesCollectionBuilder) {
-        return RulesParser.of(ruleSkeletonParser, ruleParser, rulesCollectionBuilder);
+                                      final RulesCollectionBuilder rulesCollectionBuilder,
+                                      final int firstRuleOrderNumber,
+                                      final ForkJoinPool forkJoinPool) {
+        final RulesParser rulesParser = RulesParser.of(ruleSkeletonParser, ruleParser, rulesCollectionBuilder,
+                forkJoinPool);
+        rulesParser.ruleOrderNumber = firstRuleOrderNumber;
+        return rulesParser;
     }
 
     public TrieMap<InstructionsSupplier> parse() throws IOException {
-        final List<RuleSkeleton> skeletons = ruleSkeletonParser.parse();
-        parseRules(skeletons);
+        if (forkJoinPool != null) {
+            parseRulesConcurrently();
+        } else {
+            ruleSkeletonParser.parse(skeleton -> ruleParser.parse(skeleton, ruleOrderNumber++));
+        }
 
         return createTrieMap();
     }
@@ -41,8 +68,108 @@ public class RulesParser {
         }
     }
 
+    private void parseRulesConcurrently() throws IOException {
+        final ChunkSubmitter chunkSubmitter = new ChunkSubmitter();
+        try {
+            ruleSkeletonParser.parse(chunkSubmitter);
+        } catch (final IOException e) {
+            // an error in a rule before the line that cannot be read is reported first, like in sequential parsing
+            chunkSubmitter.finish();
+            throw e;
+        }
+        chunkSubmitter.finish();
+    }
+
+    private ParsedChunk parseChunk(final List<RuleSkeleton> skeletons, final int firstRuleOrderNumber) {
+        final List<ParsedRule> parsedRules = new ArrayList<>(skeletons.size());
+        int nextRuleOrderNumber = firstRuleOrderNumber;
+        try {
+            for (final RuleSkeleton skeleton : skeletons) {
+                parsedRules.add(ruleParser.parseSkeleton(skeleton, nextRuleOrderNumber++));
+            }
+            return new ParsedChunk(parsedRules, null);
+
+        } catch (final RuntimeException e) {
+            // keep the rules before the failing one so that an error in an earlier rule is still reported first
+            return new ParsedChunk(parsedRules, e);
+        }
+    }
+
+    /**
+     * Collects the skeletons into chunks and submits each full chunk to the fork-join pool while the skeletons are
+     * still being read. Only a bounded number of chunks is pending, so that the skeletons of all rules are never held
+     * in memory at the same time.
+     */
+    private class ChunkSubmitter implements Consumer<RuleSkeleton> {
+
+        private final Deque<ForkJoinTask<ParsedChunk>> tasks = new ArrayDeque<>();
+        private final int maxPendingChunks = 2 * forkJoinPool.getParallelism();
+        private List<RuleSkeleton> chunk = new ArrayList<>(CHUNK_SIZE);
+        private boolean hasSubmittedChunks = false;
+
+        @Override
+        public void accept(final RuleSkeleton skeleton) {
+            chunk.add(skeleton);
+            if (chunk.size() == CHUNK_SIZE) {
+                submit(chunk);
+                chunk = new ArrayList<>(CHUNK_SIZE);
+                while (tasks.size() > maxPendingChunks) {
+                    addNextChunk();
+                }
+            }
+        }
+
+        void finish() {
+            if (!hasSubmittedChunks) {
+                // not more than one chunk - not worth forking
+                parseRules(chunk);
+                return;
+            }
+            if (!chunk.isEmpty()) {
+                submit(chunk);
+            }
+            while (!tasks.isEmpty()) {
+                addNextChunk();
+            }
+        }
+
+        private void submit(final List<RuleSkeleton> skeletons) {
+            final int firstRuleOrderNumber = ruleOrderNumber;
+            ruleOrderNumber += skeletons.size();
+            tasks.add(forkJoinPool.submit(() -> parseChunk(skeletons, firstRuleOrderNumber)));
+            hasSubmittedChunks = true;
+        }
+
+        private void addNextChunk() {
+            final ParsedChunk parsedChunk = tasks.poll().join();
+            try {
+                parsedChunk.parsedRules.forEach(ruleParser::add);
+            } catch (final RuntimeException e) {
+                cancelPendingChunks();
+                throw e;
+            }
+            if (parsedChunk.exception != null) {
+                cancelPendingChunks();
+                throw parsedChunk.exception;
+            }
+        }
+
+        private void cancelPendingChunks() {
+            tasks.forEach(task -> task.cancel(false));
+            tasks.clear();
+        }
+    }
+
     private TrieMap<InstructionsSupplier> createTrieMap() {
         ruleParser.finish().forEach(rulesCollectionBuilder::addRule);
         return rulesCollectionBuilder.getTrieMap();
     }
+
+    @RequiredArgsConstructor
+    private static class ParsedChunk {
+
+        private final List<ParsedRule> parsedRules;
+        private final RuntimeException exception;
+
+    }
 }
@@ -16,6 +16,8 @@ public class RulesParserFactory {
                         RuleParserFactory.of(rulesParserConfig.getRuleParserConfig()).createRuleParser())
                 .rulesCollectionBuilder(
                         rulesParserConfig.getRulesCollectionBuilder())
+                .firstRuleOrderNumber(rulesParserConfig.getFirstRuleOrderNumber())
+                .forkJoinPool(rulesParserConfig.getForkJoinPool())
                 .build();
     }
 }
@@ -6,6 +6,8 @@ import lombok.Getter;
 import lombok.NonNull;
 import querqy.rewrite.commonrules.model.RulesCollectionBuilder;
 
+import java.util.concurrent.ForkJoinPool;
+
 @Builder
 @Getter
 public class RulesParserConfig {
@@ -15,4 +17,11 @@ public class RulesParserConfig {
 
     @NonNull private final RulesCollectionBuilder rulesCollectionBuilder;
 
+    // the order number of the first rule, rules that are added to existing rules continue their numbering
+    @Default private final int firstRuleOrderNumber = 0;
+
+    // the pool for parsing large rule sets concurrently, null to parse sequentially. The QuerqyParserFactory of the
+    // RuleParserConfig must be thread-safe if this is set.
+    private final ForkJoinPool forkJoinPool;
+
 }
@@ -16,6 +16,9 @@ public class PropertyParser {
     public static final String ID = "_id";
     public static final String LOG_MESSAGE = "_log";
 
+    // creating the configuration is expensive - share it between all properties created by this parser
+    private final Configuration jsonPathConfiguration = createJsonPathConfiguration();
+
     public InstructionsProperties parse(final Map<String, Object> properties,
                                         final String defaultId) {
 
@@ -23,7 +26,7 @@ public class PropertyParser {
         propertiesWithDefaults.putIfAbsent(ID, defaultId);
         propertiesWithDefaults.putIfAbsent(LOG_MESSAGE, propertiesWithDefaults.get(ID));
 
-        return new InstructionsProperties(propertiesWithDefaults, createJsonPathConfiguration());
+        return new InstructionsProperties(propertiesWithDefaults, jsonPathConfiguration);
     }
 
     private Configuration createJsonPathConfiguration() {
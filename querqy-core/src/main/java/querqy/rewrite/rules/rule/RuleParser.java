@@ -25,6 +25,13 @@ import java.util.stream.Collectors;
 
 import static querqy.rewrite.rules.property.PropertyParser.ID;
 
+/**
+ * <p>Parses {@link RuleSkeleton}s into {@link Rule}s.</p>
+ *
+ * <p>{@link #parseSkeleton(RuleSkeleton, int)} does not change the state of this parser and can be called
+ * concurrently. The {@link ParsedRule}s must then be passed to {@link #add(ParsedRule)} one after the other and in
+ * the order of their rule order numbers, which checks for duplicate IDs and registers boolean input literals.</p>
+ */
 @RequiredArgsConstructor(staticName = "of", access = AccessLevel.PRIVATE)
 public class RuleParser {
 
@@ -35,9 +42,6 @@ public class RuleParser {
     private final InstructionParser instructionParserPrototype;
     private final PropertyParser propertyParser;
 
-    private RuleSkeleton ruleSkeleton;
-    private Integer ruleOrderNumber;
-
     @Builder
     private static RuleParser create(final InputParserAdapter inputParser,
                                      final InstructionParser instructionParser,
@@ -47,41 +51,56 @@ public class RuleParser {
     }
 
     public void parse(final RuleSkeleton ruleSkeleton, final int ruleOrderNumber) {
-        this.ruleSkeleton = ruleSkeleton;
-        this.ruleOrderNumber = ruleOrderNumber;
+        add(parseSkeleton(ruleSkeleton, ruleOrderNumber));
+    }
+
+    public ParsedRule parseSkeleton(final RuleSkeleton ruleSkeleton, final int ruleOrderNumber) {
+        final InputAdapter input = parseInput(ruleSkeleton);
+        final InstructionsProperties instructionsProperties = parseInstructionsProperties(ruleSkeleton,
+                ruleOrderNumber);
+        final Instructions instructions = parseInstructions(ruleSkeleton, ruleOrderNumber, input,
+                instructionsProperties);
+
+        if (input.isBooleanInput()) {
+            evaluateBooleanInput(ruleSkeleton, input);
+        }
 
-        final InputAdapter input = parseInput();
-        final InstructionsProperties instructionsProperties = parseInstructionsProperties();
-        final Instructions instructions = parseInstructions(input, instructionsProperties);
+        return ParsedRule.of(input, instructions);
+    }
+
+    public void add(final ParsedRule parsedRule) {
+        validateId(parsedRule.instructions.getId());
 
+        final InputAdapter input = parsedRule.input;
         if (input.isBooleanInput()) {
-            evaluateBooleanInput(input);
-            createBooleanInputLiterals(input, instructions);
+            createBooleanInputLiterals(input, parsedRule.instructions);
 
         } else {
-            rules.add(Rule.of((Input.SimpleInput) input.getInput(), new InstructionsSupplier(instructions)));
+            rules.add(Rule.of((Input.SimpleInput) input.getInput(), new InstructionsSupplier(parsedRule.instructions)));
         }
     }
 
-    private InputAdapter parseInput() {
+    private InputAdapter parseInput(final RuleSkeleton ruleSkeleton) {
         return inputParserPrototype
                 .with(ruleSkeleton.getInputSkeleton())
                 .parse();
     }
 
-    private InstructionsProperties parseInstructionsProperties() {
-        return propertyParser.parse(ruleSkeleton.getProperties(), createDefaultId());
+    private InstructionsProperties parseInstructionsProperties(final RuleSkeleton ruleSkeleton,
+                                                               final int ruleOrderNumber) {
+        return propertyParser.parse(ruleSkeleton.getProperties(), createDefaultId(ruleSkeleton, ruleOrderNumber));
     }
 
-    private String createDefaultId() {
+    private String createDefaultId(final RuleSkeleton ruleSkeleton, final int ruleOrderNumber) {
         return ruleSkeleton.getInputSkeleton() + "#" + ruleOrderNumber;
     }
 
-    private Instructions parseInstructions(final InputAdapter input,
+    private Instructions parseInstructions(final RuleSkeleton ruleSkeleton,
+                                           final int ruleOrderNumber,
+                                           final InputAdapter input,
                                            final InstructionsProperties instructionsProperties) {
 
         final Object id = getId(instructionsProperties);
-        validateId(id);
 
         final List<Instruction> instructions = instructionParserPrototype
                 .with(input.getInputTerms(), ruleSkeleton.getInstructionSkeletons())
@@ -103,7 +122,7 @@ public class RuleParser {
         knownIds.add(id);
     }
 
-    private void evaluateBooleanInput(final InputAdapter input) {
+    private void evaluateBooleanInput(final RuleSkeleton ruleSkeleton, final InputAdapter input) {
         final List<InstructionType> instructionTypes = ruleSkeleton.getInstructionSkeletons()
                 .stream()
                 .map(InstructionSkeleton::getType)
@@ -121,4 +140,15 @@ public class RuleParser {
         return rules;
     }
 
+    /**
+     * A rule that has been parsed but that has not been added to the rules of the parser yet.
+     */
+    @RequiredArgsConstructor(staticName = "of", access = AccessLevel.PRIVATE)
+    public static class ParsedRule {
+
+        private final InputAdapter input;
+        private final Instructions instructions;
+
+    }
+
 }
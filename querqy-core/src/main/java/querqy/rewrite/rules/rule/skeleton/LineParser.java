@@ -1,10 +1,17 @@
 package querqy.rewrite.rules.rule.skeleton;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface LineParser {
 
     void parse(final String line);
     List<RuleSkeleton> finish();
 
+    /**
+     * Passes the rule skeletons that have been completed so far to the consumer and removes them from this parser.
+     * {@link #finish()} only returns the rule skeletons that haven't been passed to a consumer.
+     */
+    default void drainTo(final Consumer<RuleSkeleton> consumer) {}
+
 }
@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class MultiLineParser implements LineParser {
@@ -138,6 +139,14 @@ public class MultiLineParser implements LineParser {
         return ruleSkeletons;
     }
 
+    @Override
+    public void drainTo(final Consumer<RuleSkeleton> consumer) {
+        if (!ruleSkeletons.isEmpty()) {
+            ruleSkeletons.forEach(consumer);
+            ruleSkeletons.clear();
+        }
+    }
+
     private boolean hasInitiatedRuleBuilding() {
         return ruleSkeletonBuilder != null;
     }
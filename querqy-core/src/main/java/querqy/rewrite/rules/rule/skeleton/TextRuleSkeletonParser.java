@@ -1,18 +1,19 @@
 package querqy.rewrite.rules.rule.skeleton;
 
 import lombok.Builder;
-import lombok.Singular;
 import querqy.rewrite.rules.RuleParseException;
 import querqy.rewrite.rules.RuleSkeletonParser;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class TextRuleSkeletonParser implements RuleSkeletonParser {
 
@@ -24,42 +25,78 @@ public class TextRuleSkeletonParser implements RuleSkeletonParser {
 
     private String line;
     private int currentLineNumber = 0;
+    private int firstLineNumberOfRule = 0;
+    private int lastNonEmptyLineNumber = 0;
 
     @Builder
     protected TextRuleSkeletonParser(final Reader rulesContentReader,
                                      final LineParser lineParser,
-                                     @Singular final Map<Integer, Integer> lineNumberMappings) {
+                                     final Map<Integer, Integer> lineNumberMappings) {
         this.rulesContentReader = rulesContentReader;
         this.lineParser = lineParser;
-        this.lineNumberMappings = lineNumberMappings;
+        // not copied, the mappings can be filled while the rules are being read
+        this.lineNumberMappings = lineNumberMappings != null ? lineNumberMappings : Collections.emptyMap();
     }
 
     @Override
     public List<RuleSkeleton> parse() throws IOException {
-        try {
-            final List<String> lines = ruleContentAsLines();
-            parseLines(lines);
-            return lineParser.finish();
+        final List<RuleSkeleton> ruleSkeletons = new ArrayList<>();
+        parse(ruleSkeletons::add);
+        return ruleSkeletons;
+    }
 
-        } catch (final RuleParseException e) {
-            throw new IOException("An error occurred parsing line " + getCurrentLineNumber(), e);
-        }
+    /**
+     * Reads the rules line by line and passes each rule skeleton to the consumer once the next rule starts. Errors
+     * thrown by the consumer are not related to the current line and are passed on unchanged.
+     */
+    @Override
+    public void parse(final Consumer<RuleSkeleton> consumer) throws IOException {
+        parseWithLineNumbers((ruleSkeleton, firstLineNumber, lastLineNumber) -> consumer.accept(ruleSkeleton));
     }
 
-    private List<String> ruleContentAsLines() throws IOException {
+    /**
+     * Like {@link #parse(Consumer)}, but also passes the numbers of the first and of the last line of each rule to
+     * the consumer. Blank lines and comments before and after a rule don't count as lines of the rule. The numbers
+     * are the numbers of the lines that are read, the line number mappings are not applied. This requires a
+     * {@link LineParser} that passes on each rule as soon as the next rule starts, like the {@link MultiLineParser}.
+     */
+    public void parseWithLineNumbers(final LineNumbersConsumer consumer) throws IOException {
         try (final BufferedReader bufferedContentReader = new BufferedReader(rulesContentReader)) {
-            return bufferedContentReader
-                    .lines()
-                    .collect(Collectors.toList());
+            String newLine;
+            while ((newLine = bufferedContentReader.readLine()) != null) {
+                line = newLine;
+                incrementCurrentLineNumber();
+                try {
+                    parseLine();
+                } catch (final RuleParseException e) {
+                    throw new IOException("An error occurred parsing line " + getCurrentLineNumber(), e);
+                }
+                if (!line.isEmpty()) {
+                    drainTo(consumer);
+                    lastNonEmptyLineNumber = currentLineNumber;
+                }
+            }
+        }
+
+        final List<RuleSkeleton> lastRuleSkeletons;
+        try {
+            lastRuleSkeletons = lineParser.finish();
+        } catch (final RuleParseException e) {
+            throw new IOException("An error occurred parsing line " + getCurrentLineNumber(), e);
         }
+        lastRuleSkeletons.forEach(ruleSkeleton ->
+                consumer.accept(ruleSkeleton, firstLineNumberOfRule, lastNonEmptyLineNumber));
     }
 
-    protected void parseLines(final List<String> lines) {
-        for (final String newLine : lines) {
-            line = newLine;
-            incrementCurrentLineNumber();
-            parseLine();
+    private void drainTo(final LineNumbersConsumer consumer) {
+        if (firstLineNumberOfRule == 0) {
+            firstLineNumberOfRule = currentLineNumber;
         }
+        // the current line starts the next rule
+        lineParser.drainTo(ruleSkeleton -> {
+            consumer.accept(ruleSkeleton, firstLineNumberOfRule, lastNonEmptyLineNumber);
+            firstLineNumberOfRule = currentLineNumber;
+        });
     }
 
     private void incrementCurrentLineNumber() {
@@ -93,4 +130,10 @@ public class TextRuleSkeletonParser implements RuleSkeletonParser {
     private int getCurrentLineNumber() {
         return lineNumberMappings.getOrDefault(currentLineNumber, currentLineNumber);
     }
+
+    @FunctionalInterface
+    public interface LineNumbersConsumer {
+
+        void accept(RuleSkeleton ruleSkeleton, int firstLineNumber, int lastLineNumber);
+    }
 }
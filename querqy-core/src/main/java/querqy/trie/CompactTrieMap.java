@@ -0,0 +1,694 @@
+package querqy.trie;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * <p>A read-only {@link TrieMap} that stores its nodes in primitive arrays instead of linked {@link Node} objects.</p>
+ *
+ * <p>Nodes are numbered in breadth-first order so that the children of a node occupy a contiguous range of ids,
+ * sorted by their character. Lookups use a binary search over the children of a node instead of scanning a linked
+ * list of siblings. Prefix values are rare and stored in a sparse table that is only consulted for nodes that are
+ * flagged in a bit set.</p>
+ *
+ * <p>Instances are created from a fully populated {@link TrieMap} using {@link #of(TrieMap)}. The values are shared
+ * with the source map, the nodes are not. {@link #update(Map, Map)} derives a new instance that differs from an
+ * existing one in a few keys without touching the existing instance, which can still be used by concurrent lookups.
+ * {@link #put(CharSequence, Object)} and {@link #putPrefix(CharSequence, Object)} throw an
+ * {@link UnsupportedOperationException}. The {@link State}s that are returned by this map reference the matching node
+ * by {@link State#nodeId} and can only be passed back to {@link #get(CharSequence, State)} of the same instance.</p>
+ *
+ * <p>The arrays can be written with {@link #writeTables(DataOutput, ToIntFunction)} and read back with
+ * {@link #readTables(ByteBuffer, IntFunction)} without building the trie again.</p>
+ */
+public class CompactTrieMap<T> extends TrieMap<T> {
+
+    private static final int ROOT = 0;
+
+    /**
+     * Marks a removed value in the overlay of {@link #update(Map, Map)}
+     */
+    private static final Object REMOVED = new Object();
+
+    /**
+     * Receives the entries of the map in {@link #forEachEntry(EntryVisitor)}
+     */
+    @FunctionalInterface
+    public interface EntryVisitor<T> {
+
+        /**
+         * @param key The key of the entry. The sequence is only valid during the call.
+         * @param value The value
+         * @param isPrefix true iff the value is a prefix value
+         */
+        void visit(CharSequence key, T value, boolean isPrefix);
+    }
+
+    /**
+     * The character of each node. Node 0 is a virtual root without a character.
+     */
+    private final char[] chars;
+
+    /**
+     * The children of node i are the nodes childrenStart[i] (inclusive) to childrenStart[i + 1] (exclusive)
+     */
+    private final int[] childrenStart;
+
+    private final Object[] values;
+
+    /**
+     * A bit per node that is set if the node holds a prefix value
+     */
+    private final long[] prefixFlags;
+
+    /**
+     * The sorted ids of the nodes that hold a prefix value, parallel to {@link #prefixValues}
+     */
+    private final int[] prefixNodeIds;
+    private final Object[] prefixValues;
+
+    private CompactTrieMap(final char[] chars, final int[] childrenStart, final Object[] values,
+                           final long[] prefixFlags, final int[] prefixNodeIds, final Object[] prefixValues) {
+        this.chars = chars;
+        this.childrenStart = childrenStart;
+        this.values = values;
+        this.prefixFlags = prefixFlags;
+        this.prefixNodeIds = prefixNodeIds;
+        this.prefixValues = prefixValues;
+    }
+
+    /**
+     * Create a compact, read-only copy of the given map. Further changes to the given map will not be visible in the
+     * copy but the values are shared between both maps.
+     *
+     * @param trieMap The map to copy
+     * @param <T> The value type
+     * @return The compact copy
+     */
+    public static <T> CompactTrieMap<T> of(final TrieMap<T> trieMap) {
+
+        if (trieMap instanceof CompactTrieMap) {
+            return (CompactTrieMap<T>) trieMap;
+        }
+
+        final Comparator<Node<T>> byCharacter = Comparator.comparingInt(node -> node.character);
+
+        // The queue holds all nodes in breadth-first order. Its index is the node id. The virtual root is represented
+        // by null.
+        final List<Node<T>> queue = new ArrayList<>();
+        queue.add(null);
+
+        final List<Integer> starts = new ArrayList<>();
+
+        for (int i = 0; i < queue.size(); i++) {
+            starts.add(queue.size());
+            final Node<T> node = queue.get(i);
+            Node<T> child = (node == null) ? trieMap.root : node.firstChild;
+            final int firstChildId = queue.size();
+            while (child != null) {
+                queue.add(child);
+                child = child.next;
+            }
+            queue.subList(firstChildId, queue.size()).sort(byCharacter);
+        }
+
+        final int numNodes = queue.size();
+        final char[] chars = new char[numNodes];
+        final int[] childrenStart = new int[numNodes + 1];
+        final Object[] values = new Object[numNodes];
+        final long[] prefixFlags = new long[(numNodes + 63) >>> 6];
+        int numPrefixes = 0;
+
+        for (int id = 1; id < numNodes; id++) {
+            final Node<T> node = queue.get(id);
+            chars[id] = node.character;
+            values[id] = node.value;
+            if (node.hasPrefix) {
+                prefixFlags[id >>> 6] |= 1L << id;
+                numPrefixes++;
+            }
+        }
+
+        for (int id = 0; id < numNodes; id++) {
+            childrenStart[id] = starts.get(id);
+        }
+        childrenStart[numNodes] = numNodes;
+
+        final int[] prefixNodeIds = new int[numPrefixes];
+        final Object[] prefixValues = new Object[numPrefixes];
+        int p = 0;
+        for (int id = 1; id < numNodes; id++) {
+            final Node<T> node = queue.get(id);
+            if (node.hasPrefix) {
+                prefixNodeIds[p] = id;
+                prefixValues[p] = node.prefixValue;
+                p++;
+            }
+        }
+
+        return new CompactTrieMap<>(chars, childrenStart, values, prefixFlags, prefixNodeIds, prefixValues);
+    }
+
+    /**
+     * <p>Write the node tables of this map. Values are written as the int reference that the valueRef function
+     * returns for them, null values as -1. The output is big-endian, like all {@link DataOutput}.</p>
+     *
+     * @param out The output
+     * @param valueRef Maps a value to a non-negative reference, which {@link #readTables(ByteBuffer, IntFunction)}
+     *                 will have to map back to the value
+     * @throws IOException if the output cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    public void writeTables(final DataOutput out, final ToIntFunction<? super T> valueRef) throws IOException {
+
+        final int numNodes = chars.length;
+        out.writeInt(numNodes);
+        for (final char ch : chars) {
+            out.writeChar(ch);
+        }
+        for (final int start : childrenStart) {
+            out.writeInt(start);
+        }
+        for (final Object value : values) {
+            out.writeInt(value == null ? -1 : valueRef.applyAsInt((T) value));
+        }
+
+        out.writeInt(prefixNodeIds.length);
+        for (final int nodeId : prefixNodeIds) {
+            out.writeInt(nodeId);
+        }
+        for (final Object prefixValue : prefixValues) {
+            out.writeInt(prefixValue == null ? -1 : valueRef.applyAsInt((T) prefixValue));
+        }
+    }
+
+    /**
+     * <p>Read node tables that were written by {@link #writeTables(DataOutput, ToIntFunction)}, starting at the
+     * current position of the buffer. The position is advanced to the end of the tables. The arrays are copied from
+     * the buffer in bulk, the trie is not built node by node.</p>
+     *
+     * @param buffer The buffer, must be in big-endian order
+     * @param valueForRef Maps the references of the values back to the values
+     * @param <T> The value type
+     * @return The map
+     * @throws IllegalArgumentException if the tables are inconsistent
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the tables
+     */
+    public static <T> CompactTrieMap<T> readTables(final ByteBuffer buffer,
+                                                   final IntFunction<? extends T> valueForRef) {
+
+        final int numNodes = buffer.getInt();
+        if (numNodes < 1) {
+            throw new IllegalArgumentException("Invalid number of nodes: " + numNodes);
+        }
+
+        final char[] chars = new char[numNodes];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + numNodes * Character.BYTES);
+
+        final int[] childrenStart = readInts(buffer, numNodes + 1);
+        for (int id = 0; id < numNodes; id++) {
+            // children follow their parent and the ranges are contiguous
+            if (childrenStart[id] <= id || childrenStart[id] > childrenStart[id + 1]) {
+                throw new IllegalArgumentException("Invalid children of node " + id);
+            }
+        }
+        if (childrenStart[numNodes] != numNodes) {
+            throw new IllegalArgumentException("Invalid end of children table");
+        }
+
+        final Object[] values = readValues(buffer, numNodes, valueForRef);
+
+        final int numPrefixes = buffer.getInt();
+        if (numPrefixes < 0 || numPrefixes > numNodes) {
+            throw new IllegalArgumentException("Invalid number of prefix values: " + numPrefixes);
+        }
+        final int[] prefixNodeIds = readInts(buffer, numPrefixes);
+        final long[] prefixFlags = new long[(numNodes + 63) >>> 6];
+        for (int p = 0; p < numPrefixes; p++) {
+            final int id = prefixNodeIds[p];
+            if (id <= ROOT || id >= numNodes || (p > 0 && id <= prefixNodeIds[p - 1])) {
+                throw new IllegalArgumentException("Invalid prefix node: " + id);
+            }
+            prefixFlags[id >>> 6] |= 1L << id;
+        }
+        final Object[] prefixValues = readValues(buffer, numPrefixes, valueForRef);
+
+        return new CompactTrieMap<>(chars, childrenStart, values, prefixFlags, prefixNodeIds, prefixValues);
+    }
+
+    private static int[] readInts(final ByteBuffer buffer, final int length) {
+        final int[] ints = new int[length];
+        buffer.asIntBuffer().get(ints);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return ints;
+    }
+
+    private static Object[] readValues(final ByteBuffer buffer, final int length,
+                                       final IntFunction<?> valueForRef) {
+        final int[] refs = readInts(buffer, length);
+        final Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            if (refs[i] >= 0) {
+                values[i] = valueForRef.apply(refs[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * <p>Create a copy of this map with some of the values and prefix values replaced.</p>
+     *
+     * <p>The changes are collected in a small linked {@link TrieMap} that is merged with the arrays of this map in a
+     * single breadth-first pass. Unchanged values are shared with this map and nodes that no longer lead to a value
+     * are dropped. This map is not modified.</p>
+     *
+     * @param valueUpdates The new values by key. A null value removes the value for the key.
+     * @param prefixValueUpdates The new prefix values by key. A null value removes the prefix value for the key.
+     * @return A new map that reflects the updates
+     */
+    @SuppressWarnings("unchecked")
+    public CompactTrieMap<T> update(final Map<? extends CharSequence, ? extends T> valueUpdates,
+                                    final Map<? extends CharSequence, ? extends T> prefixValueUpdates) {
+
+        final TrieMap<Object> overlay = new TrieMap<>();
+        int maxOverlayNodes = 0;
+        for (final Map.Entry<? extends CharSequence, ? extends T> entry : valueUpdates.entrySet()) {
+            overlay.put(entry.getKey(), entry.getValue() == null ? REMOVED : entry.getValue());
+            maxOverlayNodes += entry.getKey().length();
+        }
+        for (final Map.Entry<? extends CharSequence, ? extends T> entry : prefixValueUpdates.entrySet()) {
+            overlay.putPrefix(entry.getKey(), entry.getValue() == null ? REMOVED : entry.getValue());
+            maxOverlayNodes += entry.getKey().length();
+        }
+
+        if (maxOverlayNodes == 0) {
+            return this;
+        }
+
+        // Each node of the merged trie is backed by a node of this map (baseIds), a node of the overlay or both. The
+        // nodes are numbered in breadth-first order like in of(TrieMap).
+        final int maxNodes = chars.length + maxOverlayNodes;
+        final int[] baseIds = new int[maxNodes];
+        final Node<Object>[] overlayNodes = new Node[maxNodes];
+        final int[] parents = new int[maxNodes];
+        final int[] starts = new int[maxNodes];
+        final char[] mergedChars = new char[maxNodes];
+
+        final Comparator<Node<Object>> byCharacter = Comparator.comparingInt(node -> node.character);
+        final List<Node<Object>> overlayChildren = new ArrayList<>();
+
+        baseIds[ROOT] = ROOT;
+        int numNodes = 1;
+
+        for (int i = 0; i < numNodes; i++) {
+
+            starts[i] = numNodes;
+
+            overlayChildren.clear();
+            Node<Object> overlayChild = (i == ROOT) ? overlay.root
+                    : (overlayNodes[i] == null) ? null : overlayNodes[i].firstChild;
+            while (overlayChild != null) {
+                overlayChildren.add(overlayChild);
+                overlayChild = overlayChild.next;
+            }
+            overlayChildren.sort(byCharacter);
+
+            final int baseId = baseIds[i];
+            int baseChild = (baseId < 0) ? 0 : childrenStart[baseId];
+            final int baseChildrenEnd = (baseId < 0) ? 0 : childrenStart[baseId + 1];
+            int o = 0;
+
+            while (baseChild < baseChildrenEnd || o < overlayChildren.size()) {
+
+                final Node<Object> overlayNode = (o < overlayChildren.size()) ? overlayChildren.get(o) : null;
+                final int cmp = (baseChild >= baseChildrenEnd) ? 1
+                        : (overlayNode == null) ? -1 : Character.compare(chars[baseChild], overlayNode.character);
+
+                if (cmp <= 0) {
+                    baseIds[numNodes] = baseChild;
+                    mergedChars[numNodes] = chars[baseChild];
+                    baseChild++;
+                } else {
+                    baseIds[numNodes] = -1;
+                    mergedChars[numNodes] = overlayNode.character;
+                }
+
+                if (cmp >= 0) {
+                    overlayNodes[numNodes] = overlayNode;
+                    o++;
+                }
+
+                parents[numNodes] = i;
+                numNodes++;
+            }
+        }
+
+        // Resolve the values bottom-up and mark the nodes that lead to a value as live
+        final Object[] mergedValues = new Object[numNodes];
+        final Object[] mergedPrefixValues = new Object[numNodes];
+        final boolean[] mergedHasPrefix = new boolean[numNodes];
+        final boolean[] live = new boolean[numNodes];
+        live[ROOT] = true;
+
+        for (int n = numNodes - 1; n > 0; n--) {
+
+            final int baseId = baseIds[n];
+            Object value = (baseId < 0) ? null : values[baseId];
+            boolean hasPrefix = baseId >= 0 && hasPrefix(baseId);
+            Object prefixValue = hasPrefix ? getPrefixValue(baseId) : null;
+
+            final Node<Object> overlayNode = overlayNodes[n];
+            if (overlayNode != null) {
+                if (overlayNode.value != null) {
+                    value = (overlayNode.value == REMOVED) ? null : overlayNode.value;
+                }
+                if (overlayNode.hasPrefix) {
+                    hasPrefix = overlayNode.prefixValue != REMOVED;
+                    prefixValue = hasPrefix ? overlayNode.prefixValue : null;
+                }
+            }
+
+            mergedValues[n] = value;
+            mergedHasPrefix[n] = hasPrefix;
+            mergedPrefixValues[n] = prefixValue;
+
+            if (value != null || hasPrefix) {
+                live[n] = true;
+            }
+            if (live[n]) {
+                live[parents[n]] = true;
+            }
+        }
+
+        // Drop the nodes that are not live. The remaining nodes keep their order, so that the children of a node
+        // still occupy a contiguous range.
+        final int[] liveBefore = new int[numNodes + 1];
+        for (int n = 0; n < numNodes; n++) {
+            liveBefore[n + 1] = liveBefore[n] + (live[n] ? 1 : 0);
+        }
+        final int numLive = liveBefore[numNodes];
+
+        final char[] newChars = new char[numLive];
+        final int[] newChildrenStart = new int[numLive + 1];
+        final Object[] newValues = new Object[numLive];
+        final long[] newPrefixFlags = new long[(numLive + 63) >>> 6];
+        int numPrefixes = 0;
+
+        for (int n = 0; n < numNodes; n++) {
+            if (live[n]) {
+                final int id = liveBefore[n];
+                newChars[id] = mergedChars[n];
+                newValues[id] = mergedValues[n];
+                newChildrenStart[id] = liveBefore[starts[n]];
+                if (mergedHasPrefix[n]) {
+                    newPrefixFlags[id >>> 6] |= 1L << id;
+                    numPrefixes++;
+                }
+            }
+        }
+        newChildrenStart[numLive] = numLive;
+
+        final int[] newPrefixNodeIds = new int[numPrefixes];
+        final Object[] newPrefixValues = new Object[numPrefixes];
+        int p = 0;
+        for (int n = 0; n < numNodes; n++) {
+            if (live[n] && mergedHasPrefix[n]) {
+                newPrefixNodeIds[p] = liveBefore[n];
+                newPrefixValues[p] = mergedPrefixValues[n];
+                p++;
+            }
+        }
+
+        return new CompactTrieMap<>(newChars, newChildrenStart, newValues, newPrefixFlags, newPrefixNodeIds,
+                newPrefixValues);
+    }
+
+    /**
+     * Get the value that is stored for exactly the given key.
+     *
+     * @param seq The key
+     * @return The value or null if there is no value for this key
+     */
+    @SuppressWarnings("unchecked")
+    public T getValue(final CharSequence seq) {
+        final int node = findNode(seq);
+        return (node > ROOT) ? (T) values[node] : null;
+    }
+
+    /**
+     * Get the prefix value that is stored for exactly the given key.
+     *
+     * @param seq The key
+     * @return The prefix value or null if there is no prefix value for this key
+     */
+    public T getPrefixValue(final CharSequence seq) {
+        final int node = findNode(seq);
+        return (node > ROOT && hasPrefix(node)) ? getPrefixValue(node) : null;
+    }
+
+    /**
+     * Pass all values and prefix values together with their keys to the visitor. The entries are visited in
+     * depth-first order.
+     *
+     * @param visitor The visitor
+     */
+    public void forEachEntry(final EntryVisitor<? super T> visitor) {
+        visitChildren(ROOT, new StringBuilder(), visitor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void visitChildren(final int node, final StringBuilder key, final EntryVisitor<? super T> visitor) {
+        for (int child = childrenStart[node]; child < childrenStart[node + 1]; child++) {
+            key.append(chars[child]);
+            if (values[child] != null) {
+                visitor.visit(key, (T) values[child], false);
+            }
+            if (hasPrefix(child)) {
+                final T prefixValue = getPrefixValue(child);
+                if (prefixValue != null) {
+                    visitor.visit(key, prefixValue, true);
+                }
+            }
+            visitChildren(child, key, visitor);
+            key.setLength(key.length() - 1);
+        }
+    }
+
+    private int findNode(final CharSequence seq) {
+        if (seq.length() == 0) {
+            return -1;
+        }
+        int node = ROOT;
+        for (int index = 0, length = seq.length(); index < length && node >= 0; index++) {
+            node = findChild(node, seq.charAt(index));
+        }
+        return node;
+    }
+
+    @Override
+    public void put(final CharSequence seq, final T value) {
+        throw new UnsupportedOperationException("CompactTrieMap is read-only");
+    }
+
+    @Override
+    public void putPrefix(final CharSequence seq, final T value) {
+        throw new UnsupportedOperationException("CompactTrieMap is read-only");
+    }
+
+    @Override
+    public States<T> get(final CharSequence seq) {
+        if (seq.length() == 0) {
+            return States.unknown();
+        }
+        return get(seq, ROOT);
+    }
+
+    @Override
+    public States<T> get(final CharSequence seq, final State<T> stateInfo) {
+        if (!stateInfo.isKnown()) {
+            throw new IllegalArgumentException("Known state expected");
+        }
+        if (stateInfo.nodeId < 0) {
+            throw new IllegalArgumentException("State was not created by a CompactTrieMap");
+        }
+        if (seq.length() == 0) {
+            return States.unknown();
+        }
+        return get(seq, stateInfo.nodeId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private States<T> get(final CharSequence seq, final int startNode) {
+
+        final int length = seq.length();
+        final int last = length - 1;
+
+        // nodes on the path that have a prefix value and the index at which we saw them
+        int[] prefixPath = null;
+        int numPrefixesOnPath = 0;
+
+        States<T> states = null;
+
+        int node = startNode;
+        for (int index = 0; index < length; index++) {
+
+            node = findChild(node, seq.charAt(index));
+
+            if (node < 0) {
+                break;
+            }
+
+            if (index == last) {
+                // do not add prefix match here, as we should have at least one char matching the wildcard
+                states = new States<>(new State<>(true, (T) values[node], node, index));
+            } else if (hasPrefix(node)) {
+                if (prefixPath == null) {
+                    prefixPath = new int[2 * last];
+                }
+                prefixPath[numPrefixesOnPath++] = node;
+                prefixPath[numPrefixesOnPath++] = index;
+            }
+
+        }
+
+        if (numPrefixesOnPath == 0) {
+            // Nothing found: don't allocate anything
+            return (states == null) ? States.unknown() : states;
+        }
+
+        if (states == null) {
+            states = new States<>(State.unknown());
+        }
+
+        // Add the deepest prefix first, like the recursive lookup in Node does
+        final boolean startsWithBlank = seq.charAt(0) == ' ';
+        for (int i = numPrefixesOnPath - 2; i >= 0; i -= 2) {
+            final int prefixNode = prefixPath[i];
+            final int index = prefixPath[i + 1];
+            states.addPrefix(new State<>(true, getPrefixValue(prefixNode), prefixNode,
+                    startsWithBlank ? index - 1 : index));
+        }
+
+        return states;
+
+    }
+
+    private int findChild(final int node, final char ch) {
+        int low = childrenStart[node];
+        int high = childrenStart[node + 1] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final char midChar = chars[mid];
+            if (midChar < ch) {
+                low = mid + 1;
+            } else if (midChar > ch) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasPrefix(final int node) {
+        return (prefixFlags[node >>> 6] & (1L << node)) != 0L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getPrefixValue(final int node) {
+        return (T) prefixValues[Arrays.binarySearch(prefixNodeIds, node)];
+    }
+
+    /**
+     * @return The number of nodes in this trie, not counting the root
+     */
+    public int size() {
+        return chars.length - 1;
+    }
+
+    /**
+     * <p>Estimate the heap that is used by the structure of this trie, not counting the values.</p>
+     *
+     * @return The estimated number of bytes
+     */
+    public long estimateStructureBytes() {
+        return arrayBytes(chars.length, Character.BYTES) + arrayBytes(childrenStart.length, Integer.BYTES)
+                + arrayBytes(values.length, Integer.BYTES) + arrayBytes(prefixFlags.length, Long.BYTES)
+                + arrayBytes(prefixNodeIds.length, Integer.BYTES) + arrayBytes(prefixValues.length, Integer.BYTES);
+    }
+
+    private static long arrayBytes(final int length, final int elementBytes) {
+        // 16 bytes array header, assumes compressed references
+        return 16L + (long) length * elementBytes;
+    }
+
+    /**
+     * Iterates over the values and prefix values. Unlike {@link TrieMap#iterator()}, the values are returned in
+     * breadth-first order.
+     */
+    @Override
+    public Iterator<T> iterator() {
+
+        return new Iterator<T>() {
+
+            int node = 0;
+            boolean prefixOfCurrentNodeReturned = true;
+            T nextValue = advance();
+
+            @SuppressWarnings("unchecked")
+            private T advance() {
+                while (node < values.length) {
+                    if (!prefixOfCurrentNodeReturned) {
+                        prefixOfCurrentNodeReturned = true;
+                        if (hasPrefix(node)) {
+                            final T value = getPrefixValue(node);
+                            if (value != null) {
+                                return value;
+                            }
+                        }
+                    }
+                    node++;
+                    if (node < values.length) {
+                        prefixOfCurrentNodeReturned = false;
+                        if (values[node] != null) {
+                            return (T) values[node];
+                        }
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextValue != null;
+            }
+
+            @Override
+            public T next() {
+                if (nextValue == null) {
+                    throw new NoSuchElementException();
+                }
+                final T value = nextValue;
+                nextValue = advance();
+                return value;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+}
@@ -78,23 +78,19 @@ public class Node<T> {
                 return new States<>(new State<T>(true, value, this, index));
                 // do not add prefix match here, as we should have at least one char matching the wildcard
             } else {
-                if (firstChild == null) {
-                    States<T> states = new States<>(new State<T>(false, null, null));
-                    if (hasPrefix) {
-                        states.addPrefix(new State<>(true, prefixValue, this, seq.charAt(0) == ' ' ? index - 1 : index));
-                    }
-                    return states;
-                } else {
-                    States<T> states = firstChild.get(seq, index + 1);
-                    if (hasPrefix) {
-                        states.addPrefix(new State<>(true, prefixValue, this, seq.charAt(0) == ' ' ? index - 1 : index));
+                States<T> states = (firstChild == null) ? States.unknown() : firstChild.get(seq, index + 1);
+                if (hasPrefix) {
+                    if (states == States.unknown()) {
+                        // the shared instance must not be changed
+                        states = new States<>(State.unknown());
                     }
-                    return states;
+                    states.addPrefix(new State<>(true, prefixValue, this, seq.charAt(0) == ' ' ? index - 1 : index));
                 }
+                return states;
                 
             }
         } else {
-            return (next != null) ? next.get(seq, index) : new States<>(new State<T>(false, null, null));
+            return (next != null) ? next.get(seq, index) : States.unknown();
         }
     }
 
@@ -103,16 +99,30 @@ public class Node<T> {
             return new States<>(new State<T>(true, value, this, 0));
                 // do not add prefix match here, as we should have at least one char matching the wildcard
         } else {
-            return (next != null) ? next.get(ch) : new States<>(new State<T>(false, null, null));
+            return (next != null) ? next.get(ch) : States.unknown();
         }
     }
 
     public States<T> getNext(final char ch) {
-        return (firstChild != null) ? firstChild.get(ch) : new States<>(new State<T>(false, null, null));
+        return (firstChild != null) ? firstChild.get(ch) : States.unknown();
     }
 
     public States<T> getNext(final CharSequence seq, final int index) {
-        return (firstChild != null) ? firstChild.get(seq, index) : new States<>(new State<T>(false, null, null));
+        return (firstChild != null) ? firstChild.get(seq, index) : States.unknown();
+    }
+
+    /**
+     * Find the node for a character among this node and its next siblings without creating any {@link States}.
+     *
+     * @param ch The character
+     * @return The node for ch or null if neither this node nor one of its next siblings matches ch
+     */
+    Node<T> findSibling(final char ch) {
+        Node<T> node = this;
+        while (node != null && node.character != ch) {
+            node = node.next;
+        }
+        return node;
     }
     
     public ValueIterator iterator() {
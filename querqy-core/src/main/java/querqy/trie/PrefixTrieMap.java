@@ -58,4 +58,52 @@ public class PrefixTrieMap<T> {
 
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+    /**
+     * Same as {@link #getPrefix(CharSequence)} for a token in a char array, walking the trie without creating
+     * intermediate {@link States}.
+     *
+     * @param chars The char array
+     * @param offset The start of the token in chars
+     * @param length The length of the token
+     * @return The match or null if there is no match
+     */
+    PrefixMatch<T> getPrefix(final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return null;
+        }
+
+        Node<T> candidates = trieMap.root;
+        Node<T> node = null;
+        Node<T> prefixMaxMatch = null;
+        int prefixMaxMatchIndex = -1;
+
+        int index = 0;
+        for (; index < length && candidates != null; index++) {
+            node = candidates.findSibling(chars[offset + index]);
+            if (node == null) {
+                break;
+            }
+            // at least one char must match the wildcard
+            if (node.hasPrefix && index < length - 1) {
+                prefixMaxMatch = node;
+                prefixMaxMatchIndex = index;
+            }
+            candidates = node.firstChild;
+        }
+
+        if (index == length && node.value != null) {
+            return new PrefixMatch<>(length, node.value);
+        }
+
+        if (prefixMaxMatch != null) {
+            final int exclusiveEnd = (chars[offset] == ' ' ? prefixMaxMatchIndex - 1 : prefixMaxMatchIndex) + 1;
+            return new PrefixMatch<>(
+                    exclusiveEnd,
+                    new String(chars, offset + exclusiveEnd, length - exclusiveEnd),
+                    prefixMaxMatch.prefixValue);
+        }
+
+        return null;
+    }
+}
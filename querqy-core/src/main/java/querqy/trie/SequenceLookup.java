@@ -3,19 +3,16 @@ package querqy.trie;
 import querqy.CompoundCharSequence;
 import querqy.LowerCaseCharSequence;
 import querqy.trie.model.ExactMatch;
-import querqy.trie.model.LookupState;
 import querqy.trie.model.PrefixMatch;
 import querqy.trie.model.SuffixMatch;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class SequenceLookup<T> {
 
-    private static String DELIMITER = " ";
+    private static final String DELIMITER = " ";
 
     private final TrieMap<T> trieMap;
     private final PrefixTrieMap<T> prefixTrieMap;
@@ -48,73 +45,122 @@ public class SequenceLookup<T> {
 
     public List<PrefixMatch<T>> findSingleTermPrefixMatches(final List<? extends CharSequence> terms) {
         final List<PrefixMatch<T>> prefixMatches = new ArrayList<>();
-        final AtomicInteger lookupOffset = new AtomicInteger(0);
-
-        terms.forEach(term -> {
-            prefixTrieMap.getPrefix(lc(term)).ifPresent(
-                    prefixMatch -> prefixMatches.add(prefixMatch.setLookupOffset(lookupOffset.get())));
-            lookupOffset.getAndIncrement(); });
-
+        findMatches(createTokenBuffer(terms), null, null, prefixMatches);
         return prefixMatches;
     }
 
     public List<SuffixMatch<T>> findSingleTermSuffixMatches(final List<? extends CharSequence> terms) {
         final List<SuffixMatch<T>> suffixMatches = new ArrayList<>();
-        final AtomicInteger lookupOffset = new AtomicInteger(0);
-
-        terms.forEach(term -> {
-            suffixTrieMap.getBySuffix(lc(term)).ifPresent(
-                    suffixMatch -> suffixMatches.add(suffixMatch.setLookupOffset(lookupOffset.get())));
-            lookupOffset.getAndIncrement(); });
-
+        findMatches(createTokenBuffer(terms), null, suffixMatches, null);
         return suffixMatches;
     }
 
     public List<ExactMatch<T>> findExactMatches(final List<? extends CharSequence> terms) {
-
         final List<ExactMatch<T>> exactMatches = new ArrayList<>();
-        int lookupIndex = 0;
-
-        final LinkedList<LookupState<T>> lookupStates = new LinkedList<>();
+        findMatches(createTokenBuffer(terms), exactMatches, null, null);
+        return exactMatches;
+    }
 
-        for (final CharSequence term : lc(terms)) {
-            lookupStates.add(new LookupState<>(lookupIndex, new LinkedList<>(), null));
+    /**
+     * @return An empty token buffer that lower-cases the tokens iff this lookup ignores case
+     */
+    public TokenBuffer createTokenBuffer() {
+        return new TokenBuffer(ignoreCase);
+    }
 
-            final int lookupStatesTempSize = lookupStates.size();
-            for (int i = 0; i < lookupStatesTempSize; i++) {
+    private TokenBuffer createTokenBuffer(final List<? extends CharSequence> terms) {
+        final TokenBuffer tokens = createTokenBuffer();
+        tokens.addAll(terms);
+        return tokens;
+    }
 
-                final LookupState<T> lookupState = lookupStates.removeLast();
+    /**
+     * <p>Finds the exact, suffix and prefix matches for the tokens in a single pass over the token buffer.</p>
+     *
+     * <p>Exact matches are found by walking the trie char by char from each token position, continuing with the
+     * delimiter and the next token as long as the trie knows the sequence. Suffix and prefix matches are single-term
+     * matches. A null list means that the corresponding type of match will not be looked up.</p>
+     *
+     * @param tokens The tokens, created by {@link #createTokenBuffer()}
+     * @param exactMatches Receives the exact matches or null
+     * @param suffixMatches Receives the suffix matches or null
+     * @param prefixMatches Receives the prefix matches or null
+     */
+    public void findMatches(final TokenBuffer tokens, final List<ExactMatch<T>> exactMatches,
+                            final List<SuffixMatch<T>> suffixMatches, final List<PrefixMatch<T>> prefixMatches) {
+
+        final char[] chars = tokens.chars();
+        final int size = tokens.size();
+
+        for (int i = 0; i < size; i++) {
+
+            if (exactMatches != null) {
+                findExactMatches(tokens, i, exactMatches);
+            }
 
-                final State<T> subsequentLookupState = lookupState.getState() != null
-                        ? trieMap.get(term, lookupState.getState()).getStateForCompleteSequence()
-                        : trieMap.get(term).getStateForCompleteSequence();
+            if (suffixMatches != null) {
+                final SuffixMatch<T> suffixMatch = suffixTrieMap.getBySuffix(chars, tokens.offset(i),
+                        tokens.length(i));
+                if (suffixMatch != null) {
+                    suffixMatches.add(suffixMatch.setLookupOffset(i));
+                }
+            }
 
-                if (!subsequentLookupState.isKnown) {
-                    continue;
+            if (prefixMatches != null) {
+                final PrefixMatch<T> prefixMatch = prefixTrieMap.getPrefix(chars, tokens.offset(i), tokens.length(i));
+                if (prefixMatch != null) {
+                    prefixMatches.add(prefixMatch.setLookupOffset(i));
                 }
+            }
+        }
+
+    }
+
+    private void findExactMatches(final TokenBuffer tokens, final int start, final List<ExactMatch<T>> exactMatches) {
+
+        final char[] chars = tokens.chars();
+        final char delimiter = DELIMITER.charAt(0);
+
+        Node<T> candidates = trieMap.root;
+
+        for (int i = start; i < tokens.size(); i++) {
 
-                if (subsequentLookupState.isFinal() && subsequentLookupState.value != null) {
-                    exactMatches.add(new ExactMatch<>(
-                            lookupState.lookupOffsetStart, lookupIndex + 1, subsequentLookupState.value));
+            final int length = tokens.length(i);
+            if (length == 0) {
+                return;
+            }
+
+            Node<T> node = null;
+
+            if (i > start) {
+                node = candidates == null ? null : candidates.findSibling(delimiter);
+                if (node == null) {
+                    return;
                 }
+                candidates = node.firstChild;
+            }
 
-                final State<T> subsequentLookupStateNext = trieMap.get(DELIMITER, subsequentLookupState).getStateForCompleteSequence();
-                if (subsequentLookupStateNext.isKnown) {
-                    lookupStates.addFirst(lookupState.addTerm(term).setState(subsequentLookupStateNext));
+            final int offset = tokens.offset(i);
+            for (int j = offset, end = offset + length; j < end; j++) {
+                node = candidates == null ? null : candidates.findSibling(chars[j]);
+                if (node == null) {
+                    return;
                 }
+                candidates = node.firstChild;
             }
 
-            lookupIndex++;
+            // node is the node of the last char of the token
+            if (node.value != null) {
+                exactMatches.add(new ExactMatch<>(start, i + 1, node.value));
+            }
         }
-
-        return exactMatches;
     }
 
     private List<CharSequence> lc(final List<? extends CharSequence> seqList) {
-        return seqList.stream().map(this::lc).collect(Collectors.toCollection(LinkedList::new));
+        return seqList.stream().map(this::lc).collect(Collectors.toList());
     }
 
     private CharSequence lc(final CharSequence seq) {
-        return ignoreCase ? new LowerCaseCharSequence(seq) : seq;
+        return ignoreCase ? LowerCaseCharSequence.lowerCase(seq) : seq;
     }
 }
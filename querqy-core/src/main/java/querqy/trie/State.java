@@ -8,10 +8,18 @@ package querqy.trie;
  *
  */
 public class State<T> {
-    
+
+    @SuppressWarnings("rawtypes")
+    private static final State UNKNOWN = new State<>(false, null, null);
+
     public final T value;
     public final boolean isKnown;
     public final Node<T> node;
+    /**
+     * The id of the matching node in a {@link CompactTrieMap} or -1 if this state was not created by a
+     * {@link CompactTrieMap}
+     */
+    public final int nodeId;
     /**
      * The index of the last matching char
      */
@@ -22,12 +30,30 @@ public class State<T> {
     }
     
     public State(final boolean isKnown, final T value, final Node<T> node, final int index) {
+        this(isKnown, value, node, -1, index);
+    }
+
+    public State(final boolean isKnown, final T value, final int nodeId, final int index) {
+        this(isKnown, value, null, nodeId, index);
+    }
+
+    private State(final boolean isKnown, final T value, final Node<T> node, final int nodeId, final int index) {
         this.isKnown = isKnown;
         this.value = value;
         this.node = node;
+        this.nodeId = nodeId;
         this.index = index;
     }
     
+    /**
+     * @param <T> The value type
+     * @return A shared instance for an unknown state
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> State<T> unknown() {
+        return (State<T>) UNKNOWN;
+    }
+
     public boolean isKnown() {
         return isKnown;
     }
@@ -11,7 +11,15 @@ import java.util.List;
  *
  */
 public class States<T> {
-    
+
+    @SuppressWarnings("rawtypes")
+    private static final States UNKNOWN = new States<>(State.unknown()) {
+        @Override
+        public void addPrefix(final State prefix) {
+            throw new UnsupportedOperationException("Cannot add prefix to the shared unknown States");
+        }
+    };
+
     private List<State<T>> prefixes = null;
     private final State<T> completeSequence;
     
@@ -26,6 +34,18 @@ public class States<T> {
         prefixes.add(prefix);
     }
     
+    /**
+     * <p>Get a shared, immutable instance for a lookup that neither matched the complete sequence nor any prefix.</p>
+     * <p>{@link #addPrefix(State)} must not be called on the returned instance.</p>
+     *
+     * @param <T> The value type
+     * @return States that only hold an unknown state for the complete sequence.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> States<T> unknown() {
+        return (States<T>) UNKNOWN;
+    }
+
     public State<T> getStateForCompleteSequence() {
         return completeSequence;
     }
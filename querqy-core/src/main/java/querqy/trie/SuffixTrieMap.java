@@ -62,4 +62,55 @@ public class SuffixTrieMap<T> {
 
         return Optional.empty();
     }
-}
\ No newline at end of file
+
+    /**
+     * Same as {@link #getBySuffix(CharSequence)} for a token in a char array, walking the trie backwards from the
+     * end of the token without creating intermediate {@link States}.
+     *
+     * @param chars The char array
+     * @param offset The start of the token in chars
+     * @param length The length of the token
+     * @return The match or null if there is no match
+     */
+    SuffixMatch<T> getBySuffix(final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return null;
+        }
+
+        final int last = offset + length - 1;
+
+        Node<T> candidates = trieMap.root;
+        Node<T> node = null;
+        Node<T> suffixMaxMatch = null;
+        int suffixMaxMatchIndex = -1;
+
+        int index = 0;
+        for (; index < length && candidates != null; index++) {
+            node = candidates.findSibling(chars[last - index]);
+            if (node == null) {
+                break;
+            }
+            // at least one char must match the wildcard
+            if (node.hasPrefix && index < length - 1) {
+                suffixMaxMatch = node;
+                suffixMaxMatchIndex = index;
+            }
+            candidates = node.firstChild;
+        }
+
+        if (index == length && node.value != null) {
+            return new SuffixMatch<>(0, node.value);
+        }
+
+        if (suffixMaxMatch != null) {
+            final int startSubstring = length
+                    - ((chars[last] == ' ' ? suffixMaxMatchIndex - 1 : suffixMaxMatchIndex) + 1);
+            return new SuffixMatch<>(
+                    startSubstring,
+                    new String(chars, offset, startSubstring),
+                    suffixMaxMatch.prefixValue);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,115 @@
+package querqy.trie;
+
+import querqy.model.Term;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>A sequence of tokens that are stored in a single char array, each token being addressed by its offset and
+ * length. This is the input of the lookup methods in {@link SequenceLookup}.</p>
+ *
+ * <p>If the buffer is case-insensitive, the chars are lower-cased once when a token is added so that the lookup does
+ * not need to wrap each token. The lower-cased value of a {@link Term} is taken from the term.</p>
+ */
+public class TokenBuffer {
+
+    private final boolean lowerCase;
+
+    private char[] chars = new char[64];
+    private int[] offsets = new int[8];
+    private int[] lengths = new int[8];
+    private int size = 0;
+    private int charsUsed = 0;
+
+    public TokenBuffer(final boolean lowerCase) {
+        this.lowerCase = lowerCase;
+    }
+
+    public void clear() {
+        size = 0;
+        charsUsed = 0;
+    }
+
+    public void add(final CharSequence token) {
+
+        final int length = token.length();
+
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size << 1);
+            lengths = Arrays.copyOf(lengths, size << 1);
+        }
+
+        if (charsUsed + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length << 1, charsUsed + length));
+        }
+
+        if (!lowerCase) {
+            copy(token, length);
+        } else if (token instanceof Term) {
+            copy(((Term) token).getLowerCaseValue(), length);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[charsUsed + i] = Character.toLowerCase(token.charAt(i));
+            }
+        }
+
+        offsets[size] = charsUsed;
+        lengths[size] = length;
+        charsUsed += length;
+        size++;
+
+    }
+
+    private void copy(final CharSequence token, final int length) {
+        for (int i = 0; i < length; i++) {
+            chars[charsUsed + i] = token.charAt(i);
+        }
+    }
+
+    public void addAll(final List<? extends CharSequence> tokens) {
+        for (final CharSequence token : tokens) {
+            add(token);
+        }
+    }
+
+    /**
+     * Clear the buffer and add the tokens.
+     *
+     * @param tokens The tokens
+     */
+    public void reset(final List<? extends CharSequence> tokens) {
+        clear();
+        addAll(tokens);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int offset(final int token) {
+        return offsets[token];
+    }
+
+    public int length(final int token) {
+        return lengths[token];
+    }
+
+    public char charAt(final int index) {
+        return chars[index];
+    }
+
+    public String toString(final int token) {
+        return new String(chars, offsets[token], lengths[token]);
+    }
+
+    /**
+     * Get the chars of a token. Use {@link #offset(int)} and {@link #length(int)} to find the token in the array.
+     * The array must not be modified.
+     *
+     * @return The underlying char array
+     */
+    char[] chars() {
+        return chars;
+    }
+}
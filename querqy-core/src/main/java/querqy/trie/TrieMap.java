@@ -73,9 +73,9 @@ public class TrieMap<T> implements Iterable<T> {
     
     public States<T> get(final CharSequence seq) {
         if (seq.length() == 0) {
-            return new States<>(new State<T>(false, null, null));
+            return States.unknown();
         }
-        return (root == null) ? new States<>(new State<T>(false, null, null)) : root.get(seq, 0);
+        return (root == null) ? States.unknown() : root.get(seq, 0);
     }
     
 
@@ -84,7 +84,7 @@ public class TrieMap<T> implements Iterable<T> {
             throw new IllegalArgumentException("Known state expected");
         }
         if (seq.length() == 0) {
-            return new States<>(new State<T>(false, null, null));
+            return States.unknown();
         }
         return stateInfo.node.getNext(seq, 0);
     }
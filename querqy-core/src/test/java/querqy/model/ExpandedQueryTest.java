@@ -0,0 +1,80 @@
+package querqy.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.boostQ;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.must;
+import static querqy.QuerqyMatchers.mustNot;
+import static querqy.QuerqyMatchers.term;
+
+import org.junit.Test;
+
+public class ExpandedQueryTest {
+
+    @Test
+    public void testThatDeepCopyPreservesGeneratedFlagsAndOccur() {
+        final Query query = new Query(false);
+        final DisjunctionMaxQuery dmq1 = new DisjunctionMaxQuery(query, Clause.Occur.MUST, false);
+        query.addClause(dmq1);
+        dmq1.addClause(new Term(dmq1, "f1", "a", false));
+        dmq1.addClause(new BoostedTerm(dmq1, "b", 0.5f));
+
+        final DisjunctionMaxQuery dmq2 = new DisjunctionMaxQuery(query, Clause.Occur.MUST_NOT, true);
+        query.addClause(dmq2);
+        dmq2.addClause(new Term(dmq2, "c", true));
+
+        final ExpandedQuery expandedQuery = new ExpandedQuery(query);
+        final Query boostQuery = new Query(true);
+        final DisjunctionMaxQuery boostDmq = new DisjunctionMaxQuery(boostQuery, Clause.Occur.SHOULD, true);
+        boostQuery.addClause(boostDmq);
+        boostDmq.addClause(new Term(boostDmq, "d", true));
+        expandedQuery.addBoostUpQuery(new BoostQuery(boostQuery, 2f));
+        expandedQuery.addFilterQuery(new StringRawQuery(null, "x:y", Clause.Occur.MUST, true));
+
+        final ExpandedQuery copy = expandedQuery.deepCopy();
+
+        final Query userQuery = (Query) copy.getUserQuery();
+        assertThat(userQuery, not(sameInstance(query)));
+        assertThat(userQuery,
+                bq(
+                        dmq(must(), term("f1", "a", false), term("b", true)),
+                        dmq(mustNot(), term("c", true))
+                ));
+        assertFalse(userQuery.isGenerated());
+        assertFalse(userQuery.getClauses().get(0).isGenerated());
+        assertTrue(userQuery.getClauses().get(1).isGenerated());
+
+        final DisjunctionMaxQuery copiedDmq1 = (DisjunctionMaxQuery) userQuery.getClauses().get(0);
+        assertEquals(0.5f, ((BoostedTerm) copiedDmq1.getClauses().get(1)).getBoost(), 0.0001f);
+        assertThat(copiedDmq1.getClauses().get(0).getParent(), sameInstance(copiedDmq1));
+
+        assertEquals(1, copy.getBoostUpQueries().size());
+        assertThat(copy.getBoostUpQueries().iterator().next(), boostQ(bq(dmq(term("d", true))), 2f));
+        assertEquals(1, copy.getFilterQueries().size());
+        assertEquals("x:y", ((StringRawQuery) copy.getFilterQueries().iterator().next()).getQueryString());
+    }
+
+    @Test
+    public void testThatChangesToCopyDoNotAffectOriginal() {
+        final Query query = new Query(false);
+        final DisjunctionMaxQuery dmq = new DisjunctionMaxQuery(query, Clause.Occur.SHOULD, false);
+        query.addClause(dmq);
+        dmq.addClause(new Term(dmq, "a", false));
+        final ExpandedQuery expandedQuery = new ExpandedQuery(query);
+
+        final ExpandedQuery copy = expandedQuery.deepCopy();
+        final DisjunctionMaxQuery copiedDmq = (DisjunctionMaxQuery) ((Query) copy.getUserQuery()).getClauses().get(0);
+        copiedDmq.addClause(new Term(copiedDmq, "b", true));
+        copy.addFilterQuery(new MatchAllQuery());
+
+        assertThat(query, bq(dmq(term("a", false))));
+        assertEquals(null, expandedQuery.getFilterQueries());
+    }
+
+}
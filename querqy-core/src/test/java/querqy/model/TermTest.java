@@ -2,6 +2,7 @@ package querqy.model;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
@@ -56,4 +57,27 @@ public class TermTest {
         }
     }
 
+    @Test
+    public void testThatLowerCaseValueIsComputedOnce() {
+        final Term term = new Term(null, "f", "AbC");
+        final CharSequence lowerCaseValue = term.getLowerCaseValue();
+        assertEquals("abc", lowerCaseValue.toString());
+        assertThat(term.getLowerCaseValue(), sameInstance(lowerCaseValue));
+        assertEquals("AbC", term.getValue().toString());
+    }
+
+    @Test
+    public void testThatLowerCaseValueOfLowerCaseTermIsTheValue() {
+        final Term term = new Term(null, "abc");
+        assertThat(term.getLowerCaseValue(), sameInstance(term.getValue()));
+    }
+
+    @Test
+    public void testThatLowerCaseTermKeepsField() {
+        final Term term = new Term(null, "f", "AbC").toLowerCaseTerm();
+        assertEquals("f", term.getField());
+        assertEquals("abc", term.toString());
+        assertThat(term.getLowerCaseValue(), sameInstance(term.getValue()));
+    }
+
 }
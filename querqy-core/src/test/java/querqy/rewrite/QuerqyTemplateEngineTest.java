@@ -95,6 +95,41 @@ public class QuerqyTemplateEngineTest {
     }
 
 
+    @Test
+    public void testThatTemplatesAreRenderedWhileReading() throws IOException, TemplateParseException {
+        final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(new StringReader(
+                "def syn(a, b):\n  $a =>\n    SYNONYM: $b\n\n<< syn: a = x || b = y >>\nc =>\n"));
+
+        assertThat(querqyTemplateEngine.renderedRules.lineNumberMapping).isEmpty();
+
+        final BufferedReader reader = new BufferedReader(querqyTemplateEngine.renderedRules.reader);
+        assertThat(reader.readLine()).isEqualTo("  x =>");
+        assertThat(reader.readLine()).isEqualTo("    SYNONYM: y");
+        assertThat(reader.readLine()).isEqualTo("c =>");
+        assertThat(reader.readLine()).isNull();
+        assertThat(querqyTemplateEngine.renderedRules.lineNumberMapping).containsExactly(
+                new AbstractMap.SimpleEntry<>(1, 5),
+                new AbstractMap.SimpleEntry<>(2, 5),
+                new AbstractMap.SimpleEntry<>(3, 6));
+    }
+
+    @Test
+    public void testThatTemplateCanBeReferencedBeforeItsDefinition() throws IOException, TemplateParseException {
+        final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(new StringReader(
+                "<< t >>\ndef t():\n1\n\n<< t >>\n"));
+
+        assertThat(list(querqyTemplateEngine.renderedRules.reader)).containsExactly("1", "1");
+    }
+
+    @Test
+    public void testThatLastDefinitionOfTemplateIsUsed() throws IOException, TemplateParseException {
+        final QuerqyTemplateEngine querqyTemplateEngine = new QuerqyTemplateEngine(new StringReader(
+                "<< t >>\ndef t():\n1\n\n<< t >>\ndef t():\n2\n\n<< t >>\n"));
+
+        assertThat(list(querqyTemplateEngine.renderedRules.reader)).containsExactly("2", "2", "2");
+    }
+
+
     private Map<Integer, String> numberedLines(List<String> lines) {
         Map<Integer, String> numberedLines = new HashMap<>();
 
@@ -0,0 +1,298 @@
+package querqy.rewrite;
+
+import org.junit.Before;
+import org.junit.Test;
+import querqy.model.DisjunctionMaxQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Query;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.rewrite.commonrules.select.RuleSelectionParams;
+import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
+import querqy.rewrite.contrib.ShingleRewriterFactory;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static querqy.QuerqyMatchers.bq;
+import static querqy.QuerqyMatchers.dmq;
+import static querqy.QuerqyMatchers.term;
+
+public class RewriteChainCacheTest {
+
+    private static final String RULES = "a =>\n" +
+            "  SYNONYM: b\n" +
+            "  DECORATE: deco\n" +
+            "  @_id: \"1\"\n" +
+            "  @prio: 1\n" +
+            "a =>\n" +
+            "  SYNONYM: c\n" +
+            "  @_id: \"2\"\n" +
+            "  @prio: 2\n";
+
+    private RewriteChainCache cache;
+    private SimpleCommonRulesRewriterFactory commonRulesFactory;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new RewriteChainCache(100, 1000);
+        commonRulesFactory = commonRulesFactory("common", new ExpressionCriteriaSelectionStrategyFactory());
+    }
+
+    @Test
+    public void testThatOutputIsCachedAndCopied() {
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), cache);
+
+        final ExpandedQuery output1 = rewrite(chain, "a", Collections.emptyMap());
+        assertEquals(1, cache.size());
+        assertEquals(0L, cache.getHits());
+
+        final ExpandedQuery output2 = rewrite(chain, "a", Collections.emptyMap());
+        assertEquals(1L, cache.getHits());
+        assertThat(output2, not(sameInstance(output1)));
+        assertThat((Query) output2.getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("b", true),
+                                term("c", true)
+                        )
+                ));
+
+        // changing the output must not change the cached query
+        ((Query) output2.getUserQuery()).getClauses().clear();
+        assertThat((Query) rewrite(chain, "a", Collections.emptyMap()).getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("b", true),
+                                term("c", true)
+                        )
+                ));
+    }
+
+    @Test
+    public void testThatContextIsRestoredFromCache() {
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), cache);
+
+        rewrite(chain, "a", Collections.emptyMap());
+
+        final LocalSearchEngineRequestAdapter adapter = new LocalSearchEngineRequestAdapter(chain,
+                Collections.emptyMap());
+        chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a")), adapter);
+
+        assertEquals(1L, cache.getHits());
+        assertEquals(Set.of("deco"), adapter.getContext().get(DecorateInstruction.DECORATION_CONTEXT_KEY));
+    }
+
+    @Test
+    public void testThatDeclaredRequestParamsArePartOfTheKey() {
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), cache);
+
+        final Map<String, String[]> params = new HashMap<>();
+        params.put(RuleSelectionParams.getLimitParamName("common"), new String[] {"1"});
+        params.put(RuleSelectionParams.getSortParamName("common"), new String[] {"prio asc"});
+
+        rewrite(chain, "a", Collections.emptyMap());
+        final ExpandedQuery output = rewrite(chain, "a", params);
+
+        assertEquals(0L, cache.getHits());
+        assertEquals(2, cache.size());
+        assertThat((Query) output.getUserQuery(),
+                bq(
+                        dmq(
+                                term("a", false),
+                                term("b", true)
+                        )
+                ));
+
+        // undeclared params are not part of the key
+        params.put("other", new String[] {"x"});
+        rewrite(chain, "a", params);
+        assertEquals(1L, cache.getHits());
+    }
+
+    @Test
+    public void testThatQueryStructureIsPartOfTheKey() {
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), cache);
+
+        rewrite(chain, "a", Collections.emptyMap());
+        rewrite(chain, "+a", Collections.emptyMap());
+        rewrite(chain, "a b", Collections.emptyMap());
+        rewrite(chain, "ab", Collections.emptyMap());
+
+        assertEquals(0L, cache.getHits());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testThatFactoriesWithoutParamDeclarationAreNotCached() throws IOException {
+        final SelectionStrategyFactory undeclared = (rewriterId, searchEngineRequestAdapter) ->
+                SelectionStrategyFactory.DEFAULT_SELECTION_STRATEGY;
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory("common", undeclared)), cache);
+
+        rewrite(chain, "a", Collections.emptyMap());
+        rewrite(chain, "a", Collections.emptyMap());
+
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    public void testThatRewriteLoggingBypassesCache() {
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), cache);
+
+        final LocalSearchEngineRequestAdapter adapter = new LocalSearchEngineRequestAdapter(chain,
+                Collections.emptyMap()) {
+            @Override
+            public RewriteLoggingConfig getRewriteLoggingConfig() {
+                return RewriteLoggingConfig.builder().isActive(true).hasDetails(true)
+                        .includedRewriters(Set.of("common")).build();
+            }
+        };
+        final RewriteChainOutput output = chain.rewrite(
+                new ExpandedQuery(new WhiteSpaceQuerqyParser().parse("a")), adapter);
+
+        assertEquals(0, cache.size());
+        assertTrue(output.getRewriteLog().isPresent());
+        assertFalse(output.getRewriteLog().get().getRewriteChain().isEmpty());
+    }
+
+    @Test
+    public void testThatInvalidationRemovesEntriesOfRewriter() {
+        final RewriterFactory shingleFactory = new ShingleRewriterFactory("shingles");
+        final RewriteChain chain1 = new RewriteChain(List.of(commonRulesFactory), cache);
+        final RewriteChain chain2 = new RewriteChain(List.of(shingleFactory), cache);
+
+        rewrite(chain1, "a", Collections.emptyMap());
+        rewrite(chain2, "a b", Collections.emptyMap());
+        assertEquals(2, cache.size());
+
+        cache.invalidate("common");
+        assertEquals(1, cache.size());
+
+        rewrite(chain2, "a b", Collections.emptyMap());
+        assertEquals(1L, cache.getHits());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getWeight());
+    }
+
+    @Test
+    public void testThatEntriesOfReplacedRewriterAreNotReturned() throws IOException {
+        rewrite(new RewriteChain(List.of(commonRulesFactory), cache), "a", Collections.emptyMap());
+
+        final SimpleCommonRulesRewriterFactory newFactory = commonRulesFactory("common",
+                new ExpressionCriteriaSelectionStrategyFactory());
+        rewrite(new RewriteChain(List.of(newFactory), cache), "a", Collections.emptyMap());
+
+        assertEquals(0L, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testThatCacheIsBoundedByEntriesAndWeight() {
+        final RewriteChainCache smallCache = new RewriteChainCache(2, 7);
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), smallCache);
+
+        rewrite(chain, "x", Collections.emptyMap()); // weight: query, dmq, term = 3
+        rewrite(chain, "y", Collections.emptyMap());
+        rewrite(chain, "z", Collections.emptyMap());
+        assertEquals(2, smallCache.size());
+        assertEquals(6L, smallCache.getWeight());
+
+        // the least recently used entries are evicted until the weight fits
+        rewrite(chain, "z", Collections.emptyMap());
+        rewrite(chain, "a", Collections.emptyMap()); // weight 5
+        assertEquals(1, smallCache.size());
+        assertEquals(5L, smallCache.getWeight());
+
+        // entries that are heavier than the max. weight are not cached
+        rewrite(chain, "p q r", Collections.emptyMap()); // weight 7
+        rewrite(chain, "p q r s", Collections.emptyMap()); // weight 9
+        assertEquals(1, smallCache.size());
+        assertEquals(7L, smallCache.getWeight());
+    }
+
+    @Test
+    public void testThatConcurrentRewritesKeepCacheBounded() throws Exception {
+        final RewriteChainCache smallCache = new RewriteChainCache(10, 1000);
+        final RewriteChain chain = new RewriteChain(List.of(commonRulesFactory), smallCache);
+
+        final int numThreads = 4;
+        final int numRewrites = 1000;
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                final int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < numRewrites; i++) {
+                        final String query = i % 2 == 0 ? "a" : "q" + ((i + offset) % 30);
+                        final ExpandedQuery rewritten = rewrite(chain, query, Collections.emptyMap());
+                        assertEquals(query.equals("a") ? 3 : 1,
+                                ((DisjunctionMaxQuery) ((Query) rewritten.getUserQuery()).getClauses().get(0))
+                                        .getClauses().size());
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(numThreads * numRewrites, smallCache.getHits() + smallCache.getMisses());
+        assertTrue(smallCache.getHits() > 0L);
+        // the entry that was added last evicts the surplus once no other thread is evicting
+        rewrite(chain, "last", Collections.emptyMap());
+        assertEquals(10, smallCache.size());
+    }
+
+    @Test
+    public void testThatRequestParamDependenciesAreCollected() {
+        assertThat(commonRulesFactory.getRequestParamDependencies().get(), containsInAnyOrder(
+                RuleSelectionParams.getStrategyParamName("common"),
+                RuleSelectionParams.getSortParamName("common"),
+                RuleSelectionParams.getLimitParamName("common"),
+                RuleSelectionParams.getIsUseLevelsForLimitParamName("common"),
+                RuleSelectionParams.getFilterParamName("common")));
+    }
+
+    private ExpandedQuery rewrite(final RewriteChain chain, final String query, final Map<String, String[]> params) {
+        return chain.rewrite(new ExpandedQuery(new WhiteSpaceQuerqyParser().parse(query)),
+                new LocalSearchEngineRequestAdapter(chain, params)).getExpandedQuery();
+    }
+
+    private static SimpleCommonRulesRewriterFactory commonRulesFactory(
+            final String rewriterId, final SelectionStrategyFactory selectionStrategyFactory) throws IOException {
+        return new SimpleCommonRulesRewriterFactory(rewriterId, new StringReader(RULES), true, BoostMethod.ADDITIVE,
+                new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(), selectionStrategyFactory, false,
+                LookupPreprocessorType.NONE);
+    }
+
+}
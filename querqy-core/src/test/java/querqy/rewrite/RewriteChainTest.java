@@ -40,6 +40,21 @@ public class RewriteChainTest {
 
     @Mock SearchEngineRequestAdapter searchEngineRequestAdapter;
 
+    @Test
+    public void testThatRewritersAreReleasedAfterRewriting() {
+        setupRewriterFactories();
+        setupRewriter();
+
+        final RewriteChain rewriteChain = new RewriteChain(List.of(rewriterFactory1, rewriterFactory2));
+        rewriteChain.rewrite(expandedQuery1, new EmptySearchEngineRequestAdapter());
+
+        final InOrder inOrder = Mockito.inOrder(queryRewriter1, rewriterFactory1, queryRewriter2, rewriterFactory2);
+        inOrder.verify(queryRewriter1).rewrite(any(), any());
+        inOrder.verify(rewriterFactory1).releaseRewriter(queryRewriter1);
+        inOrder.verify(queryRewriter2).rewrite(any(), any());
+        inOrder.verify(rewriterFactory2).releaseRewriter(queryRewriter2);
+    }
+
     @Test
     public void testThat_rewriterAreCreatedAndExecutedInCorrectOrder_forExecutingInRewriteChain() {
         setupRewriterFactories();
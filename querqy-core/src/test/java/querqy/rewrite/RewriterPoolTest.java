@@ -0,0 +1,50 @@
+package querqy.rewrite;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class RewriterPoolTest {
+
+    @Test
+    public void testThatEmptyPoolReturnsNull() {
+        assertThat(new RewriterPool<>(2).borrow()).isNull();
+    }
+
+    @Test
+    public void testThatReleasedRewriterIsResetAndReused() {
+        final RewriterPool<ResettableQueryRewriter> pool = new RewriterPool<>(2);
+        final ResettableQueryRewriter rewriter = mock(ResettableQueryRewriter.class);
+
+        pool.release(rewriter);
+        verify(rewriter).reset();
+        assertThat(pool.getNumIdle()).isEqualTo(1);
+
+        assertThat(pool.borrow()).isSameAs(rewriter);
+        assertThat(pool.borrow()).isNull();
+        assertThat(pool.getNumIdle()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThatRewritersAreDroppedIfPoolIsFull() {
+        final RewriterPool<ResettableQueryRewriter> pool = new RewriterPool<>(2);
+
+        pool.release(mock(ResettableQueryRewriter.class));
+        pool.release(mock(ResettableQueryRewriter.class));
+        pool.release(mock(ResettableQueryRewriter.class));
+
+        assertThat(pool.getNumIdle()).isEqualTo(2);
+        assertThat(pool.borrow()).isNotNull();
+        assertThat(pool.borrow()).isNotNull();
+        assertThat(pool.borrow()).isNull();
+    }
+
+    @Test
+    public void testThatSizeMustBePositive() {
+        assertThatThrownBy(() -> new RewriterPool<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
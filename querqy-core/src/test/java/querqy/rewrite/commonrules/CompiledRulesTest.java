@@ -0,0 +1,180 @@
+package querqy.rewrite.commonrules;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsSupplier;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+import querqy.trie.CompactTrieMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CompiledRulesTest {
+
+    static final String RULES = "a =>\n" +
+            " SYNONYM: b\n" +
+            " SYNONYM(0.5): f1:c d\n" +
+            " DELETE: a\n" +
+            " @_id:\"1\"\n" +
+            " @{\"group\": \"g1\", \"priority\": 5, \"weight\": 1.5, \"enabled\": true, \"tags\": [\"x\", 2], " +
+            "\"nested\": {\"k\": null}}@\n" +
+            "\"b c\" =>\n" +
+            " UP(10): e f\n" +
+            " DOWN(2): * f1:[1 TO 10]\n" +
+            " FILTER: * price:[* TO 100]\n" +
+            " FILTER: -g\n" +
+            " DECORATE: deco1\n" +
+            " DECORATE(key1): {\"k\": [1, 2]}\n" +
+            "lap* =>\n" +
+            " SYNONYM: note$1\n" +
+            " UP(5): $1x\n" +
+            " @_id:\"3\"\n" +
+            "A =>\n" +
+            " DELETE\n" +
+            " @_id:\"4\"";
+
+    @Test
+    public void testThatReadRulesEqualWrittenRules() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory factory = factory(RULES);
+        final byte[] bytes = write(factory.getCompiledRules());
+
+        final SimpleCommonRulesRewriterFactory loaded = load(bytes);
+
+        assertEquals(entries(factory), entries(loaded));
+        assertEquals(instructions(factory), instructions(loaded));
+        assertEquals(factory.getInstructions(), loaded.getInstructions());
+        assertEquals(factory.getCacheableGenerableTerms(), loaded.getCacheableGenerableTerms());
+
+        // the rules of the loaded factory can be written again
+        assertArrayEquals(bytes, write(loaded.getCompiledRules()));
+    }
+
+    @Test
+    public void testThatLoadedRulesCanBePatched() throws IOException {
+
+        final SimpleCommonRulesRewriterFactory loaded = load(write(factory(RULES).getCompiledRules()));
+        final SimpleCommonRulesRewriterFactory patched = loaded.patch(
+                new StringReader("x =>\n SYNONYM: y\n @_id:\"5\""), Collections.singletonList("4"));
+
+        final SimpleCommonRulesRewriterFactory rebuilt = factory(RULES.substring(0, RULES.indexOf("A =>")) +
+                "x =>\n SYNONYM: y\n @_id:\"5\"");
+
+        assertEquals(entries(rebuilt), entries(patched));
+    }
+
+    @Test
+    public void testThatStreamOfOtherVersionIsRejected() throws IOException {
+
+        final byte[] bytes = write(factory(RULES).getCompiledRules());
+        bytes[7]++; // the last byte of the version
+
+        try {
+            CompiledRules.readFrom(new ByteArrayInputStream(bytes));
+            fail("Stream of other version must not be read");
+        } catch (final IOException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testThatOtherStreamIsRejected() throws IOException {
+        CompiledRules.readFrom(new ByteArrayInputStream("a =>\n SYNONYM: b".getBytes()));
+    }
+
+    @Test
+    public void testThatTruncatedStreamIsRejected() throws IOException {
+
+        final byte[] bytes = write(factory(RULES).getCompiledRules());
+
+        try {
+            CompiledRules.readFrom(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+            fail("Truncated stream must not be read");
+        } catch (final IOException e) {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+
+    @Test
+    public void testThatCompiledFileCanBeMapped() throws IOException {
+
+        final Path dir = Files.createTempDirectory("compiled-rules");
+        final Path rulesFile = dir.resolve("rules.txt");
+        final Path compiledFile = dir.resolve("rules.bin");
+        try {
+            Files.writeString(rulesFile, RULES);
+            new RulesCompiler().boostMethod(BoostMethod.MULTIPLICATIVE).compile(rulesFile, compiledFile);
+
+            final SimpleCommonRulesRewriterFactory loaded = new SimpleCommonRulesRewriterFactory("r1",
+                    CompiledRules.readFrom(compiledFile), BoostMethod.MULTIPLICATIVE,
+                    new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                    new ExpressionCriteriaSelectionStrategyFactory(), true);
+
+            assertEquals(entries(factory(RULES)), entries(loaded));
+            assertArrayEquals(Files.readAllBytes(compiledFile), write(loaded.getCompiledRules()));
+        } finally {
+            Files.deleteIfExists(compiledFile);
+            Files.deleteIfExists(rulesFile);
+            Files.delete(dir);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testThatRulesWithBooleanInputCannotBeCompiled() throws IOException {
+        new SimpleCommonRulesRewriterFactory("r1", new StringReader("a AND b =>\n UP(10): c"), true,
+                BoostMethod.ADDITIVE, new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                new ExpressionCriteriaSelectionStrategyFactory(), true, LookupPreprocessorType.LOWERCASE)
+                .getCompiledRules();
+    }
+
+    private static SimpleCommonRulesRewriterFactory factory(final String rules) throws IOException {
+        return new SimpleCommonRulesRewriterFactory("r1", new StringReader(rules), false, BoostMethod.MULTIPLICATIVE,
+                new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                new ExpressionCriteriaSelectionStrategyFactory(), true, LookupPreprocessorType.LOWERCASE);
+    }
+
+    private static SimpleCommonRulesRewriterFactory load(final byte[] bytes) throws IOException {
+        return new SimpleCommonRulesRewriterFactory("r1", CompiledRules.readFrom(new ByteArrayInputStream(bytes)),
+                BoostMethod.MULTIPLICATIVE, new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                new ExpressionCriteriaSelectionStrategyFactory(), true);
+    }
+
+    private static byte[] write(final CompiledRules compiledRules) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        compiledRules.writeTo(bos);
+        return bos.toByteArray();
+    }
+
+    private static List<String> entries(final SimpleCommonRulesRewriterFactory factory) {
+        final List<String> entries = new ArrayList<>();
+        ((CompactTrieMap<InstructionsSupplier>) factory.getTrieMap()).forEachEntry((key, value, isPrefix) ->
+                entries.add(key + (isPrefix ? "*" : "") + "=" + value.getInstructionsList().stream()
+                        .map(instructions -> instructions.getId() + ":" + new ArrayList<>(instructions))
+                        .collect(Collectors.toList())));
+        return entries;
+    }
+
+    private static List<Instructions> instructions(final SimpleCommonRulesRewriterFactory factory) {
+        final List<Instructions> instructions = new ArrayList<>();
+        ((CompactTrieMap<InstructionsSupplier>) factory.getTrieMap()).forEachEntry((key, value, isPrefix) ->
+                instructions.addAll(value.getInstructionsList()));
+        return instructions;
+    }
+
+}
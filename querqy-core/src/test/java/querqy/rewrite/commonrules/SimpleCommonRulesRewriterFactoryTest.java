@@ -16,16 +16,26 @@ import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.model.DecorateInstruction;
+import querqy.rewrite.commonrules.model.Instruction;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsSupplier;
+import querqy.rewrite.commonrules.model.SynonymInstruction;
 import querqy.rewrite.commonrules.select.SelectionStrategy;
 import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
 import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+import querqy.trie.CompactTrieMap;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @RunWith(org.mockito.junit.MockitoJUnitRunner.class)
 public class SimpleCommonRulesRewriterFactoryTest {
@@ -87,6 +97,20 @@ public class SimpleCommonRulesRewriterFactoryTest {
     }
 
 
+    private SimpleCommonRulesRewriterFactory patchableCommonRulesFactory(final String rules) throws IOException {
+        return new SimpleCommonRulesRewriterFactory(
+                "someId",
+                new StringReader(rules),
+                false,
+                BoostMethod.ADDITIVE,
+                new WhiteSpaceQuerqyParserFactory(),
+                namedStrategyFactories,
+                defaultSelectionStrategyFactory,
+                true,
+                LookupPreprocessorType.LOWERCASE
+        );
+    }
+
     @Test(expected = NullPointerException.class)
     public void testThatDefaultSelectionStrategyFactoryMustBeSet() {
         try {
@@ -107,6 +131,33 @@ public class SimpleCommonRulesRewriterFactoryTest {
         assertEquals(1, factory.getInstructions().size());
     }
 
+    @Test
+    public void testThatEqualInstructionsOfDifferentRulesAreShared() throws IOException {
+        final SimpleCommonRulesRewriterFactory factory = commonRulesFactory(
+                "a =>\n DECORATE: f\n SYNONYM: s\n\n" +
+                "b =>\n DECORATE: f\n SYNONYM(0.5): s\n\n" +
+                "c =>\n DECORATE: g");
+
+        final Instructions a = getInstructions(factory, "a");
+        final Instructions b = getInstructions(factory, "b");
+        assertSame(getInstruction(a, DecorateInstruction.class), getInstruction(b, DecorateInstruction.class));
+        assertNotSame(getInstruction(a, SynonymInstruction.class), getInstruction(b, SynonymInstruction.class));
+
+        final Map<String, Object> info = factory.getInfo().orElseThrow();
+        assertEquals(3, info.get("rules"));
+        assertEquals(5, info.get("instructions"));
+        assertEquals(4, info.get("uniqueInstructions"));
+    }
+
+    private static Instructions getInstructions(final SimpleCommonRulesRewriterFactory factory, final String input) {
+        return factory.getTrieMap().get(input).getStateForCompleteSequence().value.getInstructionsList().get(0);
+    }
+
+    private static Instruction getInstruction(final Instructions instructions,
+                                              final Class<? extends Instruction> type) {
+        return instructions.stream().filter(type::isInstance).findFirst().orElseThrow();
+    }
+
     @Test
     public void testCreateRewriterUsesDefaultSelectionStrategyFactory() throws IOException {
         when(defaultSelectionStrategyFactory.createSelectionStrategy(any(), any()))
@@ -174,4 +225,72 @@ public class SimpleCommonRulesRewriterFactoryTest {
         assertThat(terms, Matchers.empty());
     }
 
+
+    @Test
+    public void testThatPatchReplacesAddsAndRemovesRulesById() throws IOException {
+        final SimpleCommonRulesRewriterFactory factory = patchableCommonRulesFactory(
+                "a =>\n SYNONYM: s1\n @_id:\"1\"\n" +
+                "a b =>\n SYNONYM: s2\n @_id:\"2\"\n" +
+                "c =>\n SYNONYM: s3\n @_id:\"3\"\n" +
+                "pre* =>\n SYNONYM: s5\n @_id:\"5\"\n" +
+                "A =>\n DELETE\n @_id:\"6\"");
+        final List<String> entriesBeforePatch = entries(factory);
+
+        final SimpleCommonRulesRewriterFactory patched = factory.patch(new StringReader(
+                "a =>\n SYNONYM: s1new\n @_id:\"1\"\n" +
+                "x =>\n SYNONYM: s4\n @_id:\"4\"\n" +
+                "pre* =>\n SYNONYM: s5new\n @_id:\"5\"\n"),
+                Collections.singletonList("3"));
+
+        final SimpleCommonRulesRewriterFactory rebuilt = patchableCommonRulesFactory(
+                "a =>\n SYNONYM: s1new\n @_id:\"1\"\n" +
+                "a b =>\n SYNONYM: s2\n @_id:\"2\"\n" +
+                "pre* =>\n SYNONYM: s5new\n @_id:\"5\"\n" +
+                "A =>\n DELETE\n @_id:\"6\"\n" +
+                "x =>\n SYNONYM: s4\n @_id:\"4\"");
+
+        assertEquals(entries(rebuilt), entries(patched));
+
+        // the replaced rule keeps its position, the new rule is appended
+        final Map<Object, Integer> ords = ords(patched);
+        assertEquals((Integer) 0, ords.get("1"));
+        assertThat(ords.get("2"), Matchers.greaterThan(ords.get("1")));
+        assertThat(ords.get("6"), Matchers.greaterThan(ords.get("5")));
+        assertThat(ords.get("4"), Matchers.greaterThan(ords.get("6")));
+
+        // the original factory is not changed
+        assertEquals(entriesBeforePatch, entries(factory));
+        assertEquals(5, factory.getInstructions().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testThatPatchIsNotSupportedForBooleanInput() throws IOException {
+        commonRulesFactory("input =>\n DECORATE: deco1").patch(new StringReader(""), Collections.emptySet());
+    }
+
+    @Test(expected = IOException.class)
+    public void testThatPatchWithInvalidRulesTriggersException() throws IOException {
+        patchableCommonRulesFactory("a =>\n SYNONYM: s1").patch(new StringReader("This is not a parsable rule"),
+                Collections.emptySet());
+    }
+
+    private static List<String> entries(final SimpleCommonRulesRewriterFactory factory) {
+        final List<String> entries = new ArrayList<>();
+        ((CompactTrieMap<InstructionsSupplier>) factory.getTrieMap()).forEachEntry((key, value, isPrefix) ->
+                entries.add(key + (isPrefix ? "*" : "") + "=" + value.getInstructionsList().stream()
+                        .map(instructions -> instructions.getId() + ":" + new ArrayList<>(instructions))
+                        .collect(Collectors.toList())));
+        return entries;
+    }
+
+    private static Map<Object, Integer> ords(final SimpleCommonRulesRewriterFactory factory) {
+        final Map<Object, Integer> ords = new HashMap<>();
+        for (final InstructionsSupplier instructionsSupplier : factory.getTrieMap()) {
+            for (final Instructions instructions : instructionsSupplier.getInstructionsList()) {
+                ords.put(instructions.getId(), instructions.getOrd());
+            }
+        }
+        return ords;
+    }
+
 }
\ No newline at end of file
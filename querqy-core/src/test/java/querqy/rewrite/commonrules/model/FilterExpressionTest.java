@@ -0,0 +1,151 @@
+package querqy.rewrite.commonrules.model;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public class FilterExpressionTest {
+
+    private static final Configuration JSON_PATH_CONFIG = Configuration.builder()
+            .jsonProvider(new JacksonJsonProvider())
+            .mappingProvider(new JacksonMappingProvider())
+            .build()
+            .addOptions(Option.ALWAYS_RETURN_LIST);
+
+    private static final Object MISSING = new Object();
+
+    @Before
+    public void setUp() {
+        FilterExpression.clearCache();
+    }
+
+    @Test
+    public void testThatSimpleComparisonsAreEvaluatedWithoutJsonPath() {
+        final List<String> expressions = Arrays.asList(
+                "$[?(@.x == 'y')]",
+                "$.[?(@.x == \"y\")]",
+                "$[?( @.x!=5 )]",
+                "$[?(@.x == -1.5)]",
+                "$[?(@.x == true)]");
+
+        for (final String expression : expressions) {
+            assertThat(expression, FilterExpression.parse(expression),
+                    instanceOf(FilterExpression.PropertyComparison.class));
+        }
+
+        final FilterExpression.PropertyComparison comparison =
+                (FilterExpression.PropertyComparison) FilterExpression.parse("$[?( @.x!=5 )]");
+        assertEquals("x", comparison.getPropertyName());
+        assertTrue(comparison.isNegated());
+        assertEquals(new BigDecimal(5), comparison.getLiteral());
+
+        final InstructionsProperties properties = properties("y");
+        assertTrue(FilterExpression.compile("$[?(@.x == 'y')]").matches(properties));
+        assertFalse(properties.hasDocumentContext());
+    }
+
+    @Test
+    public void testThatOtherExpressionsAreEvaluatedByJsonPath() {
+        final List<String> expressions = Arrays.asList(
+                "$[?(@.x == 'y' && @.z == 'q')]",
+                "$[?(@.x > 5)]",
+                "$.x[?(@ == 'y')]",
+                "$[?(@.x == 'it\\'s')]",
+                "$[?(@.x =~ /y.*/)]");
+
+        for (final String expression : expressions) {
+            assertThat(expression, FilterExpression.parse(expression),
+                    instanceOf(FilterExpression.JsonPathExpression.class));
+        }
+
+        final InstructionsProperties properties = properties("y");
+        assertTrue(FilterExpression.compile("$[?(@.x == 'y' && @.z == 'q')]").matches(properties));
+        assertTrue(properties.hasDocumentContext());
+    }
+
+    @Test
+    public void testThatPropertyComparisonMatchesLikeJsonPath() {
+
+        final List<Object> values = Arrays.asList("y", "Y", "1", "1.0", "true", 1, 1L, 1.0, 2, 1.5f,
+                new BigDecimal("1.00"), Double.NaN, true, false, Collections.singletonList("y"),
+                Collections.singletonMap("a", "y"), null, MISSING);
+
+        final List<String> literals = Arrays.asList("'y'", "\"y\"", "'1'", "'true'", "1", "1.0", "-1", "true",
+                "false");
+
+        for (final String operator : Arrays.asList("==", "!=")) {
+            for (final String literal : literals) {
+                final String expression = "$[?(@.x " + operator + " " + literal + ")]";
+                final FilterExpression filterExpression = FilterExpression.parse(expression);
+                assertThat(filterExpression, instanceOf(FilterExpression.PropertyComparison.class));
+                final JsonPath jsonPath = JsonPath.compile(expression);
+
+                for (final Object value : values) {
+                    final InstructionsProperties properties = properties(value);
+                    assertEquals(expression + " for " + value,
+                            outcome(() -> properties.matches(jsonPath)),
+                            outcome(() -> filterExpression.matches(properties)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThatCompiledExpressionsAreCached() {
+        final FilterExpression expression = FilterExpression.compile("$[?(@.x == 'y')]");
+        assertThat(FilterExpression.compile("$[?(@.x == 'y')]"), is(sameInstance(expression)));
+        assertEquals(1, FilterExpression.getCacheSize());
+    }
+
+    @Test
+    public void testThatCacheIsBounded() {
+        for (int i = 0; i < FilterExpression.MAX_CACHE_SIZE + 10; i++) {
+            FilterExpression.compile("$[?(@.x == " + i + ")]");
+        }
+        assertEquals(10, FilterExpression.getCacheSize());
+        assertTrue(FilterExpression.compile("$[?(@.x == 5000)]").matches(properties(5000)));
+
+        // expressions that are compiled after the cache was full are cached, too
+        final FilterExpression expression = FilterExpression.compile("$[?(@.x == 5000)]");
+        assertThat(FilterExpression.compile("$[?(@.x == 5000)]"), is(sameInstance(expression)));
+        assertEquals(11, FilterExpression.getCacheSize());
+    }
+
+    private static String outcome(final BooleanSupplier matches) {
+        try {
+            return Boolean.toString(matches.getAsBoolean());
+        } catch (final RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    private static InstructionsProperties properties(final Object value) {
+        final Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("z", "q");
+        if (value != MISSING) {
+            propertyMap.put("x", value);
+        }
+        return new InstructionsProperties(propertyMap, JSON_PATH_CONFIG);
+    }
+
+}
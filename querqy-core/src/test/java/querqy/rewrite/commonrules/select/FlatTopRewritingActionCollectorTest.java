@@ -1,19 +1,25 @@
 package querqy.rewrite.commonrules.select;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static querqy.rewrite.commonrules.select.ConfigurationOrderSelectionStrategy.COMPARATORS;
 import static querqy.rewrite.commonrules.model.InstructionsTestSupport.instructions;
 
 import org.junit.Assert;
 import org.junit.Test;
+import querqy.PriorityComparator;
 import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.model.TermMatches;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 
 public class FlatTopRewritingActionCollectorTest {
 
@@ -111,6 +117,60 @@ public class FlatTopRewritingActionCollectorTest {
 
     }
 
+    @Test
+    public void testThatLimitKeepsTopInstructionsByProperty() {
+
+        final int numInstructions = 200;
+        final int limit = 20;
+        final List<Comparator<Instructions>> comparators = new PropertySorting("prio", Sorting.SortOrder.DESC)
+                .getComparators();
+
+        final List<Instructions> allInstructions = new ArrayList<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < numInstructions; i++) {
+            // some instructions don't have a priority and must be sorted last
+            allInstructions.add(i % 10 == 0
+                    ? instructions(i)
+                    : instructions(i, "prio", random.nextInt(30)));
+        }
+
+        final TopRewritingActionCollector collector
+                = new FlatTopRewritingActionCollector(comparators, limit, Collections.emptyList());
+        for (final Instructions instr : allInstructions) {
+            collector.offer(Collections.singletonList(instr), instr1 -> new Action(instr1, new TermMatches(), 0, 1));
+        }
+
+        final List<Instructions> expected = new ArrayList<>(allInstructions);
+        expected.sort(new PriorityComparator<>(comparators));
+
+        final List<Instructions> actual = collector.createActions().stream()
+                .map(Action::getInstructions).collect(Collectors.toList());
+
+        assertEquals(expected.subList(0, limit), actual);
+
+    }
 
+    @Test
+    public void testThatActionsOfTheSameInstructionsAreKeptTogether() {
+
+        final TopRewritingActionCollector collector
+                = new FlatTopRewritingActionCollector(COMPARATORS, 2, Collections.emptyList());
+
+        final Instructions instructions1 = instructions(1);
+        final Action action1 = new Action(instructions1, new TermMatches(), 1, 2);
+        final Action action2 = new Action(instructions1, new TermMatches(), 3, 4);
+
+        collector.offer(Collections.singletonList(instructions(3)), instr -> new Action(instr, new TermMatches()));
+        collector.offer(Collections.singletonList(instructions1), instr -> action1);
+        collector.offer(Collections.singletonList(instructions(2)), instr -> new Action(instr, new TermMatches()));
+        collector.offer(Collections.singletonList(instructions1), instr -> action2);
+
+        final List<Action> actions = collector.createActions();
+        assertEquals(3, actions.size());
+        assertSame(action1, actions.get(0));
+        assertSame(action2, actions.get(1));
+        assertEquals(2, actions.get(2).getInstructions().getOrd());
+
+    }
 
 }
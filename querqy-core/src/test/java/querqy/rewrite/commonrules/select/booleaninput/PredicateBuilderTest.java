@@ -5,11 +5,13 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 import querqy.rewrite.commonrules.RuleParseException;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputElement;
 import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputElement.Type;
+import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputPredicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -106,6 +108,44 @@ public class PredicateBuilderTest {
         assertThat(predicate.test(new boolean[]{false, false, false})).isFalse();
     }
 
+    @Test
+    public void testLongConjunctionAndDisjunction() throws RuleParseException {
+        final int numTerms = 200;
+        final String conjunction = IntStream.range(0, numTerms).mapToObj(i -> "t" + i)
+                .collect(Collectors.joining(" AND "));
+        final String disjunction = IntStream.range(0, numTerms).mapToObj(i -> "t" + i)
+                .collect(Collectors.joining(" OR "));
+
+        final boolean[] allTrue = new boolean[numTerms];
+        Arrays.fill(allTrue, true);
+        final boolean[] oneTrue = new boolean[numTerms];
+        oneTrue[numTerms - 1] = true;
+
+        assertThat(predicate(conjunction).test(allTrue)).isTrue();
+        assertThat(predicate(conjunction).test(oneTrue)).isFalse();
+        assertThat(predicate(disjunction).test(oneTrue)).isTrue();
+        assertThat(predicate(disjunction).test(new boolean[numTerms])).isFalse();
+    }
+
+    @Test
+    public void testEvaluationOnLiteralBitset() throws RuleParseException {
+        final BooleanInputPredicate predicate = (BooleanInputPredicate) predicate("( a OR b ) AND NOT c");
+        // reference ids 0, 1, 2 map to literal ids 3, 70, 130
+        final int[] literalIds = {3, 70, 130};
+
+        final long[] seen = new long[3];
+        assertThat(predicate.test(seen, literalIds)).isFalse();
+
+        seen[1] |= 1L << 70;
+        assertThat(predicate.test(seen, literalIds)).isTrue();
+
+        seen[2] |= 1L << 130;
+        assertThat(predicate.test(seen, literalIds)).isFalse();
+
+        // literals beyond the bitset count as not seen
+        assertThat(predicate.test(new long[] {1L << 3}, literalIds)).isTrue();
+    }
+
     private Predicate<boolean[]> predicate(final String booleanString) throws RuleParseException {
         final AtomicInteger integer = new AtomicInteger();
         return PredicateBuilder.build(elements(booleanString), terms -> integer.getAndIncrement());
@@ -5,6 +5,7 @@ import org.junit.Test;
 import querqy.rewrite.commonrules.AbstractCommonRulesTest;
 import querqy.rewrite.commonrules.select.booleaninput.BooleanInputQueryHandler;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -62,4 +63,20 @@ public class BooleanInputTest extends AbstractCommonRulesTest {
 
     }
 
+    @Test
+    public void testThatInputWithRepeatedLiteralIsEvaluatedOnce() {
+        final List<BooleanInputLiteral> literals = literals(2);
+        // a AND b AND a
+        booleanInput(Arrays.asList(literals.get(0), literals.get(1), literals.get(0)));
+
+        final BooleanInputQueryHandler handler = new BooleanInputQueryHandler();
+
+        handler.notifyLiteral(literals.get(0));
+        assertThat(handler.evaluate()).isEmpty();
+
+        handler.notifyLiteral(literals.get(0));
+        handler.notifyLiteral(literals.get(1));
+        assertThat(handler.evaluate()).hasSize(1);
+    }
+
 }
@@ -24,6 +24,8 @@ import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static querqy.QuerqyMatchers.bq;
 import static querqy.QuerqyMatchers.dmq;
 import static querqy.QuerqyMatchers.term;
@@ -51,6 +53,26 @@ public class ReplaceRewriterTest {
         );
     }
 
+    @Test
+    public void testThatRewriterCanBeReusedAfterReset() {
+        SequenceLookup<ReplaceInstruction> sequenceLookup = new SequenceLookup<>();
+        sequenceLookup.put(tokenListFromString("a b"), getTermsReplaceInstruction(Collections.singletonList("c")));
+
+        ReplaceRewriter replaceRewriter = new ReplaceRewriter(sequenceLookup);
+
+        RewriterOutput output = replaceRewriter.rewrite(getQuery(Arrays.asList("a", "b", "d")),
+                new EmptySearchEngineRequestAdapter());
+        assertThat((Query) output.getExpandedQuery().getUserQuery(), bq(dmq(term("c")), dmq(term("d"))));
+
+        replaceRewriter.reset();
+
+        ExpandedQuery query = getQuery(Arrays.asList("e", "f"));
+        output = replaceRewriter.rewrite(query, new EmptySearchEngineRequestAdapter());
+        assertThat((Query) output.getExpandedQuery().getUserQuery(), bq(dmq(term("e")), dmq(term("f"))));
+        assertSame(query, output.getExpandedQuery());
+        assertFalse(output.getRewriterLog().get().hasAppliedRewriting());
+    }
+
     @Test
     public void testEmptyQueryAfterExactMatchRule() {
         SequenceLookup<ReplaceInstruction> sequenceLookup = new SequenceLookup<>();
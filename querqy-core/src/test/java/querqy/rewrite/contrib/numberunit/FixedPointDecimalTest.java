@@ -0,0 +1,88 @@
+package querqy.rewrite.contrib.numberunit;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FixedPointDecimalTest {
+
+    private static final String[] VALUES = {"0", "1", "-1", "0.5", "-0.5", "2.5", "-2.5", "0.00001", "-0.00049",
+            "12.345", "55", "100", "0.1", "999999999999999999", "-999999999999999999", "9223372036854775807",
+            "123456789.123456789", "1E+3", "0.0000001", "220.19999999999998863131622783839702606201171875"};
+
+    @Test
+    public void testThatOperationsHaveSameResultsAsBigDecimal() {
+        for (final String a : VALUES) {
+            for (final String b : VALUES) {
+                final BigDecimal bigA = new BigDecimal(a);
+                final BigDecimal bigB = new BigDecimal(b);
+                final FixedPointDecimal fixedA = FixedPointDecimal.valueOf(bigA);
+                final FixedPointDecimal fixedB = FixedPointDecimal.valueOf(bigB);
+
+                assertSame(fixedA.multiply(fixedB), bigA.multiply(bigB));
+                assertSame(fixedA.add(fixedB), bigA.add(bigB));
+                assertSame(fixedA.subtract(fixedB), bigA.subtract(bigB));
+                if (bigB.signum() != 0) {
+                    for (int scale = 0; scale < 7; scale += 3) {
+                        assertSame(fixedA.divide(fixedB, scale), bigA.divide(bigB, scale, RoundingMode.HALF_UP));
+                    }
+                }
+                assertThat(fixedA.compareTo(fixedB)).isEqualTo(bigA.compareTo(bigB));
+            }
+        }
+    }
+
+    @Test
+    public void testThatRandomOperationsHaveSameResultsAsBigDecimal() {
+        final Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            final BigDecimal bigA = BigDecimal.valueOf(random.nextInt(2000000) - 1000000, random.nextInt(6));
+            final BigDecimal bigB = BigDecimal.valueOf(random.nextInt(20000) - 10000, random.nextInt(4));
+            final FixedPointDecimal fixedA = FixedPointDecimal.valueOf(bigA);
+            final FixedPointDecimal fixedB = FixedPointDecimal.valueOf(bigB);
+            final int scale = random.nextInt(6);
+
+            assertSame(fixedA.multiply(fixedB).setScale(scale),
+                    bigA.multiply(bigB).setScale(scale, RoundingMode.HALF_UP));
+            if (bigB.signum() != 0) {
+                assertSame(fixedA.divide(fixedB, scale), bigA.divide(bigB, scale, RoundingMode.HALF_UP));
+            }
+        }
+    }
+
+    @Test
+    public void testSetScale() {
+        for (final String value : VALUES) {
+            final BigDecimal big = new BigDecimal(value);
+            for (int scale = 0; scale < 8; scale++) {
+                assertSame(FixedPointDecimal.valueOf(big).setScale(scale), big.setScale(scale, RoundingMode.HALF_UP));
+            }
+        }
+    }
+
+    @Test
+    public void testThatDivisionByZeroFails() {
+        assertThatThrownBy(() -> FixedPointDecimal.valueOf(1L, 0).divide(FixedPointDecimal.ZERO, 2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void testDoubleValue() {
+        for (final String value : VALUES) {
+            final BigDecimal big = new BigDecimal(value);
+            assertThat(FixedPointDecimal.valueOf(big).doubleValue()).isEqualTo(big.doubleValue());
+        }
+    }
+
+    private static void assertSame(final FixedPointDecimal actual, final BigDecimal expected) {
+        assertThat(actual.toBigDecimal()).isEqualTo(expected);
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+        assertThat(actual.signum()).isEqualTo(expected.signum());
+    }
+
+}
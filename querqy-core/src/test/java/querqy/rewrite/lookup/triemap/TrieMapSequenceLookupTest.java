@@ -3,6 +3,7 @@ package querqy.rewrite.lookup.triemap;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
@@ -20,7 +21,7 @@ import static org.mockito.Mockito.when;
 @RunWith(org.mockito.junit.MockitoJUnitRunner.class)
 public class TrieMapSequenceLookupTest {
 
-    @Mock
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     LookupPreprocessor preprocessor;
     @Mock TrieMap<String> trieMap;
 
@@ -45,7 +46,18 @@ public class TrieMapSequenceLookupTest {
         trieMapSequenceLookup.evaluateTerm(term("a"));
 
         verify(trieMap).get(charSequenceCaptor.capture());
-        assertThat(charSequenceCaptor.getValue()).isEqualTo("b");
+        assertThat(charSequenceCaptor.getValue()).hasToString("b");
+
+    }
+
+    @Test
+    public void testThat_fieldAndPreprocessedTermArePassedToMap_forTermWithField() {
+        when(preprocessor.process(any())).thenReturn("b");
+
+        trieMapSequenceLookup.evaluateTerm(new Term(null, "f1", "a"));
+
+        verify(trieMap).get(charSequenceCaptor.capture());
+        assertThat(charSequenceCaptor.getValue()).hasToString("f1:b");
 
     }
 
@@ -0,0 +1,144 @@
+package querqy.rewrite.rules;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.InstructionsSupplier;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollectionBuilder;
+import querqy.rewrite.commonrules.select.booleaninput.model.BooleanInputLiteral;
+import querqy.rewrite.rules.factory.RulesParserFactory;
+import querqy.rewrite.rules.factory.config.RuleParserConfig;
+import querqy.rewrite.rules.factory.config.RulesParserConfig;
+import querqy.rewrite.rules.factory.config.TextParserConfig;
+import querqy.trie.State;
+import querqy.trie.TrieMap;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RulesParserTest {
+
+    private static final int NUM_RULES = 3 * RulesParser.CHUNK_SIZE + 17;
+
+    private static ForkJoinPool forkJoinPool;
+
+    @BeforeClass
+    public static void setUpPool() {
+        forkJoinPool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutDownPool() {
+        forkJoinPool.shutdown();
+    }
+
+    @Test
+    public void testThatConcurrentParsingCreatesSameRulesAsSequentialParsing() throws IOException {
+        final String rules = createRules();
+
+        final TrieMap<InstructionsSupplier> sequential = parse(rules, null);
+        final TrieMap<InstructionsSupplier> concurrent = parse(rules, forkJoinPool);
+
+        for (int i = 0; i < NUM_RULES; i++) {
+            for (final String input : new String[] {"w" + (i % 1000), "b" + i, "c" + i}) {
+                final InstructionsSupplier expected = lookup(sequential, input);
+                final InstructionsSupplier actual = lookup(concurrent, input);
+                if (expected == null) {
+                    assertThat(actual).isNull();
+                } else {
+                    assertThat(actual.getInstructionsList()).isEqualTo(expected.getInstructionsList());
+                    assertThat(actual.getLiteral().map(BooleanInputLiteral::getId))
+                            .isEqualTo(expected.getLiteral().map(BooleanInputLiteral::getId));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThatConcurrentParsingReportsFirstError() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_RULES; i++) {
+            sb.append("w").append(i).append(" =>\n  SYNONYM: s").append(i).append('\n');
+            if (i == 100 || i == 200) {
+                sb.append("  @_id:\"dup\"\n");
+            } else if (i == NUM_RULES - 10) {
+                // fails in the rule parser, not in the skeleton parser
+                sb.append("  DELETE: notininput\n");
+            }
+            sb.append('\n');
+        }
+        final String rules = sb.toString();
+
+        assertThatThrownBy(() -> parse(rules, null)).hasMessage("Duplicate ID: dup");
+        assertThatThrownBy(() -> parse(rules, forkJoinPool)).hasMessage("Duplicate ID: dup");
+    }
+
+    @Test
+    public void testThatConcurrentParsingReportsRuleErrorBeforeLaterSkeletonError() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_RULES; i++) {
+            sb.append("w").append(i).append(" =>\n");
+            if (i == 100) {
+                // fails in the rule parser
+                sb.append("  DELETE: notininput\n");
+            }
+            if (i != NUM_RULES - 10) {
+                // a rule without instructions fails in the skeleton parser, which throws an IOException
+                sb.append("  SYNONYM: s").append(i).append('\n');
+            }
+            sb.append('\n');
+        }
+        final String rules = sb.toString();
+
+        final Throwable sequentialError = catchThrowable(() -> parse(rules, null));
+        assertThat(sequentialError).isInstanceOf(RuleParseException.class);
+        assertThat(sequentialError.getMessage()).doesNotContain("has no instructions");
+
+        assertThatThrownBy(() -> parse(rules, forkJoinPool)).hasMessage(sequentialError.getMessage());
+    }
+
+    private static String createRules() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < NUM_RULES; i++) {
+            if (i % 10 == 0) {
+                sb.append("b").append(i).append(" AND NOT c").append(i).append(" =>\n")
+                        .append("  UP(10): u").append(i).append('\n');
+            } else {
+                // inputs repeat so that instructions of several rules are merged
+                sb.append("w").append(i % 1000).append(" =>\n")
+                        .append("  SYNONYM: s").append(i).append('\n')
+                        .append("  DOWN(5): d").append(i).append('\n');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static TrieMap<InstructionsSupplier> parse(final String rules, final ForkJoinPool forkJoinPool)
+            throws IOException {
+        return RulesParserFactory.textParser(RulesParserConfig.builder()
+                .textParserConfig(TextParserConfig.builder()
+                        .rulesContentReader(new StringReader(rules))
+                        .build())
+                .ruleParserConfig(RuleParserConfig.builder()
+                        .isAllowedToParseBooleanInput(true)
+                        .querqyParserFactory(new WhiteSpaceQuerqyParserFactory())
+                        .build())
+                .rulesCollectionBuilder(new TrieMapRulesCollectionBuilder(false))
+                .forkJoinPool(forkJoinPool)
+                .build())
+                .parse();
+    }
+
+    private static InstructionsSupplier lookup(final TrieMap<InstructionsSupplier> trieMap, final String input) {
+        final State<InstructionsSupplier> state = trieMap.get(input).getStateForCompleteSequence();
+        return state.isFinal() ? state.value : null;
+    }
+
+}
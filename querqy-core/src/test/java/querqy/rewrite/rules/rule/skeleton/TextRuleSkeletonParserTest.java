@@ -7,11 +7,15 @@ import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import querqy.rewrite.rules.RuleParseException;
+import querqy.rewrite.rules.factory.TextParserFactory;
+import querqy.rewrite.rules.factory.config.TextParserConfig;
 
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -89,6 +93,22 @@ public class TextRuleSkeletonParserTest {
                 "abc");
     }
 
+    @Test
+    public void testThat_lineNumbersOfRulesAreFound_withoutSurroundingBlankLinesAndComments() throws IOException {
+        final TextRuleSkeletonParser parser = TextParserFactory.of(TextParserConfig.builder()
+                        .rulesContentReader(content(
+                                "# comment", "a =>", "  SYNONYM: b", "  # comment", "  SYNONYM: c", "",
+                                "# comment", "d =>", "  SYNONYM: e", ""))
+                        .build())
+                .createRuleSkeletonParser();
+
+        final List<String> rules = new ArrayList<>();
+        parser.parseWithLineNumbers((ruleSkeleton, firstLineNumber, lastLineNumber) ->
+                rules.add(ruleSkeleton.getInputSkeleton() + ":" + firstLineNumber + "-" + lastLineNumber));
+
+        assertThat(rules).containsExactly("a:2-5", "d:8-9");
+    }
+
     private Reader content(final String... lines) {
         return new StringReader(String.join("\n", lines));
     }
@@ -0,0 +1,396 @@
+package querqy.trie;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CompactTrieMapTest {
+
+    @Test
+    public void testThatEmptyMapAlwaysReturnsUnknownState() {
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(new TrieMap<>());
+        final State<Integer> state = map.get("abc").getStateForCompleteSequence();
+        assertFalse(state.isKnown());
+        assertFalse(state.isFinal());
+        assertEquals(-1, state.getIndex());
+        assertFalse(map.iterator().hasNext());
+    }
+
+    @Test
+    public void testThatSequenceOfEntryReturnsKnownAndFinalStateAndValue() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.put("ab", 2);
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+
+        State<Integer> state = map.get("abc").getStateForCompleteSequence();
+        assertTrue(state.isFinal());
+        assertEquals((Integer) 1, state.getValue());
+        assertEquals(2, state.getIndex());
+
+        state = map.get("ab").getStateForCompleteSequence();
+        assertTrue(state.isFinal());
+        assertEquals((Integer) 2, state.getValue());
+        assertEquals(1, state.getIndex());
+
+        state = map.get("a").getStateForCompleteSequence();
+        assertTrue(state.isKnown());
+        assertFalse(state.isFinal());
+
+        assertFalse(map.get("abcd").getStateForCompleteSequence().isKnown());
+        assertFalse(map.get("b").getStateForCompleteSequence().isKnown());
+    }
+
+    @Test
+    public void testResumingFromKnownState() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("ab cd", 1);
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+
+        final State<Integer> state = map.get("ab").getStateForCompleteSequence();
+        assertTrue(state.isKnown());
+        assertFalse(state.isFinal());
+
+        final State<Integer> next = map.get(" cd", state).getStateForCompleteSequence();
+        assertTrue(next.isFinal());
+        assertEquals((Integer) 1, next.getValue());
+        assertEquals(2, next.getIndex());
+    }
+
+    @Test
+    public void testThatMissesReturnSharedUnknownStates() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.putPrefix("x", 2);
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+        assertSame(States.unknown(), map.get("b"));
+        assertSame(States.unknown(), map.get("abd"));
+        assertSame(States.unknown(), map.get(" d", map.get("ab").getStateForCompleteSequence()));
+        // prefix matches cannot be added to the shared instance
+        assertNotSame(States.unknown(), map.get("xy"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatResumingFromUnknownStateThrowsException() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+        map.get("c", map.get("x").getStateForCompleteSequence());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testThatPutIsNotSupported() {
+        CompactTrieMap.of(new TrieMap<Integer>()).put("a", 1);
+    }
+
+    @Test
+    public void testGetPrefixes() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.putPrefix("a", 1);
+        trieMap.putPrefix("abc", 2);
+        trieMap.put("abcde", 3);
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+
+        final States<Integer> states = map.get("abcde");
+        assertEquals((Integer) 3, states.getStateForCompleteSequence().getValue());
+        final List<State<Integer>> prefixes = states.getPrefixes();
+        assertEquals(2, prefixes.size());
+        // deepest prefix first
+        assertEquals((Integer) 2, prefixes.get(0).getValue());
+        assertEquals(2, prefixes.get(0).getIndex());
+        assertEquals((Integer) 1, prefixes.get(1).getValue());
+        assertEquals(0, prefixes.get(1).getIndex());
+
+        // "abc" is not a prefix match of itself as the wildcard must match at least one char
+        final List<State<Integer>> prefixesOfAbc = map.get("abc").getPrefixes();
+        assertEquals(1, prefixesOfAbc.size());
+        assertEquals((Integer) 1, prefixesOfAbc.get(0).getValue());
+
+        final States<Integer> unknown = map.get("abx");
+        assertFalse(unknown.getStateForCompleteSequence().isKnown());
+        assertEquals(1, unknown.getPrefixes().size());
+        assertEquals((Integer) 1, unknown.getPrefixes().get(0).getValue());
+    }
+
+    @Test
+    public void testValueIterator() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("1", 1);
+        trieMap.put("24", 2);
+        trieMap.putPrefix("1", 3);
+        trieMap.put("245", 4);
+        trieMap.putPrefix("245", 5);
+
+        assertThat(iterate(CompactTrieMap.of(trieMap)), containsInAnyOrder(1, 2, 3, 4, 5));
+        assertThat(iterate(CompactTrieMap.of(new TrieMap<Integer>())), empty());
+    }
+
+    @Test
+    public void testThatLookupsMatchTrieMapForRandomSequences() {
+
+        final Random random = new Random(42L);
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        final List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            final String key = randomSequence(random);
+            keys.add(key);
+            if (random.nextInt(10) == 0) {
+                trieMap.putPrefix(key, i);
+            } else {
+                trieMap.put(key, i);
+            }
+        }
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+
+        for (int i = 0; i < 20000; i++) {
+            final String seq = (i % 2 == 0) ? keys.get(random.nextInt(keys.size())) + randomSequence(random)
+                    : randomSequence(random);
+            assertSameStates(trieMap.get(seq), map.get(seq));
+
+            final States<Integer> expected = trieMap.get(seq);
+            final States<Integer> actual = map.get(seq);
+            if (expected.getStateForCompleteSequence().isKnown()) {
+                final String next = " " + randomSequence(random);
+                assertSameStates(trieMap.get(next, expected.getStateForCompleteSequence()),
+                        map.get(next, actual.getStateForCompleteSequence()));
+            }
+        }
+
+        assertThat(iterate(map), containsInAnyOrder(iterate(trieMap).toArray()));
+    }
+
+    @Test
+    public void testThatUpdateDoesNotChangeOriginalMap() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.put("abd", 2);
+        trieMap.putPrefix("ab", 3);
+
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+
+        final Map<String, Integer> values = new HashMap<>();
+        values.put("abc", null);
+        values.put("abe", 4);
+        values.put("x", 5);
+        final CompactTrieMap<Integer> updated = map.update(values, Collections.singletonMap("ab", null));
+
+        assertEquals((Integer) 1, map.getValue("abc"));
+        assertNull(map.getValue("abe"));
+        assertEquals((Integer) 3, map.getPrefixValue("ab"));
+
+        assertNull(updated.getValue("abc"));
+        assertEquals((Integer) 2, updated.getValue("abd"));
+        assertEquals((Integer) 4, updated.getValue("abe"));
+        assertEquals((Integer) 5, updated.getValue("x"));
+        assertNull(updated.getPrefixValue("ab"));
+        assertNull(updated.get("abdx").getPrefixes());
+
+        assertSame(map, map.update(Collections.emptyMap(), Collections.emptyMap()));
+    }
+
+    @Test
+    public void testThatUpdateRemovesNodesWithoutValues() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("abc", 1);
+        trieMap.put("a", 2);
+
+        final CompactTrieMap<Integer> updated = CompactTrieMap.of(trieMap)
+                .update(Collections.singletonMap("abc", null), Collections.emptyMap());
+
+        assertEquals(1, updated.size());
+        assertFalse(updated.get("ab").getStateForCompleteSequence().isKnown());
+        assertEquals((Integer) 2, updated.getValue("a"));
+    }
+
+    @Test
+    public void testForEachEntry() {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("ab", 1);
+        trieMap.put("b", 2);
+        trieMap.putPrefix("ab", 3);
+
+        final List<String> entries = new ArrayList<>();
+        CompactTrieMap.of(trieMap).forEachEntry((key, value, isPrefix) ->
+                entries.add(key + (isPrefix ? "*" : "") + "=" + value));
+
+        assertThat(entries, contains("ab=1", "ab*=3", "b=2"));
+    }
+
+    @Test
+    public void testThatUpdatedMapMatchesRebuiltMapForRandomUpdates() {
+
+        final Random random = new Random(7L);
+        final Map<String, Integer> values = new HashMap<>();
+        final Map<String, Integer> prefixValues = new HashMap<>();
+
+        for (int i = 0; i < 500; i++) {
+            values.put(randomSequence(random), i);
+            if (i % 10 == 0) {
+                prefixValues.put(randomSequence(random), -i);
+            }
+        }
+
+        CompactTrieMap<Integer> map = CompactTrieMap.of(toTrieMap(values, prefixValues));
+
+        for (int round = 0; round < 20; round++) {
+
+            final Map<String, Integer> valueUpdates = new HashMap<>();
+            final Map<String, Integer> prefixValueUpdates = new HashMap<>();
+            for (int i = 0; i < 30; i++) {
+                final String key = randomSequence(random);
+                final Integer value = random.nextBoolean() ? null : round * 1000 + i;
+                if (i % 5 == 0) {
+                    prefixValueUpdates.put(key, value);
+                } else {
+                    valueUpdates.put(key, value);
+                }
+            }
+
+            map = map.update(valueUpdates, prefixValueUpdates);
+            applyUpdates(values, valueUpdates);
+            applyUpdates(prefixValues, prefixValueUpdates);
+
+            final CompactTrieMap<Integer> rebuilt = CompactTrieMap.of(toTrieMap(values, prefixValues));
+            assertEquals(rebuilt.size(), map.size());
+
+            for (int i = 0; i < 2000; i++) {
+                final String seq = randomSequence(random) + randomSequence(random);
+                assertSameStates(rebuilt.get(seq), map.get(seq));
+                final String shortSeq = randomSequence(random);
+                assertSameStates(rebuilt.get(shortSeq), map.get(shortSeq));
+            }
+        }
+    }
+
+    @Test
+    public void testThatReadTablesMatchWrittenMap() throws IOException {
+
+        final Random random = new Random(11L);
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        for (int i = 0; i < 500; i++) {
+            if (i % 10 == 0) {
+                trieMap.putPrefix(randomSequence(random), -i);
+            } else {
+                trieMap.put(randomSequence(random), i);
+            }
+        }
+        final CompactTrieMap<Integer> map = CompactTrieMap.of(trieMap);
+        final List<Integer> pool = iterate(map);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeInt(42);
+            map.writeTables(out, pool::indexOf);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bos.toByteArray());
+        assertEquals(42, buffer.getInt());
+        final CompactTrieMap<Integer> read = CompactTrieMap.readTables(buffer, pool::get);
+        assertFalse(buffer.hasRemaining());
+
+        assertEquals(map.size(), read.size());
+        assertEquals(pool, iterate(read));
+        for (int i = 0; i < 5000; i++) {
+            final String seq = randomSequence(random) + randomSequence(random);
+            assertSameStates(map.get(seq), read.get(seq));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatInconsistentTablesAreRejected() throws IOException {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        trieMap.put("ab", 1);
+        trieMap.put("c", 2);
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (final DataOutputStream out = new DataOutputStream(bos)) {
+            CompactTrieMap.of(trieMap).writeTables(out, value -> value);
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bos.toByteArray());
+        // number of nodes, 4 chars, then the start of the children of the root
+        buffer.putInt(4 + 4 * Character.BYTES, 0);
+
+        CompactTrieMap.readTables(buffer, ref -> ref);
+    }
+
+    private static TrieMap<Integer> toTrieMap(final Map<String, Integer> values,
+                                              final Map<String, Integer> prefixValues) {
+        final TrieMap<Integer> trieMap = new TrieMap<>();
+        values.forEach(trieMap::put);
+        prefixValues.forEach(trieMap::putPrefix);
+        return trieMap;
+    }
+
+    private static void applyUpdates(final Map<String, Integer> map, final Map<String, Integer> updates) {
+        updates.forEach((key, value) -> {
+            if (value == null) {
+                map.remove(key);
+            } else {
+                map.put(key, value);
+            }
+        });
+    }
+
+    private static String randomSequence(final Random random) {
+        final int length = 1 + random.nextInt(4);
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(6)));
+        }
+        return sb.toString();
+    }
+
+    private static void assertSameStates(final States<Integer> expected, final States<Integer> actual) {
+        assertSameState(expected.getStateForCompleteSequence(), actual.getStateForCompleteSequence());
+        final List<State<Integer>> expectedPrefixes = expected.getPrefixes();
+        final List<State<Integer>> actualPrefixes = actual.getPrefixes();
+        if (expectedPrefixes == null) {
+            assertNull(actualPrefixes);
+        } else {
+            assertEquals(expectedPrefixes.size(), actualPrefixes.size());
+            for (int i = 0; i < expectedPrefixes.size(); i++) {
+                assertSameState(expectedPrefixes.get(i), actualPrefixes.get(i));
+            }
+        }
+    }
+
+    private static void assertSameState(final State<Integer> expected, final State<Integer> actual) {
+        assertEquals(expected.isKnown(), actual.isKnown());
+        assertEquals(expected.isFinal(), actual.isFinal());
+        assertSame(expected.getValue(), actual.getValue());
+        assertEquals(expected.getIndex(), actual.getIndex());
+    }
+
+    private static List<Integer> iterate(final Iterable<Integer> map) {
+        final List<Integer> result = new ArrayList<>();
+        map.forEach(result::add);
+        return result;
+    }
+
+}
@@ -5,6 +5,7 @@ import querqy.trie.model.ExactMatch;
 import querqy.trie.model.PrefixMatch;
 import querqy.trie.model.SuffixMatch;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -290,6 +291,37 @@ public class SequenceLookupTest {
         assertThat(exactMatches).hasSize(0);
     }
 
+    @Test
+    public void testFindMatchesInSinglePass() {
+        SequenceLookup<String> sequenceLookup = new SequenceLookup<>();
+        sequenceLookup.put(createStringList("term1", "term2"), "exact");
+        sequenceLookup.putSuffix("suffix", "suffix");
+        sequenceLookup.putPrefix("prefix", "prefix");
+
+        final TokenBuffer tokens = sequenceLookup.createTokenBuffer();
+        tokens.addAll(createTermSeq("TERM1", "term2", "abcSuffix", "PREFIXdef"));
+
+        final List<ExactMatch<String>> exactMatches = new ArrayList<>();
+        final List<SuffixMatch<String>> suffixMatches = new ArrayList<>();
+        final List<PrefixMatch<String>> prefixMatches = new ArrayList<>();
+        sequenceLookup.findMatches(tokens, exactMatches, suffixMatches, prefixMatches);
+
+        assertThat(exactMatches).containsExactly(new ExactMatch<>(0, 2, "exact"));
+
+        assertThat(suffixMatches).hasSize(1);
+        assertThat(suffixMatches.get(0).getLookupOffset()).isEqualTo(2);
+        assertThat(suffixMatches.get(0).wildcardMatch).isEqualTo("abc");
+
+        assertThat(prefixMatches).hasSize(1);
+        assertThat(prefixMatches.get(0).getLookupOffset()).isEqualTo(3);
+        assertThat(prefixMatches.get(0).wildcardMatch).isEqualTo("def");
+
+        tokens.reset(createTermSeq("term1", "term2x"));
+        exactMatches.clear();
+        sequenceLookup.findMatches(tokens, exactMatches, null, null);
+        assertThat(exactMatches).isEmpty();
+    }
+
     private List<CharSequence> createStringList(String... terms) {
         return Arrays.asList(terms);
     }
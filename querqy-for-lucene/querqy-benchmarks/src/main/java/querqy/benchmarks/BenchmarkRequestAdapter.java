@@ -0,0 +1,170 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import querqy.lucene.LuceneSearchEngineRequestAdapter;
+import querqy.lucene.QuerySimilarityScoring;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.infologging.InfoLoggingContext;
+import querqy.model.QuerqyQuery;
+import querqy.model.RawQuery;
+import querqy.parser.QuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A {@link LuceneSearchEngineRequestAdapter} that uses the defaults of the {@link querqy.lucene.QueryParsingController}
+ * for everything that is not passed to the constructor. Raw queries are not supported as they would need a search
+ * engine specific query parser.
+ */
+public class BenchmarkRequestAdapter extends LocalSearchEngineRequestAdapter
+        implements LuceneSearchEngineRequestAdapter {
+
+    private final String queryString;
+    private final Analyzer queryAnalyzer;
+    private final Map<String, Float> queryFieldsAndBoostings;
+    private final TermQueryCache termQueryCache;
+
+    public BenchmarkRequestAdapter(final RewriteChain rewriteChain, final String queryString,
+                                   final Analyzer queryAnalyzer, final Map<String, Float> queryFieldsAndBoostings,
+                                   final TermQueryCache termQueryCache) {
+        super(rewriteChain, Collections.emptyMap());
+        this.queryString = queryString;
+        this.queryAnalyzer = queryAnalyzer;
+        this.queryFieldsAndBoostings = queryFieldsAndBoostings;
+        this.termQueryCache = termQueryCache;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public boolean isMatchAllQuery(final String queryString) {
+        return "*:*".equals(queryString);
+    }
+
+    @Override
+    public boolean needsScores() {
+        return true;
+    }
+
+    @Override
+    public Analyzer getQueryAnalyzer() {
+        return queryAnalyzer;
+    }
+
+    @Override
+    public Optional<TermQueryCache> getTermQueryCache() {
+        return Optional.ofNullable(termQueryCache);
+    }
+
+    @Override
+    public boolean addQuerqyBoostQueriesToMainQuery() {
+        return true;
+    }
+
+    @Override
+    public Optional<QuerySimilarityScoring> getUserQuerySimilarityScoring() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<QuerySimilarityScoring> getBoostQuerySimilarityScoring() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Map<String, Float> getQueryFieldsAndBoostings() {
+        return queryFieldsAndBoostings;
+    }
+
+    @Override
+    public Map<String, Float> getGeneratedQueryFieldsAndBoostings() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Optional<QuerqyParser> createQuerqyParser() {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean useFieldBoostingInQuerqyBoostQueries() {
+        return true;
+    }
+
+    @Override
+    public Optional<Float> getTiebreaker() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getMultiMatchTiebreaker() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Query applyMinimumShouldMatch(final BooleanQuery query) {
+        return query;
+    }
+
+    @Override
+    public Optional<Float> getUserQueryWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getGeneratedFieldBoost() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getPositiveQuerqyBoostWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Float> getNegativeQuerqyBoostWeight() {
+        return Optional.empty();
+    }
+
+    @Override
+    public List<Query> getAdditiveBoosts(final QuerqyQuery<?> userQuery) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Query> getMultiplicativeBoosts(final QuerqyQuery<?> userQuery) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Optional<Query> parseRankQuery() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Query rawQueryToQuery(final RawQuery rawQuery) throws SyntaxException {
+        throw new SyntaxException("Raw queries are not supported: " + rawQuery);
+    }
+
+    @Override
+    public Optional<FieldBoostModel> getFieldBoostModel() {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<InfoLoggingContext> getInfoLoggingContext() {
+        return Optional.empty();
+    }
+
+}
@@ -0,0 +1,94 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.Vocabulary;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Rewriting parsed queries with a common rules rewriter that only has rules with boolean input, like
+ * <code>a AND NOT b</code> or <code>(a OR b) AND c</code>.</p>
+ *
+ * <p>The literals of the rules are frequent words of the query log vocabulary so that most queries touch several
+ * boolean inputs.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BooleanInputBenchmark {
+
+    private static final int NUM_LITERAL_WORDS = 500;
+
+    @Param({"1000", "10000"})
+    public int numRules;
+
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        rewriteChain = new RewriteChain(Collections.singletonList(
+                CommonRulesRewriteChainBenchmark.createFactory(createRules(Fixtures.vocabulary(), numRules))));
+        parser = new WhiteSpaceQuerqyParser();
+        queries = Fixtures.queries();
+        next = 0;
+    }
+
+    static String createRules(final Vocabulary vocabulary, final int numRules) {
+        final Random random = new Random(Fixtures.SEED);
+        final StringBuilder sb = new StringBuilder(numRules * 64);
+        for (int i = 0; i < numRules; i++) {
+            final String a = literalWord(vocabulary, random);
+            final String b = literalWord(vocabulary, random);
+            final String c = literalWord(vocabulary, random);
+            switch (i % 3) {
+                case 0: sb.append(a).append(" AND NOT ").append(b); break;
+                case 1: sb.append(a).append(" AND ").append(b); break;
+                default: sb.append('(').append(a).append(" OR ").append(b).append(") AND NOT ").append(c);
+            }
+            sb.append(" =>\n  UP(10): ").append(vocabulary.uniform(random)).append("\n\n");
+        }
+        return sb.toString();
+    }
+
+    private static String literalWord(final Vocabulary vocabulary, final Random random) {
+        String word;
+        do {
+            word = vocabulary.word(random.nextInt(NUM_LITERAL_WORDS));
+        } while (word.equalsIgnoreCase("and") || word.equalsIgnoreCase("or") || word.equalsIgnoreCase("not"));
+        return word;
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
@@ -0,0 +1,46 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a common rules file, i.e. the time it takes until a new rule set becomes available.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommonRulesParsingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int numRules;
+
+    private String rules;
+
+    @Setup
+    public void setUp() {
+        rules = Fixtures.commonRules(numRules);
+    }
+
+    @Benchmark
+    public SimpleCommonRulesRewriterFactory createFactory() throws IOException {
+        return CommonRulesRewriteChainBenchmark.createFactory(rules);
+    }
+
+}
@@ -0,0 +1,84 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainCache;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Rewriting parsed queries with a {@link RewriteChain} that contains a single common rules rewriter.</p>
+ *
+ * <p>The cost of parsing the query string is included. Compare with {@link QuerqyParserBenchmark} to get the cost of
+ * the rewriting alone.</p>
+ *
+ * <p>With {@link #cached} set, the chain uses a {@link RewriteChainCache} that is large enough to hold the output
+ * for all queries of the query log.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CommonRulesRewriteChainBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int numRules;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        rewriteChain = new RewriteChain(Collections.singletonList(createFactory(Fixtures.commonRules(numRules))),
+                cached ? new RewriteChainCache(Fixtures.NUM_QUERIES, 1_000_000L) : null);
+        parser = new WhiteSpaceQuerqyParser();
+        queries = Fixtures.queries();
+        next = 0;
+    }
+
+    static SimpleCommonRulesRewriterFactory createFactory(final String rules) throws IOException {
+        return new SimpleCommonRulesRewriterFactory("common_rules", new StringReader(rules), true,
+                BoostMethod.ADDITIVE, new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                new ExpressionCriteriaSelectionStrategyFactory(),
+                true, LookupPreprocessorType.LOWERCASE);
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
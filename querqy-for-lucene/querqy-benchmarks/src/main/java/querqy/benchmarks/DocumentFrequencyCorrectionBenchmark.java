@@ -0,0 +1,118 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.IndexGenerator;
+import querqy.lucene.rewrite.DependentTermQueryBuilder;
+import querqy.lucene.rewrite.DocumentFrequencyCorrection;
+import querqy.lucene.rewrite.LuceneQueryBuilder;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.TermStatisticsCache;
+import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Building Lucene queries with document frequency correction and creating their {@link Weight}s, which is when
+ * the {@link DocumentFrequencyCorrection} looks up the term statistics.</p>
+ *
+ * <p>The user queries have been expanded by the common rules rewriter during the setup. With
+ * {@link #termStatisticsCache} set, the term statistics are shared across queries.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DocumentFrequencyCorrectionBenchmark {
+
+    @Param({"false", "true"})
+    public boolean termStatisticsCache;
+
+    private Directory directory;
+    private IndexReader indexReader;
+    private IndexSearcher indexSearcher;
+    private Analyzer analyzer;
+    private SearchFieldsAndBoosting searchFieldsAndBoosting;
+    private TermStatisticsCache cache;
+    private QuerqyQuery<?>[] rewrittenUserQueries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.index();
+        indexReader = DirectoryReader.open(directory);
+        indexSearcher = new IndexSearcher(indexReader);
+        indexSearcher.setQueryCache(null);
+        analyzer = new StandardAnalyzer();
+
+        final Map<String, Float> queryFieldsAndBoostings = new HashMap<>();
+        queryFieldsAndBoostings.put(IndexGenerator.FIELD, 1f);
+        queryFieldsAndBoostings.put("title", 3f);
+        searchFieldsAndBoosting = new SearchFieldsAndBoosting(FieldBoostModel.FIXED, queryFieldsAndBoostings,
+                queryFieldsAndBoostings, 0.8f);
+
+        cache = termStatisticsCache ? new TermStatisticsCache() : null;
+
+        final RewriteChain rewriteChain = new RewriteChain(Collections.singletonList(
+                CommonRulesRewriteChainBenchmark.createFactory(Fixtures.commonRules(10_000))));
+        final String[] queries = Fixtures.queries();
+        final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+        rewrittenUserQueries = new QuerqyQuery<?>[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            rewrittenUserQueries[i] = rewriteChain.rewrite(new ExpandedQuery(parser.parse(queries[i])),
+                    new LocalSearchEngineRequestAdapter(rewriteChain, new HashMap<>()))
+                    .getExpandedQuery().getUserQuery();
+        }
+
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexReader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public Weight createWeight() throws IOException {
+        final QuerqyQuery<?> userQuery = rewrittenUserQueries[next];
+        next = (next + 1) % rewrittenUserQueries.length;
+        final LuceneQueryBuilder builder = new LuceneQueryBuilder(
+                new DependentTermQueryBuilder(new DocumentFrequencyCorrection(cache)), analyzer,
+                searchFieldsAndBoosting, 0.01f, 0.5f, null, null);
+        final Query query = indexSearcher.rewrite(builder.createQuery(userQuery));
+        return indexSearcher.createWeight(query, ScoreMode.TOP_SCORES, 1f);
+    }
+
+}
@@ -0,0 +1,126 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.IndexGenerator;
+import querqy.lucene.LuceneQueries;
+import querqy.lucene.LuceneSearchEngineRequestAdapter.SyntaxException;
+import querqy.lucene.QueryParsingController;
+import querqy.lucene.rewrite.DependentTermQueryBuilder;
+import querqy.lucene.rewrite.DocumentFrequencyCorrection;
+import querqy.lucene.rewrite.LuceneQueryBuilder;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting;
+import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.model.ExpandedQuery;
+import querqy.model.QuerqyQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Turning rewritten Querqy queries into Lucene queries.</p>
+ *
+ * <p>{@link #createQuery()} only measures the {@link LuceneQueryBuilder}. The user queries have been rewritten by the
+ * common rules and word break rewriters during the setup. {@link #process()} measures the complete request
+ * processing of the {@link QueryParsingController}: parsing, rewriting with the same rewrite chain and building the
+ * Lucene queries.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LuceneQueryBuilderBenchmark {
+
+    @Param({"10000"})
+    public int numRules;
+
+    private Directory directory;
+    private IndexReader indexReader;
+    private Analyzer analyzer;
+    private Map<String, Float> queryFieldsAndBoostings;
+    private SearchFieldsAndBoosting searchFieldsAndBoosting;
+    private RewriteChain rewriteChain;
+    private String[] queries;
+    private QuerqyQuery<?>[] rewrittenUserQueries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.index();
+        indexReader = DirectoryReader.open(directory);
+        analyzer = new StandardAnalyzer();
+
+        queryFieldsAndBoostings = new HashMap<>();
+        queryFieldsAndBoostings.put(IndexGenerator.FIELD, 1f);
+        queryFieldsAndBoostings.put("title", 3f);
+        searchFieldsAndBoosting = new SearchFieldsAndBoosting(FieldBoostModel.FIXED, queryFieldsAndBoostings,
+                queryFieldsAndBoostings, 0.8f);
+
+        rewriteChain = new RewriteChain(Arrays.asList(
+                CommonRulesRewriteChainBenchmark.createFactory(Fixtures.commonRules(numRules)),
+                WordBreakCompoundRewriterBenchmark.createFactory(indexReader)));
+
+        queries = Fixtures.queries();
+
+        final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+        rewrittenUserQueries = new QuerqyQuery<?>[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            rewrittenUserQueries[i] = rewriteChain.rewrite(new ExpandedQuery(parser.parse(queries[i])),
+                    new LocalSearchEngineRequestAdapter(rewriteChain, new HashMap<>()))
+                    .getExpandedQuery().getUserQuery();
+        }
+
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexReader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public Query createQuery() {
+        final QuerqyQuery<?> userQuery = rewrittenUserQueries[next];
+        next = (next + 1) % rewrittenUserQueries.length;
+        // The DocumentFrequencyCorrection collects the terms of the query, we need a new one per query
+        final LuceneQueryBuilder builder = new LuceneQueryBuilder(
+                new DependentTermQueryBuilder(new DocumentFrequencyCorrection()), analyzer, searchFieldsAndBoosting,
+                0.01f, 0.5f, null, null);
+        return builder.createQuery(userQuery);
+    }
+
+    @Benchmark
+    public LuceneQueries process() throws SyntaxException {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return new QueryParsingController(new BenchmarkRequestAdapter(rewriteChain, query, analyzer,
+                queryFieldsAndBoostings, null)).process();
+    }
+
+}
@@ -0,0 +1,172 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.core.CoreContainer;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.request.LocalSolrQueryRequest;
+import org.apache.solr.request.SolrQueryRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.lucene.LuceneSearchEngineRequestAdapter.SyntaxException;
+import querqy.model.RawQuery;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
+import querqy.rewrite.contrib.numberunit.model.FieldDefinition;
+import querqy.rewrite.contrib.numberunit.model.NumberUnitDefinition;
+import querqy.rewrite.contrib.numberunit.model.PerUnitNumberUnitDefinition;
+import querqy.solr.DismaxSearchEngineRequestAdapter;
+import querqy.solr.rewriter.numberunit.NumberUnitQueryCreatorSolr;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * <p>Creating the Lucene filter and boost queries for a number of a number-unit query in an embedded Solr core, where
+ * the unit maps to three fields. The queries are either parsed by Solr from the query strings of
+ * {@link NumberUnitQueryCreatorSolr} or created from the query templates of the fields.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NumberUnitQueryCreatorBenchmark {
+
+    private static final String[] FIELDS = {"height", "width", "depth"};
+
+    @Param({"false", "true"})
+    public boolean templates;
+
+    private Path solrHome;
+    private CoreContainer coreContainer;
+    private SolrCore core;
+    private SolrQueryRequest request;
+    private DismaxSearchEngineRequestAdapter requestAdapter;
+    private NumberUnitQueryCreatorSolr queryCreator;
+    private List<PerUnitNumberUnitDefinition> definitions;
+    private FixedPointDecimal[] numbers;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        solrHome = createSolrHome();
+        coreContainer = new CoreContainer(solrHome, new Properties());
+        coreContainer.load();
+        core = coreContainer.getCore("numberunit");
+        request = new LocalSolrQueryRequest(core, new ModifiableSolrParams());
+        requestAdapter = new DismaxSearchEngineRequestAdapter(null, request, "", request.getParams(), null,
+                new RewriteChain(Collections.emptyList()), null, null);
+
+        queryCreator = new NumberUnitQueryCreatorSolr(5);
+        definitions = Collections.singletonList(new PerUnitNumberUnitDefinition(definition(), BigDecimal.ONE));
+
+        final Random random = new Random(Fixtures.SEED);
+        numbers = new FixedPointDecimal[Fixtures.NUM_QUERIES];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = FixedPointDecimal.valueOf(1 + random.nextInt(2000), random.nextInt(2));
+        }
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        request.close();
+        core.close();
+        coreContainer.shutdown();
+        try (final Stream<Path> paths = Files.walk(solrHome)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Query[] createQueries() throws SyntaxException {
+        final FixedPointDecimal number = numbers[next];
+        next = (next + 1) % numbers.length;
+
+        final RawQuery filterQuery;
+        final RawQuery boostQuery;
+        if (templates) {
+            filterQuery = (RawQuery) queryCreator.createFilterQuery(number, definitions, requestAdapter);
+            boostQuery = (RawQuery) queryCreator.createBoostQuery(number, definitions, requestAdapter).getQuery();
+        } else {
+            filterQuery = queryCreator.createFilterQuery(number, definitions);
+            boostQuery = (RawQuery) queryCreator.createBoostQuery(number, definitions).getQuery();
+        }
+        return new Query[] {requestAdapter.rawQueryToQuery(filterQuery), requestAdapter.rawQueryToQuery(boostQuery)};
+    }
+
+    // Uses the defaults of the Solr NumberUnitRewriterFactory
+    private static NumberUnitDefinition definition() {
+        return NumberUnitDefinition.builder()
+                .addUnits(Collections.emptyList())
+                .addFields(Arrays.asList(new FieldDefinition(FIELDS[0], 1), new FieldDefinition(FIELDS[1], 1),
+                        new FieldDefinition(FIELDS[2], 1)))
+                .setMaxScoreForExactMatch(new BigDecimal(200))
+                .setMinScoreAtUpperBoundary(new BigDecimal(100))
+                .setMinScoreAtLowerBoundary(new BigDecimal(100))
+                .setAdditionalScoreForExactMatch(new BigDecimal(100))
+                .setBoostPercentageUpperBoundary(new BigDecimal(20))
+                .setBoostPercentageLowerBoundary(new BigDecimal(20))
+                .setBoostPercentageUpperBoundaryExactMatch(BigDecimal.ZERO)
+                .setBoostPercentageLowerBoundaryExactMatch(BigDecimal.ZERO)
+                .setFilterPercentageUpperBoundary(new BigDecimal(20))
+                .setFilterPercentageLowerBoundary(new BigDecimal(20))
+                .build();
+    }
+
+    private static Path createSolrHome() throws IOException {
+        final Path solrHome = Files.createTempDirectory("querqy-benchmarks-solr");
+        Files.write(solrHome.resolve("solr.xml"), "<solr/>".getBytes(UTF_8));
+
+        final Path coreDir = solrHome.resolve("numberunit");
+        final Path confDir = Files.createDirectories(coreDir.resolve("conf"));
+        Files.write(coreDir.resolve("core.properties"), "name=numberunit\n".getBytes(UTF_8));
+        Files.write(confDir.resolve("solrconfig.xml"), (
+                "<config>\n" +
+                "  <luceneMatchVersion>9.4</luceneMatchVersion>\n" +
+                "  <directoryFactory name=\"DirectoryFactory\" class=\"solr.ByteBuffersDirectoryFactory\"/>\n" +
+                "  <indexConfig><lockType>single</lockType></indexConfig>\n" +
+                "  <schemaFactory class=\"ClassicIndexSchemaFactory\"/>\n" +
+                "  <requestHandler name=\"/select\" class=\"solr.SearchHandler\"/>\n" +
+                "</config>\n").getBytes(UTF_8));
+
+        final StringBuilder schema = new StringBuilder()
+                .append("<schema name=\"numberunit\" version=\"1.6\">\n")
+                .append("  <fieldType name=\"string\" class=\"solr.StrField\"/>\n")
+                .append("  <fieldType name=\"pdouble\" class=\"solr.DoublePointField\" docValues=\"true\"/>\n")
+                .append("  <field name=\"id\" type=\"string\" indexed=\"true\" stored=\"true\" required=\"true\"/>\n");
+        for (final String field : FIELDS) {
+            schema.append("  <field name=\"").append(field).append("\" type=\"pdouble\" indexed=\"true\"/>\n");
+        }
+        schema.append("  <uniqueKey>id</uniqueKey>\n").append("</schema>\n");
+        Files.write(confDir.resolve("schema.xml"), schema.toString().getBytes(UTF_8));
+
+        return solrHome;
+    }
+
+}
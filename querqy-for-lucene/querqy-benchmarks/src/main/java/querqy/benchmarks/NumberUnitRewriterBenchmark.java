@@ -0,0 +1,112 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.Vocabulary;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.contrib.NumberUnitRewriterFactory;
+import querqy.rewrite.contrib.numberunit.model.FieldDefinition;
+import querqy.rewrite.contrib.numberunit.model.NumberUnitDefinition;
+import querqy.rewrite.contrib.numberunit.model.UnitDefinition;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+import querqy.solr.rewriter.numberunit.NumberUnitQueryCreatorSolr;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting parsed queries that contain a number and a unit, either as one or as two tokens, with a
+ * {@link RewriteChain} that contains a single number-unit rewriter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NumberUnitRewriterBenchmark {
+
+    private static final String[] UNITS = {"zoll", "\"", "cm", "m", "mm", "kg", "g"};
+
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        rewriteChain = new RewriteChain(Collections.singletonList(createFactory()));
+        parser = new WhiteSpaceQuerqyParser();
+        queries = createQueries(Fixtures.vocabulary(), Fixtures.NUM_QUERIES, Fixtures.SEED);
+        next = 0;
+    }
+
+    static NumberUnitRewriterFactory createFactory() {
+        return new NumberUnitRewriterFactory("number_unit", Arrays.asList(
+                definition(Arrays.asList(unit("zoll", "1"), unit("\"", "1")), "screen_size", 1),
+                definition(Arrays.asList(unit("cm", "1"), unit("m", "100"), unit("mm", "0.1")), "length", 0),
+                definition(Arrays.asList(unit("kg", "1"), unit("g", "0.001")), "weight", 2)
+        ), new NumberUnitQueryCreatorSolr(5));
+    }
+
+    static String[] createQueries(final Vocabulary vocabulary, final int numQueries, final long seed) {
+        final Random random = new Random(seed);
+        final String[] queries = new String[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            final String number = random.nextBoolean()
+                    ? Integer.toString(1 + random.nextInt(200))
+                    : (1 + random.nextInt(99)) + "." + random.nextInt(10);
+            final String unit = UNITS[random.nextInt(UNITS.length)];
+            queries[i] = vocabulary.sample(random) + " " + number + (random.nextBoolean() ? " " : "") + unit;
+        }
+        return queries;
+    }
+
+    private static UnitDefinition unit(final String term, final String multiplier) {
+        return new UnitDefinition(term, new BigDecimal(multiplier));
+    }
+
+    // Uses the defaults of the Solr NumberUnitRewriterFactory
+    private static NumberUnitDefinition definition(final List<UnitDefinition> units, final String fieldName,
+                                                   final int scale) {
+        return NumberUnitDefinition.builder()
+                .addUnits(units)
+                .addFields(Collections.singletonList(new FieldDefinition(fieldName, scale)))
+                .setMaxScoreForExactMatch(new BigDecimal(200))
+                .setMinScoreAtUpperBoundary(new BigDecimal(100))
+                .setMinScoreAtLowerBoundary(new BigDecimal(100))
+                .setAdditionalScoreForExactMatch(new BigDecimal(100))
+                .setBoostPercentageUpperBoundary(new BigDecimal(20))
+                .setBoostPercentageLowerBoundary(new BigDecimal(20))
+                .setBoostPercentageUpperBoundaryExactMatch(BigDecimal.ZERO)
+                .setBoostPercentageLowerBoundaryExactMatch(BigDecimal.ZERO)
+                .setFilterPercentageUpperBoundary(new BigDecimal(20))
+                .setFilterPercentageLowerBoundary(new BigDecimal(20))
+                .build();
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
@@ -0,0 +1,110 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.IndexGenerator;
+import querqy.lucene.rewrite.TermStatisticsCache;
+import querqy.lucene.rewrite.prms.PRMSTermQuery;
+import querqy.lucene.rewrite.prms.PRMSTermStatistics;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Calculating the PRMS likelihoods of all terms of a query in all query fields, which is what the PRMS field boost
+ * model does before the first term query is scored.</p>
+ *
+ * <p>{@code perTerm} calculates the likelihood of each {@link PRMSTermQuery} separately, {@code batched} calculates
+ * all likelihoods of the query in one {@link PRMSTermStatistics} batch and {@code batchedCached} additionally shares
+ * the term statistics across queries in a {@link TermStatisticsCache}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PRMSBenchmark {
+
+    @Param({"perTerm", "batched", "batchedCached"})
+    public String path;
+
+    @Param({"15"})
+    public int numFields;
+
+    private Directory directory;
+    private IndexReader indexReader;
+    private TermStatisticsCache cache;
+    private Term[][] queryTerms;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.index(numFields);
+        indexReader = DirectoryReader.open(directory);
+        cache = "batchedCached".equals(path) ? new TermStatisticsCache() : null;
+
+        final String[] queries = Fixtures.queries();
+        queryTerms = new Term[queries.length][];
+        for (int i = 0; i < queries.length; i++) {
+            final String[] words = queries[i].split(" ");
+            final Term[] terms = new Term[words.length * numFields];
+            for (int f = 0; f < numFields; f++) {
+                final String field = f == 0 ? IndexGenerator.FIELD : IndexGenerator.FIELD + f;
+                for (int w = 0; w < words.length; w++) {
+                    terms[f * words.length + w] = new Term(field, words[w]);
+                }
+            }
+            queryTerms[i] = terms;
+        }
+
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexReader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public double calculateLikelihoods() throws IOException {
+        final Term[] terms = queryTerms[next];
+        next = (next + 1) % queryTerms.length;
+
+        final PRMSTermQuery[] termQueries = new PRMSTermQuery[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            termQueries[i] = new PRMSTermQuery(terms[i]);
+        }
+
+        if (!"perTerm".equals(path)) {
+            final PRMSTermStatistics termStatistics = new PRMSTermStatistics(cache);
+            for (final PRMSTermQuery termQuery : termQueries) {
+                termStatistics.register(termQuery);
+            }
+            termStatistics.calculateLikelihoods(indexReader);
+        }
+
+        double sum = 0.0;
+        for (final PRMSTermQuery termQuery : termQueries) {
+            sum += termQuery.calculateLikelihood(indexReader);
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,85 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.lucene.PhraseBoosting;
+import querqy.lucene.PhraseBoosting.NGramType;
+import querqy.lucene.PhraseBoosting.PhraseAnalysis;
+import querqy.lucene.PhraseBoosting.PhraseBoostFieldParams;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.model.QuerqyQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Making the pf, pf2 and pf3 phrase boost queries for three fields each.</p>
+ *
+ * <p>{@code ngram} analyzes the phrase and each n-gram per field, {@code token} analyzes each query token once per
+ * field and {@code tokenCached} additionally shares the analyzed tokens across queries in an
+ * {@link AnalyzedTermCache}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PhraseBoostingBenchmark {
+
+    @Param({"ngram", "token", "tokenCached"})
+    public String mode;
+
+    private Analyzer analyzer;
+    private List<PhraseBoostFieldParams> fieldParams;
+    private PhraseAnalysis phraseAnalysis;
+    private AnalyzedTermCache cache;
+    private QuerqyQuery<?>[] userQueries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        analyzer = new StandardAnalyzer();
+        fieldParams = new ArrayList<>();
+        for (final String field : new String[] {"name", "title", "description"}) {
+            fieldParams.add(new PhraseBoostFieldParams(field, NGramType.PHRASE, 0, 3f));
+            fieldParams.add(new PhraseBoostFieldParams(field, NGramType.BI_GRAM, 1, 2f));
+            fieldParams.add(new PhraseBoostFieldParams(field, NGramType.TRI_GRAM, 1, 1.5f));
+        }
+        phraseAnalysis = "ngram".equals(mode) ? PhraseAnalysis.NGRAM : PhraseAnalysis.TOKEN;
+        cache = "tokenCached".equals(mode) ? new AnalyzedTermCache() : null;
+
+        final String[] queries = Fixtures.queries();
+        final WhiteSpaceQuerqyParser parser = new WhiteSpaceQuerqyParser();
+        userQueries = new QuerqyQuery<?>[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            userQueries[i] = parser.parse(queries[i]);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public Optional<Query> makePhraseFieldsBoostQuery() {
+        final QuerqyQuery<?> userQuery = userQueries[next];
+        next = (next + 1) % userQueries.length;
+        return PhraseBoosting.makePhraseFieldsBoostQuery(userQuery, fieldParams, 0.1f, analyzer, phraseAnalysis,
+                cache);
+    }
+
+}
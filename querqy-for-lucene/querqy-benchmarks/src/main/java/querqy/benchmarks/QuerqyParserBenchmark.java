@@ -0,0 +1,48 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.model.Query;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the query string into the Querqy query model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QuerqyParserBenchmark {
+
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        parser = new WhiteSpaceQuerqyParser();
+        queries = Fixtures.queries();
+        next = 0;
+    }
+
+    @Benchmark
+    public Query parse() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return parser.parse(query);
+    }
+
+}
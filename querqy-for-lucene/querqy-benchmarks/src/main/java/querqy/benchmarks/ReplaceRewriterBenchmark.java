@@ -0,0 +1,76 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.ReplaceRulesGenerator;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.contrib.ReplaceRewriterFactory;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting parsed queries that contain misspellings with a {@link RewriteChain} that contains a single replace
+ * rewriter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplaceRewriterBenchmark {
+
+    @Param({"10000"})
+    public int numRules;
+
+    @Param({"0.1"})
+    public double typoProbability;
+
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        rewriteChain = new RewriteChain(Collections.singletonList(createFactory(Fixtures.replaceRules(numRules))));
+        parser = new WhiteSpaceQuerqyParser();
+        queries = Fixtures.queriesWithTypos(typoProbability);
+        next = 0;
+    }
+
+    static ReplaceRewriterFactory createFactory(final String rules) throws IOException {
+        return new ReplaceRewriterFactory("replace",
+                new InputStreamReader(new ByteArrayInputStream(rules.getBytes(StandardCharsets.UTF_8)),
+                        StandardCharsets.UTF_8),
+                true, ReplaceRulesGenerator.INPUT_DELIMITER, new WhiteSpaceQuerqyParser());
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
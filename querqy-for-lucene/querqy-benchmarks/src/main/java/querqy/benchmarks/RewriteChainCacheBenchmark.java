@@ -0,0 +1,73 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainCache;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.contrib.ShingleRewriterFactory;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Rewriting parsed queries with a {@link RewriteChain} of a replace, a shingle, a common rules and a number-unit
+ * rewriter, with and without a {@link RewriteChainCache}.</p>
+ *
+ * <p>The cache size is given as a fraction of the number of queries in the query log, so that the benchmark covers
+ * both a cache that holds the output for all queries and a cache that has to evict entries.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RewriteChainCacheBenchmark {
+
+    @Param({"0", "0.1", "1"})
+    public double cacheSize;
+
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        final int maxEntries = (int) (cacheSize * Fixtures.NUM_QUERIES);
+        rewriteChain = new RewriteChain(Arrays.asList(
+                ReplaceRewriterBenchmark.createFactory(Fixtures.replaceRules(10_000)),
+                new ShingleRewriterFactory("shingles"),
+                CommonRulesRewriteChainBenchmark.createFactory(Fixtures.commonRules(10_000)),
+                NumberUnitRewriterBenchmark.createFactory()),
+                maxEntries > 0 ? new RewriteChainCache(maxEntries, 1_000_000L) : null);
+        parser = new WhiteSpaceQuerqyParser();
+        queries = Fixtures.queries();
+        next = 0;
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
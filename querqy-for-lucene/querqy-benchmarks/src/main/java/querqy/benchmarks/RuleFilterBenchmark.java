@@ -0,0 +1,99 @@
+package querqy.benchmarks;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsProperties;
+import querqy.rewrite.commonrules.select.ExpressionFilterCriterion;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Filtering the candidate rules of a request by a <code>criteria.filter</code> expression.</p>
+ *
+ * <p>{@code documentContext} reads the expression string from a JsonPath document per rule, which is how filters
+ * used to be evaluated, {@code compiled} uses an {@link ExpressionFilterCriterion}.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleFilterBenchmark {
+
+    private static final int NUM_RULES = 100;
+
+    @Param({"documentContext", "compiled"})
+    public String path;
+
+    @Param({"$[?(@.tenant == 't3')]", "$[?(@.tenant == 't3' && @.priority > 2)]"})
+    public String expression;
+
+    private DocumentContext[] documentContexts;
+    private Instructions[] instructions;
+    private ExpressionFilterCriterion criterion;
+
+    @Setup
+    public void setUp() {
+        final Configuration configuration = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider())
+                .mappingProvider(new JacksonMappingProvider())
+                .build()
+                .addOptions(Option.ALWAYS_RETURN_LIST);
+
+        documentContexts = new DocumentContext[NUM_RULES];
+        instructions = new Instructions[NUM_RULES];
+        for (int i = 0; i < NUM_RULES; i++) {
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("_id", "rule" + i);
+            properties.put("tenant", "t" + (i % 10));
+            properties.put("priority", i % 5);
+            documentContexts[i] = JsonPath.using(configuration).parse(properties);
+            instructions[i] = new Instructions(i, "rule" + i, Collections.emptyList(),
+                    new InstructionsProperties(properties, configuration));
+        }
+
+        criterion = new ExpressionFilterCriterion(expression);
+    }
+
+    @Benchmark
+    public int filter() {
+        int count = 0;
+        if ("documentContext".equals(path)) {
+            for (final DocumentContext documentContext : documentContexts) {
+                final List<?> read = documentContext.read(expression);
+                if (read.size() > 0) {
+                    count++;
+                }
+            }
+        } else {
+            for (final Instructions instr : instructions) {
+                if (criterion.isValid(instr)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+}
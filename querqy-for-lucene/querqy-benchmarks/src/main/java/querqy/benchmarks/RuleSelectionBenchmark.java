@@ -0,0 +1,98 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.rewrite.commonrules.model.Action;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.commonrules.model.InstructionsProperties;
+import querqy.rewrite.commonrules.model.Limit;
+import querqy.rewrite.commonrules.model.TermMatches;
+import querqy.rewrite.commonrules.select.Criteria;
+import querqy.rewrite.commonrules.select.CriteriaSelectionStrategy;
+import querqy.rewrite.commonrules.select.PropertySorting;
+import querqy.rewrite.commonrules.select.SelectionStrategy;
+import querqy.rewrite.commonrules.select.Sorting;
+import querqy.rewrite.commonrules.select.TopRewritingActionCollector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * <p>Selecting the top rules of a request by a <code>criteria.sort</code> property and a
+ * <code>criteria.limit</code>.</p>
+ *
+ * <p>{@code flat} keeps the top 10 rules, {@code levels} the rules of the top 10 priority values
+ * ({@link Limit#isUseLevels()}) and {@code all} sorts all rules.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleSelectionBenchmark {
+
+    private static final int LIMIT = 10;
+
+    @Param({"flat", "levels", "all"})
+    public String limit;
+
+    @Param({"100", "2000"})
+    public int numRules;
+
+    private SelectionStrategy selectionStrategy;
+    private List<List<Instructions>> instructions;
+    private final Function<Instructions, Action> actionCreator = instr -> new Action(instr, new TermMatches());
+
+    @Setup
+    public void setUp() {
+        final Limit criteriaLimit;
+        switch (limit) {
+            case "flat":
+                criteriaLimit = new Limit(LIMIT, false);
+                break;
+            case "levels":
+                criteriaLimit = new Limit(LIMIT, true);
+                break;
+            default:
+                criteriaLimit = new Limit(-1, false);
+        }
+        selectionStrategy = new CriteriaSelectionStrategy(new Criteria(
+                new PropertySorting("priority", Sorting.SortOrder.DESC), criteriaLimit, Collections.emptyList()));
+
+        final Random random = new Random(42);
+        instructions = new ArrayList<>(numRules);
+        for (int i = 0; i < numRules; i++) {
+            final Map<String, Object> properties = new HashMap<>();
+            properties.put("_id", "rule" + i);
+            properties.put("priority", random.nextInt(50));
+            instructions.add(Collections.singletonList(new Instructions(i, "rule" + i, Collections.emptyList(),
+                    new InstructionsProperties(properties))));
+        }
+    }
+
+    @Benchmark
+    public List<Action> select() {
+        final TopRewritingActionCollector collector = selectionStrategy.createTopRewritingActionCollector();
+        for (final List<Instructions> instr : instructions) {
+            collector.offer(instr, actionCreator);
+        }
+        return collector.createActions();
+    }
+
+}
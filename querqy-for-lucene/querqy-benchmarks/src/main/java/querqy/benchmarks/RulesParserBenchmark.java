@@ -0,0 +1,74 @@
+package querqy.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.InstructionsSupplier;
+import querqy.rewrite.commonrules.model.TrieMapRulesCollectionBuilder;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorFactory;
+import querqy.rewrite.rules.factory.RulesParserFactory;
+import querqy.rewrite.rules.factory.config.RuleParserConfig;
+import querqy.rewrite.rules.factory.config.RulesParserConfig;
+import querqy.rewrite.rules.factory.config.TextParserConfig;
+import querqy.trie.TrieMap;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Parsing a common rules file into the trie map of rules, either sequentially or on the common fork-join
+ * pool.</p>
+ *
+ * <p>Unlike {@link CommonRulesParsingBenchmark}, this excludes template rendering and the creation of the
+ * rewriter factory.</p>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RulesParserBenchmark {
+
+    @Param({"10000", "100000"})
+    public int numRules;
+
+    @Param({"false", "true"})
+    public boolean concurrent;
+
+    private String rules;
+
+    @Setup
+    public void setUp() {
+        rules = Fixtures.commonRules(numRules);
+    }
+
+    @Benchmark
+    public TrieMap<InstructionsSupplier> parse() throws IOException {
+        return RulesParserFactory.textParser(RulesParserConfig.builder()
+                .textParserConfig(TextParserConfig.builder()
+                        .rulesContentReader(new StringReader(rules))
+                        .build())
+                .ruleParserConfig(RuleParserConfig.builder()
+                        .isAllowedToParseBooleanInput(true)
+                        .querqyParserFactory(new WhiteSpaceQuerqyParserFactory())
+                        .build())
+                .rulesCollectionBuilder(new TrieMapRulesCollectionBuilder(LookupPreprocessorFactory.lowercase()))
+                .forkJoinPool(concurrent ? ForkJoinPool.commonPool() : null)
+                .build())
+                .parse();
+    }
+
+}
@@ -0,0 +1,103 @@
+package querqy.benchmarks;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import querqy.benchmarks.fixtures.Fixtures;
+import querqy.benchmarks.fixtures.IndexGenerator;
+import querqy.benchmarks.fixtures.Vocabulary;
+import querqy.lucene.contrib.rewrite.wordbreak.WordBreakCompoundRewriterFactory;
+import querqy.model.ExpandedQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.RewriteChain;
+import querqy.rewrite.RewriteChainOutput;
+import querqy.rewrite.experimental.LocalSearchEngineRequestAdapter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rewriting parsed queries with a {@link RewriteChain} that contains a single word break rewriter, which looks up
+ * compounding and decompounding candidates in an in-memory index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WordBreakCompoundRewriterBenchmark {
+
+    private Directory directory;
+    private IndexReader indexReader;
+    private RewriteChain rewriteChain;
+    private WhiteSpaceQuerqyParser parser;
+    private String[] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Fixtures.index();
+        indexReader = DirectoryReader.open(directory);
+        rewriteChain = new RewriteChain(Collections.singletonList(createFactory(indexReader)));
+        parser = new WhiteSpaceQuerqyParser();
+        queries = createQueries(Fixtures.vocabulary(), Fixtures.NUM_QUERIES, Fixtures.SEED);
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexReader.close();
+        directory.close();
+    }
+
+    static WordBreakCompoundRewriterFactory createFactory(final IndexReader indexReader) {
+        return new WordBreakCompoundRewriterFactory("word_break", () -> indexReader, IndexGenerator.FIELD, true,
+                1, 30, 3, Arrays.asList("aus", "für", "von"), false, 3, true, Collections.emptyList(),
+                "GERMAN", "GERMAN");
+    }
+
+    /**
+     * Half of the queries contain a compound that can be split, the other half contain two words that can be
+     * combined into a compound.
+     */
+    static String[] createQueries(final Vocabulary vocabulary, final int numQueries, final long seed) {
+        final Random random = new Random(seed);
+        final String[] queries = new String[numQueries];
+        for (int i = 0; i < numQueries; i++) {
+            final String compound = IndexGenerator.compound(vocabulary, random);
+            final String query;
+            if (random.nextBoolean()) {
+                query = compound;
+            } else {
+                final int split = compound.length() / 2;
+                query = compound.substring(0, split) + " " + compound.substring(split);
+            }
+            queries[i] = random.nextBoolean() ? vocabulary.sample(random) + " " + query : query;
+        }
+        return queries;
+    }
+
+    @Benchmark
+    public RewriteChainOutput rewrite() {
+        final String query = queries[next];
+        next = (next + 1) % queries.length;
+        return rewriteChain.rewrite(new ExpandedQuery(parser.parse(query)),
+                new LocalSearchEngineRequestAdapter(rewriteChain, Collections.emptyMap()));
+    }
+
+}
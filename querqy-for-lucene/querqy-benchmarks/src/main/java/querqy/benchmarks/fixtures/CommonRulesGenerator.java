@@ -0,0 +1,103 @@
+package querqy.benchmarks.fixtures;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>Generates a reproducible common rules file that resembles a rule set maintained by search managers.</p>
+ *
+ * <p>Inputs are distinct and contain one to three terms. Frequent words are more likely to have a rule. Each rule has
+ * one to three instructions, mostly synonyms, followed by boostings, filters and deletes.</p>
+ */
+public class CommonRulesGenerator {
+
+    private final Vocabulary vocabulary;
+    private final long seed;
+
+    public CommonRulesGenerator(final Vocabulary vocabulary, final long seed) {
+        this.vocabulary = vocabulary;
+        this.seed = seed;
+    }
+
+    /**
+     * @param numRules The number of rules, i.e. the number of distinct inputs
+     * @return The rules in the format of the common rules rewriter
+     */
+    public String generate(final int numRules) {
+
+        final Random random = new Random(seed);
+        final StringBuilder sb = new StringBuilder(numRules * 64);
+
+        for (final List<String> input : createInputs(numRules, random)) {
+
+            sb.append(String.join(" ", input)).append(" =>\n");
+
+            final int numInstructions = 1 + random.nextInt(3);
+            for (int i = 0; i < numInstructions; i++) {
+                final int type = random.nextInt(100);
+                if (type < 55) {
+                    sb.append("  SYNONYM: ").append(phrase(random, 1 + random.nextInt(2))).append('\n');
+                } else if (type < 75) {
+                    sb.append("  UP(").append(10 * (1 + random.nextInt(20))).append("): ")
+                            .append(phrase(random, 1 + random.nextInt(2))).append('\n');
+                } else if (type < 87) {
+                    sb.append("  DOWN(").append(10 * (1 + random.nextInt(10))).append("): ")
+                            .append(vocabulary.uniform(random)).append('\n');
+                } else if (type < 95 || input.size() == 1) {
+                    sb.append("  FILTER: ").append(vocabulary.uniform(random)).append('\n');
+                } else {
+                    sb.append("  DELETE: ").append(input.get(input.size() - 1)).append('\n');
+                }
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private List<List<String>> createInputs(final int numRules, final Random random) {
+
+        final Set<String> seen = new HashSet<>(numRules * 2);
+        final List<List<String>> inputs = new ArrayList<>(numRules);
+
+        // give up on single-term inputs once all frequent words have a rule
+        int singleTermMisses = 0;
+
+        while (inputs.size() < numRules) {
+
+            final int p = random.nextInt(100);
+            final int numTerms = (p < 60 && singleTermMisses < 1000) ? 1 : (p < 95 ? 2 : 3);
+
+            final List<String> input = new ArrayList<>(numTerms);
+            for (int i = 0; i < numTerms; i++) {
+                input.add(vocabulary.sample(random));
+            }
+
+            if (seen.add(String.join(" ", input))) {
+                inputs.add(input);
+            } else if (numTerms == 1) {
+                singleTermMisses++;
+            }
+        }
+
+        return inputs;
+    }
+
+    private String phrase(final Random random, final int numTerms) {
+        if (numTerms == 1) {
+            return vocabulary.uniform(random);
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numTerms; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(vocabulary.uniform(random));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,76 @@
+package querqy.benchmarks.fixtures;
+
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <p>The fixtures that are shared by all benchmarks.</p>
+ *
+ * <p>All fixtures are generated from fixed seeds, so that results are comparable between runs and machines. Running
+ * {@link #main(String[])} writes the fixtures to a directory for inspection or for use outside of the benchmarks.</p>
+ */
+public final class Fixtures {
+
+    public static final long SEED = 20231107L;
+    public static final int VOCABULARY_SIZE = 50_000;
+    public static final double ZIPF_EXPONENT = 1.0;
+    public static final int NUM_QUERIES = 10_000;
+    public static final int NUM_DOCS = 20_000;
+
+    private Fixtures() {
+    }
+
+    public static Vocabulary vocabulary() {
+        return new Vocabulary(VOCABULARY_SIZE, ZIPF_EXPONENT, SEED);
+    }
+
+    public static String commonRules(final int numRules) {
+        return new CommonRulesGenerator(vocabulary(), SEED + 1).generate(numRules);
+    }
+
+    public static String replaceRules(final int numRules) {
+        return new ReplaceRulesGenerator(vocabulary(), SEED + 2).generate(numRules);
+    }
+
+    public static String[] queries() {
+        return new QueryLogGenerator(vocabulary(), SEED + 3).generate(NUM_QUERIES);
+    }
+
+    public static String[] queriesWithTypos(final double typoProbability) {
+        return new QueryLogGenerator(vocabulary(), SEED + 3, typoProbability).generate(NUM_QUERIES);
+    }
+
+    public static Directory index() throws IOException {
+        return new IndexGenerator(vocabulary(), SEED + 4).generate(NUM_DOCS);
+    }
+
+    public static Directory index(final int numFields) throws IOException {
+        return new IndexGenerator(vocabulary(), SEED + 4).generate(NUM_DOCS, numFields);
+    }
+
+    /**
+     * Writes the fixtures to a directory.
+     *
+     * @param args The target directory (optional, defaults to the working directory)
+     * @throws IOException if the files cannot be written
+     */
+    public static void main(final String[] args) throws IOException {
+
+        final Path dir = Paths.get(args.length > 0 ? args[0] : ".");
+        Files.createDirectories(dir);
+
+        for (final int numRules : new int[] {1_000, 10_000, 100_000}) {
+            Files.write(dir.resolve("common-rules-" + numRules + ".txt"),
+                    commonRules(numRules).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(dir.resolve("replace-rules.txt"), replaceRules(10_000).getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("queries.txt"), String.join("\n", queries()).getBytes(StandardCharsets.UTF_8));
+
+    }
+
+}
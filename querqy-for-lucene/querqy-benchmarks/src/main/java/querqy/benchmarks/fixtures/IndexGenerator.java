@@ -0,0 +1,101 @@
+package querqy.benchmarks.fixtures;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * <p>Generates a reproducible in-memory Lucene index.</p>
+ *
+ * <p>Each document has a text field with a few words from the {@link Vocabulary}. Some documents also contain a
+ * compound of two words, see {@link #compound(Vocabulary, Random)}, so that the word break rewriter finds
+ * decompounding and compounding candidates in the index.</p>
+ */
+public class IndexGenerator {
+
+    public static final String FIELD = "name";
+
+    private final Vocabulary vocabulary;
+    private final long seed;
+
+    public IndexGenerator(final Vocabulary vocabulary, final long seed) {
+        this.vocabulary = vocabulary;
+        this.seed = seed;
+    }
+
+    public Directory generate(final int numDocs) throws IOException {
+        return generate(numDocs, 1);
+    }
+
+    /**
+     * Generates an index with more than one text field. The additional fields are named {@link #FIELD} followed by
+     * their number (starting at 1) and each of them contains a random subset of the words of the first field.
+     *
+     * @param numDocs The number of documents
+     * @param numFields The number of text fields
+     * @return The index
+     * @throws IOException if the index cannot be written
+     */
+    public Directory generate(final int numDocs, final int numFields) throws IOException {
+
+        final Random random = new Random(seed);
+        final Directory directory = new ByteBuffersDirectory();
+
+        try (final IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new StandardAnalyzer()))) {
+
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < numDocs; i++) {
+                sb.setLength(0);
+                final int numWords = 3 + random.nextInt(4);
+                for (int w = 0; w < numWords; w++) {
+                    sb.append(vocabulary.sample(random)).append(' ');
+                }
+                if (random.nextInt(100) < 30) {
+                    sb.append(compound(vocabulary, random));
+                }
+                final Document doc = new Document();
+                final String text = sb.toString();
+                doc.add(new TextField(FIELD, text, Field.Store.NO));
+                if (numFields > 1) {
+                    final String[] words = text.split(" ");
+                    for (int f = 1; f < numFields; f++) {
+                        sb.setLength(0);
+                        for (final String word : words) {
+                            if (random.nextBoolean()) {
+                                sb.append(word).append(' ');
+                            }
+                        }
+                        doc.add(new TextField(FIELD + f, sb.toString(), Field.Store.NO));
+                    }
+                }
+                writer.addDocument(doc);
+            }
+
+            writer.forceMerge(1);
+        }
+
+        return directory;
+    }
+
+    /**
+     * Creates a compound from two words that are drawn from the vocabulary. As the words are drawn from a small
+     * number of frequent words, the same compounds will be found in the index and in the queries.
+     *
+     * @param vocabulary The vocabulary
+     * @param random The source of randomness
+     * @return The compound
+     */
+    public static String compound(final Vocabulary vocabulary, final Random random) {
+        return vocabulary.word(random.nextInt(Math.min(200, vocabulary.size())))
+                + vocabulary.word(random.nextInt(Math.min(200, vocabulary.size())));
+    }
+
+}
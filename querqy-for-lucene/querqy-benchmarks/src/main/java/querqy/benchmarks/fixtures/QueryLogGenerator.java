@@ -0,0 +1,59 @@
+package querqy.benchmarks.fixtures;
+
+import java.util.Random;
+
+/**
+ * <p>Generates a reproducible query log.</p>
+ *
+ * <p>Queries have one to four terms (most have one or two) that are drawn from a {@link Vocabulary} following its Zipf
+ * distribution. Terms can optionally be misspelled, see {@link ReplaceRulesGenerator#misspell(String, Random)}.</p>
+ */
+public class QueryLogGenerator {
+
+    private final Vocabulary vocabulary;
+    private final long seed;
+    private final double typoProbability;
+
+    public QueryLogGenerator(final Vocabulary vocabulary, final long seed) {
+        this(vocabulary, seed, 0.0);
+    }
+
+    /**
+     * @param vocabulary The vocabulary to draw the terms from
+     * @param seed The seed
+     * @param typoProbability The probability that a term will be misspelled
+     */
+    public QueryLogGenerator(final Vocabulary vocabulary, final long seed, final double typoProbability) {
+        this.vocabulary = vocabulary;
+        this.seed = seed;
+        this.typoProbability = typoProbability;
+    }
+
+    public String[] generate(final int numQueries) {
+
+        final Random random = new Random(seed);
+        final String[] queries = new String[numQueries];
+        final StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < numQueries; i++) {
+
+            sb.setLength(0);
+
+            final int p = random.nextInt(100);
+            final int numTerms = p < 35 ? 1 : (p < 70 ? 2 : (p < 90 ? 3 : 4));
+
+            for (int t = 0; t < numTerms; t++) {
+                if (t > 0) {
+                    sb.append(' ');
+                }
+                final String word = vocabulary.sample(random);
+                sb.append(random.nextDouble() < typoProbability ? ReplaceRulesGenerator.misspell(word, random) : word);
+            }
+
+            queries[i] = sb.toString();
+        }
+
+        return queries;
+    }
+
+}
@@ -0,0 +1,96 @@
+package querqy.benchmarks.fixtures;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>Generates a reproducible replace rules file.</p>
+ *
+ * <p>Most rules map one or two misspellings of a word to the word itself. Some rules are prefix (<code>abc*</code>)
+ * or suffix (<code>*abc</code>) rules. Inputs are separated by a tab.</p>
+ */
+public class ReplaceRulesGenerator {
+
+    public static final String INPUT_DELIMITER = "\t";
+
+    private final Vocabulary vocabulary;
+    private final long seed;
+
+    public ReplaceRulesGenerator(final Vocabulary vocabulary, final long seed) {
+        this.vocabulary = vocabulary;
+        this.seed = seed;
+    }
+
+    /**
+     * @param numRules The number of rules
+     * @return The rules in the format of the replace rewriter
+     */
+    public String generate(final int numRules) {
+
+        final Random random = new Random(seed);
+        final Set<String> seen = new HashSet<>();
+        final StringBuilder sb = new StringBuilder(numRules * 32);
+
+        int numGenerated = 0;
+        while (numGenerated < numRules) {
+
+            final String word = vocabulary.sample(random);
+            final int type = random.nextInt(100);
+
+            if (type < 90) {
+                final String typo1 = misspell(word, random);
+                final String typo2 = misspell(word, random);
+                if (typo1.equals(word) || seen.contains(typo1)) {
+                    continue;
+                }
+                seen.add(typo1);
+                sb.append(typo1);
+                if (!typo2.equals(word) && seen.add(typo2)) {
+                    sb.append(INPUT_DELIMITER).append(typo2);
+                }
+                sb.append(" => ").append(word).append('\n');
+
+            } else {
+                final int length = 3 + random.nextInt(2);
+                if (word.length() <= length) {
+                    continue;
+                }
+                if (type < 95) {
+                    final String prefix = word.substring(0, length);
+                    if (!seen.add(prefix + "*")) {
+                        continue;
+                    }
+                    sb.append(prefix).append("* => ").append(prefix).append(" $1\n");
+                } else {
+                    final String suffix = word.substring(word.length() - length);
+                    if (!seen.add("*" + suffix)) {
+                        continue;
+                    }
+                    sb.append('*').append(suffix).append(" => $1 ").append(suffix).append('\n');
+                }
+            }
+
+            numGenerated++;
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Swaps two adjacent characters of the word. The result can be identical to the word.
+     *
+     * @param word The word
+     * @param random The source of randomness
+     * @return The misspelled word
+     */
+    public static String misspell(final String word, final Random random) {
+        final char[] chars = word.toCharArray();
+        final int pos = random.nextInt(chars.length - 1);
+        final char tmp = chars[pos];
+        chars[pos] = chars[pos + 1];
+        chars[pos + 1] = tmp;
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,92 @@
+package querqy.benchmarks.fixtures;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>A synthetic vocabulary of lower-case pseudo-words that is derived from a seed.</p>
+ *
+ * <p>Words are ranked. {@link #sample(Random)} draws words following a Zipf distribution over the rank so that a few
+ * words are very frequent and most words are rare, which is what we see in e-commerce query logs. The same seed and
+ * size always produce the same words in the same order.</p>
+ */
+public class Vocabulary {
+
+    private static final String[] SYLLABLES = {
+            "ka", "ro", "mi", "ten", "sa", "lu", "ber", "do", "fi", "gan", "he", "ji", "ko", "lam", "ne", "pi", "qua",
+            "ri", "sto", "tu", "vo", "wen", "xa", "ye", "zu", "bra", "cle", "dri", "fla", "gro", "ple", "tri"
+    };
+
+    private final String[] words;
+    private final double[] cumulativeProbabilities;
+
+    /**
+     * @param size The number of distinct words
+     * @param zipfExponent The exponent of the Zipf distribution that is used by {@link #sample(Random)}. 1.0 is a
+     *                     typical value for natural language.
+     * @param seed The seed for generating the words
+     */
+    public Vocabulary(final int size, final double zipfExponent, final long seed) {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be >= 1");
+        }
+
+        final Random random = new Random(seed);
+        final Set<String> unique = new LinkedHashSet<>(size);
+        final StringBuilder sb = new StringBuilder();
+        while (unique.size() < size) {
+            sb.setLength(0);
+            final int numSyllables = 2 + random.nextInt(3);
+            for (int i = 0; i < numSyllables; i++) {
+                sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            unique.add(sb.toString());
+        }
+        words = unique.toArray(new String[0]);
+
+        cumulativeProbabilities = new double[size];
+        double sum = 0.0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, zipfExponent);
+            cumulativeProbabilities[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulativeProbabilities[rank] /= sum;
+        }
+
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * @param rank The rank, starting at 0 for the most frequent word
+     * @return The word at the given rank
+     */
+    public String word(final int rank) {
+        return words[rank];
+    }
+
+    /**
+     * @param random The source of randomness
+     * @return A word drawn following the Zipf distribution of this vocabulary
+     */
+    public String sample(final Random random) {
+        final int pos = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        final int rank = pos >= 0 ? pos : -pos - 1;
+        return words[Math.min(rank, words.length - 1)];
+    }
+
+    /**
+     * @param random The source of randomness
+     * @return A word drawn with equal probability for all words
+     */
+    public String uniform(final Random random) {
+        return words[random.nextInt(words.length)];
+    }
+
+}
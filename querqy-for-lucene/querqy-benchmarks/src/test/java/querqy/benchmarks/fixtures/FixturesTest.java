@@ -0,0 +1,92 @@
+package querqy.benchmarks.fixtures;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.junit.Test;
+import querqy.parser.WhiteSpaceQuerqyParser;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
+import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
+import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
+import querqy.rewrite.contrib.ReplaceRewriterFactory;
+import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FixturesTest {
+
+    @Test
+    public void testThatFixturesAreReproducible() {
+        final Vocabulary vocabulary = new Vocabulary(1000, 1.0, 1L);
+        assertEquals(new CommonRulesGenerator(vocabulary, 2L).generate(100),
+                new CommonRulesGenerator(new Vocabulary(1000, 1.0, 1L), 2L).generate(100));
+        assertEquals(new ReplaceRulesGenerator(vocabulary, 2L).generate(100),
+                new ReplaceRulesGenerator(vocabulary, 2L).generate(100));
+        assertArrayEquals(new QueryLogGenerator(vocabulary, 2L, 0.1).generate(100),
+                new QueryLogGenerator(vocabulary, 2L, 0.1).generate(100));
+        assertThat(new CommonRulesGenerator(vocabulary, 2L).generate(100),
+                not(new CommonRulesGenerator(vocabulary, 3L).generate(100)));
+    }
+
+    @Test
+    public void testThatVocabularySamplingIsSkewed() {
+        final Vocabulary vocabulary = new Vocabulary(1000, 1.0, 1L);
+        final Random random = new Random(1L);
+        int top10 = 0;
+        for (int i = 0; i < 10000; i++) {
+            final String word = vocabulary.sample(random);
+            for (int rank = 0; rank < 10; rank++) {
+                if (vocabulary.word(rank).equals(word)) {
+                    top10++;
+                }
+            }
+        }
+        // H(10)/H(1000) ~ 0.39
+        assertThat(top10, greaterThan(3000));
+    }
+
+    @Test
+    public void testThatGeneratedRulesCanBeParsed() throws IOException {
+        final Vocabulary vocabulary = new Vocabulary(5000, 1.0, 1L);
+
+        new SimpleCommonRulesRewriterFactory("common_rules",
+                new StringReader(new CommonRulesGenerator(vocabulary, 2L).generate(2000)), true,
+                BoostMethod.ADDITIVE, new WhiteSpaceQuerqyParserFactory(), Collections.emptyMap(),
+                (rewriterId, searchEngineRequestAdapter) -> SelectionStrategyFactory.DEFAULT_SELECTION_STRATEGY,
+                true, LookupPreprocessorType.LOWERCASE);
+
+        final String replaceRules = new ReplaceRulesGenerator(vocabulary, 2L).generate(2000);
+        new ReplaceRewriterFactory("replace",
+                new InputStreamReader(new ByteArrayInputStream(replaceRules.getBytes(StandardCharsets.UTF_8)),
+                        StandardCharsets.UTF_8),
+                true, ReplaceRulesGenerator.INPUT_DELIMITER, new WhiteSpaceQuerqyParser());
+    }
+
+    @Test
+    public void testIndexGenerator() throws IOException {
+        try (final Directory directory = new IndexGenerator(new Vocabulary(1000, 1.0, 1L), 2L).generate(100);
+             final IndexReader reader = DirectoryReader.open(directory)) {
+            assertEquals(100, reader.numDocs());
+        }
+    }
+
+    @Test
+    public void testQueryLogSize() {
+        assertThat(new QueryLogGenerator(new Vocabulary(100, 1.0, 1L), 1L).generate(17), arrayWithSize(17));
+    }
+
+}
@@ -41,9 +41,9 @@ public interface LuceneQueryUtil {
     static org.apache.lucene.index.Term toLuceneTerm(final String fieldname, final CharSequence value,
                                                             final boolean lowerCaseInput) {
 
-        final BytesRef bytesRef = (value instanceof LowerCaseCharSequence || !lowerCaseInput)
-                ? new BytesRef(value)
-                : new BytesRef(new LowerCaseCharSequence(value));
+        final BytesRef bytesRef = lowerCaseInput
+                ? new BytesRef(LowerCaseCharSequence.lowerCase(value))
+                : new BytesRef(value);
 
         return new org.apache.lucene.index.Term(fieldname, bytesRef);
 
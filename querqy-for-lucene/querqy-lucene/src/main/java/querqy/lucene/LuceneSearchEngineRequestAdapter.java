@@ -6,6 +6,8 @@ import org.apache.lucene.search.Query;
 import querqy.lucene.rewrite.infologging.InfoLoggingContext;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting.FieldBoostModel;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.model.ExpandedQuery;
 import querqy.model.QuerqyQuery;
@@ -66,6 +68,26 @@ public interface LuceneSearchEngineRequestAdapter extends SearchEngineRequestAda
      */
     Optional<TermQueryCache> getTermQueryCache();
 
+    /**
+     * Get an optional {@link TermStatisticsCache} that is shared across requests by the
+     * {@link querqy.lucene.rewrite.DocumentFrequencyCorrection}
+     *
+     * @return The optional TermStatisticsCache, defaults to an empty Optional
+     */
+    default Optional<TermStatisticsCache> getTermStatisticsCache() {
+        return Optional.empty();
+    }
+
+    /**
+     * Get an optional {@link AnalyzedTermCache} that is shared across requests by the query builder to avoid
+     * analyzing the same query terms again
+     *
+     * @return The optional AnalyzedTermCache, defaults to an empty Optional
+     */
+    default Optional<AnalyzedTermCache> getAnalyzedTermCache() {
+        return Optional.empty();
+    }
+
     /**
      * <p>Should Querqy boost queries be added to the main query?</p>
      *
@@ -2,18 +2,25 @@ package querqy.lucene;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.QueryBuilder;
 import querqy.ComparableCharSequence;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermSubQueryBuilder;
 import querqy.model.BooleanClause;
 import querqy.model.DisjunctionMaxClause;
 import querqy.model.DisjunctionMaxQuery;
 import querqy.model.QuerqyQuery;
 import querqy.model.Term;
+import querqy.rewrite.commonrules.model.PositionSequence;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -65,6 +72,29 @@ public class PhraseBoosting {
 
     }
 
+    /**
+     * How the query analyzer is applied to the user query tokens when making phrase boost queries.
+     */
+    public enum PhraseAnalysis {
+
+        /**
+         * Analyze the entire phrase and each n-gram separately per field, as Solr's (e)dismax pf, pf2, pf3.
+         */
+        NGRAM,
+
+        /**
+         * <p>Analyze each token of the user query once per field and build the phrase and n-gram queries from the
+         * analyzed tokens. The analysis can be shared across requests using an {@link AnalyzedTermCache}.</p>
+         *
+         * <p>This gives the same queries as {@link #NGRAM} for analyzers that analyze each token independently of
+         * its neighbours. If the analysis of a token for a field does not produce exactly one term per position, for
+         * example because the token was removed as a stopword or because synonyms were added, the queries for this
+         * field are made like in {@link #NGRAM}.</p>
+         */
+        TOKEN
+
+    }
+
     /**
      * <p>Make a phrase boost query.</p>
      * <p>Unlike in Solr, the scores of the queries from the (sub-)phrase levels, such as bi-grams, tri-grams and
@@ -83,143 +113,257 @@ public class PhraseBoosting {
                                                              final List<PhraseBoostFieldParams> phraseBoostFieldParams,
                                                              final float phraseBoostTiebreaker,
                                                              final Analyzer queryAnalyzer) {
+        return makePhraseFieldsBoostQuery(userQuery, phraseBoostFieldParams, phraseBoostTiebreaker, queryAnalyzer,
+                PhraseAnalysis.NGRAM, null);
+    }
+
+    /**
+     * <p>Make a phrase boost query.</p>
+     *
+     * @see #makePhraseFieldsBoostQuery(QuerqyQuery, List, float, Analyzer)
+     *
+     * @param userQuery The main query from which to generate phrases
+     * @param phraseBoostFieldParams A list of phrase boost parameters
+     * @param phraseBoostTiebreaker The tie breaker for aggregating scores from the different phrase length levels
+     * @param queryAnalyzer The Lucene query analyzer
+     * @param phraseAnalysis How to apply the query analyzer
+     * @param analyzedTermCache The cache for analyzed tokens in {@link PhraseAnalysis#TOKEN} mode or null
+     * @return An optional query that contains the phrase boost queries if any such query could be created
+     */
+    public static Optional<Query> makePhraseFieldsBoostQuery(final QuerqyQuery<?> userQuery,
+                                                             final List<PhraseBoostFieldParams> phraseBoostFieldParams,
+                                                             final float phraseBoostTiebreaker,
+                                                             final Analyzer queryAnalyzer,
+                                                             final PhraseAnalysis phraseAnalysis,
+                                                             final AnalyzedTermCache analyzedTermCache) {
 
-        if (userQuery instanceof querqy.model.Query) {
+        if (phraseBoostFieldParams.isEmpty()) {
+            return Optional.empty();
+        }
 
-            final List<BooleanClause> clauses = ((querqy.model.Query) userQuery).getClauses();
+        final List<String> sequence = getPhraseTokens(userQuery);
+        if (sequence.size() < 2) {
+            return Optional.empty();
+        }
 
-            if (clauses.size() > 1) {
+        final List<Query> disjuncts = new ArrayList<>(phraseBoostFieldParams.size());
 
-                if (!phraseBoostFieldParams.isEmpty()) {
+        final QueryBuilder queryBuilder = new QueryBuilder(queryAnalyzer);
+        final NGrams nGrams = new NGrams(sequence);
+        // field name -> analyzed tokens or null if the analysis isn't one term per position
+        final Map<String, List<org.apache.lucene.index.Term>[]> analyzedTokens =
+                phraseAnalysis == PhraseAnalysis.TOKEN ? new HashMap<>() : null;
 
-                    final List<String> sequence = new LinkedList<>();
+        for (final PhraseBoosting.PhraseBoostFieldParams fieldParams : phraseBoostFieldParams) {
 
-                    for (final querqy.model.BooleanClause clause : clauses) {
+            final PhraseBoosting.NGramType nGramType = fieldParams.getNGramType();
+            final int slop = fieldParams.getSlop();
+            final String fieldname = fieldParams.getField();
+
+            if (nGramType.nGramSize > sequence.size()) {
+                continue;
+            }
 
-                        if (clause instanceof DisjunctionMaxQuery) {
+            final List<org.apache.lucene.index.Term>[] tokens;
+            if (analyzedTokens == null) {
+                tokens = null;
+            } else if (analyzedTokens.containsKey(fieldname)) {
+                tokens = analyzedTokens.get(fieldname);
+            } else {
+                tokens = analyzeTokens(queryAnalyzer, fieldname, sequence, analyzedTermCache);
+                analyzedTokens.put(fieldname, tokens);
+            }
 
-                            final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
+            if (nGramType == PhraseBoosting.NGramType.PHRASE) {
 
-                            if (dmq.occur != querqy.model.SubQuery.Occur.MUST_NOT) {
+                final Query pq = tokens != null
+                        ? phraseQuery(tokens, 0, tokens.length, slop)
+                        : queryBuilder.createPhraseQuery(fieldname, nGrams.phrase(), slop);
+                if (pq != null) {
+                    disjuncts.add(LuceneQueryUtil.boost(pq, fieldParams.getBoost()));
+                }
 
-                                for (final DisjunctionMaxClause dmqClause : dmq.getClauses()) {
-                                    if (dmqClause instanceof Term) {
+            } else {
 
-                                        final ComparableCharSequence value = ((Term) dmqClause).getValue();
-                                        final int length = value.length();
-                                        final StringBuilder sb = new StringBuilder(length);
-                                        for (int i = 0; i < length; i++) {
-                                            sb.append(value.charAt(i));
-                                        }
-                                        sequence.add(sb.toString());
-                                        break;
-                                    }
-                                }
+                final int nGramSize = nGramType.nGramSize;
+                final List<Query> nGramQueries = new ArrayList<>(sequence.size() - nGramSize + 1);
 
-                            }
+                if (tokens != null) {
+                    for (int i = 0, len = tokens.length - nGramSize + 1; i < len; i++) {
+                        nGramQueries.add(phraseQuery(tokens, i, i + nGramSize, slop));
+                    }
+                } else {
+                    for (final String nGram : nGrams.nGrams(nGramSize)) {
+                        final Query pq = queryBuilder.createPhraseQuery(fieldname, nGram, slop);
+                        if (pq != null) {
+                            nGramQueries.add(pq);
                         }
-
                     }
+                }
 
-                    if (sequence.size() > 1) {
+                switch (nGramQueries.size()) {
+                    case 0: break;
+                    case 1: {
 
-                        final List<Query> disjuncts = new LinkedList<>();
+                        final Query nGramQuery = nGramQueries.get(0);
+                        disjuncts.add(LuceneQueryUtil.boost(nGramQuery, fieldParams.getBoost()));
+                        break;
 
-                        final QueryBuilder queryBuilder = new QueryBuilder(queryAnalyzer);
+                    }
+                    default:
 
-                        final List<String>[] shingles = new List[4];
-                        String pf = null;
+                        final BooleanQuery.Builder builder = new BooleanQuery.Builder();
 
+                        for (final Query nGramQuery : nGramQueries) {
+                            builder.add(nGramQuery, org.apache.lucene.search.BooleanClause.Occur.SHOULD);
+                        }
 
-                        for (final PhraseBoosting.PhraseBoostFieldParams fieldParams : phraseBoostFieldParams) {
+                        final BooleanQuery bq = builder.build();
+                        disjuncts.add(LuceneQueryUtil.boost(bq, fieldParams.getBoost()));
+                }
+            }
+        }
+
+        switch (disjuncts.size()) {
+            case 0: return Optional.empty();
+            case 1: return Optional.of(disjuncts.get(0));
+            default :
+                return Optional.of(new org.apache.lucene.search.DisjunctionMaxQuery(disjuncts,
+                        phraseBoostTiebreaker));
+        }
 
-                            final PhraseBoosting.NGramType nGramType = fieldParams.getNGramType();
-                            final int slop = fieldParams.getSlop();
-                            final String fieldname = fieldParams.getField();
+    }
 
-                            if (nGramType == PhraseBoosting.NGramType.PHRASE) {
+    /**
+     * Get the tokens of the user query that form the phrase: the first term of each clause that is not a
+     * MUST_NOT clause.
+     *
+     * @param userQuery The user query
+     * @return The tokens or an empty list if the user query doesn't have more than one clause
+     */
+    static List<String> getPhraseTokens(final QuerqyQuery<?> userQuery) {
 
-                                if (pf == null) {
-                                    final StringBuilder sb = new StringBuilder(sequence.size() * 7);
-                                    for (final String term : sequence) {
-                                        if (sb.length() > 0) {
-                                            sb.append(' ');
-                                        }
-                                        sb.append(term);
-                                    }
-                                    pf = sb.toString();
-                                }
-                                final Query pq = queryBuilder.createPhraseQuery(fieldname, pf, slop);
-                                if (pq != null) {
-                                    disjuncts.add(LuceneQueryUtil.boost(pq, fieldParams.getBoost()));
-                                }
+        if (!(userQuery instanceof querqy.model.Query)) {
+            return Collections.emptyList();
+        }
 
-                            } else if (nGramType.nGramSize <= sequence.size()) {
+        final List<BooleanClause> clauses = ((querqy.model.Query) userQuery).getClauses();
+        if (clauses.size() < 2) {
+            return Collections.emptyList();
+        }
 
-                                if (shingles[nGramType.nGramSize] == null) {
-                                    shingles[nGramType.nGramSize] = new LinkedList<>();
-                                    for (int i = 0, lenI = sequence.size() - nGramType.nGramSize + 1; i < lenI; i++) {
-                                        final StringBuilder sb = new StringBuilder();
+        final List<String> sequence = new ArrayList<>(clauses.size());
 
-                                        for (int j = i, lenJ = j + nGramType.nGramSize; j < lenJ; j++) {
-                                            if (sb.length() > 0) {
-                                                sb.append(' ');
-                                            }
-                                            sb.append(sequence.get(j));
-                                        }
-                                        shingles[nGramType.nGramSize].add(sb.toString());
-                                    }
-                                }
+        for (final querqy.model.BooleanClause clause : clauses) {
 
+            if (clause instanceof DisjunctionMaxQuery) {
 
-                                final List<Query> nGramQueries = new ArrayList<>(shingles[nGramType.nGramSize].size());
+                final DisjunctionMaxQuery dmq = (DisjunctionMaxQuery) clause;
 
-                                for (final String nGram : shingles[nGramType.nGramSize]) {
-                                    final Query pq = queryBuilder.createPhraseQuery(fieldname, nGram, slop);
-                                    if (pq != null) {
-                                        nGramQueries.add(pq);
-                                    }
-                                }
+                if (dmq.occur != querqy.model.SubQuery.Occur.MUST_NOT) {
 
-                                switch (nGramQueries.size()) {
-                                    case 0: break;
-                                    case 1: {
+                    for (final DisjunctionMaxClause dmqClause : dmq.getClauses()) {
+                        if (dmqClause instanceof Term) {
+                            final ComparableCharSequence value = ((Term) dmqClause).getValue();
+                            final int length = value.length();
+                            final StringBuilder sb = new StringBuilder(length);
+                            for (int i = 0; i < length; i++) {
+                                sb.append(value.charAt(i));
+                            }
+                            sequence.add(sb.toString());
+                            break;
+                        }
+                    }
 
-                                        final Query nGramQuery = nGramQueries.get(0);
-                                        disjuncts.add(LuceneQueryUtil.boost(nGramQuery, fieldParams.getBoost()));
-                                        break;
+                }
+            }
 
-                                    }
-                                    default:
+        }
 
-                                        final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        return sequence;
+    }
 
-                                        for (final Query nGramQuery : nGramQueries) {
-                                            builder.add(nGramQuery, org.apache.lucene.search.BooleanClause.Occur.SHOULD);
-                                        }
+    /**
+     * Analyze each token separately.
+     *
+     * @return The terms per token or null if the analysis of a token didn't produce exactly one term per position
+     */
+    static List<org.apache.lucene.index.Term>[] analyzeTokens(final Analyzer queryAnalyzer, final String fieldname,
+                                                              final List<String> sequence,
+                                                              final AnalyzedTermCache analyzedTermCache) {
 
-                                        final BooleanQuery bq = builder.build();
-                                        disjuncts.add(LuceneQueryUtil.boost(bq, fieldParams.getBoost()));
-                                }
-                            }
-                        }
+        @SuppressWarnings("unchecked")
+        final List<org.apache.lucene.index.Term>[] tokens = new List[sequence.size()];
 
-                        switch (disjuncts.size()) {
-                            case 0: break;
-                            case 1: return Optional.of(disjuncts.get(0));
-                            default :
-                                return Optional.of(new org.apache.lucene.search.DisjunctionMaxQuery(disjuncts,
-                                        phraseBoostTiebreaker));
-                        }
+        for (int i = 0; i < tokens.length; i++) {
 
-                    }
+            final PositionSequence<org.apache.lucene.index.Term> positions;
+            try {
+                positions = TermSubQueryBuilder.analyze(queryAnalyzer, fieldname, sequence.get(i),
+                        analyzedTermCache);
+            } catch (final IOException e) {
+                throw new RuntimeException("Error analyzing query text", e);
+            }
 
+            if (positions.isEmpty()) {
+                return null;
+            }
 
+            final List<org.apache.lucene.index.Term> terms = new ArrayList<>(positions.size());
+            for (final List<org.apache.lucene.index.Term> position : positions) {
+                if (position.size() != 1) {
+                    return null;
                 }
+                terms.add(position.get(0));
+            }
+            tokens[i] = terms;
+        }
+
+        return tokens;
+    }
+
+    static PhraseQuery phraseQuery(final List<org.apache.lucene.index.Term>[] tokens, final int from, final int to,
+                                   final int slop) {
+        final PhraseQuery.Builder builder = new PhraseQuery.Builder();
+        builder.setSlop(slop);
+        int position = 0;
+        for (int i = from; i < to; i++) {
+            for (final org.apache.lucene.index.Term term : tokens[i]) {
+                builder.add(term, position++);
             }
         }
+        return builder.build();
+    }
 
-        return Optional.empty();
+    /**
+     * The phrase and the n-grams of the user query tokens as strings, created on demand.
+     */
+    private static class NGrams {
 
+        final List<String> sequence;
+        final List<String>[] nGrams = new List[4];
+        String phrase = null;
+
+        NGrams(final List<String> sequence) {
+            this.sequence = sequence;
+        }
+
+        String phrase() {
+            if (phrase == null) {
+                phrase = String.join(" ", sequence);
+            }
+            return phrase;
+        }
+
+        List<String> nGrams(final int nGramSize) {
+            if (nGrams[nGramSize] == null) {
+                final List<String> list = new ArrayList<>(sequence.size() - nGramSize + 1);
+                for (int i = 0, lenI = sequence.size() - nGramSize + 1; i < lenI; i++) {
+                    list.add(String.join(" ", sequence.subList(i, i + nGramSize)));
+                }
+                nGrams[nGramSize] = list;
+            }
+            return nGrams[nGramSize];
+        }
     }
 }
@@ -135,7 +135,8 @@ public class QueryParsingController {
             boostTermQueryBuilder = null;
             boostSearchFieldsAndBoostings = null;
             builder = new LuceneQueryBuilder(new LuceneTermQueryBuilder(), queryAnalyzer, searchFieldsAndBoosting, 1f,
-                    1f, requestAdapter.getTermQueryCache().orElse(null), q -> {
+                    1f, true, requestAdapter.getTermQueryCache().orElse(null),
+                    requestAdapter.getAnalyzedTermCache().orElse(null), q -> {
                 try {
                     return requestAdapter.rawQueryToQuery(q);
                 } catch (final SyntaxException e) {
@@ -147,7 +148,8 @@ public class QueryParsingController {
 
             final QuerySimilarityScoring userQuerySimilarityScoring = requestAdapter.getUserQuerySimilarityScoring()
                     .orElse(DEFAULT_USER_QUERY_SIMILARITY_SCORING);
-            final TermQueryBuilder userTermQueryBuilder = userQuerySimilarityScoring.createTermQueryBuilder(null);
+            final TermQueryBuilder userTermQueryBuilder = userQuerySimilarityScoring.createTermQueryBuilder(
+                    requestAdapter.getTermStatisticsCache().map(DocumentFrequencyCorrection::new).orElse(null));
             dfc = userTermQueryBuilder.getDocumentFrequencyCorrection().orElse(null);
 
             final QuerySimilarityScoring boostQuerySimilarityScoring = requestAdapter.getBoostQuerySimilarityScoring()
@@ -165,7 +167,8 @@ public class QueryParsingController {
             builder = new LuceneQueryBuilder(userTermQueryBuilder,
                     queryAnalyzer, searchFieldsAndBoosting, requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER),
                     requestAdapter.getMultiMatchTiebreaker().orElse(DEFAULT_MULTI_MATCH_TIEBREAKER),
-                    requestAdapter.getTermQueryCache().orElse(null), q -> {
+                    true, requestAdapter.getTermQueryCache().orElse(null),
+                    requestAdapter.getAnalyzedTermCache().orElse(null), q -> {
                 try {
                     return requestAdapter.rawQueryToQuery(q);
                 } catch (final SyntaxException e) {
@@ -394,7 +397,8 @@ public class QueryParsingController {
                                     boostSearchFieldsAndBoostings,
                                     requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER),
                                     1f, // we don't have to apply multiMatchTie for boostings
-                                    requestAdapter.getTermQueryCache().orElse(null), q -> {
+                                    true, requestAdapter.getTermQueryCache().orElse(null),
+                                    requestAdapter.getAnalyzedTermCache().orElse(null), q -> {
                                 try {
                                     return requestAdapter.rawQueryToQuery(q);
                                 } catch (final SyntaxException e) {
@@ -495,7 +499,8 @@ public class QueryParsingController {
                                     boostSearchFieldsAndBoostings,
                                     requestAdapter.getTiebreaker().orElse(DEFAULT_TIEBREAKER),
                                     1f, // we don't have to apply multiMatchTie for boostings
-                                    requestAdapter.getTermQueryCache().orElse(null), q -> {
+                                    true, requestAdapter.getTermQueryCache().orElse(null),
+                                    requestAdapter.getAnalyzedTermCache().orElse(null), q -> {
                                 try {
                                     return requestAdapter.rawQueryToQuery(q);
                                 } catch (final SyntaxException e) {
@@ -72,8 +72,7 @@ public class MorphologicalWordBreaker implements LuceneWordBreaker {
             return;
         }
 
-        final CharSequence input = lowerCaseInput && (!(word instanceof LowerCaseCharSequence))
-                ? new LowerCaseCharSequence(word) : word;
+        final CharSequence input = lowerCaseInput ? LowerCaseCharSequence.lowerCase(word) : word;
 
 
         // the original left term can be longer than rightOfs because the compounding might have removed characters
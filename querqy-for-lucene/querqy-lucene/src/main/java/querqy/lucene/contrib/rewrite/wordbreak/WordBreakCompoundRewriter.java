@@ -14,7 +14,7 @@ import querqy.model.QuerqyQuery;
 import querqy.model.Query;
 import querqy.rewrite.RewriterOutput;
 import querqy.model.Term;
-import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.ResettableQueryRewriter;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.trie.TrieMap;
 
@@ -26,11 +26,11 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 
-public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> implements QueryRewriter {
+public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> implements ResettableQueryRewriter {
 
     private final LuceneWordBreaker wordBreaker;
     private final LuceneCompounder compounder;
-    private final IndexReader indexReader;
+    private IndexReader indexReader;
     private final boolean lowerCaseInput;
 
     // We are not using this as a map but as a kind of a set to look up CharSequences quickly
@@ -87,9 +87,13 @@ public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> impleme
     public RewriterOutput rewrite(final ExpandedQuery query, final SearchEngineRequestAdapter requestAdapter) {
         final QuerqyQuery<?> userQuery = query.getUserQuery();
         if (userQuery instanceof Query){
-            previousTerms = new ArrayDeque<>();
-            termsToDelete = new ArrayDeque<>();
-            nodesToAdd = new LinkedList<>();
+            if (previousTerms == null) {
+                previousTerms = new ArrayDeque<>();
+                termsToDelete = new ArrayDeque<>();
+                nodesToAdd = new LinkedList<>();
+            } else {
+                clearCollectedNodes();
+            }
             visit((Query) userQuery);
 
             // append nodesToAdd to parent query
@@ -112,6 +116,30 @@ public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> impleme
         return RewriterOutput.builder().expandedQuery(query).build();
     }
 
+    @Override
+    public void reset() {
+        if (previousTerms != null) {
+            clearCollectedNodes();
+        }
+        // don't keep the reader open, see setIndexReader()
+        indexReader = null;
+    }
+
+    /**
+     * Set the index reader for the next rewrite of a rewriter that has been reset.
+     *
+     * @param indexReader The index reader
+     */
+    void setIndexReader(final IndexReader indexReader) {
+        this.indexReader = indexReader;
+    }
+
+    private void clearCollectedNodes() {
+        previousTerms.clear();
+        termsToDelete.clear();
+        nodesToAdd.clear();
+    }
+
     public void removeIfNotOnlyChild(final Term term) {
         // remove the term from its parent. If the parent doesn't have any further child,
         // remove the parent from the grand-parent. If this also hasn't any further child,
@@ -156,10 +184,10 @@ public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> impleme
         // don't handle generated terms
         if (!term.isGenerated()) {
 
-            if (isReverseCompoundTriggerWord(term.getValue())) {
+            if (isReverseCompoundTriggerWord(term)) {
                 termsToDelete.add(term);
             } else {
-                if (!isProtectedWord(term.getValue())) {
+                if (!isProtectedWord(term)) {
                     decompound(term);
                 }
                 compound(term);
@@ -213,7 +241,7 @@ public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> impleme
             Term previousTerm = null;
             while (previousTermsIterator.hasNext() && previousTerm == null) {
                 final Term maybePreviousTerm = previousTermsIterator.next();
-                if (isReverseCompoundTriggerWord(maybePreviousTerm.getValue())) {
+                if (isReverseCompoundTriggerWord(maybePreviousTerm)) {
                     reverseCompound = true;
                 } else {
                     previousTerm = maybePreviousTerm;
@@ -250,12 +278,12 @@ public class WordBreakCompoundRewriter extends AbstractNodeVisitor<Node> impleme
     }
 
     private boolean isReverseCompoundTriggerWord(final CharSequence chars) {
-        return reverseCompoundTriggerWords.get(lowerCaseInput ? new LowerCaseCharSequence(chars) : chars)
+        return reverseCompoundTriggerWords.get(lowerCaseInput ? LowerCaseCharSequence.lowerCase(chars) : chars)
                 .getStateForCompleteSequence().isFinal();
     }
 
     private boolean isProtectedWord(final CharSequence chars) {
-        return protectedWords.get(lowerCaseInput ? new LowerCaseCharSequence(chars) : chars)
+        return protectedWords.get(lowerCaseInput ? LowerCaseCharSequence.lowerCase(chars) : chars)
                 .getStateForCompleteSequence().isFinal();
     }
 
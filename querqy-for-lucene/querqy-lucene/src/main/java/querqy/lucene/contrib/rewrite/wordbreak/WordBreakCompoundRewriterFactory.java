@@ -6,6 +6,7 @@ import querqy.model.ExpandedQuery;
 import querqy.model.Term;
 import querqy.rewrite.QueryRewriter;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.RewriterPool;
 import querqy.rewrite.SearchEngineRequestAdapter;
 import querqy.trie.TrieMap;
 
@@ -38,6 +39,7 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
     final LuceneWordBreaker wordBreaker; // package visible for testing
     final LuceneCompounder compounder; // package visible for testing
     private final TrieMap<Boolean> protectedWords;
+    private final RewriterPool<WordBreakCompoundRewriter> rewriterPool = new RewriterPool<>();
 
     /**
      * @param rewriterId                  The id of the rewriter
@@ -112,9 +114,21 @@ public class WordBreakCompoundRewriterFactory extends RewriterFactory {
     @Override
     public QueryRewriter createRewriter(final ExpandedQuery input,
                                         final SearchEngineRequestAdapter searchEngineRequestAdapter) {
-        return new WordBreakCompoundRewriter(wordBreaker, compounder, indexReaderSupplier.get(),
-                lowerCaseInput, alwaysAddReverseCompounds, reverseCompoundTriggerWords, maxDecompoundExpansions,
-                verifyDecompundCollation, protectedWords);
+        final WordBreakCompoundRewriter rewriter = rewriterPool.borrow();
+        if (rewriter == null) {
+            return new WordBreakCompoundRewriter(wordBreaker, compounder, indexReaderSupplier.get(),
+                    lowerCaseInput, alwaysAddReverseCompounds, reverseCompoundTriggerWords, maxDecompoundExpansions,
+                    verifyDecompundCollation, protectedWords);
+        }
+        rewriter.setIndexReader(indexReaderSupplier.get());
+        return rewriter;
+    }
+
+    @Override
+    public void releaseRewriter(final QueryRewriter rewriter) {
+        if (rewriter.getClass() == WordBreakCompoundRewriter.class) {
+            rewriterPool.release((WordBreakCompoundRewriter) rewriter);
+        }
     }
 
     @Override
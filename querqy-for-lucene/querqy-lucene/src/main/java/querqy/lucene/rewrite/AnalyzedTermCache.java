@@ -0,0 +1,209 @@
+package querqy.lucene.rewrite;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.RamUsageEstimator;
+import querqy.rewrite.commonrules.model.PositionSequence;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Caches the output of query analysis across requests for the {@link TermSubQueryBuilder}, so that a query term
+ * is analyzed once per field instead of once per field and request.</p>
+ *
+ * <p>Entries are keyed by the identity of the {@link Analyzer}, the field name and the term text. The cache can thus
+ * be shared by handlers that use different query analyzers. An analyzer that is replaced, for example after a schema
+ * change, will not be found again and its entries will be evicted like any other entry that isn't used.</p>
+ *
+ * <p>The cache is bounded by an estimate of the heap used by its entries. Entries are kept in two generations: new
+ * entries are added to the current generation and entries that are found in the previous generation are copied to
+ * the current one. Once the current generation has used half of the maximum size, it becomes the previous
+ * generation, and the entries of the previous generation that weren't used in the meantime are dropped. Lookups
+ * don't block.</p>
+ */
+public class AnalyzedTermCache {
+
+    public static final long DEFAULT_MAX_RAM_BYTES = 32L * 1024L * 1024L;
+
+    private static final long ENTRY_OVERHEAD_BYTES = 2L * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+            + 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF + 32L; // map node, key, key fields
+    private static final long POSITION_OVERHEAD_BYTES = 3L * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+            + 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF; // list node and list
+    private static final long TERM_OVERHEAD_BYTES = 3L * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+            + 4L * RamUsageEstimator.NUM_BYTES_OBJECT_REF + RamUsageEstimator.NUM_BYTES_ARRAY_HEADER; // term, bytes
+
+    private final long maxGenerationBytes;
+
+    private volatile Generation current = new Generation();
+    private volatile Generation previous = new Generation();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public AnalyzedTermCache() {
+        this(DEFAULT_MAX_RAM_BYTES);
+    }
+
+    /**
+     * @param maxRamBytes The max. estimated heap size of the entries
+     */
+    public AnalyzedTermCache(final long maxRamBytes) {
+        if (maxRamBytes < 1L) {
+            throw new IllegalArgumentException("maxRamBytes must be > 0");
+        }
+        this.maxGenerationBytes = Math.max(1L, maxRamBytes / 2L);
+    }
+
+    /**
+     * Get the analyzed terms.
+     *
+     * @param analyzer The analyzer
+     * @param fieldname The field name
+     * @param text The term text
+     * @return The sequence of analyzed terms or null if the term hasn't been cached. The sequence is shared and must
+     * not be modified.
+     */
+    public PositionSequence<Term> get(final Analyzer analyzer, final String fieldname, final CharSequence text) {
+
+        final Key key = new Key(analyzer, fieldname, text.toString());
+
+        final Generation currentGeneration = current;
+        PositionSequence<Term> sequence = currentGeneration.entries.get(key);
+        if (sequence == null) {
+            final Generation previousGeneration = previous;
+            sequence = previousGeneration.entries.get(key);
+            if (sequence != null) {
+                // keep the entry when the previous generation is dropped
+                put(key, sequence);
+            }
+        }
+
+        if (sequence == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return sequence;
+    }
+
+    /**
+     * Add the analyzed terms.
+     *
+     * @param analyzer The analyzer
+     * @param fieldname The field name
+     * @param text The term text
+     * @param sequence The sequence of analyzed terms. It must not be modified after it has been added.
+     */
+    public void put(final Analyzer analyzer, final String fieldname, final CharSequence text,
+                    final PositionSequence<Term> sequence) {
+        put(new Key(analyzer, fieldname, text.toString()), sequence);
+    }
+
+    private void put(final Key key, final PositionSequence<Term> sequence) {
+
+        final long bytes = ramBytes(key, sequence);
+        if (bytes > maxGenerationBytes) {
+            return;
+        }
+
+        Generation generation = current;
+        if (generation.bytes.get() + bytes > maxGenerationBytes) {
+            synchronized (this) {
+                generation = current;
+                if (generation.bytes.get() + bytes > maxGenerationBytes) {
+                    previous = generation;
+                    generation = new Generation();
+                    current = generation;
+                }
+            }
+        }
+
+        if (generation.entries.putIfAbsent(key, sequence) == null) {
+            generation.bytes.addAndGet(bytes);
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            previous = new Generation();
+            current = new Generation();
+        }
+    }
+
+    /**
+     * @return The number of entries, counting entries that are in both generations twice
+     */
+    public int size() {
+        return current.entries.size() + previous.entries.size();
+    }
+
+    /**
+     * @return The estimated heap size of the entries
+     */
+    public long getRamBytesUsed() {
+        return current.bytes.get() + previous.bytes.get();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    static long ramBytes(final Key key, final PositionSequence<Term> sequence) {
+        long bytes = ENTRY_OVERHEAD_BYTES + RamUsageEstimator.sizeOf(key.text);
+        for (final List<Term> position : sequence) {
+            bytes += POSITION_OVERHEAD_BYTES;
+            for (final Term term : position) {
+                // the field name is shared with the key
+                bytes += TERM_OVERHEAD_BYTES + term.bytes().length;
+            }
+        }
+        return bytes;
+    }
+
+    private static class Generation {
+        final Map<Key, PositionSequence<Term>> entries = new ConcurrentHashMap<>();
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    static final class Key {
+
+        final Analyzer analyzer;
+        final String fieldname;
+        final String text;
+        final int hashCode;
+
+        Key(final Analyzer analyzer, final String fieldname, final String text) {
+            this.analyzer = analyzer;
+            this.fieldname = fieldname;
+            this.text = text;
+            hashCode = 31 * (31 * System.identityHashCode(analyzer) + fieldname.hashCode()) + text.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return analyzer == other.analyzer && hashCode == other.hashCode && fieldname.equals(other.fieldname)
+                    && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
@@ -5,13 +5,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReaderContext;
-import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.TermStates;
-import org.apache.lucene.index.Terms;
-import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.IndexSearcher;
+import querqy.lucene.rewrite.TermStatisticsCache.TermStatistics;
 
 /**
  * Created by rene on 10/09/2016.
@@ -24,7 +22,8 @@ public class DocumentFrequencyCorrection {
     }
 
     protected final List<Integer> clauseOffsets = new ArrayList<>();
-    private TermStats termStats = null;
+    private final TermStatisticsCache termStatisticsCache;
+    private volatile TermStats termStats = null;
     protected int endUserQuery = -1;
     protected Status status = Status.USER_QUERY;
     protected int maxInClause = -1;
@@ -32,6 +31,16 @@ public class DocumentFrequencyCorrection {
     protected long maxTotalTermFreqInUserQuery = -1;
     int termIndex = -1;
 
+    public DocumentFrequencyCorrection() {
+        this(null);
+    }
+
+    /**
+     * @param termStatisticsCache A cache for term statistics that is shared across requests. Can be null.
+     */
+    public DocumentFrequencyCorrection(final TermStatisticsCache termStatisticsCache) {
+        this.termStatisticsCache = termStatisticsCache;
+    }
 
     protected TermStats doCalculateTermContexts(final IndexReaderContext indexReaderContext) throws IOException {
 
@@ -39,26 +48,21 @@ public class DocumentFrequencyCorrection {
         final long[] totalTermFrequencies = new long[dfs.length];
         final TermStates[] states = new TermStates[dfs.length];
 
+        final TermStatistics[] termStatistics = lookupTermStatistics(indexReaderContext);
+
         for (int i = 0; i < dfs.length; i++) {
 
-            final Term term = terms.get(i);
+            final TermStatistics statistics = termStatistics[i];
+            dfs[i] = statistics.docFreq;
+            totalTermFrequencies[i] = statistics.totalTermFreq;
 
             states[i] = new TermStates(indexReaderContext);
-
-            for (final LeafReaderContext ctx : indexReaderContext.leaves()) {
-
-                final Terms terms = ctx.reader().terms(term.field());
-                if (terms != null) {
-                    final TermsEnum termsEnum = terms.iterator();
-                    if (termsEnum.seekExact(term.bytes())) {
-                        final TermState termState = termsEnum.termState();
-                        dfs[i] = dfs[i] + termsEnum.docFreq();
-                        totalTermFrequencies[i] = totalTermFrequencies[i] + termsEnum.totalTermFreq();
-                        // we'll update df and ttf later, just register the ord
-                        states[i].register(termState, ctx.ord, 0, 0L);
-                    }
+            final TermState[] leafTermStates = statistics.leafTermStates;
+            for (int ord = 0; ord < leafTermStates.length; ord++) {
+                if (leafTermStates[ord] != null) {
+                    // we'll update df and ttf later, just register the ord
+                    states[i].register(leafTermStates[ord], ord, 0, 0L);
                 }
-
             }
         }
 
@@ -102,6 +106,21 @@ public class DocumentFrequencyCorrection {
 
     }
 
+    /**
+     * Get the statistics for the terms, either from the {@link TermStatisticsCache} or from the index.
+     *
+     * @param indexReaderContext The top-level reader context
+     * @return The statistics, in the order of {@link #terms}
+     * @throws IOException if the index cannot be read
+     * @see TermStatisticsLookup
+     */
+    TermStatistics[] lookupTermStatistics(final IndexReaderContext indexReaderContext) throws IOException {
+        return TermStatisticsLookup.lookup(indexReaderContext, terms, termStatisticsCache, true);
+    }
+
+    TermStatisticsCache getTermStatisticsCache() {
+        return termStatisticsCache;
+    }
 
     public void prepareTerm(Term term) {
         terms.add(term);
@@ -137,7 +156,7 @@ public class DocumentFrequencyCorrection {
 
     }
 
-    private synchronized TermStats setTermStats(final TermStats ts) {
+    private TermStats setTermStats(final TermStats ts) {
         this.termStats = ts;
         return this.termStats;
     }
@@ -15,6 +15,7 @@ import org.apache.lucene.search.Query;
 import querqy.CompoundCharSequence;
 import querqy.lucene.rewrite.BooleanQueryFactory.Clause;
 import querqy.lucene.rewrite.cache.TermQueryCache;
+import querqy.lucene.rewrite.prms.PRMSTermStatistics;
 import querqy.model.AbstractNodeVisitor;
 import querqy.model.BooleanQuery;
 import querqy.model.BoostedTerm;
@@ -41,6 +42,7 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
    final TermQueryBuilder termQueryBuilder;
    final SearchFieldsAndBoosting searchFieldsAndBoosting;
    final TermSubQueryBuilder termSubQueryBuilder;
+   final PRMSTermStatistics prmsTermStatistics;
 
    final Function<RawQuery, Query> rawQueryParser;
 
@@ -84,12 +86,37 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
     * @param multiMatchTieBreakerMultiplier The multi-match (synonym) tie breaker for dismax queries
     * @param normalizeBooleanQueryBoost Iff true and if the analyzer turns a single token into multiple tokens, divide their aggregate score by their count
     * @param termQueryCache The term query cache or null
+    * @param rawQueryParser Creates Lucene queries for raw queries
     */
     public LuceneQueryBuilder(final TermQueryBuilder termQueryBuilder, final Analyzer analyzer,
                               final SearchFieldsAndBoosting searchFieldsAndBoosting,
                               final float dmqTieBreakerMultiplier, final float multiMatchTieBreakerMultiplier,
                               final boolean normalizeBooleanQueryBoost,
                               final TermQueryCache termQueryCache, final Function<RawQuery, Query> rawQueryParser) {
+        this(termQueryBuilder, analyzer, searchFieldsAndBoosting, dmqTieBreakerMultiplier,
+                multiMatchTieBreakerMultiplier, normalizeBooleanQueryBoost, termQueryCache, null, rawQueryParser);
+    }
+
+    /**
+     * Like {@link #LuceneQueryBuilder(TermQueryBuilder, Analyzer, SearchFieldsAndBoosting, float, float, boolean,
+     * TermQueryCache, Function)} but with a cache for the output of the query analyzer.
+     *
+     * @param termQueryBuilder The TermQueryBuilder
+     * @param analyzer The query Analyzer
+     * @param searchFieldsAndBoosting The search fields and their boost factors
+     * @param dmqTieBreakerMultiplier The tie breaker for dismax queries
+     * @param multiMatchTieBreakerMultiplier The multi-match (synonym) tie breaker for dismax queries
+     * @param normalizeBooleanQueryBoost Iff true and if the analyzer turns a single token into multiple tokens, divide their aggregate score by their count
+     * @param termQueryCache The term query cache or null
+     * @param analyzedTermCache The cache for the output of the query analyzer or null
+     * @param rawQueryParser Creates Lucene queries for raw queries
+     */
+    public LuceneQueryBuilder(final TermQueryBuilder termQueryBuilder, final Analyzer analyzer,
+                              final SearchFieldsAndBoosting searchFieldsAndBoosting,
+                              final float dmqTieBreakerMultiplier, final float multiMatchTieBreakerMultiplier,
+                              final boolean normalizeBooleanQueryBoost,
+                              final TermQueryCache termQueryCache, final AnalyzedTermCache analyzedTermCache,
+                              final Function<RawQuery, Query> rawQueryParser) {
         if (termQueryBuilder == null) {
             throw new IllegalArgumentException("TermQueryBuilder must not be null");
         }
@@ -110,7 +137,12 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
         this.normalizeBooleanQueryBoost = normalizeBooleanQueryBoost;
         this.multiMatchTieBreakerMultiplier = multiMatchTieBreakerMultiplier;
         this.termQueryBuilder = termQueryBuilder;
-        termSubQueryBuilder = new TermSubQueryBuilder(analyzer, termQueryCache);
+        termSubQueryBuilder = new TermSubQueryBuilder(analyzer, termQueryCache, analyzedTermCache);
+        // look up the statistics of all terms at once when using PRMS and share them with the DFC via its cache
+        prmsTermStatistics = searchFieldsAndBoosting.fieldBoostModel == SearchFieldsAndBoosting.FieldBoostModel.PRMS
+                ? new PRMSTermStatistics(termQueryBuilder.getDocumentFrequencyCorrection()
+                    .map(DocumentFrequencyCorrection::getTermStatisticsCache).orElse(null))
+                : null;
         this.rawQueryParser = rawQueryParser;
     }
 
@@ -286,14 +318,14 @@ public class LuceneQueryBuilder extends AbstractNodeVisitor<LuceneQueryFactory<?
 
         Term termToUse = null;
         try {
-            FieldBoost fieldBoost = searchFieldsAndBoosting.getFieldBoost(term);
+            FieldBoost fieldBoost = searchFieldsAndBoosting.getFieldBoost(term, prmsTermStatistics);
             if (fieldBoost == null) {
               
                 if (fieldname != null && !term.isGenerated() && !searchFieldsAndBoosting.hasSearchField(fieldname, term)) {
                     // someone searches in a field that is not set as a search field or didn't intend to search in a field at all
                     // --> set value to fieldname + ":" + value in search in all fields
                     final Term termWithFieldInValue = new Term(null, new CompoundCharSequence(":", fieldname, term.getValue()));
-                    fieldBoost = searchFieldsAndBoosting.getFieldBoost(termWithFieldInValue);
+                    fieldBoost = searchFieldsAndBoosting.getFieldBoost(termWithFieldInValue, prmsTermStatistics);
                     if (fieldBoost != null) {
                         termToUse = termWithFieldInValue;
                     }
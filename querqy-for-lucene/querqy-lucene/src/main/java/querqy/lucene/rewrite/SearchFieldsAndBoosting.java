@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Set;
 
 import querqy.lucene.rewrite.prms.PRMSFieldBoost;
+import querqy.lucene.rewrite.prms.PRMSTermStatistics;
 import querqy.model.Term;
 
 /**
@@ -64,6 +65,18 @@ public class SearchFieldsAndBoosting {
     }
 
     public FieldBoost getFieldBoost(final Term term) {
+        return getFieldBoost(term, null);
+    }
+
+    /**
+     * Get the field boost for a term.
+     *
+     * @param term The term
+     * @param prmsTermStatistics The batch for the PRMS term statistics of the request. Only used by the PRMS field
+     *                           boost model. Can be null.
+     * @return The field boost or null if the term cannot be searched in the query fields
+     */
+    public FieldBoost getFieldBoost(final Term term, final PRMSTermStatistics prmsTermStatistics) {
         final String fieldname = term.getField();
         if (fieldname != null) {
             if (term.isGenerated() ) {
@@ -82,7 +95,7 @@ public class SearchFieldsAndBoosting {
 
                 case NONE: return ConstantFieldBoost.NORM_BOOST;
 
-                case PRMS: return new PRMSFieldBoost();
+                case PRMS: return new PRMSFieldBoost(prmsTermStatistics);
 
                 default: throw new IllegalStateException("Unknown FieldBoostModel: " + fieldBoostModel);
 
@@ -0,0 +1,135 @@
+package querqy.lucene.rewrite;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.store.AlreadyClosedException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Caches the statistics and the per-segment {@link TermState}s of terms across requests for the
+ * {@link DocumentFrequencyCorrection}.</p>
+ *
+ * <p>Statistics are kept per top-level {@link IndexReader} and removed when the reader is closed, i.e. when the
+ * searcher changes. Readers that don't provide a cache helper are not cached.</p>
+ */
+public class TermStatisticsCache {
+
+    public static final int DEFAULT_MAX_ENTRIES_PER_READER = 100_000;
+
+    private final int maxEntriesPerReader;
+    private final Map<IndexReader.CacheKey, ReaderTermStatistics> readers = new ConcurrentHashMap<>();
+
+    public TermStatisticsCache() {
+        this(DEFAULT_MAX_ENTRIES_PER_READER);
+    }
+
+    /**
+     * @param maxEntriesPerReader The max. number of terms per reader. The terms of a reader are cleared when a term is
+     *                            added after the max. number has been reached.
+     */
+    public TermStatisticsCache(final int maxEntriesPerReader) {
+        if (maxEntriesPerReader < 1) {
+            throw new IllegalArgumentException("maxEntriesPerReader must be > 0");
+        }
+        this.maxEntriesPerReader = maxEntriesPerReader;
+    }
+
+    /**
+     * Get the cached statistics for the top-level reader of the context.
+     *
+     * @param topReaderContext The top-level reader context
+     * @return The statistics or null if the reader cannot be cached
+     */
+    ReaderTermStatistics forReader(final IndexReaderContext topReaderContext) {
+
+        final IndexReader.CacheHelper cacheHelper = topReaderContext.reader().getReaderCacheHelper();
+        if (cacheHelper == null) {
+            return null;
+        }
+
+        final IndexReader.CacheKey key = cacheHelper.getKey();
+        final ReaderTermStatistics statistics = readers.get(key);
+        if (statistics != null) {
+            return statistics;
+        }
+
+        final ReaderTermStatistics newStatistics = new ReaderTermStatistics(maxEntriesPerReader);
+        final ReaderTermStatistics previous = readers.putIfAbsent(key, newStatistics);
+        if (previous != null) {
+            return previous;
+        }
+
+        try {
+            cacheHelper.addClosedListener(readers::remove);
+        } catch (final AlreadyClosedException e) {
+            readers.remove(key);
+            return null;
+        }
+
+        return newStatistics;
+
+    }
+
+    /**
+     * @return The number of readers for which statistics are cached
+     */
+    public int getNumberOfReaders() {
+        return readers.size();
+    }
+
+    public void clear() {
+        readers.values().forEach(ReaderTermStatistics::clear);
+    }
+
+    /**
+     * The statistics of a term in a top-level reader.
+     */
+    static class TermStatistics {
+
+        final int docFreq;
+        final long totalTermFreq;
+        // indexed by the ord of the leaf, null if the term doesn't exist in the leaf
+        final TermState[] leafTermStates;
+
+        TermStatistics(final int docFreq, final long totalTermFreq, final TermState[] leafTermStates) {
+            this.docFreq = docFreq;
+            this.totalTermFreq = totalTermFreq;
+            this.leafTermStates = leafTermStates;
+        }
+    }
+
+    static class ReaderTermStatistics {
+
+        private final int maxEntries;
+        private final Map<Term, TermStatistics> statistics = new ConcurrentHashMap<>();
+
+        ReaderTermStatistics(final int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        TermStatistics get(final Term term) {
+            return statistics.get(term);
+        }
+
+        void put(final Term term, final TermStatistics termStatistics) {
+            // start over rather than keep the terms that happened to come first until the reader is closed
+            if (statistics.size() >= maxEntries) {
+                statistics.clear();
+            }
+            statistics.put(term, termStatistics);
+        }
+
+        int size() {
+            return statistics.size();
+        }
+
+        void clear() {
+            statistics.clear();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package querqy.lucene.rewrite;
+
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+import querqy.lucene.rewrite.TermStatisticsCache.ReaderTermStatistics;
+import querqy.lucene.rewrite.TermStatisticsCache.TermStatistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Looks up the statistics of a batch of terms in the index, for the {@link DocumentFrequencyCorrection} and for
+ * the PRMS field boost model.</p>
+ *
+ * <p>Terms that are not found in the {@link TermStatisticsCache} are sorted by field and term so that each
+ * {@link TermsEnum} only needs to be walked forward once per segment. Terms that are looked up are added to the
+ * cache, which is how the results are shared between the {@link DocumentFrequencyCorrection} and PRMS.</p>
+ */
+public final class TermStatisticsLookup {
+
+    private TermStatisticsLookup() {
+    }
+
+    /**
+     * Get the total term frequencies of the terms.
+     *
+     * @param indexReaderContext The top-level reader context
+     * @param terms The terms
+     * @param termStatisticsCache The cache for term statistics or null
+     * @return The total term frequencies, in the order of the terms
+     * @throws IOException if the index cannot be read
+     */
+    public static long[] lookupTotalTermFreqs(final IndexReaderContext indexReaderContext, final List<Term> terms,
+                                              final TermStatisticsCache termStatisticsCache) throws IOException {
+        final TermStatistics[] statistics = lookup(indexReaderContext, terms, termStatisticsCache, false);
+        final long[] totalTermFreqs = new long[statistics.length];
+        for (int i = 0; i < statistics.length; i++) {
+            totalTermFreqs[i] = statistics[i].totalTermFreq;
+        }
+        return totalTermFreqs;
+    }
+
+    /**
+     * Get the statistics of the terms, either from the {@link TermStatisticsCache} or from the index.
+     *
+     * @param indexReaderContext The top-level reader context
+     * @param terms The terms
+     * @param termStatisticsCache The cache for term statistics or null
+     * @param needTermStates Iff false, the per-segment term states will only be collected if the statistics are
+     *                       added to the cache
+     * @return The statistics, in the order of the terms
+     * @throws IOException if the index cannot be read
+     */
+    static TermStatistics[] lookup(final IndexReaderContext indexReaderContext, final List<Term> terms,
+                                   final TermStatisticsCache termStatisticsCache, final boolean needTermStates)
+            throws IOException {
+
+        final TermStatistics[] result = new TermStatistics[terms.size()];
+
+        final ReaderTermStatistics cached = termStatisticsCache == null
+                ? null : termStatisticsCache.forReader(indexReaderContext);
+
+        // field -> sorted term bytes -> positions in terms
+        final Map<String, TreeMap<BytesRef, List<Integer>>> missing = new HashMap<>();
+
+        for (int i = 0; i < result.length; i++) {
+            final Term term = terms.get(i);
+            final TermStatistics statistics = cached == null ? null : cached.get(term);
+            if (statistics != null) {
+                result[i] = statistics;
+            } else {
+                missing.computeIfAbsent(term.field(), field -> new TreeMap<>())
+                        .computeIfAbsent(term.bytes(), bytes -> new ArrayList<>(2))
+                        .add(i);
+            }
+        }
+
+        final List<LeafReaderContext> leaves = indexReaderContext.leaves();
+        final boolean collectTermStates = needTermStates || cached != null;
+
+        for (final Map.Entry<String, TreeMap<BytesRef, List<Integer>>> fieldEntry : missing.entrySet()) {
+
+            final String field = fieldEntry.getKey();
+            final TreeMap<BytesRef, List<Integer>> termPositions = fieldEntry.getValue();
+            final BytesRef[] termBytes = termPositions.keySet().toArray(new BytesRef[0]);
+
+            final int[] dfs = new int[termBytes.length];
+            final long[] totalTermFrequencies = new long[termBytes.length];
+            final TermState[][] leafTermStates = collectTermStates
+                    ? new TermState[termBytes.length][leaves.size()] : null;
+
+            for (final LeafReaderContext ctx : leaves) {
+                final Terms fieldTerms = ctx.reader().terms(field);
+                if (fieldTerms != null) {
+                    final TermsEnum termsEnum = fieldTerms.iterator();
+                    for (int j = 0; j < termBytes.length; j++) {
+                        if (termsEnum.seekExact(termBytes[j])) {
+                            if (collectTermStates) {
+                                leafTermStates[j][ctx.ord] = termsEnum.termState();
+                            }
+                            dfs[j] += termsEnum.docFreq();
+                            totalTermFrequencies[j] += termsEnum.totalTermFreq();
+                        }
+                    }
+                }
+            }
+
+            for (int j = 0; j < termBytes.length; j++) {
+                final TermStatistics statistics = new TermStatistics(dfs[j], totalTermFrequencies[j],
+                        collectTermStates ? leafTermStates[j] : null);
+                for (final int position : termPositions.get(termBytes[j])) {
+                    result[position] = statistics;
+                }
+                if (cached != null) {
+                    cached.put(new Term(field, BytesRef.deepCopyOf(termBytes[j])), statistics);
+                }
+            }
+        }
+
+        return result;
+
+    }
+
+}
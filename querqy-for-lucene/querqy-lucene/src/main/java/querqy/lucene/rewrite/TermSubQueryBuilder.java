@@ -33,10 +33,23 @@ import querqy.rewrite.commonrules.model.PositionSequence;
 public class TermSubQueryBuilder {
     
     private final TermQueryCache termQueryCache;
+    private final AnalyzedTermCache analyzedTermCache;
     private final Analyzer analyzer;
 
     public TermSubQueryBuilder(final Analyzer analyzer, final TermQueryCache termQueryCache) {
+        this(analyzer, termQueryCache, null);
+    }
+
+    /**
+     * @param analyzer The query analyzer
+     * @param termQueryCache The term query cache or null
+     * @param analyzedTermCache The cache for the output of the analyzer or null. It is only used for terms that
+     *                          aren't found in the termQueryCache.
+     */
+    public TermSubQueryBuilder(final Analyzer analyzer, final TermQueryCache termQueryCache,
+                               final AnalyzedTermCache analyzedTermCache) {
         this.termQueryCache = termQueryCache;
+        this.analyzedTermCache = analyzedTermCache;
         this.analyzer = analyzer;
     }
     
@@ -64,18 +77,54 @@ public class TermSubQueryBuilder {
             cacheKey = null;
         }
         
-        final LuceneQueryFactoryAndPRMSQuery root;
+        final LuceneQueryFactoryAndPRMSQuery root = positionSequenceToQueryFactoryAndPRMS(
+                analyze(fieldname, sourceTerm), sourceTerm);
+
+        putQueryFactoryAndPRMSQueryIntoCache(cacheKey, root);
+        
+        return root == null ? null : new TermSubQueryFactory(root, boost, sourceTerm, fieldname);
+    }
+
+    protected PositionSequence<org.apache.lucene.index.Term> analyze(final String fieldname, final Term sourceTerm)
+            throws IOException {
+        return analyze(analyzer, fieldname, sourceTerm, analyzedTermCache);
+    }
+
+    /**
+     * Analyze a query term. Tokens with a position increment of 0 are added to the position of the previous token.
+     *
+     * @param analyzer The query analyzer
+     * @param fieldname The field name
+     * @param text The term text
+     * @param analyzedTermCache The cache for the output of the analyzer or null
+     * @return The sequence of analyzed terms. It must not be modified if it has been taken from the cache.
+     * @throws IOException if the term cannot be analyzed
+     */
+    public static PositionSequence<org.apache.lucene.index.Term> analyze(final Analyzer analyzer,
+                                                                        final String fieldname,
+                                                                        final CharSequence text,
+                                                                        final AnalyzedTermCache analyzedTermCache)
+            throws IOException {
+
+        if (analyzedTermCache != null) {
+            final PositionSequence<org.apache.lucene.index.Term> cached = analyzedTermCache.get(analyzer, fieldname,
+                    text);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final PositionSequence<org.apache.lucene.index.Term> sequence = new PositionSequence<>();
         TokenStream ts = null;
         try {
-           
-           ts = analyzer.tokenStream(fieldname, new CharSequenceReader(sourceTerm));
+
+           ts = analyzer.tokenStream(fieldname, new CharSequenceReader(text));
            final CharTermAttribute termAttr = ts.addAttribute(CharTermAttribute.class);
            final PositionIncrementAttribute posIncAttr = ts.addAttribute(PositionIncrementAttribute.class);
            ts.reset();
-         
-           final PositionSequence<org.apache.lucene.index.Term> sequence = new PositionSequence<>();
+
            while (ts.incrementToken()) {
-              
+
                final int inc = posIncAttr.getPositionIncrement();
                if (inc > 0 || sequence.isEmpty()) {
                    sequence.nextPosition();
@@ -83,8 +132,6 @@ public class TermSubQueryBuilder {
 
                sequence.addElement(new org.apache.lucene.index.Term(fieldname, new BytesRef(termAttr)));
            }
-           
-           root = positionSequenceToQueryFactoryAndPRMS(sequence, sourceTerm);
 
         } finally {
            if (ts != null) {
@@ -95,9 +142,11 @@ public class TermSubQueryBuilder {
            }
         }
 
-        putQueryFactoryAndPRMSQueryIntoCache(cacheKey, root);
-        
-        return root == null ? null : new TermSubQueryFactory(root, boost, sourceTerm, fieldname);
+        if (analyzedTermCache != null) {
+            analyzedTermCache.put(analyzer, fieldname, text, sequence);
+        }
+
+        return sequence;
     }
 
     protected void putQueryFactoryAndPRMSQueryIntoCache(final CacheKey cacheKey, final LuceneQueryFactoryAndPRMSQuery value) {
@@ -4,6 +4,7 @@
 package querqy.lucene.rewrite.prms;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
@@ -50,6 +51,13 @@ public class PRMSAndQuery implements PRMSQuery {
         
     }
 
+    @Override
+    public void collectTermQueries(final Collection<PRMSTermQuery> target) {
+        for (final PRMSQuery clause: clauses) {
+            clause.collectTermQueries(target);
+        }
+    }
+
     public List<PRMSQuery> getClauses() {
         return clauses;
     }
@@ -4,6 +4,7 @@
 package querqy.lucene.rewrite.prms;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 
 import org.apache.lucene.index.IndexReader;
@@ -46,6 +47,13 @@ public class PRMSDisjunctionMaxQuery implements PRMSQuery {
         return probability;
     }
 
+    @Override
+    public void collectTermQueries(final Collection<PRMSTermQuery> target) {
+        for (final PRMSQuery disjunct: disjuncts) {
+            disjunct.collectTermQueries(target);
+        }
+    }
+
     public List<PRMSQuery> getDisjuncts() {
         return disjuncts;
     }
@@ -22,6 +22,19 @@ public class PRMSFieldBoost implements FieldBoost {
     
     Map<String, PRMSQuery> fieldPRMSQueries = new HashMap<>();
     Map<String, Float> probabilities = null;
+    final PRMSTermStatistics termStatistics;
+
+    public PRMSFieldBoost() {
+        this(null);
+    }
+
+    /**
+     * @param termStatistics Calculates the likelihoods of the term queries of all field boosts of the request in one
+     *                       batch. Can be null, in which case each term query will be looked up separately.
+     */
+    public PRMSFieldBoost(final PRMSTermStatistics termStatistics) {
+        this.termStatistics = termStatistics;
+    }
 
     /* (non-Javadoc)
      * @see querqy.lucene.rewrite.TermQueryBoost#getBoost()
@@ -36,6 +49,9 @@ public class PRMSFieldBoost implements FieldBoost {
     }
     
     protected void calculateProbabilities(IndexReader indexReader) throws IOException {
+        if (termStatistics != null) {
+            termStatistics.calculateLikelihoods(indexReader);
+        }
         Map<String, Float> probs = new HashMap<>();
         switch (fieldPRMSQueries.size()) {
         case 0 : break;
@@ -69,6 +85,9 @@ public class PRMSFieldBoost implements FieldBoost {
                 throw new IllegalStateException("A PRMSQuery has already been registered for field "
                         + termSubQueryFactory.getFieldname());
             }
+            if (termStatistics != null) {
+                termStatistics.register(termSubQueryFactory.prmsQuery);
+            }
         }
         
     }
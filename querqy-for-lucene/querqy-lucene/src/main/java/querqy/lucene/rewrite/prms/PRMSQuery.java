@@ -1,6 +1,7 @@
 package querqy.lucene.rewrite.prms;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.lucene.index.IndexReader;
 
@@ -24,4 +25,13 @@ public interface PRMSQuery {
      */
     double calculateLikelihood(IndexReader indexReader) throws IOException;
 
+    /**
+     * Add the {@link PRMSTermQuery}s of this query to the target collection so that their likelihoods can be
+     * calculated in one batch, see {@link PRMSTermStatistics}
+     *
+     * @param target The collection to add to
+     */
+    default void collectTermQueries(final Collection<PRMSTermQuery> target) {
+    }
+
 }
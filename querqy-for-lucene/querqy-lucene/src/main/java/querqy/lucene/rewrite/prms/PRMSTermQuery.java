@@ -4,6 +4,7 @@
 package querqy.lucene.rewrite.prms;
 
 import java.io.IOException;
+import java.util.Collection;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
@@ -50,6 +51,19 @@ public class PRMSTermQuery implements PRMSQuery {
         return likelihood;
     }
 
+    @Override
+    public void collectTermQueries(final Collection<PRMSTermQuery> target) {
+        target.add(this);
+    }
+
+    boolean hasLikelihood() {
+        return likelihood != null;
+    }
+
+    void setLikelihood(final double likelihood) {
+        this.likelihood = likelihood;
+    }
+
     public Term getTerm() {
         return term;
     }
@@ -0,0 +1,90 @@
+package querqy.lucene.rewrite.prms;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import querqy.lucene.rewrite.TermStatisticsCache;
+import querqy.lucene.rewrite.TermStatisticsLookup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Calculates the likelihoods of all {@link PRMSTermQuery}s of a request in one batch.</p>
+ *
+ * <p>The {@link PRMSFieldBoost}s of a query register their {@link PRMSQuery}s with a shared instance of this class.
+ * The first field boost that needs its probabilities triggers the lookup of the term frequencies of all registered
+ * terms using {@link TermStatisticsLookup}, which visits the terms of each field in sorted order, and the lookup of
+ * the sum of the term frequencies once per field. If a {@link TermStatisticsCache} is given, the statistics are
+ * shared with the {@link querqy.lucene.rewrite.DocumentFrequencyCorrection} that uses the same cache.</p>
+ */
+public class PRMSTermStatistics {
+
+    private final TermStatisticsCache termStatisticsCache;
+    private final List<PRMSTermQuery> pending = new ArrayList<>();
+
+    public PRMSTermStatistics() {
+        this(null);
+    }
+
+    /**
+     * @param termStatisticsCache A cache for term statistics that is shared across requests. Can be null.
+     */
+    public PRMSTermStatistics(final TermStatisticsCache termStatisticsCache) {
+        this.termStatisticsCache = termStatisticsCache;
+    }
+
+    public synchronized void register(final PRMSQuery prmsQuery) {
+        prmsQuery.collectTermQueries(pending);
+    }
+
+    /**
+     * Calculates the likelihoods of all term queries that have been registered since the last call.
+     *
+     * @param indexReader The IndexReader
+     * @throws IOException In case of an error when reading from the index
+     */
+    public synchronized void calculateLikelihoods(final IndexReader indexReader) throws IOException {
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        final List<PRMSTermQuery> termQueries = new ArrayList<>(pending.size());
+        final List<Term> terms = new ArrayList<>(pending.size());
+        for (final PRMSTermQuery termQuery : pending) {
+            if (!termQuery.hasLikelihood()) {
+                termQueries.add(termQuery);
+                terms.add(termQuery.getTerm());
+            }
+        }
+        pending.clear();
+
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        final long[] totalTermFreqs = TermStatisticsLookup.lookupTotalTermFreqs(indexReader.getContext(), terms,
+                termStatisticsCache);
+
+        final Map<String, Long> totalTermsInFields = new HashMap<>();
+        for (int i = 0; i < totalTermFreqs.length; i++) {
+            final String field = terms.get(i).field();
+            Long totalTermsInField = totalTermsInFields.get(field);
+            if (totalTermsInField == null) {
+                totalTermsInField = indexReader.getSumTotalTermFreq(field);
+                if (totalTermsInField == -1L) {
+                    throw new UnsupportedOperationException(
+                            "Codec does not support IndexReader.getSumTotalTermFreq(field)");
+                }
+                totalTermsInFields.put(field, totalTermsInField);
+            }
+
+            termQueries.get(i).setLikelihood(totalTermsInField < 1L
+                    ? 0.0 : ((double) totalTermFreqs[i]) / (double) totalTermsInField);
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package querqy.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.analysis.miscellaneous.WordDelimiterGraphFilter;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.Query;
+import org.junit.Test;
+import querqy.lucene.PhraseBoosting.NGramType;
+import querqy.lucene.PhraseBoosting.PhraseAnalysis;
+import querqy.lucene.PhraseBoosting.PhraseBoostFieldParams;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.model.QuerqyQuery;
+import querqy.parser.WhiteSpaceQuerqyParser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+public class PhraseBoostingTest {
+
+    static final List<PhraseBoostFieldParams> FIELD_PARAMS = Arrays.asList(
+            new PhraseBoostFieldParams("f1", NGramType.PHRASE, 0, 2f),
+            new PhraseBoostFieldParams("f2", NGramType.PHRASE, 1, 1.5f),
+            new PhraseBoostFieldParams("f1", NGramType.BI_GRAM, 2, 1.2f),
+            new PhraseBoostFieldParams("f2", NGramType.BI_GRAM, 0, 1f),
+            new PhraseBoostFieldParams("f1", NGramType.TRI_GRAM, 0, 3f)
+    );
+
+    @Test
+    public void testThatTokenAnalysisEqualsNGramAnalysis() {
+        final Analyzer analyzer = new StandardAnalyzer();
+        for (final String input : Arrays.asList("a b", "A b C", "a b c d e", "a -b c D", "ab cd ab")) {
+            assertSameQueries(input, analyzer, null);
+            assertSameQueries(input, analyzer, new AnalyzedTermCache());
+        }
+    }
+
+    @Test
+    public void testThatTokenAnalysisEqualsNGramAnalysisForTokensWithMoreThanOneTerm() {
+        final Analyzer analyzer = new Analyzer() {
+            protected TokenStreamComponents createComponents(final String fieldName) {
+                final Tokenizer source = new WhitespaceTokenizer();
+                final TokenStream filter = new WordDelimiterGraphFilter(source,
+                        WordDelimiterGraphFilter.GENERATE_WORD_PARTS
+                                | WordDelimiterGraphFilter.SPLIT_ON_CASE_CHANGE, null);
+                return new TokenStreamComponents(source, new LowerCaseFilter(filter));
+            }
+        };
+        assertSameQueries("AbcDef ghi", analyzer, null);
+        assertSameQueries("x AbcDef ghi JklMno", analyzer, new AnalyzedTermCache());
+    }
+
+    @Test
+    public void testThatTokenAnalysisFallsBackToNGramAnalysisForRemovedTokens() {
+        final Analyzer analyzer = new EnglishAnalyzer();
+        assertSameQueries("the cat in the hat", analyzer, null);
+        assertNull(PhraseBoosting.analyzeTokens(analyzer, "f1", Arrays.asList("cat", "the"), null));
+    }
+
+    @Test
+    public void testThatTokensAreTakenFromAnalyzedTermCache() {
+        final Analyzer analyzer = new StandardAnalyzer();
+        final AnalyzedTermCache cache = new AnalyzedTermCache();
+
+        final QuerqyQuery<?> query = new WhiteSpaceQuerqyParser().parse("a b c");
+        PhraseBoosting.makePhraseFieldsBoostQuery(query, FIELD_PARAMS, 0.5f, analyzer, PhraseAnalysis.TOKEN, cache);
+        // 3 tokens in 2 fields
+        assertEquals(6, cache.size());
+        assertEquals(0L, cache.getHits());
+
+        PhraseBoosting.makePhraseFieldsBoostQuery(query, FIELD_PARAMS, 0.5f, analyzer, PhraseAnalysis.TOKEN, cache);
+        assertEquals(6L, cache.getHits());
+    }
+
+    @Test
+    public void testThatNoQueryIsCreatedForSingleToken() {
+        final Optional<Query> query = PhraseBoosting.makePhraseFieldsBoostQuery(
+                new WhiteSpaceQuerqyParser().parse("a"), FIELD_PARAMS, 0.5f, new StandardAnalyzer(),
+                PhraseAnalysis.TOKEN, null);
+        assertFalse(query.isPresent());
+    }
+
+    void assertSameQueries(final String input, final Analyzer analyzer, final AnalyzedTermCache cache) {
+        final QuerqyQuery<?> query = new WhiteSpaceQuerqyParser().parse(input);
+        final Optional<Query> expected = PhraseBoosting.makePhraseFieldsBoostQuery(query, FIELD_PARAMS, 0.5f,
+                analyzer);
+        assertTrue(expected.isPresent());
+        assertEquals(input, expected, PhraseBoosting.makePhraseFieldsBoostQuery(query, FIELD_PARAMS, 0.5f,
+                analyzer, PhraseAnalysis.TOKEN, cache));
+    }
+
+}
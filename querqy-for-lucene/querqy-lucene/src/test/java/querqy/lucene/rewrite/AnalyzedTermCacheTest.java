@@ -0,0 +1,98 @@
+package querqy.lucene.rewrite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.index.Term;
+import org.junit.Test;
+import querqy.rewrite.commonrules.model.PositionSequence;
+
+public class AnalyzedTermCacheTest {
+
+    final Analyzer analyzer1 = new StandardAnalyzer();
+    final Analyzer analyzer2 = new WhitespaceAnalyzer();
+
+    @Test
+    public void testThatSequencesAreCachedAndCounted() {
+        final AnalyzedTermCache cache = new AnalyzedTermCache();
+        final PositionSequence<Term> sequence = sequence("f1", "a");
+
+        assertNull(cache.get(analyzer1, "f1", "a"));
+        cache.put(analyzer1, "f1", "a", sequence);
+        assertSame(sequence, cache.get(analyzer1, "f1", new StringBuilder("a")));
+        assertNull(cache.get(analyzer1, "f2", "a"));
+        assertNull(cache.get(analyzer1, "f1", "b"));
+
+        assertEquals(1, cache.size());
+        assertEquals(1L, cache.getHits());
+        assertEquals(3L, cache.getMisses());
+        assertTrue(cache.getRamBytesUsed() > 0L);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getRamBytesUsed());
+        assertNull(cache.get(analyzer1, "f1", "a"));
+    }
+
+    @Test
+    public void testThatAnalyzersAreKeptApart() {
+        final AnalyzedTermCache cache = new AnalyzedTermCache();
+        final PositionSequence<Term> sequence1 = sequence("f1", "a");
+        final PositionSequence<Term> sequence2 = sequence("f1", "A");
+
+        cache.put(analyzer1, "f1", "A", sequence1);
+        assertNull(cache.get(analyzer2, "f1", "A"));
+        cache.put(analyzer2, "f1", "A", sequence2);
+
+        assertSame(sequence1, cache.get(analyzer1, "f1", "A"));
+        assertSame(sequence2, cache.get(analyzer2, "f1", "A"));
+    }
+
+    @Test
+    public void testThatSizeIsBoundedAndUsedEntriesAreKept() {
+        final long entryBytes = AnalyzedTermCache.ramBytes(new AnalyzedTermCache.Key(analyzer1, "f1", "t0"),
+                sequence("f1", "t0"));
+        // room for 5 entries per generation
+        final AnalyzedTermCache cache = new AnalyzedTermCache(10L * entryBytes + 1L);
+
+        final PositionSequence<Term> used = sequence("f1", "t0");
+        cache.put(analyzer1, "f1", "t0", used);
+
+        for (int i = 1; i < 100; i++) {
+            cache.put(analyzer1, "f1", "t" + i, sequence("f1", "t" + i));
+            assertSame(used, cache.get(analyzer1, "f1", "t0"));
+            assertTrue(cache.getRamBytesUsed() <= 10L * entryBytes + 1L);
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertNull(cache.get(analyzer1, "f1", "t1"));
+        assertNotNull(cache.get(analyzer1, "f1", "t99"));
+    }
+
+    @Test
+    public void testThatEntriesBiggerThanAGenerationAreNotCached() {
+        final AnalyzedTermCache cache = new AnalyzedTermCache(2L);
+        cache.put(analyzer1, "f1", "a", sequence("f1", "a"));
+        assertNull(cache.get(analyzer1, "f1", "a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatMaxRamBytesMustBePositive() {
+        new AnalyzedTermCache(0L);
+    }
+
+    static PositionSequence<Term> sequence(final String fieldname, final String text) {
+        final PositionSequence<Term> sequence = new PositionSequence<>();
+        sequence.nextPosition();
+        sequence.addElement(new Term(fieldname, text));
+        return sequence;
+    }
+
+}
@@ -4,6 +4,7 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermState;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.tests.analysis.MockAnalyzer;
@@ -123,6 +124,90 @@ public class DocumentFrequencyCorrectionTest extends LuceneTestCase {
         
     }
 
+    @Test
+    public void testThatTermStatisticsCacheIsSharedAcrossRequests() throws Exception {
+
+        Analyzer analyzer = new MockAnalyzer(random());
+
+        Directory directory = newDirectory();
+        RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, analyzer);
+
+        int df1 = getRandomDf();
+        addNumDocsWithStringField("f1", "a", indexWriter, df1);
+        indexWriter.commit();
+        int df2 = getRandomDf();
+        addNumDocsWithStringField("f1", "b", indexWriter, df2);
+        addNumDocsWithStringField("f2", "a", indexWriter, df2);
+        indexWriter.commit();
+        addNumDocsWithStringField("f1", "a", indexWriter, df2);
+
+        indexWriter.close();
+
+        IndexReader indexReader = DirectoryReader.open(directory);
+        IndexSearcher indexSearcher = newSearcher(indexReader);
+
+        TermStatisticsCache cache = new TermStatisticsCache();
+
+        for (int i = 0; i < 2; i++) {
+
+            DocumentFrequencyCorrection dfc = new DocumentFrequencyCorrection(cache);
+            dfc.newClause();
+            Term t1 = newTerm("f1", "a", dfc);
+            Term t2 = newTerm("f2", "a", dfc);
+            dfc.newClause();
+            Term t3 = newTerm("f1", "b", dfc);
+            Term t4 = newTerm("f1", "x", dfc);
+            dfc.finishedUserQuery();
+
+            DependentTermQuery tq1 = new DependentTermQuery(t1, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tq2 = new DependentTermQuery(t2, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tq3 = new DependentTermQuery(t3, dfc, ConstantFieldBoost.NORM_BOOST);
+            DependentTermQuery tq4 = new DependentTermQuery(t4, dfc, ConstantFieldBoost.NORM_BOOST);
+
+            // df = max df in clause
+            assertEquals(df1 + df2, dfc.getDocumentFrequencyAndTermContext(tq1.tqIndex,
+                    indexSearcher.getTopReaderContext()).termStates.docFreq());
+            assertEquals(df1 + df2, dfc.getDocumentFrequencyAndTermContext(tq2.tqIndex,
+                    indexSearcher.getTopReaderContext()).termStates.docFreq());
+            assertEquals(df2, dfc.getDocumentFrequencyAndTermContext(tq3.tqIndex,
+                    indexSearcher.getTopReaderContext()).termStates.docFreq());
+            assertEquals(0, dfc.getDocumentFrequencyAndTermContext(tq4.tqIndex,
+                    indexSearcher.getTopReaderContext()).df);
+
+            // the searcher can run the queries with the cached term states
+            assertEquals(df1 + df2, indexSearcher.count(tq1));
+            assertEquals(df2, indexSearcher.count(tq2));
+        }
+
+        assertEquals(1, cache.getNumberOfReaders());
+        assertEquals(4, cache.forReader(indexSearcher.getTopReaderContext()).size());
+
+        indexReader.close();
+        assertEquals(0, cache.getNumberOfReaders());
+
+        directory.close();
+        analyzer.close();
+
+    }
+
+    @Test
+    public void testThatCachedTermStatisticsAreClearedWhenFull() {
+
+        TermStatisticsCache.ReaderTermStatistics statistics = new TermStatisticsCache.ReaderTermStatistics(2);
+        TermStatisticsCache.TermStatistics termStatistics = new TermStatisticsCache.TermStatistics(1, 1L,
+                new TermState[0]);
+
+        statistics.put(new Term("f1", "a"), termStatistics);
+        statistics.put(new Term("f1", "b"), termStatistics);
+        assertEquals(2, statistics.size());
+
+        statistics.put(new Term("f1", "c"), termStatistics);
+        assertEquals(1, statistics.size());
+        assertNull(statistics.get(new Term("f1", "a")));
+        assertSame(termStatistics, statistics.get(new Term("f1", "c")));
+
+    }
+
     int getRandomDf() {
         return 1 + Long.valueOf(Math.round(50.0 * Math.random())).intValue();
     }
@@ -1,7 +1,9 @@
 package querqy.lucene.rewrite;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -189,6 +191,23 @@ public class TermSubQueryBuilderTest {
         verify(cache, never()).put(any(CacheKey.class), any(TermQueryCacheValue.class));
 
     }
+
+    @Test
+    public void testThatAnalyzedTermsAreTakenFromAnalyzedTermCache() throws Exception {
+        final AnalyzedTermCache analyzedTermCache = new AnalyzedTermCache();
+        final TermSubQueryBuilder builder = new TermSubQueryBuilder(ANALYZER, null, analyzedTermCache);
+        final querqy.model.Term term = new querqy.model.Term(null, "f", "Ab");
+
+        final PositionSequence<Term> analyzed = builder.analyze("f", term);
+        assertEquals(0L, analyzedTermCache.getHits());
+        assertSame(analyzed, builder.analyze("f", term));
+        assertEquals(1L, analyzedTermCache.getHits());
+        assertSame(analyzed, analyzedTermCache.get(ANALYZER, "f", "Ab"));
+
+        final Term expected = new Term("f", "ab");
+        assertThat(builder.termToFactory("f", term, ConstantFieldBoost.NORM_BOOST).root, tqf(expected));
+        assertEquals(3L, analyzedTermCache.getHits());
+    }
     
     public TQFMatcher tqf(Term term) {
         return new TQFMatcher(term);
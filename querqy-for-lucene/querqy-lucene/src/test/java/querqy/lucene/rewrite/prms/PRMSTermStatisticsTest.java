@@ -0,0 +1,78 @@
+package querqy.lucene.rewrite.prms;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.tests.util.LuceneTestCase;
+import org.junit.Test;
+import querqy.lucene.rewrite.TermStatisticsCache;
+import querqy.lucene.rewrite.TestUtil;
+
+import java.util.Arrays;
+
+public class PRMSTermStatisticsTest extends LuceneTestCase {
+
+    @Test
+    public void testThatBatchedLikelihoodsEqualPerTermLikelihoods() throws Exception {
+
+        final Directory directory = newDirectory();
+        final Analyzer analyzer = new WhitespaceAnalyzer();
+
+        final IndexWriterConfig conf = new IndexWriterConfig(analyzer);
+        conf.setCodec(Codec.forName(TestUtil.LUCENE_CODEC));
+        final IndexWriter indexWriter = new IndexWriter(directory, conf);
+        PRMSFieldBoostTest.addNumDocs("f1", "abc def", indexWriter, 2);
+        indexWriter.commit();
+        PRMSFieldBoostTest.addNumDocs("f1", "abc", indexWriter, 3);
+        PRMSFieldBoostTest.addNumDocs("f2", "def ghi", indexWriter, 1);
+        PRMSFieldBoostTest.addNumDocs("f2", "ghi", indexWriter, 4);
+        indexWriter.close();
+
+        final IndexReader indexReader = DirectoryReader.open(directory);
+
+        final TermStatisticsCache cache = new TermStatisticsCache();
+        final PRMSTermStatistics termStatistics = new PRMSTermStatistics(cache);
+
+        final PRMSTermQuery f1abc = new PRMSTermQuery(new Term("f1", "abc"));
+        final PRMSTermQuery f1def = new PRMSTermQuery(new Term("f1", "def"));
+        final PRMSTermQuery f1xyz = new PRMSTermQuery(new Term("f1", "xyz"));
+        final PRMSTermQuery f2def = new PRMSTermQuery(new Term("f2", "def"));
+        final PRMSTermQuery f2ghi = new PRMSTermQuery(new Term("f2", "ghi"));
+        final PRMSTermQuery f3abc = new PRMSTermQuery(new Term("f3", "abc"));
+
+        termStatistics.register(new PRMSDisjunctionMaxQuery(Arrays.asList(f1abc,
+                new PRMSAndQuery(Arrays.asList(f1def, f1xyz)))));
+        termStatistics.register(new PRMSAndQuery(Arrays.asList(f2def, f2ghi)));
+        termStatistics.register(f3abc);
+
+        for (final PRMSTermQuery termQuery : Arrays.asList(f1abc, f1def, f1xyz, f2def, f2ghi, f3abc)) {
+            assertFalse(termQuery.hasLikelihood());
+        }
+
+        termStatistics.calculateLikelihoods(indexReader);
+
+        for (final PRMSTermQuery termQuery : Arrays.asList(f1abc, f1def, f1xyz, f2def, f2ghi, f3abc)) {
+            assertTrue(termQuery.hasLikelihood());
+            assertEquals(new PRMSTermQuery(termQuery.getTerm()).calculateLikelihood(indexReader),
+                    termQuery.calculateLikelihood(indexReader), 0.0000001);
+        }
+
+        assertEquals(5.0 / 7.0, f1abc.calculateLikelihood(indexReader), 0.0000001);
+        assertEquals(0.0, f1xyz.calculateLikelihood(indexReader), 0.0);
+        assertEquals(0.0, f3abc.calculateLikelihood(indexReader), 0.0);
+
+        // the statistics have been added to the cache that is shared with the DocumentFrequencyCorrection
+        assertEquals(1, cache.getNumberOfReaders());
+
+        indexReader.close();
+        directory.close();
+        analyzer.close();
+    }
+
+}
@@ -31,6 +31,8 @@ import querqy.lucene.PhraseBoosting.PhraseBoostFieldParams;
 import querqy.lucene.QuerySimilarityScoring;
 import querqy.lucene.LuceneSearchEngineRequestAdapter;
 import querqy.lucene.rewrite.SearchFieldsAndBoosting;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.infologging.InfoLogging;
 import querqy.lucene.rewrite.infologging.InfoLoggingContext;
@@ -92,6 +94,8 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
     private final SolrParams solrParams;
     private final SolrQueryRequest request;
     private final TermQueryCache termQueryCache;
+    private final TermStatisticsCache termStatisticsCache;
+    private final AnalyzedTermCache analyzedTermCache;
     private final QuerqyParser querqyParser;
     private final RewriteChain rewriteChain;
     private final List<FieldParams> allPhraseFields;
@@ -112,10 +116,23 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
                                             final QuerqyParser querqyParser, final RewriteChain rewriteChain,
                                             final InfoLogging infoLogging,
                                             final TermQueryCache termQueryCache) {
+        this(qParser, request, queryString, solrParams, querqyParser, rewriteChain, infoLogging, termQueryCache,
+                null, null);
+    }
+
+    public DismaxSearchEngineRequestAdapter(final QParser qParser, final SolrQueryRequest request,
+                                            final String queryString, final SolrParams solrParams,
+                                            final QuerqyParser querqyParser, final RewriteChain rewriteChain,
+                                            final InfoLogging infoLogging,
+                                            final TermQueryCache termQueryCache,
+                                            final TermStatisticsCache termStatisticsCache,
+                                            final AnalyzedTermCache analyzedTermCache) {
         this.qParser = qParser;
         this.userQueryString = queryString;
         this.solrParams = solrParams;
         this.termQueryCache = termQueryCache;
+        this.termStatisticsCache = termStatisticsCache;
+        this.analyzedTermCache = analyzedTermCache;
 
         this.querqyParser = querqyParser;
         this.request = request;
@@ -195,6 +212,10 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         return userQueryString;
     }
 
+    public SolrQueryRequest getSolrRequest() {
+        return request;
+    }
+
     @Override
     public boolean isMatchAllQuery(final String queryString) {
 
@@ -213,6 +234,16 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         return Optional.ofNullable(termQueryCache);
     }
 
+    @Override
+    public Optional<TermStatisticsCache> getTermStatisticsCache() {
+        return Optional.ofNullable(termStatisticsCache);
+    }
+
+    @Override
+    public Optional<AnalyzedTermCache> getAnalyzedTermCache() {
+        return Optional.ofNullable(analyzedTermCache);
+    }
+
     @Override
     public boolean addQuerqyBoostQueriesToMainQuery() {
         return QBOOST_METHOD_OPT.equals(solrParams.get(QBOOST_METHOD, QBOOST_METHOD_DEFAULT));
@@ -309,6 +340,25 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         return solrParams.getFloat(QPF_TIE, DEFAULT_QPF_TIE);
     }
 
+    /**
+     * <p>Get the mode for applying the query analyzer in phrase boostings.</p>
+     *
+     * @see PhraseBoosting.PhraseAnalysis
+     * @return The value of request parameter {@value QuerqyDismaxParams#QPF_ANALYSIS}, defaults to
+     * {@link PhraseBoosting.PhraseAnalysis#NGRAM}
+     */
+    public PhraseBoosting.PhraseAnalysis getPhraseAnalysis() {
+        final String phraseAnalysis = solrParams.get(QPF_ANALYSIS);
+        if (phraseAnalysis == null) {
+            return PhraseBoosting.PhraseAnalysis.NGRAM;
+        }
+        switch (phraseAnalysis) {
+            case QPF_ANALYSIS_NGRAM: return PhraseBoosting.PhraseAnalysis.NGRAM;
+            case QPF_ANALYSIS_TOKEN: return PhraseBoosting.PhraseAnalysis.TOKEN;
+            default: throw new IllegalArgumentException("Unknown phrase analysis: " + phraseAnalysis);
+        }
+    }
+
     @Override
     public RewriteChain getRewriteChain() {
         return rewriteChain;
@@ -436,7 +486,7 @@ public class DismaxSearchEngineRequestAdapter implements LuceneSearchEngineReque
         final Optional<Query> phraseBoostQuery =
                 (!phraseBoostFieldParams.isEmpty())
                         ? makePhraseFieldsBoostQuery(userQuery, phraseBoostFieldParams, getPhraseBoostTiebreaker(),
-                            getQueryAnalyzer())
+                            getQueryAnalyzer(), getPhraseAnalysis(), analyzedTermCache)
                         : Optional.empty();
 
 
@@ -7,11 +7,13 @@ import org.apache.solr.core.SolrResourceLoader;
 import querqy.lucene.rewrite.infologging.Sink;
 import querqy.rewrite.RewriterFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.apache.solr.common.SolrException.ErrorCode.NOT_FOUND;
+import static querqy.solr.RewriterConfigRequestBuilder.CONF_CONFIG;
 
 /**
  * Store the rewriters only in memory. The Map which stores the rewriters is only used to return the rewriter descriptions.
@@ -44,6 +46,7 @@ public class InMemoryRewriteContainer extends RewriterContainer<SolrResourceLoad
             throw new SolrException(NOT_FOUND, "No such rewriter: " + rewriterId);
         }
         rewriters = newRewriters;
+        invalidateRewriteChainCache(rewriterId);
     }
 
     @Override
@@ -63,4 +66,13 @@ public class InMemoryRewriteContainer extends RewriterContainer<SolrResourceLoad
         }
         store.put(rewriterId, instanceDescription);
     }
+
+    @Override
+    protected synchronized void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription,
+                                               final SolrRewriterFactoryAdapter factoryAdapter) {
+        factoryAdapter.configure((Map<String, Object>) instanceDescription.getOrDefault(CONF_CONFIG,
+                Collections.emptyMap()));
+        loadRewriter(rewriterId, instanceDescription, factoryAdapter);
+        store.put(rewriterId, instanceDescription);
+    }
 }
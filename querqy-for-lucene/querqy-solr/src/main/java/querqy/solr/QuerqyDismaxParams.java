@@ -74,6 +74,21 @@ public interface QuerqyDismaxParams {
      */
     String QPF_TIE = "qpf.tie";
 
+    /**
+     * How the query analyzer is applied for pf, pf2 and pf3 phrase boostings
+     */
+    String QPF_ANALYSIS = "qpf.analysis";
+
+    /**
+     * Analyze the phrase and each n-gram for each phrase boost field (default)
+     */
+    String QPF_ANALYSIS_NGRAM = "ngram";
+
+    /**
+     * Analyze each query token once per phrase boost field and build the phrases from the analyzed tokens
+     */
+    String QPF_ANALYSIS_TOKEN = "token";
+
     /**
      * Rerank Query Parameter, same as Solr's {@link org.apache.solr.common.params.CommonParams#RQ}
      * Querqy will rerank the result by this query if there is no Querqy {@link querqy.model.BoostQuery} applied before.
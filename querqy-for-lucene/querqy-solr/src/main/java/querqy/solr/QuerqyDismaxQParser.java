@@ -19,6 +19,8 @@ import org.apache.solr.search.WrappedQuery;
 import querqy.lucene.LuceneQueries;
 import querqy.lucene.QueryParsingController;
 import querqy.lucene.LuceneSearchEngineRequestAdapter;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.infologging.InfoLogging;
 import querqy.parser.QuerqyParser;
@@ -58,6 +60,29 @@ public class QuerqyDismaxQParser extends QParser {
                                final SolrQueryRequest req, final QuerqyParser querqyParser,
                                final RewriteChain rewriteChain, final InfoLogging infoLogging,
                                final TermQueryCache termQueryCache) {
+        this(qstr, localParams, params, req, querqyParser, rewriteChain, infoLogging, termQueryCache, null, null);
+    }
+
+    /**
+     * Constructor for the QParser
+     *
+     * @param qstr        The part of the query string specific to this parser
+     * @param localParams The set of parameters that are specific to this QParser.  See http://wiki.apache.org/solr/LocalParams
+     * @param params      The rest of the {@link SolrParams}
+     * @param req         The original {@link SolrQueryRequest}
+     * @param querqyParser The Querqy query parser to be applied to the input query string
+     * @param rewriteChain The chain of rewriters to be applied to this request
+     * @param infoLogging The info logging object for this request
+     * @param termQueryCache The term query cache.
+     * @param termStatisticsCache The cache for the term statistics of the document frequency correction or null
+     * @param analyzedTermCache The cache for the analyzed query terms or null
+     *
+     */
+    public QuerqyDismaxQParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                               final SolrQueryRequest req, final QuerqyParser querqyParser,
+                               final RewriteChain rewriteChain, final InfoLogging infoLogging,
+                               final TermQueryCache termQueryCache, final TermStatisticsCache termStatisticsCache,
+                               final AnalyzedTermCache analyzedTermCache) {
         super(qstr, localParams, params, req);
         final String q = Objects.requireNonNull(qstr).trim();
 
@@ -69,7 +94,8 @@ public class QuerqyDismaxQParser extends QParser {
         this.querqyParser = querqyParser;
 
         requestAdapter = new DismaxSearchEngineRequestAdapter(this, req, userQueryString,
-                SolrParams.wrapDefaults(localParams, params), querqyParser, rewriteChain, infoLogging, termQueryCache);
+                SolrParams.wrapDefaults(localParams, params), querqyParser, rewriteChain, infoLogging, termQueryCache,
+                termStatisticsCache, analyzedTermCache);
 
 
         controller = createQueryParsingController();
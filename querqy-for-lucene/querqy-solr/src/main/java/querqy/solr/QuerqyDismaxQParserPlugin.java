@@ -3,6 +3,8 @@ package querqy.solr;
 import org.apache.solr.common.params.SolrParams;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.search.QParser;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.infologging.InfoLogging;
 import querqy.rewrite.RewriteChain;
@@ -16,8 +18,18 @@ public class QuerqyDismaxQParserPlugin extends QuerqyQParserPlugin {
     public QParser createParser(final String qstr, final SolrParams localParams, final SolrParams params,
                                 final SolrQueryRequest req, final RewriteChain rewriteChain,
                                 final InfoLogging infoLogging, final TermQueryCache termQueryCache) {
+        return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, termQueryCache, null, null);
+    }
+
+    @Override
+    public QParser createParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                                final SolrQueryRequest req, final RewriteChain rewriteChain,
+                                final InfoLogging infoLogging, final TermQueryCache termQueryCache,
+                                final TermStatisticsCache termStatisticsCache,
+                                final AnalyzedTermCache analyzedTermCache) {
         return new QuerqyDismaxQParser(qstr, localParams, params, req,
-                createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache);
+                createQuerqyParser(qstr, localParams, params, req), rewriteChain, infoLogging, termQueryCache,
+                termStatisticsCache, analyzedTermCache);
     }
 
 
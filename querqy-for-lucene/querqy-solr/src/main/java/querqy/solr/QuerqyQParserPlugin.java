@@ -14,6 +14,8 @@ import org.apache.solr.search.SolrCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import querqy.lucene.GZIPAwareResourceLoader;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.cache.CacheKey;
 import querqy.lucene.rewrite.cache.TermQueryCache;
 import querqy.lucene.rewrite.cache.TermQueryCacheValue;
@@ -43,6 +45,8 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
     public static final String CONF_REWRITER_REQUEST_HANDLER = "rewriterRequestHandler";
     public static final String CONF_SKIP_UNKNOWN_REWRITERS = "skipUnknownRewriters";
     public static final String CONF_SKIP_UNKNOWN_REWRITERS_WITH_TYPO = "skipUnkownRewriters";
+    public static final String CONF_TERM_STATISTICS_CACHE_MAX_ENTRIES = "termStatisticsCache.maxEntriesPerReader";
+    public static final String CONF_ANALYZED_TERM_CACHE_MAX_RAM_MB = "analyzedTermCache.maxRamMB";
 
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
@@ -55,6 +59,8 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
 
     protected String rewriterRequestHandlerName = QuerqyRewriterRequestHandler.DEFAULT_HANDLER_NAME;
     protected boolean skipUnknownRewriter = false;
+    protected TermStatisticsCache termStatisticsCache = null;
+    protected AnalyzedTermCache analyzedTermCache = null;
 
     @Override
     public void init(final @SuppressWarnings("rawtypes") NamedList args) {
@@ -86,6 +92,19 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
         }
         skipUnknownRewriter = skip != null ? skip : false;
 
+        final Integer termStatisticsCacheMaxEntries = (Integer) args.get(CONF_TERM_STATISTICS_CACHE_MAX_ENTRIES);
+        if (termStatisticsCacheMaxEntries != null) {
+            termStatisticsCache = new TermStatisticsCache(termStatisticsCacheMaxEntries);
+        }
+
+        final Integer analyzedTermCacheMaxRamMB = (Integer) args.get(CONF_ANALYZED_TERM_CACHE_MAX_RAM_MB);
+        if (analyzedTermCacheMaxRamMB != null) {
+            if (analyzedTermCacheMaxRamMB < 1) {
+                throw new IllegalArgumentException("'" + CONF_ANALYZED_TERM_CACHE_MAX_RAM_MB + "' must be > 0");
+            }
+            analyzedTermCache = new AnalyzedTermCache(analyzedTermCacheMaxRamMB * 1024L * 1024L);
+        }
+
         logger.info("Initialized Querqy query parser: QuerqyRewriterRequestHandler={},skipUnknownRewriter={}",
                 rewriterRequestHandlerName, skipUnknownRewriter);
 
@@ -113,6 +132,21 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
                                          final SolrQueryRequest req, final RewriteChain rewriteChain,
                                          final InfoLogging infoLogging, final TermQueryCache termQueryCache);
 
+    /**
+     * Create the QParser with the caches of this plugin. The default implementation ignores the
+     * {@link TermStatisticsCache} and the {@link AnalyzedTermCache}, plugins that support them override this method.
+     *
+     * @param termStatisticsCache The cache for the term statistics of the document frequency correction or null
+     * @param analyzedTermCache The cache for the analyzed query terms or null
+     */
+    public QParser createParser(final String qstr, final SolrParams localParams, final SolrParams params,
+                                final SolrQueryRequest req, final RewriteChain rewriteChain,
+                                final InfoLogging infoLogging, final TermQueryCache termQueryCache,
+                                final TermStatisticsCache termStatisticsCache,
+                                final AnalyzedTermCache analyzedTermCache) {
+        return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, termQueryCache);
+    }
+
 
     protected SolrQuerqyParserFactory loadSolrQuerqyParserFactory(final ResourceLoader loader,
                                                                   final NamedList<?> args) throws IOException {
@@ -204,7 +238,7 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
                 }
 
             }
-            rewriteChain = new RewriteChain(factories);
+            rewriteChain = new RewriteChain(factories, rewriterRequestHandler.getRewriteChainCache().orElse(null));
             infoLogging = new MultiSinkInfoLogging(sinkMappings);
 
         } else {
@@ -214,17 +248,20 @@ public abstract class QuerqyQParserPlugin extends QParserPlugin implements Resou
 
 
         if (termQueryCacheName == null) {
-            return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, null);
+            return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, null,
+                    termStatisticsCache, analyzedTermCache);
         } else {
 
             @SuppressWarnings("unchecked")
             final SolrCache<CacheKey, TermQueryCacheValue> solrCache = req.getSearcher().getCache(termQueryCacheName);
             if (solrCache == null) {
                 logger.warn("Missing Solr cache {}", termQueryCacheName);
-                return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, null);
+                return createParser(qstr, localParams, params, req, rewriteChain, infoLogging, null,
+                        termStatisticsCache, analyzedTermCache);
             } else {
                 return createParser(qstr, localParams, params, req, rewriteChain, infoLogging,
-                        new SolrTermQueryCacheAdapter(ignoreTermQueryCacheUpdates, solrCache));
+                        new SolrTermQueryCacheAdapter(ignoreTermQueryCacheUpdates, solrCache), termStatisticsCache,
+                        analyzedTermCache);
             }
 
         }
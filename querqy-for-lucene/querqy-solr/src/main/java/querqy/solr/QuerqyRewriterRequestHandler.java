@@ -20,6 +20,7 @@ import org.apache.solr.request.SolrRequestHandler;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.util.plugin.SolrCoreAware;
 import querqy.lucene.rewrite.infologging.Sink;
+import querqy.rewrite.RewriteChainCache;
 import querqy.rewrite.RewriterFactory;
 import querqy.solr.explain.ExplainRewriteChainRequestHandler;
 
@@ -43,7 +44,7 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
 
     public enum ActionParam {
 
-        SAVE, DELETE, GET;
+        SAVE, DELETE, GET, PATCH;
 
         private final SolrParams params;
 
@@ -78,6 +79,7 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
                 switch (actionParam.get()) {
                     case SAVE:
                     case DELETE:
+                    case PATCH:
                         return actionParam;
                     default:
                         throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "HTTP POST must not be combined " +
@@ -118,6 +120,17 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
                 throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "HTTP PUT must not be combined " +
                         "with " + PARAM_ACTION + "=" + actionString);
 
+            } else if (method.equalsIgnoreCase("PATCH")) {
+
+                if (!actionParam.isPresent()) {
+                    return Optional.of(PATCH);
+                }
+                if (actionParam.get() == ActionParam.PATCH) {
+                    return actionParam;
+                }
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "HTTP PATCH must not be combined " +
+                        "with " + PARAM_ACTION + "=" + actionString);
+
             } else {
                 throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unknown HTTP Method: " + method);
             }
@@ -138,6 +151,9 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
             if (GET.name().equalsIgnoreCase(str)) {
                 return Optional.of(GET);
             }
+            if (PATCH.name().equalsIgnoreCase(str)) {
+                return Optional.of(PATCH);
+            }
 
             throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Unknown action value: " + str);
         }
@@ -149,6 +165,12 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
 
     public static final String DEFAULT_HANDLER_NAME = "/querqy/rewriter";
 
+    public static final String CONF_REWRITE_CHAIN_CACHE = "rewriteChainCache";
+    public static final String CONF_REWRITE_CHAIN_CACHE_MAX_ENTRIES = "maxEntries";
+    public static final String CONF_REWRITE_CHAIN_CACHE_MAX_WEIGHT = "maxWeight";
+    public static final int DEFAULT_REWRITE_CHAIN_CACHE_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_REWRITE_CHAIN_CACHE_MAX_WEIGHT = 1_000_000L;
+
     private RewriterContainer<?> rewriterContainer = null;
 
     private Map<String, Sink> infoLoggingSinks = null;
@@ -220,10 +242,38 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
             rewriterContainer = new StandAloneRewriterContainer(core, resourceLoader, sinks);
         }
 
+        rewriterContainer.setRewriteChainCache(loadRewriteChainCache());
 
         rewriterContainer.init(initArgs);
     }
 
+    /**
+     * Creates the cache for the output of rewrite chains if it is configured, for example:
+     *
+     * <pre>
+     *  &lt;lst name="rewriteChainCache"&gt;
+     *     &lt;int name="maxEntries"&gt;10000&lt;/int&gt;
+     *     &lt;long name="maxWeight"&gt;1000000&lt;/long&gt;
+     *  &lt;/lst&gt;
+     * </pre>
+     *
+     * @return The cache or null if the cache is not configured
+     */
+    protected RewriteChainCache loadRewriteChainCache() {
+
+        final NamedList<?> cacheConfig = (NamedList<?>) initArgs.get(CONF_REWRITE_CHAIN_CACHE);
+        if (cacheConfig == null) {
+            return null;
+        }
+
+        final Number maxEntries = (Number) cacheConfig.get(CONF_REWRITE_CHAIN_CACHE_MAX_ENTRIES);
+        final Number maxWeight = (Number) cacheConfig.get(CONF_REWRITE_CHAIN_CACHE_MAX_WEIGHT);
+
+        return new RewriteChainCache(
+                maxEntries == null ? DEFAULT_REWRITE_CHAIN_CACHE_MAX_ENTRIES : maxEntries.intValue(),
+                maxWeight == null ? DEFAULT_REWRITE_CHAIN_CACHE_MAX_WEIGHT : maxWeight.longValue());
+    }
+
     public Map<String, Sink> loadSinks(final SolrResourceLoader resourceLoader) {
 
         final Map<String, Sink> sinks = new HashMap<>();
@@ -273,6 +323,10 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
         return rewriterContainer.getRewriterFactory(rewriterId);
     }
 
+    public Optional<RewriteChainCache> getRewriteChainCache() {
+        return rewriterContainer.getRewriteChainCache();
+    }
+
     public synchronized Collection<RewriterFactoryContext> getRewriterFactories(final RewriterContainer.RewritersChangeListener listener) {
         return rewriterContainer.getRewriterFactories(listener);
     }
@@ -322,13 +376,19 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
                         case DELETE:
                             rewriterContainer.deleteRewriter(rewriterId);
                             break;
+                        case PATCH:
+                            doPatch(req, rewriterId);
+                            break;
                         case GET:
                             final Map<String, Object> definition = rewriterContainer.readRewriterDefinition(rewriterId);
-                            final Map<String, Object> conf = new LinkedHashMap<>(3);
+                            final Map<String, Object> conf = new LinkedHashMap<>(4);
                             conf.put("id", rewriterId);
                             final String queryType = req.getParams().get(CommonParams.QT);
                             conf.put("path", queryType == null ? req.getPath() : queryType);
                             conf.put("definition", definition);
+                            rewriterContainer.getRewriterFactory(rewriterId)
+                                    .flatMap(context -> context.getRewriterFactory().getInfo())
+                                    .ifPresent(info -> conf.put("info", info));
                             rsp.add("rewriter", conf);
                             break;
                     }
@@ -367,4 +427,15 @@ public class QuerqyRewriterRequestHandler implements SolrRequestHandler, NestedR
 
         rewriterContainer.saveRewriter(rewriterId, readJson(iterator.next().getStream(), Map.class));
     }
+
+    public void doPatch(final SolrQueryRequest req, final String rewriterId) throws IOException {
+
+        final Iterable<ContentStream> streams = req.getContentStreams();
+        final Iterator<ContentStream> iterator = streams.iterator();
+        if (!iterator.hasNext()) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Empty request");
+        }
+
+        rewriterContainer.patchRewriter(rewriterId, readJson(iterator.next().getStream(), Map.class));
+    }
 }
@@ -10,11 +10,15 @@ import org.apache.solr.util.RefCounted;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import querqy.lucene.rewrite.infologging.Sink;
+import querqy.rewrite.RewriteChainCache;
+import querqy.rewrite.RewriterFactory;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static querqy.solr.RewriterConfigRequestBuilder.CONF_CONFIG;
+
 public abstract class RewriterContainer<R extends SolrResourceLoader> {
 
     protected final Logger LOG = LoggerFactory.getLogger(getClass());
@@ -24,6 +28,7 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
     protected SolrCore core;
     private RewritersChangeListener rewritersChangeListener = null;
     protected final Map<String, Sink> infoLoggingSinks;
+    private RewriteChainCache rewriteChainCache = null;
 
     public interface RewritersChangeListener {
         void rewritersChanged(SolrIndexSearcher indexSearcher, Set<RewriterFactoryContext> allRewriters);
@@ -72,6 +77,23 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
 
     protected abstract void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription)
             throws IOException;
+
+    /**
+     * Save a rewriter for which an adapter has already been validated or configured. Containers that load the
+     * rewriter themselves after saving should configure this adapter instead of a new one, as adapters can reuse what
+     * they created during validation or during a partial update (see {@link #patchRewriter(String, Map)}).
+     * Containers that store the rewriter for other nodes can store the compiled configuration of the adapter (see
+     * {@link SolrRewriterFactoryAdapter#getCompiledConfiguration()}) along with the definition.
+     *
+     * @param rewriterId The rewriter ID
+     * @param instanceDescription The rewriter definition
+     * @param factoryAdapter The adapter that has been validated or configured for the config of the definition
+     * @throws IOException If the rewriter cannot be saved
+     */
+    protected void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription,
+                                  final SolrRewriterFactoryAdapter factoryAdapter) throws IOException {
+        doSaveRewriter(rewriterId, instanceDescription);
+    }
     protected abstract void deleteRewriter(final String rewriterId) throws IOException;
 
     /**
@@ -85,15 +107,73 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
     public void saveRewriter(final String rewriterId, final Map<String, Object> instanceDescription)
             throws IOException {
 
-        validateRewriterDescription(rewriterId, instanceDescription);
-        doSaveRewriter(rewriterId, instanceDescription);
+        final SolrRewriterFactoryAdapter factoryAdapter = validateRewriterDescription(rewriterId,
+                instanceDescription);
+        doSaveRewriter(rewriterId, instanceDescription, factoryAdapter);
 
     }
 
+    /**
+     * <p>Apply a partial update to the configuration of a rewriter (see
+     * {@link SolrRewriterFactoryAdapter#patch(Map, Map, RewriterFactory)}).</p>
+     *
+     * <p>The updated rewriter replaces the current one atomically: requests that are being processed keep using the
+     * current rewriter.</p>
+     *
+     * @param rewriterId The rewriter ID
+     * @param patch The partial update
+     * @throws IOException If the rewriter definition cannot be read or saved
+     */
+    public synchronized void patchRewriter(final String rewriterId, final Map<String, Object> patch)
+            throws IOException {
+
+        final Map<String, Object> definition = readRewriterDefinition(rewriterId);
+        if (definition == null) {
+            throw new SolrException(SolrException.ErrorCode.NOT_FOUND, "No such rewriter: " + rewriterId);
+        }
+
+        final SolrRewriterFactoryAdapter factoryAdapter = SolrRewriterFactoryAdapter.loadInstance(rewriterId,
+                definition);
+        final RewriterFactoryContext current = rewriters.get(rewriterId);
+
+        final Map<String, Object> newConfig;
+        try {
+            newConfig = factoryAdapter.patch(
+                    (Map<String, Object>) definition.getOrDefault(CONF_CONFIG, Collections.emptyMap()), patch,
+                    current == null ? null : current.getRewriterFactory());
+        } catch (final UnsupportedOperationException | IllegalArgumentException e) {
+            throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        final Map<String, Object> newDefinition = new HashMap<>(definition);
+        newDefinition.put(CONF_CONFIG, newConfig);
+        doSaveRewriter(rewriterId, newDefinition, factoryAdapter);
+    }
+
     public Optional<RewriterFactoryContext> getRewriterFactory(final String rewriterId) {
         return Optional.ofNullable(rewriters.get(rewriterId));
     }
 
+    /**
+     * Set the cache for the output of rewrite chains. Entries that were created by a rewriter will be invalidated
+     * when the rewriter is changed or deleted.
+     *
+     * @param rewriteChainCache The cache, can be null
+     */
+    public void setRewriteChainCache(final RewriteChainCache rewriteChainCache) {
+        this.rewriteChainCache = rewriteChainCache;
+    }
+
+    public Optional<RewriteChainCache> getRewriteChainCache() {
+        return Optional.ofNullable(rewriteChainCache);
+    }
+
+    protected void invalidateRewriteChainCache(final String rewriterId) {
+        if (rewriteChainCache != null) {
+            rewriteChainCache.invalidate(rewriterId);
+        }
+    }
+
     public synchronized Collection<RewriterFactoryContext> getRewriterFactories(final RewritersChangeListener listener) {
         this.rewritersChangeListener = listener;
         return rewriters.values();
@@ -113,6 +193,32 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
         final SolrRewriterFactoryAdapter factoryLoader = SolrRewriterFactoryAdapter.loadInstance(rewriterId,
                 instanceDesc);
         factoryLoader.configure((Map<String, Object>) instanceDesc.getOrDefault("config", Collections.emptyMap()));
+        loadRewriter(rewriterId, instanceDesc, factoryLoader);
+
+    }
+
+    /**
+     * Load a rewriter from its definition and a compiled configuration that was saved along with it (see
+     * {@link SolrRewriterFactoryAdapter#getCompiledConfiguration()}). The adapter falls back to the config of the
+     * definition if it cannot use the compiled configuration.
+     *
+     * @param rewriterId The rewriter ID
+     * @param instanceDesc The rewriter definition
+     * @param compiledConfiguration The compiled configuration
+     */
+    protected synchronized void loadCompiledRewriter(final String rewriterId, final Map<String, Object> instanceDesc,
+                                                     final byte[] compiledConfiguration) {
+
+        final SolrRewriterFactoryAdapter factoryLoader = SolrRewriterFactoryAdapter.loadInstance(rewriterId,
+                instanceDesc);
+        factoryLoader.configure((Map<String, Object>) instanceDesc.getOrDefault(CONF_CONFIG, Collections.emptyMap()),
+                compiledConfiguration);
+        loadRewriter(rewriterId, instanceDesc, factoryLoader);
+
+    }
+
+    protected synchronized void loadRewriter(final String rewriterId, final Map<String, Object> instanceDesc,
+                                             final SolrRewriterFactoryAdapter factoryLoader) {
 
         final Map<String, RewriterFactoryContext> newRewriters = new HashMap<>(rewriters);
         newRewriters.put(
@@ -123,6 +229,7 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
                 )
         );
         rewriters = newRewriters;
+        invalidateRewriteChainCache(rewriterId);
         LOG.info("Loaded rewriter: {}", rewriterId);
 
     }
@@ -177,7 +284,8 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
         }
     }
 
-    private void validateRewriterDescription(final String rewriterId, final Map<String, Object> instanceDescription) {
+    private SolrRewriterFactoryAdapter validateRewriterDescription(final String rewriterId,
+                                                                   final Map<String, Object> instanceDescription) {
 
         final SolrRewriterFactoryAdapter factoryLoader = SolrRewriterFactoryAdapter.loadInstance(rewriterId,
                 instanceDescription);
@@ -200,6 +308,8 @@ public abstract class RewriterContainer<R extends SolrResourceLoader> {
                     "Invalid configuration for rewriter " + rewriterId + " " + String.join("; ", errors));
         }
 
+        return factoryLoader;
+
     }
 
 
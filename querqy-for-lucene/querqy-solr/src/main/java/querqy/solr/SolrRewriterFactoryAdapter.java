@@ -6,6 +6,7 @@ import querqy.rewrite.RewriterFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public abstract class SolrRewriterFactoryAdapter {
 
@@ -21,6 +22,52 @@ public abstract class SolrRewriterFactoryAdapter {
 
     public abstract RewriterFactory getRewriterFactory();
 
+    /**
+     * <p>Get the configuration in a compiled form from which other instances of this adapter can be configured
+     * without repeating expensive steps like parsing (see {@link #configure(Map, byte[])}). The compiled form belongs
+     * to the configuration that this adapter was last validated or configured for.</p>
+     *
+     * @return The compiled configuration or an empty Optional if this adapter cannot compile its configuration
+     */
+    public Optional<byte[]> getCompiledConfiguration() {
+        return Optional.empty();
+    }
+
+    /**
+     * <p>Configure this adapter from a compiled configuration (see {@link #getCompiledConfiguration()}).</p>
+     *
+     * <p>Implementations must fall back to {@link #configure(Map)} if the compiled configuration wasn't created for
+     * the given configuration or if it cannot be read. This implementation always falls back.</p>
+     *
+     * @param config The configuration
+     * @param compiledConfiguration The compiled configuration
+     */
+    public void configure(final Map<String, Object> config, final byte[] compiledConfiguration) {
+        configure(config);
+    }
+
+    /**
+     * <p>Apply a partial update to the configuration and configure this adapter for the updated configuration.</p>
+     *
+     * <p>Adapters that support partial updates can derive the new {@link RewriterFactory} from the factory that was
+     * created for the current configuration instead of creating it from scratch. The current factory must not be
+     * changed as it might still be in use. Containers might call {@link #configure(Map)} with the updated
+     * configuration afterwards, which should not create the factory again.</p>
+     *
+     * @param config The current configuration
+     * @param patch The partial update. Its format depends on the rewriter type.
+     * @param currentRewriterFactory The factory that was created for the current configuration or null if it is not
+     *                               available
+     * @return The updated configuration
+     * @throws UnsupportedOperationException if this rewriter type or its current configuration does not support
+     * partial updates
+     * @throws IllegalArgumentException if the patch is invalid
+     */
+    public Map<String, Object> patch(final Map<String, Object> config, final Map<String, Object> patch,
+                                     final RewriterFactory currentRewriterFactory) {
+        throw new UnsupportedOperationException("Rewriter " + rewriterId + " does not support partial updates");
+    }
+
     public String getRewriterId() {
         return rewriterId;
     }
@@ -1,5 +1,6 @@
 package querqy.solr;
 
+import static querqy.solr.RewriterConfigRequestBuilder.CONF_CONFIG;
 import static querqy.solr.utils.JsonUtil.readJson;
 import static querqy.solr.utils.JsonUtil.writeJson;
 
@@ -15,15 +16,26 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceLoader> {
 
     protected static final String IO_PATH = "querqy/rewriters";
 
+    /**
+     * The directory below {@link #IO_PATH} that holds the compiled configurations of the rewriters (see
+     * {@link SolrRewriterFactoryAdapter#getCompiledConfiguration()}), which are used when the core is loaded again
+     */
+    protected static final String COMPILED_DIR = ".compiled";
+
+    private File querqyDir;
+
     public StandAloneRewriterContainer(final SolrCore core, final SolrResourceLoader resourceLoader,
                                        final Map<String, Sink> infoLoggingSinks) {
         super(core, resourceLoader, infoLoggingSinks);
@@ -33,7 +45,7 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
     protected void init(@SuppressWarnings({"rawtypes"}) NamedList args) {
 
         final File configDir = new File(resourceLoader.getConfigDir());
-        final File querqyDir = new File(configDir, IO_PATH);
+        querqyDir = new File(configDir, IO_PATH);
         if (querqyDir.exists()) {
             if (!(querqyDir.isDirectory() || querqyDir.canWrite())) {
                 throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
@@ -43,7 +55,13 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
             Arrays.stream(Objects.requireNonNull(querqyDir.listFiles(File::isFile))).forEach(file -> {
                 final String rewriterId = file.getName();
                 try {
-                    loadRewriter(rewriterId, readJson(new FileInputStream(file), Map.class));
+                    final Map<String, Object> instanceDesc = readJson(new FileInputStream(file), Map.class);
+                    final File compiledFile = compiledConfigurationFile(rewriterId);
+                    if (compiledFile.isFile()) {
+                        loadCompiledRewriter(rewriterId, instanceDesc, Files.readAllBytes(compiledFile.toPath()));
+                    } else {
+                        loadRewriter(rewriterId, instanceDesc);
+                    }
                 } catch (final Exception e) {
                     LOG.error("Could not load rewriter: " + rewriterId, e);
                 }
@@ -79,12 +97,7 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
     protected synchronized void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription)
             throws IOException {
 
-        final ManagedResourceStorage.StorageIO storageIO = ManagedResourceStorage.newStorageIO(core
-                .getCoreDescriptor().getCollectionName(), resourceLoader, new NamedList<>());
-
-        try (final OutputStream os = storageIO.openOutputStream(rewriterPath(rewriterId))) {
-            writeJson(instanceDescription, os);
-        }
+        writeRewriterDefinition(rewriterId, instanceDescription);
 
         try {
             loadRewriter(rewriterId, instanceDescription);
@@ -95,6 +108,49 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
         notifyRewritersChangeListener();
     }
 
+    @Override
+    protected synchronized void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription,
+                                               final SolrRewriterFactoryAdapter factoryAdapter)
+            throws IOException {
+
+        writeRewriterDefinition(rewriterId, instanceDescription);
+        factoryAdapter.configure((Map<String, Object>) instanceDescription.getOrDefault(CONF_CONFIG,
+                Collections.emptyMap()));
+        writeCompiledConfiguration(rewriterId, factoryAdapter);
+        loadRewriter(rewriterId, instanceDescription, factoryAdapter);
+        notifyRewritersChangeListener();
+    }
+
+    protected void writeCompiledConfiguration(final String rewriterId,
+                                              final SolrRewriterFactoryAdapter factoryAdapter) {
+
+        final File compiledFile = compiledConfigurationFile(rewriterId);
+        try {
+            final Optional<byte[]> compiledConfiguration = factoryAdapter.getCompiledConfiguration();
+            if (compiledConfiguration.isPresent()) {
+                Files.createDirectories(compiledFile.getParentFile().toPath());
+                Files.write(compiledFile.toPath(), compiledConfiguration.get());
+            } else {
+                Files.deleteIfExists(compiledFile.toPath());
+            }
+        } catch (final IOException | RuntimeException e) {
+            // the rewriter will be created from its definition when the core is loaded again
+            LOG.warn("Could not save compiled configuration of rewriter " + rewriterId, e);
+            compiledFile.delete();
+        }
+    }
+
+    protected void writeRewriterDefinition(final String rewriterId, final Map<String, Object> instanceDescription)
+            throws IOException {
+
+        final ManagedResourceStorage.StorageIO storageIO = ManagedResourceStorage.newStorageIO(core
+                .getCoreDescriptor().getCollectionName(), resourceLoader, new NamedList<>());
+
+        try (final OutputStream os = storageIO.openOutputStream(rewriterPath(rewriterId))) {
+            writeJson(instanceDescription, os);
+        }
+    }
+
     @Override
     protected synchronized void deleteRewriter(final String rewriterId) throws IOException {
 
@@ -109,7 +165,9 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
         }
 
         rewriters = newRewriters;
+        invalidateRewriteChainCache(rewriterId);
         storageIO.delete(rewriterPath);
+        Files.deleteIfExists(compiledConfigurationFile(rewriterId).toPath());
         notifyRewritersChangeListener();
 
     }
@@ -118,4 +176,8 @@ public class StandAloneRewriterContainer extends RewriterContainer<SolrResourceL
         return IO_PATH + "/" + rewriterId;
     }
 
+    protected File compiledConfigurationFile(final String rewriterId) {
+        return new File(new File(querqyDir, COMPILED_DIR), rewriterId);
+    }
+
 }
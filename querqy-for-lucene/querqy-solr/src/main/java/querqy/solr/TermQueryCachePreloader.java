@@ -1,11 +1,23 @@
 package querqy.solr;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TopDocs;
@@ -13,6 +25,8 @@ import org.apache.solr.common.util.NamedList;
 import org.apache.solr.core.AbstractSolrEventListener;
 import org.apache.solr.core.SolrCore;
 import org.apache.solr.request.SolrRequestHandler;
+import org.apache.solr.search.CacheRegenerator;
+import org.apache.solr.search.CaffeineCache;
 import org.apache.solr.search.SolrCache;
 import org.apache.solr.search.SolrIndexSearcher;
 import org.slf4j.Logger;
@@ -31,6 +45,15 @@ import querqy.model.Term;
 import querqy.rewrite.RewriterFactory;
 
 /**
+ * <p>Preloads the {@link TermQueryCache} with the terms that the rewriters can generate when a new searcher is opened
+ * and when the rewriters change.</p>
+ *
+ * <p>The terms are partitioned by field and into batches of {@value #DEFAULT_BATCH_SIZE} terms (configurable via
+ * '{@value #CONF_BATCH_SIZE}'), which are loaded by a pool of '{@value #CONF_THREADS}' worker threads. Terms that were
+ * in the cache of the previous searcher are loaded first. If a time budget is configured via
+ * '{@value #CONF_TIME_BUDGET_MS}', the preloader only waits for that long and the remaining terms are loaded in the
+ * background.</p>
+ *
  * @author rene
  *
  */
@@ -43,11 +66,25 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
     public static final String CONF_CACHE_NAME = "cacheName";
     public static final String CONF_TEST_FOR_HITS = "testForHits";
     public static final String CONF_REWRITER_REQUEST_HANDLER = "rewriterRequestHandler";
+    public static final String CONF_THREADS = "threads";
+    public static final String CONF_BATCH_SIZE = "batchSize";
+    public static final String CONF_TIME_BUDGET_MS = "timeBudgetMs";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger(0);
 
     private Set<String> preloadFields = Collections.emptySet();
     private String cacheName = null;
     private boolean testForHits = false;
     private String rewriterRequestHandlerName = QuerqyRewriterRequestHandler.DEFAULT_HANDLER_NAME;
+    private int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private long timeBudgetMs = -1L;
+
+    // preloads of older generations are abandoned
+    private final AtomicLong generation = new AtomicLong(0L);
+    private volatile PreloadProgress progress = null;
     
     public TermQueryCachePreloader(final SolrCore core) {
         super(core);
@@ -60,6 +97,7 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
         configureCacheName(args);
         configureTestForHits(args);
         configureRewriterRequestHandlerName(args);
+        configureWorkers(args);
     }
 
     private void configureRewriterRequestHandlerName(final NamedList args) {
@@ -85,10 +123,25 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
                     + "' configured for name + '" + CONF_REWRITER_REQUEST_HANDLER + "'");
         }
 
-        preload(newSearcher, ((QuerqyRewriterRequestHandler) rewriterRequestHandler).getRewriterFactories(this));
+        preload(newSearcher, ((QuerqyRewriterRequestHandler) rewriterRequestHandler).getRewriterFactories(this),
+                currentSearcher);
     }
 
-    protected void preload(final SolrIndexSearcher searcher, final Collection<RewriterFactoryContext> rewriterFactories ) {
+    protected void preload(final SolrIndexSearcher searcher,
+                           final Collection<RewriterFactoryContext> rewriterFactories) {
+        preload(searcher, rewriterFactories, null);
+    }
+
+    /**
+     * Preload the terms of the rewriters into the cache of the searcher.
+     *
+     * @param searcher The searcher to preload for
+     * @param rewriterFactories The rewriter factories
+     * @param previousSearcher The searcher that is being replaced or null. Terms that are found in the cache of this
+     *                         searcher are loaded first.
+     */
+    protected void preload(final SolrIndexSearcher searcher, final Collection<RewriterFactoryContext> rewriterFactories,
+                           final SolrIndexSearcher previousSearcher) {
 
         if (rewriterFactories.isEmpty()) {
             LOG.info("TermQueryCachePreloader loaded. No rewriters yet");
@@ -96,33 +149,179 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
         }
 
         final TermQueryCache cache = getCache(searcher);
+        final List<List<CacheKeyAndTerm>> batches = createBatches(rewriterFactories,
+                previousSearcher != null ? snapshotKeys(searcher, previousSearcher.getCache(cacheName))
+                        : Collections.emptySet());
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        final long currentGeneration = generation.incrementAndGet();
+        final PreloadProgress currentProgress = new PreloadProgress(batches.stream().mapToInt(List::size).sum(),
+                batches.size());
+        progress = currentProgress;
+
+        LOG.info("Starting preload of {} terms in {} batches for Querqy TermQueryCache. Testing for hits: {}",
+                currentProgress.getTotalTerms(), batches.size(), testForHits);
+
+        final CountDownLatch latch = new CountDownLatch(batches.size());
+        final IndexReader reader = searcher.getIndexReader();
+        final ExecutorService executor = createExecutor(Math.min(threads, batches.size()));
+
+        for (final List<CacheKeyAndTerm> batch : batches) {
+            executor.execute(() -> {
+                try {
+                    preloadBatch(searcher, reader, batch, cache, currentGeneration, currentProgress);
+                } finally {
+                    currentProgress.completedBatches.increment();
+                    latch.countDown();
+                    if (latch.getCount() == 0L) {
+                        LOG.info("Finished preload for Querqy TermQueryCache: {}", currentProgress);
+                    }
+                }
+            });
+        }
+        // the worker threads terminate once all batches have been loaded
+        executor.shutdown();
+
+        try {
+            if (timeBudgetMs < 0L) {
+                latch.await();
+            } else if (!latch.await(timeBudgetMs, TimeUnit.MILLISECONDS)) {
+                LOG.info("Time budget for preload exceeded, loading remaining terms in the background: {}",
+                        currentProgress);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+    }
+
+    protected void preloadBatch(final SolrIndexSearcher searcher, final IndexReader reader,
+                                final List<CacheKeyAndTerm> batch, final TermQueryCache cache,
+                                final long batchGeneration, final PreloadProgress progress) {
+
+        // We might still be running after the time budget and the searcher might have been closed in the meantime.
+        // Make sure that the index files stay open while we are testing for hits.
+        if (generation.get() != batchGeneration || (testForHits && !reader.tryIncRef())) {
+            progress.skippedTerms.add(batch.size());
+            return;
+        }
+
+        try {
+            final TermSubQueryBuilder termSubQueryBuilder = new TermSubQueryBuilder(
+                    searcher.getSchema().getQueryAnalyzer(), cache);
+            for (final CacheKeyAndTerm cacheKeyAndTerm : batch) {
+                if (generation.get() != batchGeneration) {
+                    progress.skippedTerms.increment();
+                    continue;
+                }
+                try {
+                    preloadTerm(searcher, termSubQueryBuilder, cacheKeyAndTerm.cacheKey.fieldname,
+                            cacheKeyAndTerm.term, testForHits, cache);
+                    progress.preloadedTerms.increment();
+                } catch (final RuntimeException e) {
+                    progress.failedTerms.increment();
+                    LOG.error("Error preloading term " + cacheKeyAndTerm.term, e);
+                }
+            }
+        } finally {
+            if (testForHits) {
+                try {
+                    reader.decRef();
+                } catch (final IOException e) {
+                    LOG.error("Error releasing index reader", e);
+                }
+            }
+        }
+    }
 
-        LOG.info("Starting preload for Querqy TermQueryCache. Testing for hits: {}", testForHits);
+    /**
+     * Partition the terms by field and into batches. Terms that are found in the previous cache come first.
+     */
+    protected List<List<CacheKeyAndTerm>> createBatches(final Collection<RewriterFactoryContext> rewriterFactories,
+                                                        final Set<CacheKey> recentlyUsedKeys) {
 
-        final long t1 = System.currentTimeMillis();
+        final Map<String, List<CacheKeyAndTerm>> recentlyUsedByField = new LinkedHashMap<>();
+        final Map<String, List<CacheKeyAndTerm>> otherByField = new LinkedHashMap<>();
 
-        final TermSubQueryBuilder termSubQueryBuilder = new TermSubQueryBuilder(searcher.getSchema().getQueryAnalyzer(),
-                cache);
         for (final RewriterFactoryContext factoryContext : rewriterFactories) {
             for (final Term term: factoryContext.getRewriterFactory().getCacheableGenerableTerms()) {
                 final String field = term.getField();
                 if (field != null) {
                     if (preloadFields.contains(field)) {
-                        preloadTerm(searcher, termSubQueryBuilder, field, term, testForHits, cache);
+                        addTerm(field, term, recentlyUsedKeys, recentlyUsedByField, otherByField);
                     }
                 } else {
                     for (final String fieldname : preloadFields) {
-                        preloadTerm(searcher, termSubQueryBuilder, fieldname, term, testForHits, cache);
+                        addTerm(fieldname, term, recentlyUsedKeys, recentlyUsedByField, otherByField);
                     }
                 }
             }
         }
 
-        if (LOG.isInfoEnabled()) {
-            final long t2 = System.currentTimeMillis();
-            LOG.info("Finished preload for Querqy TermQueryCache after {}ms", (t2 - t1));
+        final List<List<CacheKeyAndTerm>> batches = new ArrayList<>();
+        for (final Map<String, List<CacheKeyAndTerm>> termsByField : List.of(recentlyUsedByField, otherByField)) {
+            for (final List<CacheKeyAndTerm> terms : termsByField.values()) {
+                for (int i = 0; i < terms.size(); i += batchSize) {
+                    batches.add(terms.subList(i, Math.min(i + batchSize, terms.size())));
+                }
+            }
         }
+        return batches;
+    }
 
+    private void addTerm(final String field, final Term term,
+                         final Set<CacheKey> recentlyUsedKeys,
+                         final Map<String, List<CacheKeyAndTerm>> recentlyUsedByField,
+                         final Map<String, List<CacheKeyAndTerm>> otherByField) {
+        final CacheKey cacheKey = new CacheKey(field, term);
+        final Map<String, List<CacheKeyAndTerm>> termsByField =
+                recentlyUsedKeys.contains(cacheKey) ? recentlyUsedByField : otherByField;
+        termsByField.computeIfAbsent(field, k -> new ArrayList<>()).add(new CacheKeyAndTerm(cacheKey, term));
+    }
+
+    /**
+     * Take a snapshot of the keys in the cache of the previous searcher without looking them up, which would count as
+     * hits and misses of that cache and change its eviction order.
+     *
+     * SolrCache has no method to read the keys. The snapshot is taken by autowarming a throw-away
+     * {@link CaffeineCache} from the previous cache: CaffeineCache reads the keys from the eviction policy of the
+     * previous cache and passes them to the regenerator. Other cache implementations return an empty snapshot.
+     *
+     * @param searcher The new searcher
+     * @param previousCache The cache of the previous searcher or null
+     * @return The keys in the previous cache
+     */
+    static Set<CacheKey> snapshotKeys(final SolrIndexSearcher searcher,
+                                      final SolrCache<CacheKey, TermQueryCacheValue> previousCache) {
+        if (!(previousCache instanceof CaffeineCache) || previousCache.size() == 0) {
+            return Collections.emptySet();
+        }
+
+        final Set<CacheKey> keys = new HashSet<>();
+        final CaffeineCache<CacheKey, TermQueryCacheValue> snapshotCache = new CaffeineCache<>();
+        snapshotCache.init(Map.of("size", String.valueOf(previousCache.size()), "autowarmCount", "100%"), null,
+                new CacheRegenerator() {
+                    @Override
+                    public <K, V> boolean regenerateItem(final SolrIndexSearcher newSearcher,
+                                                         final SolrCache<K, V> newCache,
+                                                         final SolrCache<K, V> oldCache, final K oldKey,
+                                                         final V oldVal) {
+                        keys.add((CacheKey) oldKey);
+                        return true;
+                    }
+                });
+        try {
+            snapshotCache.warm(searcher, previousCache);
+        } finally {
+            try {
+                snapshotCache.close();
+            } catch (final IOException e) {
+                LOG.error("Error closing cache", e);
+            }
+        }
+        return keys;
     }
 
     protected void preloadTerm(final IndexSearcher searcher, final TermSubQueryBuilder termSubQueryBuilder,
@@ -157,7 +356,14 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
 
     @Override
     public void rewritersChanged(final SolrIndexSearcher indexSearcher, final Set<RewriterFactoryContext> allRewriters) {
-        preload(indexSearcher, allRewriters);
+        preload(indexSearcher, allRewriters, indexSearcher);
+    }
+
+    /**
+     * @return The progress of the latest preload or null if nothing has been preloaded yet
+     */
+    public PreloadProgress getProgress() {
+        return progress;
     }
 
     private void configurePreloadFields(final NamedList args) {
@@ -175,6 +381,40 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
         preloadFields = fieldBoosts.keySet();
     }
 
+    private void configureWorkers(final NamedList args) {
+
+        final Integer numThreads = (Integer) args.get(CONF_THREADS);
+        if (numThreads != null) {
+            if (numThreads < 1) {
+                throw new IllegalArgumentException("'" + CONF_THREADS + "' must be > 0");
+            }
+            threads = numThreads;
+        }
+
+        final Integer size = (Integer) args.get(CONF_BATCH_SIZE);
+        if (size != null) {
+            if (size < 1) {
+                throw new IllegalArgumentException("'" + CONF_BATCH_SIZE + "' must be > 0");
+            }
+            batchSize = size;
+        }
+
+        final Object budget = args.get(CONF_TIME_BUDGET_MS);
+        if (budget != null) {
+            timeBudgetMs = ((Number) budget).longValue();
+        }
+
+    }
+
+    private static ExecutorService createExecutor(final int numThreads) {
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable,
+                    "querqy-term-query-cache-preload-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private void configureCacheName(final NamedList args) {
         final String name = (String) args.get(CONF_CACHE_NAME);
         if (name == null || name.trim().isEmpty()) {
@@ -201,4 +441,78 @@ public class TermQueryCachePreloader extends AbstractSolrEventListener implement
         return new SolrTermQueryCacheAdapter(false, solrCache);
     }
 
+    protected static class CacheKeyAndTerm {
+
+        final CacheKey cacheKey;
+        final Term term;
+
+        CacheKeyAndTerm(final CacheKey cacheKey, final Term term) {
+            this.cacheKey = cacheKey;
+            this.term = term;
+        }
+    }
+
+    public static class PreloadProgress {
+
+        private final int totalTerms;
+        private final int totalBatches;
+        private final long startMillis = System.currentTimeMillis();
+        final LongAdder preloadedTerms = new LongAdder();
+        final LongAdder failedTerms = new LongAdder();
+        final LongAdder skippedTerms = new LongAdder();
+        final LongAdder completedBatches = new LongAdder();
+
+        PreloadProgress(final int totalTerms, final int totalBatches) {
+            this.totalTerms = totalTerms;
+            this.totalBatches = totalBatches;
+        }
+
+        public int getTotalTerms() {
+            return totalTerms;
+        }
+
+        public long getPreloadedTerms() {
+            return preloadedTerms.sum();
+        }
+
+        public long getFailedTerms() {
+            return failedTerms.sum();
+        }
+
+        /**
+         * @return The number of terms that were not loaded because a newer preload had been started
+         */
+        public long getSkippedTerms() {
+            return skippedTerms.sum();
+        }
+
+        public int getTotalBatches() {
+            return totalBatches;
+        }
+
+        public long getCompletedBatches() {
+            return completedBatches.sum();
+        }
+
+        public boolean isDone() {
+            return getCompletedBatches() == totalBatches;
+        }
+
+        public long getElapsedMillis() {
+            return System.currentTimeMillis() - startMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "PreloadProgress{" +
+                    "totalTerms=" + totalTerms +
+                    ", preloadedTerms=" + getPreloadedTerms() +
+                    ", failedTerms=" + getFailedTerms() +
+                    ", skippedTerms=" + getSkippedTerms() +
+                    ", completedBatches=" + getCompletedBatches() + "/" + totalBatches +
+                    ", elapsedMillis=" + getElapsedMillis() +
+                    '}';
+        }
+    }
+
 }
@@ -22,19 +22,23 @@ import querqy.rewrite.RewriterFactory;
 import querqy.solr.utils.JsonUtil;
 import querqy.solr.utils.NamedListWrapper;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader> {
@@ -119,6 +123,30 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
     @Override
     protected void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription)
             throws IOException {
+        saveRewriter(rewriterId, instanceDescription, null);
+    }
+
+    /**
+     * Saves the definition and, if the adapter provides one, the compiled configuration, so that other nodes can
+     * load the rewriter without creating it from the config (see
+     * {@link SolrRewriterFactoryAdapter#getCompiledConfiguration()}).
+     */
+    @Override
+    protected void doSaveRewriter(final String rewriterId, final Map<String, Object> instanceDescription,
+                                  final SolrRewriterFactoryAdapter factoryAdapter) throws IOException {
+
+        byte[] compiledConfiguration = null;
+        try {
+            compiledConfiguration = factoryAdapter.getCompiledConfiguration().orElse(null);
+        } catch (final RuntimeException e) {
+            LOG.warn("Could not compile configuration of rewriter " + rewriterId + ". Saving definition only.", e);
+        }
+
+        saveRewriter(rewriterId, instanceDescription, compiledConfiguration);
+    }
+
+    private void saveRewriter(final String rewriterId, final Map<String, Object> instanceDescription,
+                              final byte[] compiledConfiguration) throws IOException {
 
         if (rewriterId.startsWith(".")) {
             throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "Rewriter ID must not start with '.'");
@@ -130,6 +158,7 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
         }
 
         final List<String> uuids = new ArrayList<>();
+        final List<String> compiledUuids = new ArrayList<>();
 
         try (final ByteArrayOutputStream bos = new ByteArrayOutputStream(maxFileSize)) {
 
@@ -137,22 +166,19 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
                 JsonUtil.writeJson(instanceDescription, gzOut);
             }
 
+            writeDataNodes(rewriterId, bos.toByteArray(), uuids,
+                    uuid -> rewriterDataPath(rewriterId, dataDirectory, uuid));
+        }
 
-            final byte[] bytes = bos.toByteArray();
-            int offset = 0;
+        if (compiledConfiguration != null) {
+            try (final ByteArrayOutputStream bos = new ByteArrayOutputStream(maxFileSize)) {
 
-            while (offset < bytes.length) {
-                final String uuid = UUID.randomUUID().toString();
-                final String path = rewriterDataPath(rewriterId, dataDirectory, uuid);
-                final int len = Math.min(maxFileSize, bytes.length - offset);
-                
-                try {
-                    zkClient.makePath(path, Arrays.copyOfRange(bytes, offset, (offset + len)), true);
-                    offset += len;
-                    uuids.add(uuid);
-                } catch (InterruptedException | KeeperException e) {
-                    throw new IOException("Error saving rewriter data for " + rewriterId, e);        
+                try (final GZIPOutputStream gzOut = new GZIPOutputStream(bos)) {
+                    gzOut.write(compiledConfiguration);
                 }
+
+                writeDataNodes(rewriterId, bos.toByteArray(), compiledUuids,
+                        uuid -> rewriterCompiledDataPath(rewriterId, dataDirectory, uuid));
             }
         }
 
@@ -166,16 +192,16 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
 
         try {
 
-            final byte[] infoData = new RewriterStorageInfo(uuids, dataDirectory).toJsonString().getBytes(UTF_8);
+            final RewriterStorageInfo storageInfo = new RewriterStorageInfo(uuids, compiledUuids, dataDirectory);
+            final byte[] infoData = storageInfo.toJsonString().getBytes(UTF_8);
 
             if (stat == null) {
 
                 try {
                     zkClient.makePath(rewriterStorageInfoNode, infoData, CreateMode.PERSISTENT, null, true, true);
                 } catch (KeeperException.NodeExistsException e) {
-                    for (final String uuid : uuids) {
+                    for (final String rewriterDataPath : dataNodePaths(rewriterId, storageInfo)) {
                         // undo saving parts
-                        final String rewriterDataPath = rewriterDataPath(rewriterId, dataDirectory, uuid);
                         try {
                             zkClient.delete(rewriterDataPath, -1, true);
                         } catch (final Exception exception) {
@@ -195,8 +221,7 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
 
                 zkClient.setData(rewriterStorageInfoNode, infoData, stat.getVersion(), true);
 
-                for (final String oldUuid : oldStorageInfo.uuids) {
-                    final String oldPath = rewriterDataPath(rewriterId, oldStorageInfo.dataDir, oldUuid);
+                for (final String oldPath : dataNodePaths(rewriterId, oldStorageInfo)) {
                     try {
                         zkClient.delete(oldPath, -1, true);
                     } catch (final Exception e) {
@@ -211,6 +236,41 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
 
     }
 
+    private void writeDataNodes(final String rewriterId, final byte[] bytes, final List<String> uuids,
+                                final Function<String, String> pathForUuid) throws IOException {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            final String uuid = UUID.randomUUID().toString();
+            final String path = pathForUuid.apply(uuid);
+            final int len = Math.min(maxFileSize, bytes.length - offset);
+
+            try {
+                zkClient.makePath(path, Arrays.copyOfRange(bytes, offset, (offset + len)), true);
+                offset += len;
+                uuids.add(uuid);
+            } catch (InterruptedException | KeeperException e) {
+                throw new IOException("Error saving rewriter data for " + rewriterId, e);
+            }
+        }
+    }
+
+    private DataNodesInputStream openDataNodes(final String dataDir, final List<String> uuids,
+                                               final Function<String, String> pathForUuid) {
+        return new DataNodesInputStream(dataDir, uuids, pathForUuid);
+    }
+
+    private List<String> dataNodePaths(final String rewriterId, final RewriterStorageInfo storageInfo) {
+        final List<String> paths = new ArrayList<>(storageInfo.uuids.size() + storageInfo.compiledUuids.size());
+        for (final String uuid : storageInfo.uuids) {
+            paths.add(rewriterDataPath(rewriterId, storageInfo.dataDir, uuid));
+        }
+        for (final String uuid : storageInfo.compiledUuids) {
+            paths.add(rewriterCompiledDataPath(rewriterId, storageInfo.dataDir, uuid));
+        }
+        return paths;
+    }
+
     protected RewriterStorageInfo readRewriterStorageInfo(final String rewriterId, final RewriterWatcher watcher) throws
             IOException {
 
@@ -257,8 +317,8 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
         }
 
         try {
-            for (final String oldUuid : storageInfo.uuids) {
-                zkClient.delete(rewriterDataPath(rewriterId, storageInfo.dataDir, oldUuid), -1, true);
+            for (final String oldPath : dataNodePaths(rewriterId, storageInfo)) {
+                zkClient.delete(oldPath, -1, true);
             }
         } catch (final InterruptedException | KeeperException e) {
             LOG.error("The rewriter " + rewriterId + " was deleted but not all data could be removed from ZK", e);
@@ -314,49 +374,71 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
             }
         }
         rewriters = newRewriters;
+        known.forEach(this::invalidateRewriteChainCache);
 
     }
 
     public synchronized void onRewriterChanged(final String rewriterId) throws Exception {
 
-        loadRewriter(rewriterId, readRewriterDefinition(rewriterId, newRewriterWatcher(rewriterId)));
+        final RewriterStorageInfo storageInfo = readRewriterStorageInfo(rewriterId, newRewriterWatcher(rewriterId));
+        final Map<String, Object> instanceDesc = readRewriterDefinition(rewriterId, storageInfo);
+
+        if (storageInfo.compiledUuids.isEmpty()) {
+            loadRewriter(rewriterId, instanceDesc);
+            return;
+        }
+
+        final byte[] compiledConfiguration;
+        try {
+            compiledConfiguration = readCompiledConfiguration(rewriterId, storageInfo);
+        } catch (final IOException | SolrException e) {
+            LOG.warn("Could not read compiled configuration of rewriter " + rewriterId
+                    + ". Creating rewriter from its definition.", e);
+            loadRewriter(rewriterId, instanceDesc);
+            return;
+        }
+
+        loadCompiledRewriter(rewriterId, instanceDesc, compiledConfiguration);
 
     }
 
     @Override
     public synchronized Map<String, Object> readRewriterDefinition(final String rewriterId)
             throws IOException {
-        return readRewriterDefinition(rewriterId, null);
+        return readRewriterDefinition(rewriterId, (RewriterWatcher) null);
     }
 
     protected synchronized Map<String, Object> readRewriterDefinition(final String rewriterId,
                                                                       final RewriterWatcher watcher)
             throws IOException {
+        return readRewriterDefinition(rewriterId, readRewriterStorageInfo(rewriterId, watcher));
+    }
 
-        try (final ByteArrayOutputStream bos = new ByteArrayOutputStream(maxFileSize)) {
+    protected synchronized Map<String, Object> readRewriterDefinition(final String rewriterId,
+                                                                      final RewriterStorageInfo storageInfo)
+            throws IOException {
 
-            final RewriterStorageInfo storageInfo = readRewriterStorageInfo(rewriterId, watcher);
+        final DataNodesInputStream in = openDataNodes(storageInfo.dataDir, storageInfo.uuids,
+                uuid -> rewriterDataPath(rewriterId, storageInfo.dataDir, uuid));
 
-            for (final String uuid : storageInfo.uuids) {
-                try {
-                    final byte[] data = zkClient.getData(rewriterDataPath(rewriterId, storageInfo.dataDir, uuid), null,
-                            null, true);
-                    bos.write(data);
-                } catch (final KeeperException e) {
-                    if (KeeperException.Code.NONODE == e.code()) {
-                        throw new SolrException(SolrException.ErrorCode.NOT_FOUND, "Rewriter data not found: " +
-                                storageInfo.dataDir + "/" + uuid);
-                    } else {
-                        throw new IOException(e);
-                    }
-                } catch (final InterruptedException e) {
-                    throw new IOException(e);
-                }
+        try {
+            return readJson(GZIPAwareResourceLoader.detectGZIPAndWrap(in), Map.class);
+        } catch (final RuntimeException e) {
+            // readJson wraps all IOExceptions - pass on the ones that occurred while reading the data nodes
+            if (in.failure != null) {
+                throw in.failure;
             }
+            throw e;
+        }
+    }
 
-            return readJson(GZIPAwareResourceLoader.detectGZIPAndWrap(new ByteArrayInputStream(bos.toByteArray())),
-                    Map.class);
+    protected synchronized byte[] readCompiledConfiguration(final String rewriterId,
+                                                            final RewriterStorageInfo storageInfo)
+            throws IOException {
 
+        try (final InputStream in = new GZIPInputStream(openDataNodes(storageInfo.dataDir,
+                storageInfo.compiledUuids, uuid -> rewriterCompiledDataPath(rewriterId, storageInfo.dataDir, uuid)))) {
+            return in.readAllBytes();
         }
     }
 
@@ -368,6 +450,10 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
         return inventoryPath + "/" + dataDir + "/" + rewriterId + "-" + uuid;
     }
 
+    protected String rewriterCompiledDataPath(final String rewriterId, final String dataDir, final String uuid) {
+        return inventoryPath + "/" + dataDir + "/" + rewriterId + "-compiled-" + uuid;
+    }
+
     protected synchronized RewriterWatcher newRewriterWatcher(final String rewriterId) {
         final RewriterWatcher newWatcher = new RewriterWatcher(rewriterId);
         final RewriterWatcher oldWatcher = rewriterWatchers.put(rewriterId, newWatcher);
@@ -410,13 +496,23 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
         private static final String PROP_VERSION = "_version";
         private static final String PROP_DATA_DIR = "data_dir";
         private static final String PROP_UUIDS = "uuids";
+        private static final String PROP_COMPILED_UUIDS = "compiled_uuids";
         public static final int CURRENT_VERSION = 2;
 
         public final List<String> uuids;
+        /**
+         * The data nodes of the compiled configuration, empty if the rewriter has no compiled configuration
+         */
+        public final List<String> compiledUuids;
         public final String dataDir;
 
         public RewriterStorageInfo(final List<String> uuids, final String dataDir) {
+            this(uuids, Collections.emptyList(), dataDir);
+        }
+
+        public RewriterStorageInfo(final List<String> uuids, final List<String> compiledUuids, final String dataDir) {
             this.uuids = uuids;
+            this.compiledUuids = compiledUuids;
             this.dataDir = dataDir;
         }
 
@@ -446,7 +542,9 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
                 if ((uuids == null) || uuids.isEmpty()) {
                     throw new IllegalStateException("Missing node ids in RewriterStorageInfo");
                 }
-                return new RewriterStorageInfo(uuids, dataPath);
+                final List<String> compiledUuids = (List<String>) dataMap.getOrDefault(PROP_COMPILED_UUIDS,
+                        Collections.emptyList());
+                return new RewriterStorageInfo(uuids, compiledUuids, dataPath);
 
             } else {
                 return new RewriterStorageInfo(Arrays.asList(data.split(",")), DEFAULT_REWRITER_DATA_DIR);
@@ -458,10 +556,83 @@ public class ZkRewriterContainer extends RewriterContainer<ZkSolrResourceLoader>
             data.put(PROP_VERSION, CURRENT_VERSION);
             data.put(PROP_DATA_DIR, dataDir);
             data.put(PROP_UUIDS, uuids);
+            if (!compiledUuids.isEmpty()) {
+                data.put(PROP_COMPILED_UUIDS, compiledUuids);
+            }
             return JsonUtil.toJson(data);
         }
 
     }
 
+    /**
+     * Reads the data nodes of a rewriter in the order of their UUIDs. A node is only fetched from ZooKeeper when the
+     * data of the previous node has been consumed, so that the data of the rewriter is never held in memory as a
+     * whole.
+     */
+    private class DataNodesInputStream extends InputStream {
+
+        private final String dataDir;
+        private final Iterator<String> uuids;
+        private final Function<String, String> pathForUuid;
+
+        private byte[] data = new byte[0];
+        private int pos = 0;
+        // the IOException that occurred while fetching a node, if any
+        IOException failure = null;
+
+        DataNodesInputStream(final String dataDir, final List<String> uuids,
+                             final Function<String, String> pathForUuid) {
+            this.dataDir = dataDir;
+            this.uuids = uuids.iterator();
+            this.pathForUuid = pathForUuid;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return hasData() ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!hasData()) {
+                return -1;
+            }
+            final int count = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+
+        private boolean hasData() throws IOException {
+            while (pos == data.length) {
+                if (!uuids.hasNext()) {
+                    return false;
+                }
+                data = fetch(uuids.next());
+                pos = 0;
+            }
+            return true;
+        }
+
+        private byte[] fetch(final String uuid) throws IOException {
+            try {
+                return zkClient.getData(pathForUuid.apply(uuid), null, null, true);
+            } catch (final KeeperException e) {
+                if (KeeperException.Code.NONODE == e.code()) {
+                    throw new SolrException(SolrException.ErrorCode.NOT_FOUND, "Rewriter data not found: " +
+                            dataDir + "/" + uuid);
+                } else {
+                    failure = new IOException(e);
+                    throw failure;
+                }
+            } catch (final InterruptedException e) {
+                failure = new IOException(e);
+                throw failure;
+            }
+        }
+    }
 
 }
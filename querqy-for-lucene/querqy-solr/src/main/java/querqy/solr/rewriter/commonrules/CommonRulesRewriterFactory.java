@@ -4,10 +4,15 @@ import org.apache.commons.io.IOUtils;
 import org.apache.lucene.util.ResourceLoader;
 import org.apache.solr.common.SolrException;
 import org.apache.solr.common.util.NamedList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.commonrules.CompiledRules;
 import querqy.rewrite.commonrules.QuerqyParserFactory;
+import querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory;
 import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
 import querqy.rewrite.commonrules.model.BoostInstruction.BoostMethod;
+import querqy.rewrite.commonrules.model.Instructions;
 import querqy.rewrite.commonrules.select.ExpressionCriteriaSelectionStrategyFactory;
 import querqy.rewrite.commonrules.select.SelectionStrategyFactory;
 import querqy.rewrite.lookup.preprocessing.LookupPreprocessor;
@@ -18,6 +23,10 @@ import querqy.solr.SolrRewriterFactoryAdapter;
 import querqy.solr.rewriter.ClassicConfigurationParser;
 import querqy.solr.utils.ConfigUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collections;
@@ -25,6 +34,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static querqy.solr.RewriterConfigRequestBuilder.CONF_CLASS;
@@ -48,8 +58,26 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
     static final LookupPreprocessorType DEFAULT_LOOKUP_PREPROCESSOR_TYPE = LookupPreprocessorType.LOWERCASE;
     public static final String CONF_BUILD_TERM_CACHE = "buildTermCache";
 
+    /**
+     * The rules to add or to replace in a partial update
+     */
+    public static final String PATCH_UPSERT = "upsert";
+    /**
+     * The IDs of the rules to remove in a partial update
+     */
+    public static final String PATCH_DELETE = "delete";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommonRulesRewriterFactory.class);
+
     private RewriterFactory delegate = null;
 
+    /**
+     * The factory that was last created by {@link #validateConfiguration(Map)}, {@link #configure(Map)} or
+     * {@link #patch(Map, Map, RewriterFactory)} and the configuration it was created for
+     */
+    private SimpleCommonRulesRewriterFactory builtFactory = null;
+    private Map<String, Object> builtFactoryConfig = null;
+
     public CommonRulesRewriterFactory(final String rewriterId) {
         super(rewriterId);
     }
@@ -58,6 +86,12 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
     @Override
     public void configure(final Map<String, Object> config) {
 
+        if (builtFactory != null && config.equals(builtFactoryConfig)) {
+            // the factory was created during validation or by a patch - don't parse the rules again
+            delegate = builtFactory;
+            return;
+        }
+
         final boolean allowBooleanInput = ConfigUtils.getArg(config, CONF_ALLOW_BOOLEAN_INPUT, false);
         final BoostMethod boostMethod = readBoostMethod(config);
 
@@ -70,13 +104,10 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
 
         final Map<String, SelectionStrategyFactory> selectionStrategyFactories = loadSelectionStrategyFactories(config);
 
-        final Optional<String> lookupPreprocessorTypeName = ConfigUtils.getStringArg(config, CONF_LOOKUP_PREPROCESSOR);
-        final LookupPreprocessorType lookupPreprocessorType = lookupPreprocessorTypeName
-                .map(LookupPreprocessorType::fromString)
-                .orElse(DEFAULT_LOOKUP_PREPROCESSOR_TYPE);
+        final LookupPreprocessorType lookupPreprocessorType = readLookupPreprocessorType(config);
 
         try {
-            delegate = new querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory(
+            setBuiltFactory(new SimpleCommonRulesRewriterFactory(
                     rewriterId,
                     new StringReader(rules),
                     allowBooleanInput,
@@ -85,13 +116,88 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
                     selectionStrategyFactories,
                     DEFAULT_SELECTION_STRATEGY_FACTORY,
                     buildTermCache,
-                    lookupPreprocessorType);
+                    lookupPreprocessorType), config);
         } catch (final IOException e) {
             throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
                     "Could not create delegate factory ", e);
         }
+        delegate = builtFactory;
+
+    }
+
+    /**
+     * Configure this adapter from the compiled rules in the compiled configuration without parsing the rules. The
+     * compiled configuration is ignored if it was created for a different configuration.
+     */
+    @Override
+    public void configure(final Map<String, Object> config, final byte[] compiledConfiguration) {
+
+        final Optional<CompiledRules> compiledRules = readCompiledRules(config, compiledConfiguration);
+        if (compiledRules.isEmpty()) {
+            configure(config);
+            return;
+        }
+
+        final QuerqyParserFactory querqyParser = ConfigUtils.getInstanceFromArg(config, CONF_RHS_QUERY_PARSER,
+                DEFAULT_RHS_QUERY_PARSER);
+
+        setBuiltFactory(new SimpleCommonRulesRewriterFactory(
+                rewriterId,
+                compiledRules.get(),
+                readBoostMethod(config),
+                querqyParser,
+                loadSelectionStrategyFactories(config),
+                DEFAULT_SELECTION_STRATEGY_FACTORY,
+                ConfigUtils.getArg(config, CONF_BUILD_TERM_CACHE, true)), config);
+        delegate = builtFactory;
+    }
+
+    /**
+     * The compiled configuration consists of a fingerprint of the configuration (see
+     * {@link ConfigUtils#fingerprint(Map)}) and the parsed rules (see {@link CompiledRules}). Rules with boolean input
+     * cannot be compiled.
+     */
+    @Override
+    public Optional<byte[]> getCompiledConfiguration() {
+
+        if (builtFactory == null || ConfigUtils.getArg(builtFactoryConfig, CONF_ALLOW_BOOLEAN_INPUT, false)) {
+            return Optional.empty();
+        }
+
+        try (final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+             final DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeUTF(ConfigUtils.fingerprint(builtFactoryConfig));
+            builtFactory.getCompiledRules().writeTo(out);
+            out.flush();
+            return Optional.of(bos.toByteArray());
+        } catch (final IOException e) {
+            LOG.warn("Could not compile rules of rewriter " + rewriterId, e);
+            return Optional.empty();
+        }
+    }
+
+    protected Optional<CompiledRules> readCompiledRules(final Map<String, Object> config,
+                                                        final byte[] compiledConfiguration) {
+
+        if (ConfigUtils.getArg(config, CONF_ALLOW_BOOLEAN_INPUT, false)) {
+            return Optional.empty();
+        }
 
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(compiledConfiguration))) {
+            if (!ConfigUtils.fingerprint(config).equals(in.readUTF())) {
+                LOG.info("Compiled rules of rewriter {} don't match its configuration, parsing rules", rewriterId);
+                return Optional.empty();
+            }
+            return Optional.of(CompiledRules.readFrom(in));
+        } catch (final IOException e) {
+            LOG.warn("Could not read compiled rules of rewriter " + rewriterId + ", parsing rules", e);
+            return Optional.empty();
+        }
+    }
 
+    private void setBuiltFactory(final SimpleCommonRulesRewriterFactory factory, final Map<String, Object> config) {
+        builtFactory = factory;
+        builtFactoryConfig = config;
     }
 
     @Override
@@ -127,15 +233,11 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
 
         final Boolean buildTermCache = ConfigUtils.getArg(config, CONF_BUILD_TERM_CACHE, true);
 
-        final Optional<String> lookupPreprocessorTypeName = ConfigUtils.getStringArg(config, CONF_LOOKUP_PREPROCESSOR);
-        final LookupPreprocessorType lookupPreprocessorType = lookupPreprocessorTypeName
-                .map(LookupPreprocessorType::fromString)
-                .orElse(DEFAULT_LOOKUP_PREPROCESSOR_TYPE);
-
-
+        final LookupPreprocessorType lookupPreprocessorType = readLookupPreprocessorType(config);
 
         try {
-            new querqy.rewrite.commonrules.SimpleCommonRulesRewriterFactory(
+            // keep the factory so that configure() for this config doesn't have to parse the rules again
+            setBuiltFactory(new SimpleCommonRulesRewriterFactory(
                     rewriterId,
                     new StringReader(rules),
                     allowBooleanInput,
@@ -145,7 +247,7 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
                     DEFAULT_SELECTION_STRATEGY_FACTORY,
                     buildTermCache,
                     lookupPreprocessorType
-            );
+            ), config);
         } catch (final IOException e) {
             return Collections.singletonList("Cannot create rewriter: " + e.getMessage());
         }
@@ -153,6 +255,58 @@ public class CommonRulesRewriterFactory extends SolrRewriterFactoryAdapter imple
         return null;
     }
 
+    /**
+     * <p>Add, replace and remove rules by their {@link Instructions.StandardPropertyNames#ID}. The patch holds the
+     * rules to add or to replace as a rules string under {@link #PATCH_UPSERT} and the list of IDs of the rules to
+     * remove under {@link #PATCH_DELETE}. All rules in the patch must have an ID.</p>
+     *
+     * <p>A replaced rule keeps its position, new rules are appended. Only the lines of the changed rules are edited in
+     * the rules string of the configuration, comments, templates and all other rules are kept as they are (see
+     * {@link RulesTextPatcher}). Only the rules in the patch are parsed if the current rewriter factory is
+     * available.</p>
+     */
+    @Override
+    public Map<String, Object> patch(final Map<String, Object> config, final Map<String, Object> patch,
+                                     final RewriterFactory currentRewriterFactory) {
+
+        if (ConfigUtils.getArg(config, CONF_ALLOW_BOOLEAN_INPUT, false)) {
+            throw new UnsupportedOperationException("Rules with boolean input cannot be patched");
+        }
+
+        final String upserts = ConfigUtils.getStringArg(patch, PATCH_UPSERT, "");
+        final List<Object> requestedDeletedIds = ConfigUtils.getArg(patch, PATCH_DELETE, Collections.emptyList());
+
+        final RulesTextPatcher rulesTextPatcher = new RulesTextPatcher(
+                ConfigUtils.getStringArg(config, CONF_RULES, ""));
+        // IDs that aren't found in the rules string could still match the default ID of a rule in the factory
+        final List<Object> deletedIds = requestedDeletedIds.stream()
+                .filter(rulesTextPatcher::containsId)
+                .collect(Collectors.toList());
+
+        final Map<String, Object> newConfig = new HashMap<>(config);
+        newConfig.put(CONF_RULES, rulesTextPatcher.patch(upserts, deletedIds));
+
+        if (currentRewriterFactory instanceof SimpleCommonRulesRewriterFactory) {
+            try {
+                setBuiltFactory(((SimpleCommonRulesRewriterFactory) currentRewriterFactory)
+                        .patch(new StringReader(upserts), deletedIds), newConfig);
+                delegate = builtFactory;
+            } catch (final IOException e) {
+                throw new IllegalArgumentException("Cannot patch rules: " + e.getMessage(), e);
+            }
+        } else {
+            configure(newConfig);
+        }
+
+        return newConfig;
+    }
+
+    protected LookupPreprocessorType readLookupPreprocessorType(final Map<String, Object> config) {
+        return ConfigUtils.getStringArg(config, CONF_LOOKUP_PREPROCESSOR)
+                .map(LookupPreprocessorType::fromString)
+                .orElse(DEFAULT_LOOKUP_PREPROCESSOR_TYPE);
+    }
+
     protected BoostMethod readBoostMethod(final Map<String, Object> config) {
         final String boostMethodConfig = ConfigUtils.getArg(config, CONF_BOOST_METHOD, BoostMethod.ADDITIVE.name());
         return BoostMethod.valueOf(boostMethodConfig.toUpperCase());
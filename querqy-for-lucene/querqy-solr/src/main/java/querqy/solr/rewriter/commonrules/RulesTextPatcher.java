@@ -0,0 +1,262 @@
+package querqy.solr.rewriter.commonrules;
+
+import org.apache.commons.io.IOUtils;
+import querqy.rewrite.QuerqyTemplateEngine;
+import querqy.rewrite.TemplateParseException;
+import querqy.rewrite.commonrules.model.Instructions;
+import querqy.rewrite.rules.RuleParseException;
+import querqy.rewrite.rules.factory.TextParserFactory;
+import querqy.rewrite.rules.factory.config.TextParserConfig;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Replaces, adds and removes rules in a common rules string by their {@link Instructions.StandardPropertyNames#ID}
+ * without touching the other lines of the string.</p>
+ *
+ * <p>The lines of a rule are found by parsing the rendered rules and by mapping the rendered lines back to the lines
+ * of the string. Comments, template definitions and the rules that don't change are kept as they are. Rules without
+ * an ID can't be patched, but they can be part of the string. Rules that share lines with other rules, for example
+ * because they are rendered from the same template reference, can't be patched either.</p>
+ */
+class RulesTextPatcher {
+
+    private final List<String> lines;
+    private final Map<Object, RuleLines> rulesById;
+
+    RulesTextPatcher(final String rules) {
+        this.lines = splitLines(rules);
+        this.rulesById = indexById(parseRuleLines(rules, null), false);
+    }
+
+    boolean containsId(final Object id) {
+        return rulesById.containsKey(id);
+    }
+
+    /**
+     * <p>Apply the changes to the rules string.</p>
+     *
+     * <p>A rule in the upserts replaces the lines of the rule that has the same ID, or it is appended to the rules if
+     * no rule has this ID. Templates in the upserts are rendered, as the upserts can't use the templates of the rules
+     * string and vice versa. The lines of the removed rules are removed. The comment lines before and after a rule
+     * don't belong to the rule and are kept.</p>
+     *
+     * @param upserts The rules to add or to replace. All rules must have an ID.
+     * @param removedIds The IDs of the rules to remove. Unknown IDs are ignored.
+     * @return The changed rules string
+     */
+    String patch(final String upserts, final Collection<?> removedIds) {
+
+        final List<String> renderedUpsertLines = new ArrayList<>();
+        final Map<Object, RuleLines> upsertsById = indexById(parseRuleLines(upserts, renderedUpsertLines), true);
+
+        // the changed rules and their new text by the number of their first line
+        final Map<Integer, RuleLines> changedRules = new HashMap<>();
+        final Map<Integer, String> replacements = new HashMap<>();
+
+        for (final Object id : removedIds) {
+            final RuleLines rule = rulesById.get(id);
+            if (rule != null && !upsertsById.containsKey(id)) {
+                ensurePatchable(rule);
+                changedRules.put(rule.firstLineNumber, rule);
+                replacements.put(rule.firstLineNumber, "");
+            }
+        }
+
+        final StringBuilder appended = new StringBuilder();
+        for (final Map.Entry<Object, RuleLines> upsert : upsertsById.entrySet()) {
+            final String text = joinLines(renderedUpsertLines, upsert.getValue().firstRenderedLineNumber,
+                    upsert.getValue().lastRenderedLineNumber);
+            final RuleLines rule = rulesById.get(upsert.getKey());
+            if (rule == null) {
+                appended.append(text);
+            } else {
+                ensurePatchable(rule);
+                changedRules.put(rule.firstLineNumber, rule);
+                replacements.put(rule.firstLineNumber, text);
+            }
+        }
+
+        final StringBuilder patched = new StringBuilder();
+        for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            final RuleLines changedRule = changedRules.get(lineNumber);
+            if (changedRule == null) {
+                patched.append(lines.get(lineNumber - 1));
+            } else {
+                patched.append(replacements.get(lineNumber));
+                lineNumber = changedRule.lastLineNumber;
+            }
+        }
+
+        if (appended.length() > 0) {
+            if (patched.length() > 0) {
+                if (!endsWithLineBreak(patched)) {
+                    patched.append('\n');
+                }
+                // the blank line ends a template definition at the end of the rules
+                patched.append('\n');
+            }
+            patched.append(appended);
+        }
+
+        return patched.toString();
+    }
+
+    private static void ensurePatchable(final RuleLines rule) {
+        if (rule.hasSharedLines) {
+            throw new IllegalArgumentException("Rule " + rule.id + " cannot be patched as its lines are shared with " +
+                    "other rules or with template definitions");
+        }
+    }
+
+    /**
+     * @param rules The rules string
+     * @param renderedLines Receives the rendered lines if not null
+     * @return The lines of the rules in the order of the rules string
+     */
+    private static List<RuleLines> parseRuleLines(final String rules, final List<String> renderedLines) {
+
+        final List<RuleLines> ruleLines = new ArrayList<>();
+        try {
+            final QuerqyTemplateEngine templateEngine = new QuerqyTemplateEngine(new StringReader(rules));
+            final String renderedRules = IOUtils.toString(templateEngine.renderedRules.reader);
+            final Map<Integer, Integer> lineNumberMapping = templateEngine.renderedRules.lineNumberMapping;
+
+            TextParserFactory.of(TextParserConfig.builder()
+                            .rulesContentReader(new StringReader(renderedRules))
+                            .isMultiLineRulesConfig(true)
+                            .lineNumberMappings(lineNumberMapping)
+                            .build())
+                    .createRuleSkeletonParser()
+                    .parseWithLineNumbers((ruleSkeleton, firstLineNumber, lastLineNumber) -> ruleLines.add(
+                            new RuleLines(ruleSkeleton.getProperties().get(Instructions.StandardPropertyNames.ID),
+                                    ruleSkeleton.getInputSkeleton(),
+                                    firstLineNumber, lastLineNumber,
+                                    lineNumberMapping.getOrDefault(firstLineNumber, firstLineNumber),
+                                    lineNumberMapping.getOrDefault(lastLineNumber, lastLineNumber))));
+
+            markRulesWithSharedLines(ruleLines, lineNumberMapping, splitLines(rules).size());
+
+            if (renderedLines != null) {
+                renderedLines.addAll(splitLines(renderedRules));
+            }
+        } catch (final IOException | TemplateParseException | RuleParseException e) {
+            throw new IllegalArgumentException("Cannot parse rules: " + e.getMessage(), e);
+        }
+        return ruleLines;
+    }
+
+    private static Map<Object, RuleLines> indexById(final List<RuleLines> ruleLines, final boolean requireIds) {
+        final Map<Object, RuleLines> rulesById = new LinkedHashMap<>();
+        for (final RuleLines rule : ruleLines) {
+            if (rule.id == null) {
+                if (requireIds) {
+                    throw new IllegalArgumentException("Rules must have an " + Instructions.StandardPropertyNames.ID
+                            + " to be patched. Rule without ID: " + rule.input);
+                }
+            } else if (rulesById.put(rule.id, rule) != null) {
+                throw new IllegalArgumentException("Duplicate ID: " + rule.id);
+            }
+        }
+        return rulesById;
+    }
+
+    /**
+     * A rule has shared lines if one of its lines is also rendered into another rule, or if its lines enclose
+     * lines that are not rendered into the rule, like a template definition.
+     */
+    private static void markRulesWithSharedLines(final List<RuleLines> ruleLines,
+                                                 final Map<Integer, Integer> lineNumberMapping,
+                                                 final int numberOfLines) {
+        final RuleLines[] owners = new RuleLines[numberOfLines + 1];
+        for (final RuleLines rule : ruleLines) {
+            for (int renderedLineNumber = rule.firstRenderedLineNumber;
+                 renderedLineNumber <= rule.lastRenderedLineNumber; renderedLineNumber++) {
+                final int lineNumber = lineNumberMapping.getOrDefault(renderedLineNumber, renderedLineNumber);
+                final RuleLines owner = owners[lineNumber];
+                if (owner == null) {
+                    owners[lineNumber] = rule;
+                } else if (owner != rule) {
+                    owner.hasSharedLines = true;
+                    rule.hasSharedLines = true;
+                }
+            }
+        }
+        for (final RuleLines rule : ruleLines) {
+            for (int lineNumber = rule.firstLineNumber; lineNumber <= rule.lastLineNumber; lineNumber++) {
+                if (owners[lineNumber] != rule) {
+                    rule.hasSharedLines = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static String joinLines(final List<String> lines, final int firstLineNumber, final int lastLineNumber) {
+        final StringBuilder text = new StringBuilder();
+        for (final String line : lines.subList(firstLineNumber - 1, lastLineNumber)) {
+            text.append(line);
+        }
+        if (!endsWithLineBreak(text)) {
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private static boolean endsWithLineBreak(final CharSequence text) {
+        final char last = text.charAt(text.length() - 1);
+        return last == '\n' || last == '\r';
+    }
+
+    /**
+     * Split the string into lines, keeping the line breaks. Lines are counted like {@link java.io.BufferedReader}
+     * counts them.
+     */
+    static List<String> splitLines(final String text) {
+        final List<String> lines = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            if (ch == '\n' || ch == '\r') {
+                if (ch == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lines.add(text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static class RuleLines {
+
+        final Object id;
+        final String input;
+        final int firstRenderedLineNumber;
+        final int lastRenderedLineNumber;
+        // the numbers of the lines in the rules string before rendering
+        final int firstLineNumber;
+        final int lastLineNumber;
+        boolean hasSharedLines = false;
+
+        RuleLines(final Object id, final String input, final int firstRenderedLineNumber,
+                  final int lastRenderedLineNumber, final int firstLineNumber, final int lastLineNumber) {
+            this.id = id;
+            this.input = input;
+            this.firstRenderedLineNumber = firstRenderedLineNumber;
+            this.lastRenderedLineNumber = lastRenderedLineNumber;
+            this.firstLineNumber = firstLineNumber;
+            this.lastLineNumber = lastLineNumber;
+        }
+    }
+}
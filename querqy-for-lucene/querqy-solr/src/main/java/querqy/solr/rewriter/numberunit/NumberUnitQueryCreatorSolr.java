@@ -1,15 +1,29 @@
 package querqy.solr.rewriter.numberunit;
 
+import org.apache.lucene.queries.function.FunctionQuery;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.valuesource.MaxFloatFunction;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.solr.schema.IndexSchema;
+import querqy.lucene.LuceneRawQuery;
+import querqy.model.BooleanParent;
 import querqy.model.BoostQuery;
 import querqy.model.Clause;
+import querqy.model.QuerqyQuery;
 import querqy.model.StringRawQuery;
+import querqy.rewrite.SearchEngineRequestAdapter;
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
 import querqy.rewrite.contrib.numberunit.NumberUnitQueryCreator;
-import querqy.rewrite.contrib.numberunit.model.LinearFunction;
+import querqy.rewrite.contrib.numberunit.model.FieldDefinition;
+import querqy.rewrite.contrib.numberunit.model.FixedPointLinearFunction;
 import querqy.rewrite.contrib.numberunit.model.NumberUnitDefinition;
 import querqy.rewrite.contrib.numberunit.model.PerUnitNumberUnitDefinition;
+import querqy.solr.DismaxSearchEngineRequestAdapter;
+import querqy.solr.rewriter.numberunit.NumberUnitQueryTemplates.FieldTemplate;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 
 public class NumberUnitQueryCreatorSolr extends NumberUnitQueryCreator {
@@ -19,129 +33,310 @@ public class NumberUnitQueryCreatorSolr extends NumberUnitQueryCreator {
     }
 
     private static final String FUNC = "{!func}";
-    private static final String MAX = "max(%s)";
-    private static final String IF = "if(%s,%s,%s)";
-    private static final String QUERY = "query(%s)";
-    private static final String LINEAR_FUNCTION = "rint(linear(%s,%s,%s))";
-
-    private static final String RANGE_QUERY = "{!frange l=%s u=%s v='%s'}";
-    private static final String RANGE_QUERY_EXCLUDE_UPPER = "{!frange l=%s u=%s incu='false' v='%s'}";
-    private static final String RANGE_QUERY_EXCLUDE_LOWER = "{!frange l=%s u=%s incl='false' v='%s'}";
-
-    private static final String RANGE_QUERY_TEMPLATE = "%s:[%s TO %s]";
     private static final String BOOLEAN_STRING_CONCATENATION_OR = " OR ";
 
+    // compiled for the schema of the latest request
+    private volatile NumberUnitQueryTemplates queryTemplates;
+
     protected StringRawQuery createRawBoostQuery(final BigDecimal value,
                                            final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
-        final List<String> queryParts = new ArrayList<>();
-
-        perUnitNumberUnitDefinitions.forEach(perUnitDef -> {
-            final NumberUnitDefinition numberUnitDef = perUnitDef.numberUnitDefinition;
-
-            final BigDecimal multipliedValue = value.multiply(perUnitDef.multiplier);
-
-            final BigDecimal lowerBound = subtractPercentage(multipliedValue,
-                    numberUnitDef.boostPercentageLowerBoundary);
-
-            final BigDecimal lowerBoundExactMatch = subtractPercentage(multipliedValue,
-                    numberUnitDef.boostPercentageLowerBoundaryExactMatch);
-
-            final BigDecimal upperBound = addPercentage(multipliedValue,
-                    numberUnitDef.boostPercentageUpperBoundary);
-
-            final BigDecimal upperBoundExactMatch = addPercentage(multipliedValue,
-                    numberUnitDef.boostPercentageUpperBoundaryExactMatch);
-
-            final LinearFunction linearFunctionLower = super.createLinearFunctionParameters(
-                    lowerBound, numberUnitDef.minScoreAtLowerBoundary,
-                    lowerBoundExactMatch, numberUnitDef.maxScoreForExactMatch);
-
-            final LinearFunction linearFunctionUpper = super.createLinearFunctionParameters(
-                    upperBound, numberUnitDef.minScoreAtUpperBoundary,
-                    upperBoundExactMatch, numberUnitDef.maxScoreForExactMatch);
-
-            perUnitDef.numberUnitDefinition.fields.forEach(field -> {
-
-                queryParts.add(
-                        String.format(
-                                IF,
-                                String.format(
-                                        QUERY,
-                                        String.format(
-                                                RANGE_QUERY_EXCLUDE_UPPER,
-                                                lowerBound.setScale(field.scale, super.getRoundingMode()),
-                                                lowerBoundExactMatch.setScale(field.scale, super.getRoundingMode()),
-                                                field.fieldName)),
-                                String.format(
-                                        LINEAR_FUNCTION,
-                                        field.fieldName,
-                                        linearFunctionLower.m,
-                                        linearFunctionLower.b),
-                                String.format(
-                                        IF,
-                                        String.format(
-                                                QUERY,
-                                                String.format(
-                                                        RANGE_QUERY,
-                                                        lowerBoundExactMatch.setScale(field.scale, super.getRoundingMode()),
-                                                        upperBoundExactMatch.setScale(field.scale, super.getRoundingMode()),
-                                                        field.fieldName)),
-                                        numberUnitDef.maxScoreForExactMatch.add(numberUnitDef.additionalScoreForExactMatch)
-                                                .intValue(),
-                                        String.format(
-                                                IF,
-                                                String.format(
-                                                        QUERY,
-                                                        String.format(
-                                                                RANGE_QUERY_EXCLUDE_LOWER,
-                                                                upperBoundExactMatch.setScale(field.scale, super.getRoundingMode()),
-                                                                upperBound.setScale(field.scale, super.getRoundingMode()),
-                                                                field.fieldName)),
-                                                String.format(
-                                                        LINEAR_FUNCTION,
-                                                        field.fieldName,
-                                                        linearFunctionUpper.m,
-                                                        linearFunctionUpper.b),
-                                                "0"))));
-
-                    }); });
-
-
-        final String queryString = queryParts.size() == 1
-                ? queryParts.get(0) : String.format(MAX, String.join(",", queryParts));
-        return new StringRawQuery(null, FUNC + queryString, Clause.Occur.MUST, true);
+        return createRawBoostQuery(FixedPointDecimal.valueOf(value), perUnitNumberUnitDefinitions);
+    }
+
+    protected StringRawQuery createRawBoostQuery(final FixedPointDecimal value,
+                                           final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        final StringBuilder sb = new StringBuilder(FUNC);
+        final int numParts = perUnitNumberUnitDefinitions.stream()
+                .mapToInt(perUnitDef -> perUnitDef.numberUnitDefinition.fields.size())
+                .sum();
+        if (numParts != 1) {
+            sb.append("max(");
+        }
+
+        boolean isFirstPart = true;
+        for (final PerUnitNumberUnitDefinition perUnitDef : perUnitNumberUnitDefinitions) {
+            final BoostParameters params = createBoostParameters(value, perUnitDef);
+
+            for (final FieldDefinition field : perUnitDef.numberUnitDefinition.fields) {
+                if (!isFirstPart) {
+                    sb.append(',');
+                }
+                isFirstPart = false;
+
+                // if(query({!frange l=... u=... incu='false' v='field'}),rint(linear(field,m,b)),
+                //   if(query({!frange l=... u=... v='field'}),exactMatchScore,
+                //     if(query({!frange l=... u=... incl='false' v='field'}),rint(linear(field,m,b)),0)))
+                sb.append("if(query({!frange l=");
+                params.lowerBound.setScale(field.scale).appendTo(sb).append(" u=");
+                params.lowerBoundExactMatch.setScale(field.scale).appendTo(sb).append(" incu='false' v='")
+                        .append(field.fieldName).append("'}),");
+                appendLinearFunction(sb, field, params.linearFunctionLower).append(',');
+
+                sb.append("if(query({!frange l=");
+                params.lowerBoundExactMatch.setScale(field.scale).appendTo(sb).append(" u=");
+                params.upperBoundExactMatch.setScale(field.scale).appendTo(sb).append(" v='")
+                        .append(field.fieldName).append("'}),")
+                        .append(params.scoreForExactMatch).append(',');
+
+                sb.append("if(query({!frange l=");
+                params.upperBoundExactMatch.setScale(field.scale).appendTo(sb).append(" u=");
+                params.upperBound.setScale(field.scale).appendTo(sb).append(" incl='false' v='")
+                        .append(field.fieldName).append("'}),");
+                appendLinearFunction(sb, field, params.linearFunctionUpper).append(",0)))");
+            }
+        }
+
+        if (numParts != 1) {
+            sb.append(')');
+        }
+        return new StringRawQuery(null, sb.toString(), Clause.Occur.MUST, true);
+    }
+
+    private static StringBuilder appendLinearFunction(final StringBuilder sb, final FieldDefinition field,
+                                                      final FixedPointLinearFunction linearFunction) {
+        sb.append("rint(linear(").append(field.fieldName).append(',');
+        linearFunction.m.appendTo(sb).append(',');
+        return linearFunction.b.appendTo(sb).append("))");
+    }
+
+    private BoostParameters createBoostParameters(final FixedPointDecimal value,
+                                                  final PerUnitNumberUnitDefinition perUnitDef) {
+        final NumberUnitDefinition.FixedPointValues numberUnitDef = perUnitDef.numberUnitDefinition.fixedPointValues;
+
+        final FixedPointDecimal multipliedValue = value.multiply(perUnitDef.fixedPointMultiplier);
+
+        final FixedPointDecimal lowerBound = subtractPercentage(multipliedValue,
+                numberUnitDef.boostPercentageLowerBoundary);
+
+        final FixedPointDecimal lowerBoundExactMatch = subtractPercentage(multipliedValue,
+                numberUnitDef.boostPercentageLowerBoundaryExactMatch);
+
+        final FixedPointDecimal upperBound = addPercentage(multipliedValue,
+                numberUnitDef.boostPercentageUpperBoundary);
+
+        final FixedPointDecimal upperBoundExactMatch = addPercentage(multipliedValue,
+                numberUnitDef.boostPercentageUpperBoundaryExactMatch);
+
+        final FixedPointLinearFunction linearFunctionLower = super.createLinearFunctionParameters(
+                lowerBound, numberUnitDef.minScoreAtLowerBoundary,
+                lowerBoundExactMatch, numberUnitDef.maxScoreForExactMatch);
+
+        final FixedPointLinearFunction linearFunctionUpper = super.createLinearFunctionParameters(
+                upperBound, numberUnitDef.minScoreAtUpperBoundary,
+                upperBoundExactMatch, numberUnitDef.maxScoreForExactMatch);
+
+        return new BoostParameters(lowerBound, lowerBoundExactMatch, upperBoundExactMatch, upperBound,
+                linearFunctionLower, linearFunctionUpper, numberUnitDef.scoreForExactMatch);
+    }
+
+    /**
+     * Creates the boost query as a Lucene function query if the request is a Solr request and all fields are numeric
+     * fields that can be used in functions. Otherwise, the query string is created and left to Solr for parsing.
+     */
+    @Override
+    public BoostQuery createBoostQuery(final FixedPointDecimal value,
+                                       final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions,
+                                       final SearchEngineRequestAdapter requestAdapter) {
+        final FieldTemplate[] fieldTemplates = getFieldTemplates(perUnitNumberUnitDefinitions, requestAdapter, true);
+        if (fieldTemplates == null) {
+            return createBoostQuery(value, perUnitNumberUnitDefinitions);
+        }
+
+        final ValueSource[] parts = new ValueSource[fieldTemplates.length];
+        int i = 0;
+        for (final PerUnitNumberUnitDefinition perUnitDef : perUnitNumberUnitDefinitions) {
+            final BoostParameters params = createBoostParameters(value, perUnitDef);
+            final float mLower = toFloat(params.linearFunctionLower.m);
+            final float bLower = toFloat(params.linearFunctionLower.b);
+            final float mUpper = toFloat(params.linearFunctionUpper.m);
+            final float bUpper = toFloat(params.linearFunctionUpper.b);
+
+            for (final FieldDefinition field : perUnitDef.numberUnitDefinition.fields) {
+                parts[i] = fieldTemplates[i].createBoostFunction(
+                        params.lowerBound.setScale(field.scale).toString(),
+                        params.lowerBoundExactMatch.setScale(field.scale).toString(),
+                        params.upperBoundExactMatch.setScale(field.scale).toString(),
+                        params.upperBound.setScale(field.scale).toString(),
+                        mLower, bLower, mUpper, bUpper, params.scoreForExactMatch);
+                i++;
+            }
+        }
+
+        final ValueSource valueSource = parts.length == 1 ? parts[0] : new MaxFloatFunction(parts);
+        return new BoostQuery(new LuceneRawQuery(null, Clause.Occur.MUST, true, new FunctionQuery(valueSource)),
+                1.0f);
+    }
+
+    // the function query parser parses the coefficients from their string representation
+    private static float toFloat(final FixedPointDecimal value) {
+        return Float.parseFloat(value.toString());
     }
 
     public BoostQuery createBoostQuery(final BigDecimal value,
                                        final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
-        return new BoostQuery(createRawBoostQuery(value, perUnitNumberUnitDefinitions), 1.0f);
+        return createBoostQuery(FixedPointDecimal.valueOf(value), perUnitNumberUnitDefinitions);
     }
 
+    @Override
+    public BoostQuery createBoostQuery(final FixedPointDecimal value,
+                                       final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        return new BoostQuery(createRawBoostQuery(value, perUnitNumberUnitDefinitions), 1.0f);
+    }
 
     public StringRawQuery createFilterQuery(final BigDecimal value,
                                       final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
-        final List<String> queryParts = new ArrayList<>();
+        return createFilterQuery(FixedPointDecimal.valueOf(value), perUnitNumberUnitDefinitions);
+    }
+
+    @Override
+    public StringRawQuery createFilterQuery(final FixedPointDecimal value,
+                                            final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions) {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final PerUnitNumberUnitDefinition def : perUnitNumberUnitDefinitions) {
+            final FixedPointDecimal multipliedValue = value.multiply(def.fixedPointMultiplier);
+            final FixedPointDecimal lowerBound = createFilterLowerBound(multipliedValue, def);
+            final FixedPointDecimal upperBound = createFilterUpperBound(multipliedValue, def);
+
+            for (final FieldDefinition field : def.numberUnitDefinition.fields) {
+                if (sb.length() > 0) {
+                    sb.append(BOOLEAN_STRING_CONCATENATION_OR);
+                }
+                // field:[lower TO upper]
+                sb.append(field.fieldName).append(":[");
+                appendBound(sb, lowerBound, field).append(" TO ");
+                appendBound(sb, upperBound, field).append(']');
+            }
+        }
+
+        return new StringRawQuery(null, sb.toString(), Clause.Occur.MUST, true);
+    }
+
+    /**
+     * Creates the filter query as a disjunction of Lucene range queries if the request is a Solr request and all
+     * fields are numeric. Otherwise, the query string is created and left to Solr for parsing.
+     */
+    @Override
+    public QuerqyQuery<BooleanParent> createFilterQuery(
+            final FixedPointDecimal value, final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions,
+            final SearchEngineRequestAdapter requestAdapter) {
+        final FieldTemplate[] fieldTemplates = getFieldTemplates(perUnitNumberUnitDefinitions, requestAdapter, false);
+        if (fieldTemplates == null) {
+            return createFilterQuery(value, perUnitNumberUnitDefinitions);
+        }
 
-        perUnitNumberUnitDefinitions.forEach(def -> {
-            final BigDecimal multipliedValue = value.multiply(def.multiplier);
+        final Query[] rangeQueries = new Query[fieldTemplates.length];
+        int i = 0;
+        for (final PerUnitNumberUnitDefinition def : perUnitNumberUnitDefinitions) {
+            final FixedPointDecimal multipliedValue = value.multiply(def.fixedPointMultiplier);
+            final FixedPointDecimal lowerBound = createFilterLowerBound(multipliedValue, def);
+            final FixedPointDecimal upperBound = createFilterUpperBound(multipliedValue, def);
 
-            final BigDecimal lowerBound = def.numberUnitDefinition.filterPercentageLowerBoundary.compareTo(BigDecimal.ZERO) >= 0
-                    ? subtractPercentage(multipliedValue, def.numberUnitDefinition.filterPercentageLowerBoundary)
-                    : def.numberUnitDefinition.filterPercentageLowerBoundary;
+            for (final FieldDefinition field : def.numberUnitDefinition.fields) {
+                rangeQueries[i] = fieldTemplates[i].createRangeQuery(boundToString(lowerBound, field),
+                        boundToString(upperBound, field));
+                i++;
+            }
+        }
+
+        final Query query;
+        if (rangeQueries.length == 1) {
+            query = rangeQueries[0];
+        } else {
+            final BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            for (final Query rangeQuery : rangeQueries) {
+                builder.add(rangeQuery, BooleanClause.Occur.SHOULD);
+            }
+            query = builder.build();
+        }
+        return new LuceneRawQuery(null, Clause.Occur.MUST, true, query);
+    }
+
+    private FixedPointDecimal createFilterLowerBound(final FixedPointDecimal multipliedValue,
+                                                     final PerUnitNumberUnitDefinition def) {
+        final NumberUnitDefinition.FixedPointValues numberUnitDef = def.numberUnitDefinition.fixedPointValues;
+        return numberUnitDef.filterPercentageLowerBoundary.signum() >= 0
+                ? subtractPercentage(multipliedValue, numberUnitDef.filterPercentageLowerBoundary)
+                : numberUnitDef.filterPercentageLowerBoundary;
+    }
+
+    private FixedPointDecimal createFilterUpperBound(final FixedPointDecimal multipliedValue,
+                                                     final PerUnitNumberUnitDefinition def) {
+        final NumberUnitDefinition.FixedPointValues numberUnitDef = def.numberUnitDefinition.fixedPointValues;
+        return numberUnitDef.filterPercentageUpperBoundary.signum() >= 0
+                ? addPercentage(multipliedValue, numberUnitDef.filterPercentageUpperBoundary)
+                : numberUnitDef.filterPercentageUpperBoundary;
+    }
+
+    /**
+     * @return The templates of all fields in the order of the definitions, or null if the query has to be parsed
+     * from a string
+     */
+    private FieldTemplate[] getFieldTemplates(final List<PerUnitNumberUnitDefinition> perUnitNumberUnitDefinitions,
+                                              final SearchEngineRequestAdapter requestAdapter,
+                                              final boolean needsValueSource) {
+        if (!(requestAdapter instanceof DismaxSearchEngineRequestAdapter)) {
+            return null;
+        }
+        final IndexSchema schema = ((DismaxSearchEngineRequestAdapter) requestAdapter).getSolrRequest().getSchema();
+        NumberUnitQueryTemplates templates = queryTemplates;
+        if (templates == null || templates.getSchema() != schema) {
+            templates = new NumberUnitQueryTemplates(schema);
+            queryTemplates = templates;
+        }
+
+        final int numParts = perUnitNumberUnitDefinitions.stream()
+                .mapToInt(perUnitDef -> perUnitDef.numberUnitDefinition.fields.size())
+                .sum();
+        if (numParts == 0) {
+            return null;
+        }
+
+        final FieldTemplate[] fieldTemplates = new FieldTemplate[numParts];
+        int i = 0;
+        for (final PerUnitNumberUnitDefinition perUnitDef : perUnitNumberUnitDefinitions) {
+            for (final FieldDefinition field : perUnitDef.numberUnitDefinition.fields) {
+                final FieldTemplate fieldTemplate = templates.getFieldTemplate(field.fieldName);
+                if (fieldTemplate == null || (needsValueSource && !fieldTemplate.hasValueSource())) {
+                    return null;
+                }
+                fieldTemplates[i++] = fieldTemplate;
+            }
+        }
+        return fieldTemplates;
+    }
+
+    private static StringBuilder appendBound(final StringBuilder sb, final FixedPointDecimal bound,
+                                             final FieldDefinition field) {
+        return bound.signum() >= 0 ? bound.setScale(field.scale).appendTo(sb) : sb.append('*');
+    }
+
+    // null for an open range like * in field:[* TO upper]
+    private static String boundToString(final FixedPointDecimal bound, final FieldDefinition field) {
+        return bound.signum() >= 0 ? bound.setScale(field.scale).toString() : null;
+    }
 
-            final BigDecimal upperBound = def.numberUnitDefinition.filterPercentageUpperBoundary.compareTo(BigDecimal.ZERO) >= 0
-                    ? addPercentage(multipliedValue, def.numberUnitDefinition.filterPercentageUpperBoundary)
-                    : def.numberUnitDefinition.filterPercentageUpperBoundary;
+    private static final class BoostParameters {
 
-            def.numberUnitDefinition.fields.forEach(field ->
-                    queryParts.add(String.format(
-                            RANGE_QUERY_TEMPLATE,
-                            field.fieldName,
-                            lowerBound.compareTo(BigDecimal.ZERO) >= 0
-                                    ? lowerBound.setScale(field.scale, super.getRoundingMode()) : "*",
-                            upperBound.compareTo(BigDecimal.ZERO) >= 0
-                                    ? upperBound.setScale(field.scale, super.getRoundingMode()) : "*"))); });
+        final FixedPointDecimal lowerBound;
+        final FixedPointDecimal lowerBoundExactMatch;
+        final FixedPointDecimal upperBoundExactMatch;
+        final FixedPointDecimal upperBound;
+        final FixedPointLinearFunction linearFunctionLower;
+        final FixedPointLinearFunction linearFunctionUpper;
+        final int scoreForExactMatch;
 
-        return new StringRawQuery(null, String.join(BOOLEAN_STRING_CONCATENATION_OR, queryParts), Clause.Occur.MUST, true);
+        BoostParameters(final FixedPointDecimal lowerBound, final FixedPointDecimal lowerBoundExactMatch,
+                        final FixedPointDecimal upperBoundExactMatch, final FixedPointDecimal upperBound,
+                        final FixedPointLinearFunction linearFunctionLower,
+                        final FixedPointLinearFunction linearFunctionUpper, final int scoreForExactMatch) {
+            this.lowerBound = lowerBound;
+            this.lowerBoundExactMatch = lowerBoundExactMatch;
+            this.upperBoundExactMatch = upperBoundExactMatch;
+            this.upperBound = upperBound;
+            this.linearFunctionLower = linearFunctionLower;
+            this.linearFunctionUpper = linearFunctionUpper;
+            this.scoreForExactMatch = scoreForExactMatch;
+        }
     }
 }
@@ -0,0 +1,162 @@
+package querqy.solr.rewriter.numberunit;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.function.FunctionValues;
+import org.apache.lucene.queries.function.ValueSource;
+import org.apache.lucene.queries.function.docvalues.DoubleDocValues;
+import org.apache.lucene.queries.function.valuesource.ConstValueSource;
+import org.apache.lucene.queries.function.valuesource.IfFunction;
+import org.apache.lucene.queries.function.valuesource.LinearFloatFunction;
+import org.apache.lucene.queries.function.valuesource.QueryValueSource;
+import org.apache.lucene.queries.function.valuesource.SingleFunction;
+import org.apache.lucene.search.Query;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.schema.IndexSchema;
+import org.apache.solr.schema.NumericFieldType;
+import org.apache.solr.schema.SchemaField;
+import org.apache.solr.search.FunctionRangeQuery;
+import org.apache.solr.search.function.ValueSourceRangeFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Query templates for the fields of number-unit definitions, compiled once per {@link IndexSchema}. A template
+ * holds the schema field and its value source so that only the bounds and coefficients that depend on the parsed
+ * number have to be plugged in per request.</p>
+ *
+ * <p>The templates create the same Lucene queries that Solr parses from the query strings of
+ * {@link NumberUnitQueryCreatorSolr}. Only fields of a {@link NumericFieldType} have a template.</p>
+ */
+class NumberUnitQueryTemplates {
+
+    private static final FieldTemplate UNSUPPORTED = new FieldTemplate(null, null);
+
+    private static final ValueSource ZERO = new ConstValueSource(0f);
+
+    private final IndexSchema schema;
+    private final Map<String, FieldTemplate> fieldTemplates = new ConcurrentHashMap<>();
+
+    NumberUnitQueryTemplates(final IndexSchema schema) {
+        this.schema = schema;
+    }
+
+    IndexSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The template for the field or null if the field is unknown or isn't numeric
+     */
+    FieldTemplate getFieldTemplate(final String fieldName) {
+        final FieldTemplate template = fieldTemplates.computeIfAbsent(fieldName, this::createFieldTemplate);
+        return template == UNSUPPORTED ? null : template;
+    }
+
+    private FieldTemplate createFieldTemplate(final String fieldName) {
+        final SchemaField schemaField = schema.getFieldOrNull(fieldName);
+        if (schemaField == null || !(schemaField.getType() instanceof NumericFieldType)) {
+            return UNSUPPORTED;
+        }
+
+        ValueSource valueSource;
+        try {
+            valueSource = schemaField.getType().getValueSource(schemaField, null);
+        } catch (final SolrException e) {
+            // the field can still be used for range queries, but boosts have to report the error of the query parser
+            valueSource = null;
+        }
+        return new FieldTemplate(schemaField, valueSource);
+    }
+
+    static final class FieldTemplate {
+
+        private final SchemaField schemaField;
+        // null if the field cannot be used in functions
+        private final ValueSource valueSource;
+
+        private FieldTemplate(final SchemaField schemaField, final ValueSource valueSource) {
+            this.schemaField = schemaField;
+            this.valueSource = valueSource;
+        }
+
+        boolean hasValueSource() {
+            return valueSource != null;
+        }
+
+        /**
+         * Creates the query for field:[lower TO upper]
+         *
+         * @param lower The lower bound or null if the range is open at the lower end
+         * @param upper The upper bound or null if the range is open at the upper end
+         */
+        Query createRangeQuery(final String lower, final String upper) {
+            return schemaField.getType().getRangeQuery(null, schemaField, lower, upper, true, true);
+        }
+
+        /**
+         * Creates the value source for
+         * <pre>
+         * if(query({!frange l=lower u=lowerExactMatch incu='false' v='field'}),rint(linear(field,mLower,bLower)),
+         *   if(query({!frange l=lowerExactMatch u=upperExactMatch v='field'}),scoreForExactMatch,
+         *     if(query({!frange l=upperExactMatch u=upper incl='false' v='field'}),
+         *       rint(linear(field,mUpper,bUpper)),0)))
+         * </pre>
+         */
+        ValueSource createBoostFunction(final String lower, final String lowerExactMatch,
+                                        final String upperExactMatch, final String upper,
+                                        final float mLower, final float bLower,
+                                        final float mUpper, final float bUpper,
+                                        final float scoreForExactMatch) {
+            return new IfFunction(
+                    frange(lower, lowerExactMatch, true, false),
+                    new RintFunction(new LinearFloatFunction(valueSource, mLower, bLower)),
+                    new IfFunction(
+                            frange(lowerExactMatch, upperExactMatch, true, true),
+                            new ConstValueSource(scoreForExactMatch),
+                            new IfFunction(
+                                    frange(upperExactMatch, upper, false, true),
+                                    new RintFunction(new LinearFloatFunction(valueSource, mUpper, bUpper)),
+                                    ZERO)));
+        }
+
+        private ValueSource frange(final String lower, final String upper, final boolean includeLower,
+                                   final boolean includeUpper) {
+            return new QueryValueSource(new FunctionRangeQuery(
+                    new ValueSourceRangeFilter(valueSource, lower, upper, includeLower, includeUpper)), 0f);
+        }
+    }
+
+    /**
+     * The equivalent of Solr's rint() function, which cannot be instantiated outside of the function query parser.
+     */
+    static final class RintFunction extends SingleFunction {
+
+        RintFunction(final ValueSource source) {
+            super(source);
+        }
+
+        @Override
+        protected String name() {
+            return "rint";
+        }
+
+        @Override
+        public FunctionValues getValues(final Map<Object, Object> context, final LeafReaderContext readerContext)
+                throws IOException {
+            final FunctionValues values = source.getValues(context, readerContext);
+            return new DoubleDocValues(this) {
+                @Override
+                public double doubleVal(final int doc) throws IOException {
+                    return Math.rint(values.doubleVal(doc));
+                }
+
+                @Override
+                public String toString(final int doc) throws IOException {
+                    return name() + '(' + values.toString(doc) + ')';
+                }
+            };
+        }
+    }
+}
@@ -2,10 +2,17 @@ package querqy.solr.utils;
 
 import org.apache.solr.common.util.NamedList;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public interface ConfigUtils {
 
 
@@ -83,4 +90,51 @@ public interface ConfigUtils {
         final Object value = list.get(key);
         return value == null ? defaultValue : (T) value;
     }
+
+    /**
+     * Create a fingerprint of a configuration that doesn't depend on the order of map entries or on the type of
+     * numbers. Configurations that were written to JSON and read back have the same fingerprint as the original.
+     *
+     * @param config The configuration
+     * @return The fingerprint
+     */
+    static String fingerprint(final Map<String, Object> config) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        updateFingerprint(digest, config);
+        final StringBuilder sb = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void updateFingerprint(final MessageDigest digest, final Object value) {
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            digest.update((byte) '{');
+            final Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((k, v) -> sorted.put(String.valueOf(k), v));
+            sorted.forEach((k, v) -> {
+                updateFingerprint(digest, k);
+                updateFingerprint(digest, v);
+            });
+            digest.update((byte) '}');
+        } else if (value instanceof Collection) {
+            digest.update((byte) '[');
+            ((Collection<?>) value).forEach(element -> updateFingerprint(digest, element));
+            digest.update((byte) ']');
+        } else {
+            final char type = value == null ? 'z'
+                    : value instanceof Number ? 'n' : value instanceof Boolean ? 'b' : 's';
+            final byte[] bytes = String.valueOf(value).getBytes(UTF_8);
+            digest.update((byte) type);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+            digest.update(bytes);
+        }
+    }
 }
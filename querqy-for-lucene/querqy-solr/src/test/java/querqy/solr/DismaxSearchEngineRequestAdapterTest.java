@@ -23,6 +23,8 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import querqy.lucene.LuceneRawQuery;
+import querqy.lucene.rewrite.AnalyzedTermCache;
+import querqy.lucene.rewrite.TermStatisticsCache;
 import querqy.lucene.rewrite.infologging.InfoLogging;
 import querqy.model.Clause;
 import querqy.model.StringRawQuery;
@@ -75,6 +77,21 @@ public class DismaxSearchEngineRequestAdapterTest {
     }
 
 
+    @Test
+    public void testThatCachesArePassedToTheAdapter() {
+
+        final TermStatisticsCache cache = new TermStatisticsCache();
+        final AnalyzedTermCache analyzedTermCache = new AnalyzedTermCache(1024L * 1024L);
+
+        final DismaxSearchEngineRequestAdapter adapter = new DismaxSearchEngineRequestAdapter(qParser, request,
+                "some query", new ModifiableSolrParams(), querqyParser, rewriteChain, infoLogging, null, cache,
+                analyzedTermCache);
+
+        Assert.assertSame(cache, adapter.getTermStatisticsCache().get());
+        Assert.assertSame(analyzedTermCache, adapter.getAnalyzedTermCache().get());
+
+    }
+
     @Test
     public void testGetFloatParam() {
 
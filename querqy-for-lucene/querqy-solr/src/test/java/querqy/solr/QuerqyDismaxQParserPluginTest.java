@@ -4,6 +4,8 @@ import static querqy.model.convert.builder.BooleanQueryBuilder.bq;
 import static querqy.solr.QuerqyDismaxParams.GFB;
 import static querqy.solr.QuerqyDismaxParams.GQF;
 import static querqy.solr.QuerqyDismaxParams.MULTI_MATCH_TIE;
+import static querqy.solr.QuerqyDismaxParams.QPF_ANALYSIS;
+import static querqy.solr.QuerqyDismaxParams.QPF_ANALYSIS_TOKEN;
 import static querqy.solr.QuerqyQParserPlugin.PARAM_REWRITERS;
 import static querqy.solr.StandaloneSolrTestSupport.withCommonRulesRewriter;
 import static querqy.solr.StandaloneSolrTestSupport.withRewriter;
@@ -539,6 +541,57 @@ public class QuerqyDismaxQParserPluginTest extends SolrTestCaseJ4 {
 
     }
 
+    @Test
+    public void testThatPFSkipsMustNotClausesWithTokenAnalysis() throws Exception {
+
+        String q = "a b -c d e f";
+
+        SolrQueryRequest req = req("q", q,
+            DisMaxParams.QF, "f1 f2",
+            DisMaxParams.MM, "3",
+            QueryParsing.OP, "OR",
+            DisMaxParams.PF, "f2^1.5 f3^1.5",
+            DisMaxParams.PF2, "f1^2.1 f2^2.1",
+            DisMaxParams.PF3, "f3^3.9 f1^3.9",
+            QPF_ANALYSIS, QPF_ANALYSIS_TOKEN
+            );
+
+        verifyQueryString(req, q,
+            "(f2:\"a b d e f\")^1.5", "(f3:\"a b d e f\")^1.5",
+            "(f1:\"a b\" f1:\"b d\" f1:\"d e\" f1:\"e f\")^2.1",
+            "(f2:\"a b\" f2:\"b d\" f2:\"d e\" f2:\"e f\")^2.1",
+            "(f3:\"a b d\" f3:\"b d e\" f3:\"d e f\")^3.9",
+            "(f1:\"a b d\" f1:\"b d e\" f1:\"d e f\")^3.9"
+
+        );
+
+    }
+
+    @Test
+    public void testThatAnalysisIsRunForPf2WithTokenAnalysis() {
+
+        String q = "K L M";
+        SolrQueryRequest req = req("q", q,
+                DisMaxParams.QF, "f1",
+                DisMaxParams.MM, "3",
+                QueryParsing.OP, "OR",
+                "defType", "querqy",
+                "debugQuery", "true",
+                DisMaxParams.PF2, "f1_lc f2_lc",
+                QPF_ANALYSIS, QPF_ANALYSIS_TOKEN,
+                PARAM_REWRITERS, "common_rules");
+
+
+        assertQ("Analysis not applied for pf2",
+                req,
+                "//str[@name='parsedquery'][contains(.,'DisjunctionMaxQuery(((f1_lc:\"k l\" f1_lc:\"l m\") | (f2_lc:\"k l\" f2_lc:\"l m\")))')] or " +
+                "//str[@name='parsedquery'][contains(.,'DisjunctionMaxQuery(((f2_lc:\"k l\" f2_lc:\"l m\") | (f1_lc:\"k l\" f1_lc:\"l m\")))')]",
+                "//str[@name='parsedquery'][contains(.,'(f1:K f1:L f1:M)')]");
+
+        req.close();
+
+    }
+
     @Test
     public void testThatPFWorksWithSynonymRewriting() {
 
@@ -2,6 +2,7 @@ package querqy.solr;
 
 import static querqy.solr.QuerqyQParserPlugin.PARAM_REWRITERS;
 import static querqy.solr.StandaloneSolrTestSupport.deleteRewriter;
+import static querqy.solr.StandaloneSolrTestSupport.patchRewriter;
 import static querqy.solr.StandaloneSolrTestSupport.withCommonRulesRewriter;
 
 import org.apache.solr.SolrTestCaseJ4;
@@ -15,6 +16,8 @@ import org.junit.Test;
 import querqy.rewrite.lookup.preprocessing.LookupPreprocessorType;
 import querqy.solr.rewriter.commonrules.CommonRulesConfigRequestBuilder;
 
+import java.io.File;
+
 @SolrTestCaseJ4.SuppressSSL
 public class QuerqyRewriterRequestHandlerStandaloneTest extends SolrTestCaseJ4 {
 
@@ -74,7 +77,8 @@ public class QuerqyRewriterRequestHandlerStandaloneTest extends SolrTestCaseJ4 {
 
         final String rewriterName = "conf_common_rules";
         final CommonRulesConfigRequestBuilder builder = new CommonRulesConfigRequestBuilder()
-                .rules("a =>\n SYNONYM: b").lookupPreprocessorType(LookupPreprocessorType.GERMAN);
+                .rules("a =>\n SYNONYM: b\n UP(10): x\n\nc =>\n UP(10): x")
+                .lookupPreprocessorType(LookupPreprocessorType.GERMAN);
         withCommonRulesRewriter(h.getCore(), rewriterName, builder);
 
 
@@ -90,7 +94,10 @@ public class QuerqyRewriterRequestHandlerStandaloneTest extends SolrTestCaseJ4 {
                     "//lst[@name='rewriter']/lst[@name='definition']/lst[@name='config']/str[@name='lookupPreprocessor']" +
                             "[text()='german']",
                     "//lst[@name='rewriter']/lst[@name='definition']/lst[@name='config']/str[@name='rules']" +
-                            "[contains(.,'SYNONYM: b')]"
+                            "[contains(.,'SYNONYM: b')]",
+                    "//lst[@name='rewriter']/lst[@name='info']/int[@name='rules'][text()='2']",
+                    "//lst[@name='rewriter']/lst[@name='info']/int[@name='instructions'][text()='3']",
+                    "//lst[@name='rewriter']/lst[@name='info']/int[@name='uniqueInstructions'][text()='2']"
             );
 
         }
@@ -181,6 +188,49 @@ public class QuerqyRewriterRequestHandlerStandaloneTest extends SolrTestCaseJ4 {
     }
 
 
+    @Test
+    public void testPatchRewriter() {
+
+        final CommonRulesConfigRequestBuilder builder = new CommonRulesConfigRequestBuilder()
+                .rules("a =>\n SYNONYM: b\n @_id:\"r1\"\nb =>\n SYNONYM: c\n @_id:\"r2\"");
+        withCommonRulesRewriter(h.getCore(), "rewriter_patch", builder);
+
+        assertQ("Rewriter not saved",
+                req("q", "a",
+                        DisMaxParams.QF, "f1 f2",
+                        DisMaxParams.MM, "1",
+                        QueryParsing.OP, "OR",
+                        "defType", "querqy",
+                        PARAM_REWRITERS, "rewriter_patch"),
+                "//result[@name='response' and @numFound='2']"
+        );
+
+        patchRewriter(h.getCore(), "rewriter_patch",
+                "{\"upsert\": \"a =>\\n SYNONYM: c\\n @_id:\\\"r1\\\"\", \"delete\": [\"r2\"]}");
+
+        assertQ("Rewriter not patched",
+                req("q", "a",
+                        DisMaxParams.QF, "f1 f2",
+                        DisMaxParams.MM, "1",
+                        QueryParsing.OP, "OR",
+                        "defType", "querqy",
+                        PARAM_REWRITERS, "rewriter_patch"),
+                "//result[@name='response' and @numFound='2']",
+                "//doc/str[@name='id'][text()='1']",
+                "//doc/str[@name='id'][text()='3']"
+        );
+
+        assertQ("Deleted rule still active",
+                req("q", "b",
+                        DisMaxParams.QF, "f1 f2",
+                        DisMaxParams.MM, "1",
+                        QueryParsing.OP, "OR",
+                        "defType", "querqy",
+                        PARAM_REWRITERS, "rewriter_patch"),
+                "//result[@name='response' and @numFound='1']"
+        );
+    }
+
     @Test
     public void testUnknownRewriterReturnsBadRequest() {
 
@@ -267,5 +317,38 @@ public class QuerqyRewriterRequestHandlerStandaloneTest extends SolrTestCaseJ4 {
         req.close();
     }
 
+    @Test
+    public void testThatCompiledConfigurationIsUsedAfterCoreReload() throws Exception {
+
+        final CommonRulesConfigRequestBuilder builder = new CommonRulesConfigRequestBuilder()
+                .rules("a =>\n SYNONYM: b");
+        withCommonRulesRewriter(h.getCore(), "rewriter_test_compiled", builder);
+
+        final File compiledFile = new File(h.getCore().getResourceLoader().getConfigPath().toFile(),
+                StandAloneRewriterContainer.IO_PATH + "/" + StandAloneRewriterContainer.COMPILED_DIR
+                        + "/rewriter_test_compiled");
+        assertTrue(compiledFile.isFile());
+
+        h.reload();
+
+        final SolrQueryRequest req = req("q", "a",
+                DisMaxParams.QF, "f1 f2",
+                DisMaxParams.MM, "1",
+                QueryParsing.OP, "OR",
+                "defType", "querqy",
+                PARAM_REWRITERS, "rewriter_test_compiled"
+        );
+
+        assertQ("Rewriter not loaded from compiled configuration",
+                req,
+                "//result[@name='response' and @numFound='2']"
+
+        );
+
+        req.close();
+
+        deleteRewriter(h.getCore(), "rewriter_test_compiled");
+        assertFalse(compiledFile.exists());
+    }
 
 }
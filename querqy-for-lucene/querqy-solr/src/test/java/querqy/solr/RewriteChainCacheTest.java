@@ -0,0 +1,102 @@
+package querqy.solr;
+
+import static querqy.solr.QuerqyQParserPlugin.PARAM_REWRITERS;
+import static querqy.solr.StandaloneSolrTestSupport.deleteRewriter;
+import static querqy.solr.StandaloneSolrTestSupport.withCommonRulesRewriter;
+
+import org.apache.solr.SolrTestCaseJ4;
+import org.apache.solr.common.params.DisMaxParams;
+import org.apache.solr.request.SolrQueryRequest;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import querqy.rewrite.RewriteChainCache;
+
+@SolrTestCaseJ4.SuppressSSL
+public class RewriteChainCacheTest extends SolrTestCaseJ4 {
+
+    public void index() {
+
+        assertU(adoc("id", "1", "f1", "a", "f2", "c"));
+        assertU(adoc("id", "2", "f1", "a", "f2", "b"));
+        assertU(adoc("id", "3", "f1", "a"));
+        assertU(commit());
+
+    }
+
+    @BeforeClass
+    public static void beforeTests() throws Exception {
+        initCore("solrconfig-rewrite-chain-cache.xml", "schema.xml");
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        clearIndex();
+        index();
+        withCommonRulesRewriter(h.getCore(), "common_rules", "configs/commonrules/rules.txt");
+        getCache().invalidateAll();
+    }
+
+    @Test
+    public void testThatRewriteChainOutputIsCached() {
+
+        assertFilteredResult();
+        assertEquals(1, getCache().size());
+        final long hits = getCache().getHits();
+
+        assertFilteredResult();
+        assertEquals(hits + 1L, getCache().getHits());
+
+    }
+
+    @Test
+    public void testThatUpdatingRewriterInvalidatesCache() {
+
+        assertFilteredResult();
+        assertEquals(1, getCache().size());
+
+        withCommonRulesRewriter(h.getCore(), "common_rules", "configs/commonrules/rules-empty.txt");
+        assertEquals(0, getCache().size());
+
+        try (final SolrQueryRequest req = req("q", "a",
+                DisMaxParams.QF, "f1",
+                "defType", "querqy",
+                PARAM_REWRITERS, "common_rules")) {
+
+            assertQ("Cached output of the old rewriter was used", req,
+                    "//result[@name='response' and @numFound='3']");
+        }
+
+    }
+
+    @Test
+    public void testThatDeletingRewriterInvalidatesCache() {
+
+        assertFilteredResult();
+        assertEquals(1, getCache().size());
+
+        deleteRewriter(h.getCore(), "common_rules");
+        assertEquals(0, getCache().size());
+
+    }
+
+    private void assertFilteredResult() {
+        try (final SolrQueryRequest req = req("q", "a",
+                DisMaxParams.QF, "f1",
+                "defType", "querqy",
+                PARAM_REWRITERS, "common_rules")) {
+
+            assertQ("Filter not applied", req,
+                    "//result[@name='response' and @numFound='1']",
+                    "//doc/str[@name='id'][text()='1']");
+        }
+    }
+
+    private static RewriteChainCache getCache() {
+        return ((QuerqyRewriterRequestHandler) h.getCore().getRequestHandler("/querqy/rewriter"))
+                .getRewriteChainCache().orElseThrow();
+    }
+
+}
@@ -103,6 +103,26 @@ public interface StandaloneSolrTestSupport {
         }
     }
 
+    static void patchRewriter(final SolrCore core, final String rewriterId, final String patch) {
+        SolrRequestHandler handler = core.getRequestHandler("/querqy/rewriter/" + rewriterId);
+
+        final LocalSolrQueryRequest req = new LocalSolrQueryRequest(core, PATCH.params());
+        req.setContentStreams(Collections.singletonList(new ContentStreamBase.StringStream(patch)));
+        req.getContext().put("httpMethod", "POST");
+
+        final SolrQueryResponse rsp = new SolrQueryResponse();
+        SolrRequestInfo.setRequestInfo(new SolrRequestInfo(req, rsp));
+        try {
+            core.execute(handler, req, rsp);
+            if (rsp.getException() != null) {
+                throw new RuntimeException(rsp.getException());
+            }
+        } finally {
+            SolrRequestInfo.clearRequestInfo();
+            req.close();
+        }
+    }
+
     static void withReplaceRewriter(final SolrCore core, final String rewriterId, final String rulesName,
                                     final String... sinks) {
         try {
@@ -0,0 +1,137 @@
+package querqy.solr;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.core.SolrCore;
+import org.apache.solr.search.CaffeineCache;
+import org.apache.solr.search.SolrCache;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import querqy.lucene.rewrite.NeverMatchQueryFactory;
+import querqy.lucene.rewrite.cache.CacheKey;
+import querqy.lucene.rewrite.cache.TermQueryCacheValue;
+import querqy.lucene.rewrite.prms.PRMSQuery;
+import querqy.model.ExpandedQuery;
+import querqy.model.Term;
+import querqy.rewrite.QueryRewriter;
+import querqy.rewrite.RewriterFactory;
+import querqy.rewrite.SearchEngineRequestAdapter;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TermQueryCachePreloaderTest {
+
+    @Mock
+    private SolrCore core;
+
+    private TermQueryCachePreloader testee;
+
+    @Before
+    public void setup() {
+        testee = new TermQueryCachePreloader(core);
+    }
+
+    @Test
+    public void testThatTermsArePartitionedByFieldAndRecentlyUsedTermsComeFirst() {
+        final NamedList<Object> args = new NamedList<>();
+        args.add("fields", "f1 f2");
+        args.add("cacheName", "querqyTermQueryCache");
+        args.add("batchSize", 2);
+        testee.init(args);
+
+        final Term termB = new Term(null, "b");
+        final SolrCache<CacheKey, TermQueryCacheValue> previousCache = previousCache();
+        previousCache.put(new CacheKey("f2", termB),
+                new TermQueryCacheValue(NeverMatchQueryFactory.FACTORY, PRMSQuery.NEVER_MATCH_PRMS_QUERY));
+
+        final Set<Term> terms = new LinkedHashSet<>();
+        terms.add(new Term(null, "a"));
+        terms.add(termB);
+        terms.add(new Term(null, "f2", "c"));
+        terms.add(new Term(null, "f3", "d"));
+
+        final List<List<TermQueryCachePreloader.CacheKeyAndTerm>> batches = testee.createBatches(
+                Collections.singletonList(new RewriterFactoryContext(factory(terms), Collections.emptyList())),
+                TermQueryCachePreloader.snapshotKeys(null, previousCache));
+
+        final List<List<String>> fieldsAndTerms = batches.stream()
+                .map(batch -> batch.stream()
+                        .map(t -> t.cacheKey.fieldname + ":" + t.term.getValue())
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+
+        assertThat(fieldsAndTerms, contains(
+                List.of("f2:b"),
+                List.of("f1:a", "f1:b"),
+                List.of("f2:a", "f2:c")
+        ));
+    }
+
+    @Test
+    public void testThatKeySnapshotDoesNotLookUpPreviousCache() throws Exception {
+        final SolrCache<CacheKey, TermQueryCacheValue> previousCache = spy(previousCache());
+        final CacheKey key1 = new CacheKey("f1", new Term(null, "a"));
+        final CacheKey key2 = new CacheKey("f2", new Term(null, "b"));
+        final TermQueryCacheValue value = new TermQueryCacheValue(NeverMatchQueryFactory.FACTORY,
+                PRMSQuery.NEVER_MATCH_PRMS_QUERY);
+        previousCache.put(key1, value);
+        previousCache.put(key2, value);
+
+        assertThat(TermQueryCachePreloader.snapshotKeys(null, previousCache), containsInAnyOrder(key1, key2));
+        verify(previousCache, never()).get(any());
+        previousCache.close();
+    }
+
+    @Test
+    public void testThatKeySnapshotOfMissingCacheIsEmpty() {
+        assertThat(TermQueryCachePreloader.snapshotKeys(null, null), empty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatThreadsMustBePositive() {
+        final NamedList<Object> args = new NamedList<>();
+        args.add("fields", "f1");
+        args.add("cacheName", "querqyTermQueryCache");
+        args.add("threads", 0);
+        testee.init(args);
+    }
+
+    private static SolrCache<CacheKey, TermQueryCacheValue> previousCache() {
+        final CaffeineCache<CacheKey, TermQueryCacheValue> cache = new CaffeineCache<>();
+        cache.init(Map.of("size", "10"), null, null);
+        return cache;
+    }
+
+    private static RewriterFactory factory(final Set<Term> terms) {
+        return new RewriterFactory("r1") {
+            @Override
+            public QueryRewriter createRewriter(final ExpandedQuery input,
+                                                final SearchEngineRequestAdapter searchEngineRequestAdapter) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Set<Term> getCacheableGenerableTerms() {
+                return terms;
+            }
+        };
+    }
+
+}
@@ -174,6 +174,9 @@ public class ZkStorageFormatTest extends AbstractQuerqySolrCloudTestCase {
                 .stream().filter(name -> name.contains("some_common_rules-")).collect(Collectors.toList());
         assertTrue(children.size() >= 1);
 
+        // the rules were compiled when they were saved and the nodes loaded them from the compiled configuration
+        assertTrue(children.stream().anyMatch(name -> name.startsWith("some_common_rules-compiled-")));
+
     }
 
     @Test
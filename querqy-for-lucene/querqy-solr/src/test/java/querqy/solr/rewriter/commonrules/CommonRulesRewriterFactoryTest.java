@@ -7,11 +7,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import querqy.lucene.GZIPAwareResourceLoader;
+import querqy.model.Term;
 import querqy.rewrite.RewriterFactory;
 import querqy.rewrite.commonrules.WhiteSpaceQuerqyParserFactory;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -60,4 +62,162 @@ public class CommonRulesRewriterFactoryTest {
 
         assertThat(config.get(CONF_ALLOW_BOOLEAN_INPUT)).isEqualTo(false);
     }
-}
\ No newline at end of file
+    @Test
+    public void testThatPatchReplacesAddsAndRemovesRulesById() {
+
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "# comment\n" +
+                "a =>\n SYNONYM: b\n @_id:\"1\"\n" +
+                "c =>\n SYNONYM: d\n @_id:\"2\"\n" +
+                "e =>\n SYNONYM: f\n @_id:\"3\"");
+        factory.configure(config);
+        final RewriterFactory current = factory.getRewriterFactory();
+
+        final Map<String, Object> patch = new HashMap<>();
+        patch.put(PATCH_UPSERT, "a =>\n SYNONYM: x\n @_id:\"1\"\ng =>\n SYNONYM: h\n @_id:\"4\"");
+        patch.put(PATCH_DELETE, List.of("2"));
+
+        final CommonRulesRewriterFactory patchedFactory = new CommonRulesRewriterFactory("test");
+        final Map<String, Object> newConfig = patchedFactory.patch(config, patch, current);
+
+        assertThat(newConfig.get(CONF_RULES)).isEqualTo("# comment\n" +
+                "a =>\n SYNONYM: x\n @_id:\"1\"\n" +
+                "e =>\n SYNONYM: f\n @_id:\"3\"\n" +
+                "\n" +
+                "g =>\n SYNONYM: h\n @_id:\"4\"\n");
+
+        final RewriterFactory patched = patchedFactory.getRewriterFactory();
+        assertThat(patched).isNotSameAs(current);
+        assertThat(patched.getCacheableGenerableTerms()).containsExactlyInAnyOrder(
+                new Term(null, "x"), new Term(null, "f"), new Term(null, "h"));
+        assertThat(current.getCacheableGenerableTerms()).containsExactlyInAnyOrder(
+                new Term(null, "b"), new Term(null, "d"), new Term(null, "f"));
+
+        // the patched rules result in the same rewriter
+        final CommonRulesRewriterFactory rebuiltFactory = new CommonRulesRewriterFactory("test");
+        rebuiltFactory.configure(newConfig);
+        assertThat(rebuiltFactory.getRewriterFactory().getCacheableGenerableTerms())
+                .isEqualTo(patched.getCacheableGenerableTerms());
+    }
+
+    @Test
+    public void testThatPatchKeepsCommentsAndTemplates() {
+
+        final String unchangedStart = "# synonyms\n" +
+                "def synonym(term):\n" +
+                "  SYNONYM: $term\n" +
+                "\n" +
+                "# rule 1\n";
+        final String unchangedEnd = "\n" +
+                "c =>\n" +
+                "  << synonym: term=d >> # rule 2\n" +
+                "  @_id:\"2\"\n" +
+                "\n" +
+                "e =>\n" +
+                "  SYNONYM: f\n";
+
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, unchangedStart + "a =>\n  << synonym: term=b >>\n  @_id:\"1\"\n" + unchangedEnd);
+        factory.configure(config);
+
+        final Map<String, Object> newConfig = factory.patch(config,
+                Map.of(PATCH_UPSERT, "a =>\n  SYNONYM: x # changed\n  @_id:\"1\""), factory.getRewriterFactory());
+
+        assertThat(newConfig.get(CONF_RULES)).isEqualTo(
+                unchangedStart + "a =>\n  SYNONYM: x # changed\n  @_id:\"1\"\n" + unchangedEnd);
+
+        final CommonRulesRewriterFactory rebuiltFactory = new CommonRulesRewriterFactory("test");
+        rebuiltFactory.configure(newConfig);
+        assertThat(rebuiltFactory.getRewriterFactory().getCacheableGenerableTerms()).containsExactlyInAnyOrder(
+                new Term(null, "x"), new Term(null, "d"), new Term(null, "f"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatPatchRejectsRulesThatAreRenderedFromTheSameTemplateReference() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "def rules():\na =>\n  SYNONYM: b\n  @_id:\"1\"\nc =>\n  SYNONYM: d\n  @_id:\"2\"\n" +
+                "\n<< rules >>\n");
+        factory.configure(config);
+
+        factory.patch(config, Map.of(PATCH_DELETE, List.of("1")), factory.getRewriterFactory());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testThatPatchRequiresRuleIds() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a =>\n SYNONYM: b\n @_id:\"1\"");
+        factory.configure(config);
+
+        factory.patch(config, Map.of(PATCH_UPSERT, "c =>\n SYNONYM: d"), factory.getRewriterFactory());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testThatPatchIsNotSupportedForBooleanInput() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a AND b =>\n UP(10): c\n @_id:\"1\"");
+        config.put(CONF_ALLOW_BOOLEAN_INPUT, true);
+        factory.configure(config);
+
+        factory.patch(config, Map.of(PATCH_DELETE, List.of("1")), factory.getRewriterFactory());
+    }
+
+    @Test
+    public void testThatCompiledConfigurationCreatesSameRewriter() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a =>\n SYNONYM: b\n @_id:\"1\"\nc* =>\n UP(10): d\n @_id:\"2\"");
+        assertThat(factory.validateConfiguration(config)).isNull();
+
+        final byte[] compiledConfiguration = factory.getCompiledConfiguration().orElseThrow();
+
+        final CommonRulesRewriterFactory loadedFactory = new CommonRulesRewriterFactory("test");
+        loadedFactory.configure(config, compiledConfiguration);
+        assertThat(loadedFactory.getRewriterFactory().getCacheableGenerableTerms()).containsExactlyInAnyOrder(
+                new Term(null, "b"), new Term(null, "d"));
+
+        // the loaded rules can be compiled again
+        assertThat(loadedFactory.getCompiledConfiguration()).hasValue(compiledConfiguration);
+    }
+
+    @Test
+    public void testThatCompiledConfigurationOfOtherConfigIsIgnored() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a =>\n SYNONYM: b");
+        factory.configure(config);
+        final byte[] compiledConfiguration = factory.getCompiledConfiguration().orElseThrow();
+
+        final Map<String, Object> otherConfig = new HashMap<>();
+        otherConfig.put(CONF_RULES, "a =>\n SYNONYM: c");
+
+        final CommonRulesRewriterFactory loadedFactory = new CommonRulesRewriterFactory("test");
+        loadedFactory.configure(otherConfig, compiledConfiguration);
+        assertThat(loadedFactory.getRewriterFactory().getCacheableGenerableTerms())
+                .containsExactly(new Term(null, "c"));
+
+        loadedFactory.configure(config, new byte[] {1, 2, 3});
+        assertThat(loadedFactory.getRewriterFactory().getCacheableGenerableTerms())
+                .containsExactly(new Term(null, "b"));
+    }
+
+    @Test
+    public void testThatConfigureReusesValidatedFactory() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a =>\n SYNONYM: b");
+        assertThat(factory.validateConfiguration(config)).isNull();
+
+        factory.configure(new HashMap<>(config));
+        final RewriterFactory rewriterFactory = factory.getRewriterFactory();
+        factory.configure(config);
+        assertThat(factory.getRewriterFactory()).isSameAs(rewriterFactory);
+    }
+
+    @Test
+    public void testThatRulesWithBooleanInputAreNotCompiled() {
+        final Map<String, Object> config = new HashMap<>();
+        config.put(CONF_RULES, "a AND b =>\n UP(10): c");
+        config.put(CONF_ALLOW_BOOLEAN_INPUT, true);
+        factory.configure(config);
+
+        assertThat(factory.getCompiledConfiguration()).isEmpty();
+    }
+
+}
@@ -3,14 +3,34 @@ package querqy.solr.rewriter.numberunit;
 import static querqy.solr.QuerqyQParserPlugin.PARAM_REWRITERS;
 import static querqy.solr.StandaloneSolrTestSupport.withRewriter;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.apache.solr.SolrTestCaseJ4;
 import org.apache.solr.common.params.DisMaxParams;
 import org.apache.solr.request.SolrQueryRequest;
+import org.apache.solr.search.QParser;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import querqy.lucene.LuceneRawQuery;
+import querqy.model.QuerqyQuery;
+import querqy.model.StringRawQuery;
+import querqy.rewrite.contrib.numberunit.FixedPointDecimal;
+import querqy.rewrite.contrib.numberunit.model.FieldDefinition;
+import querqy.rewrite.contrib.numberunit.model.NumberUnitDefinition;
+import querqy.rewrite.contrib.numberunit.model.PerUnitNumberUnitDefinition;
+import querqy.solr.DismaxSearchEngineRequestAdapter;
 import querqy.solr.StandaloneSolrTestSupport;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @SolrTestCaseJ4.SuppressSSL
@@ -373,4 +393,76 @@ public class NumberUnitRewriterTest extends SolrTestCaseJ4 {
         req.close();
     }
 
+    @Test
+    public void testThatQueriesFromTemplatesHaveSameResultsAsParsedQueries() throws Exception {
+        final NumberUnitQueryCreatorSolr queryCreator = new NumberUnitQueryCreatorSolr(5);
+        final List<PerUnitNumberUnitDefinition> definitions = Arrays.asList(
+                createPerUnitNumberUnitDefinition(Collections.singletonList(new FieldDefinition("screen_size", 2)),
+                        BigDecimal.ONE, BigDecimal.valueOf(-1)),
+                createPerUnitNumberUnitDefinition(Arrays.asList(new FieldDefinition("height", 0),
+                        new FieldDefinition("width", 0)), BigDecimal.valueOf(2.5), BigDecimal.valueOf(30)));
+
+        final SolrQueryRequest req = req();
+        try {
+            final DismaxSearchEngineRequestAdapter requestAdapter = mock(DismaxSearchEngineRequestAdapter.class);
+            when(requestAdapter.getSolrRequest()).thenReturn(req);
+
+            for (final String value : new String[] {"50", "54.6", "48", "35.7"}) {
+                final FixedPointDecimal number = FixedPointDecimal.valueOf(new BigDecimal(value));
+
+                final Query parsedFilterQuery = parse(req, queryCreator.createFilterQuery(number, definitions));
+                final Query filterQuery = unwrap(queryCreator.createFilterQuery(number, definitions,
+                        requestAdapter));
+                assertEquals(parsedFilterQuery, filterQuery);
+
+                final Query parsedBoostQuery = parse(req,
+                        queryCreator.createBoostQuery(number, definitions).getQuery());
+                final Query boostQuery = unwrap(queryCreator.createBoostQuery(number, definitions, requestAdapter)
+                        .getQuery());
+                assertEquals(search(req, parsedBoostQuery), search(req, boostQuery));
+            }
+        } finally {
+            req.close();
+        }
+    }
+
+    private static Query parse(final SolrQueryRequest req, final QuerqyQuery<?> rawQuery) throws Exception {
+        assertTrue(rawQuery instanceof StringRawQuery);
+        return QParser.getParser(((StringRawQuery) rawQuery).getQueryString(), null, req).getQuery();
+    }
+
+    private static Query unwrap(final QuerqyQuery<?> rawQuery) {
+        assertTrue(rawQuery instanceof LuceneRawQuery);
+        return ((LuceneRawQuery) rawQuery).getQuery();
+    }
+
+    private static List<String> search(final SolrQueryRequest req, final Query query) throws Exception {
+        final TopDocs topDocs = req.getSearcher().search(query, 100);
+        final List<String> result = new ArrayList<>();
+        for (final ScoreDoc scoreDoc : topDocs.scoreDocs) {
+            result.add(scoreDoc.doc + ":" + scoreDoc.score);
+        }
+        return result;
+    }
+
+    private static PerUnitNumberUnitDefinition createPerUnitNumberUnitDefinition(
+            final List<FieldDefinition> fields, final BigDecimal multiplier, final BigDecimal filterPercentage) {
+        return new PerUnitNumberUnitDefinition(
+                NumberUnitDefinition.builder()
+                        .addUnits(Collections.emptyList())
+                        .addFields(fields)
+                        .setMaxScoreForExactMatch(BigDecimal.valueOf(20))
+                        .setAdditionalScoreForExactMatch(BigDecimal.valueOf(5))
+                        .setMinScoreAtUpperBoundary(BigDecimal.valueOf(10))
+                        .setMinScoreAtLowerBoundary(BigDecimal.valueOf(7))
+                        .setBoostPercentageUpperBoundary(BigDecimal.valueOf(20))
+                        .setBoostPercentageLowerBoundary(BigDecimal.valueOf(25))
+                        .setBoostPercentageUpperBoundaryExactMatch(BigDecimal.valueOf(2))
+                        .setBoostPercentageLowerBoundaryExactMatch(BigDecimal.ZERO)
+                        .setFilterPercentageUpperBoundary(filterPercentage)
+                        .setFilterPercentageLowerBoundary(BigDecimal.valueOf(20))
+                        .build(),
+                multiplier);
+    }
+
 }